@@ -0,0 +1,241 @@
+package com.fairburn.neurogear.utilities.tools;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD implementation of VectorMath.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: SimdVectorMath.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Uses the widest DoubleVector shape the
+ * hardware supports (e.g. 4 lanes on AVX2, 8 lanes on
+ * AVX-512) with a scalar loop for the tail. Floats are
+ * loaded as FloatVectors of half that width, so that
+ * each one widens to exactly one DoubleVector. Only
+ * loaded by VectorMath, and only when
+ * 'jdk.incubator.vector' is present. Kept in the
+ * 'src-simd' source root, since it cannot be compiled
+ * without '--add-modules jdk.incubator.vector'.
+ */
+public final class SimdVectorMath extends VectorMath {
+    
+    // MEMBER VARIABLES.
+    
+    // Preferred vector shape.
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    // Float vector shape with as many lanes as the preferred double shape.
+    private static final VectorSpecies<Float> FLOAT_SPECIES = VectorSpecies.of(float.class, VectorShape.forBitSize(SPECIES.vectorBitSize() / 2));
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Compute the dot product of two runs of values.
+     * @param a first array
+     * @param aOffset start of run in first array
+     * @param b second array
+     * @param bOffset start of run in second array
+     * @param length length of both runs
+     * @return sum of a[aOffset + i] * b[bOffset + i]
+     */
+    @Override
+    protected double computeDot(double a[], int aOffset, double b[], int bOffset, int length) {
+    
+        double sum = 0.0;
+        
+        int i = 0;
+        
+        // Full vectors (skipped for runs shorter than one vector).
+        if (length >= SPECIES.length()) {
+        
+            // Lane-wise partial sums.
+            DoubleVector sums = DoubleVector.zero(SPECIES);
+            
+            for (; i < SPECIES.loopBound(length); i += SPECIES.length()) {
+            
+                sums = DoubleVector.fromArray(SPECIES, a, aOffset + i).fma(DoubleVector.fromArray(SPECIES, b, bOffset + i), sums);
+            }
+            
+            sum = sums.reduceLanes(VectorOperators.ADD);
+        }
+        
+        // Remaining values.
+        for (; i < length; i++) {
+        
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        
+        return sum;
+    }
+    
+    /**
+     * Compute the dot product of a run of little-endian
+     * doubles in a buffer and a run of values in an array.
+     * @param a buffer of doubles in little-endian order (its position is ignored)
+     * @param aIndex start of run in first buffer, counted in doubles
+     * @param b second array
+     * @param bOffset start of run in second array
+     * @param length length of both runs
+     * @return sum of a.getDouble((aIndex + i) * 8) * b[bOffset + i]
+     */
+    @Override
+    protected double computeDot(ByteBuffer a, int aIndex, double b[], int bOffset, int length) {
+    
+        double sum = 0.0;
+        
+        int i = 0;
+        
+        // Full vectors (skipped for runs shorter than one vector).
+        if (length >= SPECIES.length()) {
+        
+            // Lane-wise partial sums.
+            DoubleVector sums = DoubleVector.zero(SPECIES);
+            
+            for (; i < SPECIES.loopBound(length); i += SPECIES.length()) {
+            
+                sums = DoubleVector.fromByteBuffer(SPECIES, a, (aIndex + i) * Double.BYTES, ByteOrder.LITTLE_ENDIAN).fma(DoubleVector.fromArray(SPECIES, b, bOffset + i), sums);
+            }
+            
+            sum = sums.reduceLanes(VectorOperators.ADD);
+        }
+        
+        // Remaining values.
+        for (; i < length; i++) {
+        
+            sum += a.getDouble((aIndex + i) * Double.BYTES) * b[bOffset + i];
+        }
+        
+        return sum;
+    }
+    
+    /**
+     * Compute the dot product of two runs of single
+     * precision values in double precision.
+     * @param a first array
+     * @param aOffset start of run in first array
+     * @param b second array
+     * @param bOffset start of run in second array
+     * @param length length of both runs
+     * @return sum of (double)a[aOffset + i] * b[bOffset + i]
+     */
+    @Override
+    protected double computeDot(float a[], int aOffset, float b[], int bOffset, int length) {
+    
+        double sum = 0.0;
+        
+        int i = 0;
+        
+        // Full vectors (skipped for runs shorter than one vector).
+        if (length >= SPECIES.length()) {
+        
+            // Lane-wise partial sums.
+            DoubleVector sums = DoubleVector.zero(SPECIES);
+            
+            for (; i < SPECIES.loopBound(length); i += SPECIES.length()) {
+            
+                sums = widen(a, aOffset + i).fma(widen(b, bOffset + i), sums);
+            }
+            
+            sum = sums.reduceLanes(VectorOperators.ADD);
+        }
+        
+        // Remaining values.
+        for (; i < length; i++) {
+        
+            sum += (double)a[aOffset + i] * b[bOffset + i];
+        }
+        
+        return sum;
+    }
+    
+    /**
+     * Add a scaled run of values to another run of values.
+     * @param alpha scaling factor
+     * @param x array to scale
+     * @param xOffset start of run in array to scale
+     * @param y array to add to
+     * @param yOffset start of run in array to add to
+     * @param length length of both runs
+     */
+    @Override
+    protected void computeAxpy(double alpha, double x[], int xOffset, double y[], int yOffset, int length) {
+    
+        int i = 0;
+        
+        // Full vectors (skipped for runs shorter than one vector).
+        if (length >= SPECIES.length()) {
+        
+            // Scaling factor in every lane.
+            DoubleVector alphas = DoubleVector.broadcast(SPECIES, alpha);
+            
+            for (; i < SPECIES.loopBound(length); i += SPECIES.length()) {
+            
+                DoubleVector.fromArray(SPECIES, x, xOffset + i).fma(alphas, DoubleVector.fromArray(SPECIES, y, yOffset + i)).intoArray(y, yOffset + i);
+            }
+        }
+        
+        // Remaining values.
+        for (; i < length; i++) {
+        
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+    
+    /**
+     * Add a scaled run of single precision values to a
+     * run of double precision values.
+     * @param alpha scaling factor
+     * @param x array to scale
+     * @param xOffset start of run in array to scale
+     * @param y array to add to
+     * @param yOffset start of run in array to add to
+     * @param length length of both runs
+     */
+    @Override
+    protected void computeAxpy(double alpha, float x[], int xOffset, double y[], int yOffset, int length) {
+    
+        int i = 0;
+        
+        // Full vectors (skipped for runs shorter than one vector).
+        if (length >= SPECIES.length()) {
+        
+            // Scaling factor in every lane.
+            DoubleVector alphas = DoubleVector.broadcast(SPECIES, alpha);
+            
+            for (; i < SPECIES.loopBound(length); i += SPECIES.length()) {
+            
+                widen(x, xOffset + i).fma(alphas, DoubleVector.fromArray(SPECIES, y, yOffset + i)).intoArray(y, yOffset + i);
+            }
+        }
+        
+        // Remaining values.
+        for (; i < length; i++) {
+        
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+    
+    // HELPER METHODS.
+    
+    /**
+     * Load one vector of floats and widen it to doubles.
+     * @param a array to load from
+     * @param offset start of vector in array
+     * @return widened values
+     */
+    private static DoubleVector widen(float a[], int offset) {
+    
+        return (DoubleVector)FloatVector.fromArray(FLOAT_SPECIES, a, offset).convertShape(VectorOperators.F2D, SPECIES, 0);
+    }
+}
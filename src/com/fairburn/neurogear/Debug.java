@@ -3,10 +3,12 @@ package com.fairburn.neurogear;
 import com.fairburn.neurogear.base.activation.*;
 import com.fairburn.neurogear.base.cost.*;
 import com.fairburn.neurogear.base.regularization.*;
+import com.fairburn.neurogear.base.schedule.*;
 import com.fairburn.neurogear.data.dataset.DataSet;
 import com.fairburn.neurogear.data.datum.Datum;
 import com.fairburn.neurogear.data.scale.*;
 import com.fairburn.neurogear.utilities.layer.Layer;
+import com.fairburn.neurogear.utilities.layer.Network;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -71,32 +73,26 @@ public class Debug {
         hiddenLayerB.connect(hiddenLayerA);
         outputLayer.connect(hiddenLayerB);
         
+        Network network = new Network(new Layer[] {inputLayer, hiddenLayerA, hiddenLayerB, outputLayer}, outputLayer, costFunction);
+        long numSteps = (long)(trainingSet.size() / batchSize) * numEpochs;
+        LearningRateSchedule rateSchedule = new WarmupSchedule(new CosineAnnealingSchedule(learningRate, 0.0, numSteps), numSteps / 20);
+        
         for (int i = 0; i < numEpochs; i++) {
         
             while (trainingSet.hasNextBuffer(batchSize)) {
             
+                double batchRaw[][][] = new double[batchSize][][];
+                double batchLabel[][][] = new double[batchSize][][];
+                
                 for (int j = 0; j < batchSize; j++) {
                 
                     Datum curDatum = trainingSet.getNextBuffer();
-                
-                    inputLayer.propagate(rawScale.scaleDown(curDatum.getRaw()));
-                    hiddenLayerA.propagate();
-                    hiddenLayerB.propagate();
-                    outputLayer.propagate();
-                    
-                    outputLayer.backpropagate(labelScale.scaleDown(curDatum.getLabel()), costFunction);
-                    hiddenLayerB.backpropagate();
-                    hiddenLayerA.backpropagate();
                     
-                    outputLayer.clearNodeSums();
-                    hiddenLayerB.clearNodeSums();
-                    hiddenLayerA.clearNodeSums();
-                    inputLayer.clearNodeSums();
+                    batchRaw[j] = rawScale.scaleDown(curDatum.getRaw());
+                    batchLabel[j] = labelScale.scaleDown(curDatum.getLabel());
                 }
                 
-                outputLayer.correctKernels(learningRate, regParameter);
-                hiddenLayerB.correctKernels(learningRate, regParameter);
-                hiddenLayerA.correctKernels(learningRate, regParameter);
+                network.fit(batchRaw, batchLabel, rateSchedule.getLearningRate(network.getNumSteps()), regParameter);
             }
             
             double avgErr = 0.0;
@@ -105,14 +101,9 @@ public class Debug {
             
                 Datum curDatum = validationSet.getNextBuffer();
                 
-                inputLayer.propagate(rawScale.scaleDown(curDatum.getRaw()));
-                hiddenLayerA.propagate();
-                hiddenLayerB.propagate();
-                outputLayer.propagate();
-                
                 double curErr = 0.0;
                 double target[][] = curDatum.getLabel();
-                double prediction[][] = labelScale.scaleUp(outputLayer.getActivationValues());
+                double prediction[][] = labelScale.scaleUp(network.predict(rawScale.scaleDown(curDatum.getRaw())));
                 for (int k = 0; k < target.length; k++) {
                 
                     for (int l = 0; l < target[k].length; l++) {
@@ -121,11 +112,6 @@ public class Debug {
                     }
                 }
                 avgErr += curErr / validationSet.size();
-                
-                outputLayer.clearNodeSums();
-                hiddenLayerB.clearNodeSums();
-                hiddenLayerA.clearNodeSums();
-                inputLayer.clearNodeSums();
             }
             
             System.out.printf("epoch %d | average error - %f\n", i, avgErr);
@@ -150,23 +136,15 @@ public class Debug {
             
             for (int i = 0; i < RESPONSE_SIZE; i++) {
             
-                inputLayer.propagate(rawScale.scaleDown(formatCharArray(workingArray, 0, FIELD_SIZE)));
-                hiddenLayerA.propagate();
-                hiddenLayerB.propagate();
-                outputLayer.propagate();
+                double response[][] = network.predict(rawScale.scaleDown(formatCharArray(workingArray, 0, FIELD_SIZE)));
                 
                 for (int j = 0; j < FIELD_SIZE - 1; j++) {
                 
                     workingArray[j] = workingArray[j + 1];
                 }
-                workingArray[FIELD_SIZE - 1] = getCharFromArray(labelScale.scaleUp(outputLayer.getActivationValues()), 0);
+                workingArray[FIELD_SIZE - 1] = getCharFromArray(labelScale.scaleUp(response), 0);
                 
                 System.out.printf("%c", (char)workingArray[FIELD_SIZE - 1]);
-                
-                outputLayer.clearNodeSums();
-                hiddenLayerB.clearNodeSums();
-                hiddenLayerA.clearNodeSums();
-                inputLayer.clearNodeSums();
             }
             
             
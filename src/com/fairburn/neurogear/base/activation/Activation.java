@@ -1,5 +1,7 @@
 package com.fairburn.neurogear.base.activation;
 
+import com.fairburn.neurogear.base.precision.BFloat16;
+
 /**
  * Interface for implementing activation functions.
  * 
@@ -13,7 +15,13 @@ package com.fairburn.neurogear.base.activation;
  * 
  * Description: Implementations must specify f(), the activation function
  * itself, and df(), the derivative of that function. Implementations
- * should be final.
+ * whose derivative can be expressed in terms of f(sum) should also
+ * override dfFromValue() so that backpropagation can reuse the value
+ * computed during the forward pass. The bulk versions of f() and df()
+ * apply the function over a run of values in one call; implementations
+ * should override them with a plain loop over their own formula so
+ * that the loop can be inlined and vectorized. Implementations should
+ * be final.
  */
 public interface Activation {
     
@@ -30,4 +38,121 @@ public interface Activation {
      * @return f'(sum)
      */
     public double df(double sum);
+    
+    /**
+     * The derivative of the activation function given both
+     * the sum and the value f(sum) already computed for it
+     * (by default ignores the value and calls df()).
+     * @param sum sum value
+     * @param value f(sum)
+     * @return f'(sum)
+     */
+    public default double dfFromValue(double sum, double value) {
+    
+        return df(sum);
+    }
+    
+    /**
+     * The activation function applied over a run of sums
+     * (implementations must allow 'values' to be 'sums').
+     * @param sums sum values
+     * @param values array to store f(sum) into
+     * @param offset start of run within both arrays
+     * @param length number of values
+     */
+    public default void f(double sums[], double values[], int offset, int length) {
+    
+        for (int i = offset; i < offset + length; i++) {
+        
+            values[i] = f(sums[i]);
+        }
+    }
+    
+    /**
+     * The activation function applied over a run of
+     * sums with single precision output.
+     * @param sums sum values
+     * @param values array to store f(sum) into
+     * @param offset start of run within both arrays
+     * @param length number of values
+     */
+    public default void f(double sums[], float values[], int offset, int length) {
+    
+        for (int i = offset; i < offset + length; i++) {
+        
+            values[i] = (float)f(sums[i]);
+        }
+    }
+    
+    /**
+     * The activation function applied over a run of
+     * sums with bfloat16 output.
+     * @param sums sum values
+     * @param values array to store f(sum) into as bfloat16 bits
+     * @param offset start of run within both arrays
+     * @param length number of values
+     */
+    public default void f(double sums[], short values[], int offset, int length) {
+    
+        for (int i = offset; i < offset + length; i++) {
+        
+            values[i] = BFloat16.fromDouble(f(sums[i]));
+        }
+    }
+    
+    /**
+     * Delta values over a run of Nodes, fusing the
+     * derivative with the multiplication by the delta sum.
+     * @param sums sum values
+     * @param values f(sum) values from the forward pass
+     * @param deltaSums delta sum values
+     * @param deltaValues array to store deltaSum * f'(sum) into
+     * @param offset start of run within all arrays
+     * @param length number of values
+     */
+    public default void df(double sums[], double values[], double deltaSums[], double deltaValues[], int offset, int length) {
+    
+        for (int i = offset; i < offset + length; i++) {
+        
+            deltaValues[i] = deltaSums[i] * dfFromValue(sums[i], values[i]);
+        }
+    }
+    
+    /**
+     * Delta values over a run of Nodes with single
+     * precision values, fusing the derivative with
+     * the multiplication by the delta sum.
+     * @param sums sum values
+     * @param values f(sum) values from the forward pass
+     * @param deltaSums delta sum values
+     * @param deltaValues array to store deltaSum * f'(sum) into
+     * @param offset start of run within all arrays
+     * @param length number of values
+     */
+    public default void df(double sums[], float values[], double deltaSums[], float deltaValues[], int offset, int length) {
+    
+        for (int i = offset; i < offset + length; i++) {
+        
+            deltaValues[i] = (float)(deltaSums[i] * dfFromValue(sums[i], values[i]));
+        }
+    }
+    
+    /**
+     * Delta values over a run of Nodes with bfloat16
+     * values, fusing the derivative with the
+     * multiplication by the delta sum.
+     * @param sums sum values
+     * @param values f(sum) values from the forward pass as bfloat16 bits
+     * @param deltaSums delta sum values
+     * @param deltaValues array to store deltaSum * f'(sum) into as bfloat16 bits
+     * @param offset start of run within all arrays
+     * @param length number of values
+     */
+    public default void df(double sums[], short values[], double deltaSums[], short deltaValues[], int offset, int length) {
+    
+        for (int i = offset; i < offset + length; i++) {
+        
+            deltaValues[i] = BFloat16.fromDouble(deltaSums[i] * dfFromValue(sums[i], BFloat16.toFloat(values[i])));
+        }
+    }
 }
@@ -37,4 +37,32 @@ public final class IdentityActivation implements Activation {
     
         return 1.0;
     }
+    
+    /**
+     * Identity activation function applied over a run of sums.
+     * @param sums sum values
+     * @param values array to store f(sum) into
+     * @param offset start of run within both arrays
+     * @param length number of values
+     */
+    @Override
+    public void f(double sums[], double values[], int offset, int length) {
+    
+        System.arraycopy(sums, offset, values, offset, length);
+    }
+    
+    /**
+     * Identity delta values over a run of Nodes.
+     * @param sums sum values
+     * @param values f(sum) values from the forward pass
+     * @param deltaSums delta sum values
+     * @param deltaValues array to store deltaSum * f'(sum) into
+     * @param offset start of run within all arrays
+     * @param length number of values
+     */
+    @Override
+    public void df(double sums[], double values[], double deltaSums[], double deltaValues[], int offset, int length) {
+    
+        System.arraycopy(deltaSums, offset, deltaValues, offset, length);
+    }
 }
@@ -62,4 +62,51 @@ public final class LogisticActivation implements Activation {
     
         return 1.0 / (1.0 + Math.exp(-sum)) * (1.0 - 1.0 / (1.0 + Math.exp(-sum)));
     }
+    
+    /**
+     * Derivative of logistic activation function
+     * computed from its value.
+     * @param sum sum value (unused)
+     * @param value f(sum)
+     * @return f'(sum) = f(sum) * (1.0 - f(sum))
+     */
+    @Override
+    public double dfFromValue(double sum, double value) {
+    
+        return value * (1.0 - value);
+    }
+    
+    /**
+     * Logistic activation function applied over a run of sums.
+     * @param sums sum values
+     * @param values array to store f(sum) into
+     * @param offset start of run within both arrays
+     * @param length number of values
+     */
+    @Override
+    public void f(double sums[], double values[], int offset, int length) {
+    
+        for (int i = offset; i < offset + length; i++) {
+        
+            values[i] = f(sums[i]);
+        }
+    }
+    
+    /**
+     * Logistic delta values over a run of Nodes.
+     * @param sums sum values
+     * @param values f(sum) values from the forward pass
+     * @param deltaSums delta sum values
+     * @param deltaValues array to store deltaSum * f'(sum) into
+     * @param offset start of run within all arrays
+     * @param length number of values
+     */
+    @Override
+    public void df(double sums[], double values[], double deltaSums[], double deltaValues[], int offset, int length) {
+    
+        for (int i = offset; i < offset + length; i++) {
+        
+            deltaValues[i] = deltaSums[i] * values[i] * (1.0 - values[i]);
+        }
+    }
 }
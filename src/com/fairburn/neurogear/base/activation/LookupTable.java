@@ -0,0 +1,86 @@
+package com.fairburn.neurogear.base.activation;
+
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Interpolated lookup table for a function of one variable.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: LookupTable.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Samples a function at evenly spaced points
+ * over a closed interval and evaluates it by linear
+ * interpolation between neighbouring samples. Inputs
+ * outside the interval are clamped to its end points.
+ * Used by the fast approximate Activation implementations.
+ */
+final class LookupTable {
+    
+    // MEMBER VARIABLES.
+    
+    // Lower end of sampled interval.
+    private final double minimum;
+    // Upper end of sampled interval.
+    private final double maximum;
+    // Number of intervals per unit of input.
+    private final double scale;
+    // Number of intervals between samples.
+    private final int intervals;
+    
+    // Sampled function values.
+    private final double values[];
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Construct a LookupTable by sampling a function.
+     * @param function function to sample
+     * @param minimumP lower end of sampled interval
+     * @param maximumP upper end of sampled interval
+     * @param intervalsP number of intervals between samples
+     */
+    LookupTable(DoubleUnaryOperator function, double minimumP, double maximumP, int intervalsP) {
+    
+        minimum = minimumP;
+        maximum = maximumP;
+        intervals = intervalsP;
+        scale = intervals / (maximum - minimum);
+        
+        // Sample function.
+        values = new double[intervals + 1];
+        for (int i = 0; i <= intervals; i++) {
+        
+            values[i] = function.applyAsDouble(minimum + i / scale);
+        }
+    }
+    
+    /**
+     * Return the interpolated function value.
+     * @param x input value
+     * @return approximation of function(x)
+     */
+    double get(double x) {
+    
+        // Clamp to sampled interval.
+        if (x <= minimum) {
+        
+            return values[0];
+        }
+        else if (x >= maximum) {
+        
+            return values[intervals];
+        }
+        
+        // Position between samples.
+        double position = (x - minimum) * scale;
+        int i = Math.min((int)position, intervals - 1);
+        double fraction = position - i;
+        
+        return values[i] + fraction * (values[i + 1] - values[i]);
+    }
+}
@@ -51,4 +51,38 @@ public final class ReLUActivation implements Activation {
             return 1.0;
         }
     }
+    
+    /**
+     * Rectified linear unit activation function applied over a run of sums.
+     * @param sums sum values
+     * @param values array to store f(sum) into
+     * @param offset start of run within both arrays
+     * @param length number of values
+     */
+    @Override
+    public void f(double sums[], double values[], int offset, int length) {
+    
+        for (int i = offset; i < offset + length; i++) {
+        
+            values[i] = sums[i] < 0.0 ? 0.0 : sums[i];
+        }
+    }
+    
+    /**
+     * Rectified linear unit delta values over a run of Nodes.
+     * @param sums sum values
+     * @param values f(sum) values from the forward pass
+     * @param deltaSums delta sum values
+     * @param deltaValues array to store deltaSum * f'(sum) into
+     * @param offset start of run within all arrays
+     * @param length number of values
+     */
+    @Override
+    public void df(double sums[], double values[], double deltaSums[], double deltaValues[], int offset, int length) {
+    
+        for (int i = offset; i < offset + length; i++) {
+        
+            deltaValues[i] = sums[i] < 0.0 ? 0.0 : deltaSums[i];
+        }
+    }
 }
@@ -37,4 +37,54 @@ public final class SoftsignActivation implements Activation {
     
         return 1.0 / ((1.0 + Math.abs(sum)) * (1.0 + Math.abs(sum)));
     }
+    
+    /**
+     * Derivative of softsign activation function
+     * computed from its value.
+     * @param sum sum value (unused)
+     * @param value f(sum)
+     * @return f'(sum) = (1.0 - |f(sum)|) ^ 2
+     */
+    @Override
+    public double dfFromValue(double sum, double value) {
+    
+        return (1.0 - Math.abs(value)) * (1.0 - Math.abs(value));
+    }
+    
+    /**
+     * Softsign activation function applied over a run of sums.
+     * @param sums sum values
+     * @param values array to store f(sum) into
+     * @param offset start of run within both arrays
+     * @param length number of values
+     */
+    @Override
+    public void f(double sums[], double values[], int offset, int length) {
+    
+        for (int i = offset; i < offset + length; i++) {
+        
+            values[i] = sums[i] / (1.0 + Math.abs(sums[i]));
+        }
+    }
+    
+    /**
+     * Softsign delta values over a run of Nodes.
+     * @param sums sum values
+     * @param values f(sum) values from the forward pass
+     * @param deltaSums delta sum values
+     * @param deltaValues array to store deltaSum * f'(sum) into
+     * @param offset start of run within all arrays
+     * @param length number of values
+     */
+    @Override
+    public void df(double sums[], double values[], double deltaSums[], double deltaValues[], int offset, int length) {
+    
+        for (int i = offset; i < offset + length; i++) {
+        
+            // 1.0 - |f(sum)|.
+            double complement = 1.0 - Math.abs(values[i]);
+            
+            deltaValues[i] = deltaSums[i] * complement * complement;
+        }
+    }
 }
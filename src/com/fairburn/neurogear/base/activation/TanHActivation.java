@@ -37,4 +37,51 @@ public final class TanHActivation implements Activation {
     
         return 1.0 - Math.tanh(sum) * Math.tanh(sum);
     }
+    
+    /**
+     * Derivative of hyperbolic tangent activation
+     * function computed from its value.
+     * @param sum sum value (unused)
+     * @param value f(sum)
+     * @return f'(sum) = 1.0 - f(sum) ^ 2
+     */
+    @Override
+    public double dfFromValue(double sum, double value) {
+    
+        return 1.0 - value * value;
+    }
+    
+    /**
+     * Hyperbolic tangent activation function applied over a run of sums.
+     * @param sums sum values
+     * @param values array to store f(sum) into
+     * @param offset start of run within both arrays
+     * @param length number of values
+     */
+    @Override
+    public void f(double sums[], double values[], int offset, int length) {
+    
+        for (int i = offset; i < offset + length; i++) {
+        
+            values[i] = Math.tanh(sums[i]);
+        }
+    }
+    
+    /**
+     * Hyperbolic tangent delta values over a run of Nodes.
+     * @param sums sum values
+     * @param values f(sum) values from the forward pass
+     * @param deltaSums delta sum values
+     * @param deltaValues array to store deltaSum * f'(sum) into
+     * @param offset start of run within all arrays
+     * @param length number of values
+     */
+    @Override
+    public void df(double sums[], double values[], double deltaSums[], double deltaValues[], int offset, int length) {
+    
+        for (int i = offset; i < offset + length; i++) {
+        
+            deltaValues[i] = deltaSums[i] * (1.0 - values[i] * values[i]);
+        }
+    }
 }
@@ -23,4 +23,21 @@ public interface Cost {
      * @return f'(activation, target)
      */
     public double df(double activation, double target);
+    
+    /**
+     * The derivative of the cost function over a run of values.
+     * @param activations activation values
+     * @param targets target values
+     * @param deltas array to store f'(activation, target) into
+     * @param offset start of run within 'activations' and 'deltas'
+     * @param targetOffset start of run within 'targets'
+     * @param length number of values
+     */
+    public default void df(double activations[], double targets[], double deltas[], int offset, int targetOffset, int length) {
+    
+        for (int i = 0; i < length; i++) {
+        
+            deltas[offset + i] = df(activations[offset + i], targets[targetOffset + i]);
+        }
+    }
 }
@@ -38,4 +38,40 @@ public final class CrossEntropyCost implements Cost {
 
         return ((1.0 - target) / (1.0 - activation)) - (target / activation);   
     }
+    
+    /**
+     * Derivative of the cross-entropy cost function over a run of values.
+     * @param activations activation values
+     * @param targets target values
+     * @param deltas array to store f'(activation, target) into
+     * @param offset start of run within 'activations' and 'deltas'
+     * @param targetOffset start of run within 'targets'
+     * @param length number of values
+     * @throws CrossEntropyException if any activation or target falls outside valid intervals
+     */
+    @Override
+    public void df(double activations[], double targets[], double deltas[], int offset, int targetOffset, int length) {
+    
+        // Test for exceptions (separately so the arithmetic below stays branch-free).
+        for (int i = 0; i < length; i++) {
+        
+            if (activations[offset + i] >= 1.0 || activations[offset + i] <= 0.0) {
+            
+                throw new CrossEntropyException("'activation' must be on the interval (0.0, 1.0)");
+            }
+            else if (targets[targetOffset + i] > 1.0 || targets[targetOffset + i] < 0.0) {
+            
+                throw new CrossEntropyException("'target' must be on the interval [0.0, 1.0]");
+            }
+        }
+        
+        for (int i = 0; i < length; i++) {
+        
+            // Current activation and target.
+            double activation = activations[offset + i];
+            double target = targets[targetOffset + i];
+            
+            deltas[offset + i] = ((1.0 - target) / (1.0 - activation)) - (target / activation);
+        }
+    }
 }
@@ -27,4 +27,22 @@ public final class QuadraticCost implements Cost {
     
         return activation - target;
     }
+    
+    /**
+     * Derivative of the quadratic cost function over a run of values.
+     * @param activations activation values
+     * @param targets target values
+     * @param deltas array to store f'(activation, target) into
+     * @param offset start of run within 'activations' and 'deltas'
+     * @param targetOffset start of run within 'targets'
+     * @param length number of values
+     */
+    @Override
+    public void df(double activations[], double targets[], double deltas[], int offset, int targetOffset, int length) {
+    
+        for (int i = 0; i < length; i++) {
+        
+            deltas[offset + i] = activations[offset + i] - targets[targetOffset + i];
+        }
+    }
 }
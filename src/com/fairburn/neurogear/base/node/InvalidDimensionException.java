@@ -0,0 +1,28 @@
+package com.fairburn.neurogear.base.node;
+
+/**
+ * Exception generated when a NodeBuffer receives
+ * an invalid dimension.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: InvalidDimensionException.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Exception generated when a 
+ * NodeBuffer receives an invalid dimension.
+ */
+public final class InvalidDimensionException extends RuntimeException {
+    
+    /**
+     * Construct an exception with a given message.
+     * @param message exception message
+     */
+    public InvalidDimensionException(String message) {
+    
+        super(message);
+    }
+}
@@ -130,8 +130,8 @@ public final class Node {
             throw new InvalidActivationException("'activationFunction' must not be null");
         }
         
-        // Trigger delta value.
-        deltaValue = deltaSum * activationFunction.df(activationSum);
+        // Trigger delta value (reusing activation value).
+        deltaValue = deltaSum * activationFunction.dfFromValue(activationSum, activationValue);
     }
     
     /**
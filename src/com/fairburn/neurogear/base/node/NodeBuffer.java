@@ -0,0 +1,561 @@
+package com.fairburn.neurogear.base.node;
+
+import java.util.Arrays;
+import com.fairburn.neurogear.base.activation.Activation;
+import com.fairburn.neurogear.base.cost.Cost;
+import com.fairburn.neurogear.base.precision.BFloat16;
+import com.fairburn.neurogear.base.precision.Precision;
+
+/**
+ * Flat storage for a 2D group of Nodes.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: NodeBuffer.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Holds the same state as a 2D array of
+ * Nodes, but stores each quantity in a single contiguous
+ * channel-major array so that Kernels can stream through
+ * it without chasing one object per Node. A NodeBuffer
+ * may hold a batch of samples, each laid out one after
+ * the other. In single precision the activation and
+ * delta values are stored as floats, and in bfloat16
+ * precision as packed shorts, while their sums stay in
+ * double.
+ */
+public final class NodeBuffer {
+    
+    // MEMBER VARIABLES.
+    
+    // Number of channels.
+    private final int numChannels;
+    // Number of Nodes in each channel.
+    private final int nodesPerChannel;
+    // Number of samples currently held.
+    private int batchSize;
+    // Storage format of activation and delta values.
+    private final Precision precision;
+    
+    // Incoming weighted activation sums.
+    private double activationSums[];
+    // Outgoing activation values (double precision only).
+    private double activationValues[];
+    // Outgoing activation values (single precision only).
+    private float singleActivationValues[];
+    // Outgoing activation values as bfloat16 bits (bfloat16 precision only).
+    private short bfloatActivationValues[];
+    // Incoming weighted error sums.
+    private double deltaSums[];
+    // Outgoing error values (double precision only).
+    private double deltaValues[];
+    // Outgoing error values (single precision only).
+    private float singleDeltaValues[];
+    // Outgoing error values as bfloat16 bits (bfloat16 precision only).
+    private short bfloatDeltaValues[];
+    // Double activation values given to a cost function (reduced precisions only, created on first use).
+    private double costActivations[];
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Construct a double precision NodeBuffer with given dimensions.
+     * @param numChannelsP number of channels
+     * @param nodesPerChannelP number of Nodes in each channel
+     * @throws InvalidDimensionException if either dimension is not greater than zero
+     */
+    public NodeBuffer(int numChannelsP, int nodesPerChannelP) {
+    
+        this(numChannelsP, nodesPerChannelP, Precision.DOUBLE);
+    }
+    
+    /**
+     * Construct a NodeBuffer with given dimensions and precision.
+     * @param numChannelsP number of channels
+     * @param nodesPerChannelP number of Nodes in each channel
+     * @param precisionP storage format of activation and delta values
+     * @throws InvalidDimensionException if either dimension is not greater than zero
+     * @throws InvalidPrecisionException if parameter 'precisionP' is null
+     */
+    public NodeBuffer(int numChannelsP, int nodesPerChannelP, Precision precisionP) {
+    
+        // Test for exceptions.
+        if (numChannelsP <= 0) {
+        
+            throw new InvalidDimensionException("'numChannelsP' must be greater than zero");
+        }
+        else if (nodesPerChannelP <= 0) {
+        
+            throw new InvalidDimensionException("'nodesPerChannelP' must be greater than zero");
+        }
+        else if (precisionP == null) {
+        
+            throw new InvalidPrecisionException("'precisionP' must not be null");
+        }
+        
+        numChannels = numChannelsP;
+        nodesPerChannel = nodesPerChannelP;
+        batchSize = 1;
+        precision = precisionP;
+        
+        activationSums = new double[numChannels * nodesPerChannel];
+        deltaSums = new double[numChannels * nodesPerChannel];
+        
+        // Create value arrays in the requested precision.
+        if (precision == Precision.SINGLE) {
+        
+            singleActivationValues = new float[numChannels * nodesPerChannel];
+            singleDeltaValues = new float[numChannels * nodesPerChannel];
+        }
+        else if (precision == Precision.BFLOAT16) {
+        
+            bfloatActivationValues = new short[numChannels * nodesPerChannel];
+            bfloatDeltaValues = new short[numChannels * nodesPerChannel];
+        }
+        else {
+        
+            activationValues = new double[numChannels * nodesPerChannel];
+            deltaValues = new double[numChannels * nodesPerChannel];
+        }
+    }
+    
+    /**
+     * Return this NodeBuffer's number of channels.
+     * @return number of channels
+     */
+    public int getNumChannels() {
+    
+        return numChannels;
+    }
+    
+    /**
+     * Return this NodeBuffer's number of Nodes in each channel.
+     * @return number of Nodes in each channel
+     */
+    public int getNodesPerChannel() {
+    
+        return nodesPerChannel;
+    }
+    
+    /**
+     * Return the storage format of this NodeBuffer's
+     * activation and delta values.
+     * @return precision
+     */
+    public Precision getPrecision() {
+    
+        return precision;
+    }
+    
+    /**
+     * Return the number of Nodes in a single sample.
+     * @return number of channels * number of Nodes in each channel
+     */
+    public int size() {
+    
+        return numChannels * nodesPerChannel;
+    }
+    
+    /**
+     * Return the number of samples this NodeBuffer holds.
+     * @return batch size
+     */
+    public int getBatchSize() {
+    
+        return batchSize;
+    }
+    
+    /**
+     * Set the number of samples this NodeBuffer holds
+     * (storage grows as needed and the sums of
+     * dropped samples are cleared).
+     * @param batchSizeP batch size
+     * @throws InvalidDimensionException if parameter 'batchSizeP' is not greater than zero
+     */
+    public void setBatchSize(int batchSizeP) {
+    
+        // Test for exception.
+        if (batchSizeP <= 0) {
+        
+            throw new InvalidDimensionException("'batchSizeP' must be greater than zero");
+        }
+        
+        // Grow storage if necessary.
+        if (batchSizeP * size() > activationSums.length) {
+        
+            activationSums = Arrays.copyOf(activationSums, batchSizeP * size());
+            deltaSums = Arrays.copyOf(deltaSums, batchSizeP * size());
+            
+            if (precision == Precision.SINGLE) {
+            
+                singleActivationValues = Arrays.copyOf(singleActivationValues, batchSizeP * size());
+                singleDeltaValues = Arrays.copyOf(singleDeltaValues, batchSizeP * size());
+            }
+            else if (precision == Precision.BFLOAT16) {
+            
+                bfloatActivationValues = Arrays.copyOf(bfloatActivationValues, batchSizeP * size());
+                bfloatDeltaValues = Arrays.copyOf(bfloatDeltaValues, batchSizeP * size());
+            }
+            else {
+            
+                activationValues = Arrays.copyOf(activationValues, batchSizeP * size());
+                deltaValues = Arrays.copyOf(deltaValues, batchSizeP * size());
+            }
+        }
+        
+        // Clear sums of samples that are no longer held.
+        if (batchSizeP < batchSize) {
+        
+            Arrays.fill(activationSums, batchSizeP * size(), batchSize * size(), 0.0);
+            Arrays.fill(deltaSums, batchSizeP * size(), batchSize * size(), 0.0);
+        }
+        
+        batchSize = batchSizeP;
+    }
+    
+    /**
+     * Return this NodeBuffer's activation sums
+     * (not a copy, and only valid until the
+     * batch size grows).
+     * @return sample-major then channel-major activation sums
+     */
+    public double[] getActivationSums() {
+    
+        return activationSums;
+    }
+    
+    /**
+     * Return this NodeBuffer's double precision activation values
+     * (not a copy, and only valid until the
+     * batch size grows).
+     * @return sample-major then channel-major activation values (null unless double precision)
+     */
+    public double[] getActivationValues() {
+    
+        return activationValues;
+    }
+    
+    /**
+     * Return this NodeBuffer's single precision activation values
+     * (not a copy, and only valid until the
+     * batch size grows).
+     * @return sample-major then channel-major activation values (null unless single precision)
+     */
+    public float[] getSingleActivationValues() {
+    
+        return singleActivationValues;
+    }
+    
+    /**
+     * Return this NodeBuffer's bfloat16 activation values
+     * (not a copy, and only valid until the
+     * batch size grows).
+     * @return sample-major then channel-major activation values as bfloat16 bits (null unless bfloat16 precision)
+     */
+    public short[] getBFloat16ActivationValues() {
+    
+        return bfloatActivationValues;
+    }
+    
+    /**
+     * Return this NodeBuffer's delta sums
+     * (not a copy, and only valid until the
+     * batch size grows).
+     * @return sample-major then channel-major delta sums
+     */
+    public double[] getDeltaSums() {
+    
+        return deltaSums;
+    }
+    
+    /**
+     * Return this NodeBuffer's double precision delta values
+     * (not a copy, and only valid until the
+     * batch size grows).
+     * @return sample-major then channel-major delta values (null unless double precision)
+     */
+    public double[] getDeltaValues() {
+    
+        return deltaValues;
+    }
+    
+    /**
+     * Return this NodeBuffer's single precision delta values
+     * (not a copy, and only valid until the
+     * batch size grows).
+     * @return sample-major then channel-major delta values (null unless single precision)
+     */
+    public float[] getSingleDeltaValues() {
+    
+        return singleDeltaValues;
+    }
+    
+    /**
+     * Return this NodeBuffer's bfloat16 delta values
+     * (not a copy, and only valid until the
+     * batch size grows).
+     * @return sample-major then channel-major delta values as bfloat16 bits (null unless bfloat16 precision)
+     */
+    public short[] getBFloat16DeltaValues() {
+    
+        return bfloatDeltaValues;
+    }
+    
+    /**
+     * Return a single activation value in double
+     * precision regardless of storage format.
+     * @param index sample-major then channel-major index of Node
+     * @return activation value
+     */
+    public double getActivationValue(int index) {
+    
+        if (precision == Precision.SINGLE) {
+        
+            return singleActivationValues[index];
+        }
+        else if (precision == Precision.BFLOAT16) {
+        
+            return BFloat16.toFloat(bfloatActivationValues[index]);
+        }
+        
+        return activationValues[index];
+    }
+    
+    /**
+     * Set a single activation value, rounding
+     * it to the storage format.
+     * @param index sample-major then channel-major index of Node
+     * @param value activation value
+     */
+    public void setActivationValue(int index, double value) {
+    
+        if (precision == Precision.SINGLE) {
+        
+            singleActivationValues[index] = (float)value;
+        }
+        else if (precision == Precision.BFLOAT16) {
+        
+            bfloatActivationValues[index] = BFloat16.fromDouble(value);
+        }
+        else {
+        
+            activationValues[index] = value;
+        }
+    }
+    
+    /**
+     * Return copy of the activation values in double
+     * precision for every sample in the current batch.
+     * @return activation values for each sample where rows are channels and columns are locations
+     */
+    public double[][][] copyActivationValues() {
+    
+        // Array to return.
+        double values[][][] = new double[batchSize][numChannels][nodesPerChannel];
+        
+        // Copy activation values.
+        for (int sampleI = 0; sampleI < batchSize; sampleI++) {
+        
+            for (int channelI = 0; channelI < numChannels; channelI++) {
+            
+                // Start of channel.
+                int offset = sampleI * size() + channelI * nodesPerChannel;
+                
+                if (precision == Precision.SINGLE) {
+                
+                    for (int nodeI = 0; nodeI < nodesPerChannel; nodeI++) {
+                    
+                        values[sampleI][channelI][nodeI] = singleActivationValues[offset + nodeI];
+                    }
+                }
+                else if (precision == Precision.BFLOAT16) {
+                
+                    for (int nodeI = 0; nodeI < nodesPerChannel; nodeI++) {
+                    
+                        values[sampleI][channelI][nodeI] = BFloat16.toFloat(bfloatActivationValues[offset + nodeI]);
+                    }
+                }
+                else {
+                
+                    System.arraycopy(activationValues, offset, values[sampleI][channelI], 0, nodesPerChannel);
+                }
+            }
+        }
+        
+        return values;
+    }
+    
+    /**
+     * Copy the activation sums, activation values and
+     * delta values of every sample held by another
+     * NodeBuffer into this one, so that batches
+     * handled separately can be gathered into one.
+     * @param source NodeBuffer to copy from
+     * @param sampleStart index of the first sample of this NodeBuffer to overwrite
+     * @throws InvalidDimensionException if parameter 'source' does not match this NodeBuffer or its samples do not fit from 'sampleStart'
+     */
+    public void copySamples(NodeBuffer source, int sampleStart) {
+    
+        // Test for exceptions.
+        if (source == null || source.numChannels != numChannels || source.nodesPerChannel != nodesPerChannel || source.precision != precision) {
+        
+            throw new InvalidDimensionException("'source' must match the dimensions and precision of this NodeBuffer");
+        }
+        else if (sampleStart < 0 || sampleStart + source.batchSize > batchSize) {
+        
+            throw new InvalidDimensionException("'source' holds " + source.batchSize + " sample(s), which do not fit from sample " + sampleStart + " of " + batchSize);
+        }
+        
+        // Range of values to copy.
+        int offset = sampleStart * size();
+        int length = source.batchSize * size();
+        
+        System.arraycopy(source.activationSums, 0, activationSums, offset, length);
+        
+        if (precision == Precision.SINGLE) {
+        
+            System.arraycopy(source.singleActivationValues, 0, singleActivationValues, offset, length);
+            System.arraycopy(source.singleDeltaValues, 0, singleDeltaValues, offset, length);
+        }
+        else if (precision == Precision.BFLOAT16) {
+        
+            System.arraycopy(source.bfloatActivationValues, 0, bfloatActivationValues, offset, length);
+            System.arraycopy(source.bfloatDeltaValues, 0, bfloatDeltaValues, offset, length);
+        }
+        else {
+        
+            System.arraycopy(source.activationValues, 0, activationValues, offset, length);
+            System.arraycopy(source.deltaValues, 0, deltaValues, offset, length);
+        }
+    }
+    
+    /**
+     * Set the initial delta sums for Nodes
+     * in the output layer of a network. In single and
+     * bfloat16 precision the cost function is given
+     * activation values recomputed in double from the
+     * activation sums, since rounding them can saturate
+     * them (a logistic output rounds to exactly 1.0) and
+     * would quantize the error signal.
+     * @param costFunction function for gauging loss
+     * @param activationFunction activation function of the Nodes
+     * @param targetValues known target values for each sample where rows are channels and columns are locations
+     * @throws InvalidCostException if parameter 'costFunction' is null
+     * @throws InvalidActivationException if parameter 'activationFunction' is null
+     * @throws InvalidDimensionException if parameter 'targetValues' does not hold one entry per sample
+     */
+    public void setInitialDeltas(Cost costFunction, Activation activationFunction, double targetValues[][][]) {
+    
+        // Test for exceptions.
+        if (costFunction == null) {
+        
+            throw new InvalidCostException("'costFunction' must not be null");
+        }
+        else if (activationFunction == null) {
+        
+            throw new InvalidActivationException("'activationFunction' must not be null");
+        }
+        else if (targetValues.length != batchSize) {
+        
+            throw new InvalidDimensionException("'targetValues' has " + targetValues.length + " sample(s) while NodeBuffer holds " + batchSize + " sample(s)");
+        }
+        
+        // Recompute reduced precision activation values in double.
+        if (precision != Precision.DOUBLE) {
+        
+            if (costActivations == null || costActivations.length < batchSize * size()) {
+            
+                costActivations = new double[batchSize * size()];
+            }
+            activationFunction.f(activationSums, costActivations, 0, batchSize * size());
+        }
+        
+        // Set initial Node deltas with cost function and target values.
+        for (int sampleI = 0; sampleI < batchSize; sampleI++) {
+        
+            for (int channelI = 0; channelI < numChannels; channelI++) {
+            
+                // Start of channel.
+                int offset = sampleI * size() + channelI * nodesPerChannel;
+                
+                costFunction.df(precision != Precision.DOUBLE ? costActivations : activationValues, targetValues[sampleI][channelI], deltaSums, offset, 0, nodesPerChannel);
+            }
+        }
+    }
+    
+    /**
+     * Compute all activation values using the
+     * activation sums and an activation function.
+     * @param activationFunction activation function to use
+     * @throws InvalidActivationException if parameter 'activationFunction' is null
+     */
+    public void triggerActivations(Activation activationFunction) {
+    
+        // Test for exception.
+        if (activationFunction == null) {
+        
+            throw new InvalidActivationException("'activationFunction' must not be null");
+        }
+        
+        // Trigger activation values.
+        if (precision == Precision.SINGLE) {
+        
+            activationFunction.f(activationSums, singleActivationValues, 0, batchSize * size());
+        }
+        else if (precision == Precision.BFLOAT16) {
+        
+            activationFunction.f(activationSums, bfloatActivationValues, 0, batchSize * size());
+        }
+        else {
+        
+            activationFunction.f(activationSums, activationValues, 0, batchSize * size());
+        }
+    }
+    
+    /**
+     * Compute all delta values using the delta sums
+     * and an activation function (the activation
+     * values must be current), then clear the delta
+     * sums so the next backward pass starts from zero.
+     * @param activationFunction activation function to use
+     * @throws InvalidActivationException if parameter 'activationFunction' is null
+     */
+    public void triggerDeltas(Activation activationFunction) {
+    
+        // Test for exception.
+        if (activationFunction == null) {
+        
+            throw new InvalidActivationException("'activationFunction' must not be null");
+        }
+        
+        // Trigger delta values (reusing activation values).
+        if (precision == Precision.SINGLE) {
+        
+            activationFunction.df(activationSums, singleActivationValues, deltaSums, singleDeltaValues, 0, batchSize * size());
+        }
+        else if (precision == Precision.BFLOAT16) {
+        
+            activationFunction.df(activationSums, bfloatActivationValues, deltaSums, bfloatDeltaValues, 0, batchSize * size());
+        }
+        else {
+        
+            activationFunction.df(activationSums, activationValues, deltaSums, deltaValues, 0, batchSize * size());
+        }
+        
+        // Consume delta sums.
+        Arrays.fill(deltaSums, 0, batchSize * size(), 0.0);
+    }
+    
+    /**
+     * Clear all activation and delta sums (only needed
+     * to discard an unfinished pass).
+     */
+    public void clearSums() {
+    
+        Arrays.fill(activationSums, 0, batchSize * size(), 0.0);
+        Arrays.fill(deltaSums, 0, batchSize * size(), 0.0);
+    }
+}
@@ -0,0 +1,105 @@
+package com.fairburn.neurogear.base.optimizer;
+
+/**
+ * Adam implementation of Optimizer.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: AdamOptimizer.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: This is the implementation for Adam, which
+ * keeps running means of each weight's gradient and squared
+ * gradient, corrects both for their zero initialization,
+ * and steps by their ratio.
+ */
+public final class AdamOptimizer implements Optimizer {
+    
+    // MEMBER VARIABLES.
+    
+    // Fraction of the mean gradient kept each step.
+    private final double beta1;
+    // Fraction of the mean squared gradient kept each step.
+    private final double beta2;
+    // Added to the root mean square to avoid division by zero.
+    private final double epsilon;
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Construct an AdamOptimizer with betas of 0.9
+     * and 0.999 and an epsilon of 1.0e-8.
+     */
+    public AdamOptimizer() {
+    
+        this(0.9, 0.999, 1.0e-8);
+    }
+    
+    /**
+     * Construct an AdamOptimizer with given parameters.
+     * @param beta1P fraction of the mean gradient kept each step
+     * @param beta2P fraction of the mean squared gradient kept each step
+     * @param epsilonP added to the root mean square to avoid division by zero
+     * @throws InvalidHyperparameterException if parameter 'beta1P' or 'beta2P' is not on the interval [0, 1) or 'epsilonP' is not greater than zero
+     */
+    public AdamOptimizer(double beta1P, double beta2P, double epsilonP) {
+    
+        // Test for exceptions.
+        if (!(beta1P >= 0.0 && beta1P < 1.0)) {
+        
+            throw new InvalidHyperparameterException("'beta1P' must be on the interval [0, 1)");
+        }
+        else if (!(beta2P >= 0.0 && beta2P < 1.0)) {
+        
+            throw new InvalidHyperparameterException("'beta2P' must be on the interval [0, 1)");
+        }
+        else if (!(epsilonP > 0.0)) {
+        
+            throw new InvalidHyperparameterException("'epsilonP' must be greater than zero");
+        }
+        
+        beta1 = beta1P;
+        beta2 = beta2P;
+        epsilon = epsilonP;
+    }
+    
+    /**
+     * Return the number of state values kept per weight.
+     * @return 2 (mean and mean square)
+     */
+    @Override
+    public int getNumStateArrays() {
+    
+        return 2;
+    }
+    
+    /**
+     * Apply one Adam step.
+     * @param weights weights to update in place
+     * @param gradients gradient of the loss with respect to each weight
+     * @param state mean and mean squared gradient of each weight
+     * @param step number of this step for this state (starting at one)
+     * @param learningRate learning factor
+     */
+    @Override
+    public void update(double weights[], double gradients[], double state[][], long step, double learningRate) {
+    
+        // Running means.
+        double means[] = state[0];
+        double meanSquares[] = state[1];
+        
+        // Bias corrections folded into the step size.
+        double stepSize = learningRate * Math.sqrt(1.0 - Math.pow(beta2, step)) / (1.0 - Math.pow(beta1, step));
+        double scaledEpsilon = epsilon * Math.sqrt(1.0 - Math.pow(beta2, step));
+        
+        for (int i = 0; i < weights.length; i++) {
+        
+            means[i] = beta1 * means[i] + (1.0 - beta1) * gradients[i];
+            meanSquares[i] = beta2 * meanSquares[i] + (1.0 - beta2) * gradients[i] * gradients[i];
+            weights[i] -= stepSize * means[i] / (Math.sqrt(meanSquares[i]) + scaledEpsilon);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.fairburn.neurogear.base.optimizer;
+
+/**
+ * Exception generated when an Optimizer
+ * receives an invalid hyperparameter.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: InvalidHyperparameterException.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Exception generated when an
+ * Optimizer receives an invalid
+ * hyperparameter.
+ */
+public final class InvalidHyperparameterException extends RuntimeException {
+    
+    /**
+     * Construct an exception with a given message.
+     * @param message exception message
+     */
+    public InvalidHyperparameterException(String message) {
+    
+        super(message);
+    }
+}
@@ -0,0 +1,81 @@
+package com.fairburn.neurogear.base.optimizer;
+
+/**
+ * Momentum implementation of Optimizer.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: MomentumOptimizer.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: This is the implementation for gradient
+ * descent with classical momentum, which keeps one
+ * velocity per weight.
+ */
+public final class MomentumOptimizer implements Optimizer {
+    
+    // MEMBER VARIABLES.
+    
+    // Fraction of velocity kept each step.
+    private final double momentum;
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Construct a MomentumOptimizer with a momentum of 0.9.
+     */
+    public MomentumOptimizer() {
+    
+        this(0.9);
+    }
+    
+    /**
+     * Construct a MomentumOptimizer with given momentum.
+     * @param momentumP fraction of velocity kept each step
+     * @throws InvalidHyperparameterException if parameter 'momentumP' is not on the interval [0, 1)
+     */
+    public MomentumOptimizer(double momentumP) {
+    
+        // Test for exception.
+        if (!(momentumP >= 0.0 && momentumP < 1.0)) {
+        
+            throw new InvalidHyperparameterException("'momentumP' must be on the interval [0, 1)");
+        }
+        
+        momentum = momentumP;
+    }
+    
+    /**
+     * Return the number of state values kept per weight.
+     * @return 1 (velocity)
+     */
+    @Override
+    public int getNumStateArrays() {
+    
+        return 1;
+    }
+    
+    /**
+     * Apply one momentum step.
+     * @param weights weights to update in place
+     * @param gradients gradient of the loss with respect to each weight
+     * @param state velocity of each weight
+     * @param step unused
+     * @param learningRate learning factor
+     */
+    @Override
+    public void update(double weights[], double gradients[], double state[][], long step, double learningRate) {
+    
+        // Velocities.
+        double velocities[] = state[0];
+        
+        for (int i = 0; i < weights.length; i++) {
+        
+            velocities[i] = momentum * velocities[i] - learningRate * gradients[i];
+            weights[i] += velocities[i];
+        }
+    }
+}
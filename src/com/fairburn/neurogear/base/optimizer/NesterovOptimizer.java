@@ -0,0 +1,86 @@
+package com.fairburn.neurogear.base.optimizer;
+
+/**
+ * Nesterov momentum implementation of Optimizer.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: NesterovOptimizer.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: This is the implementation for gradient
+ * descent with Nesterov accelerated momentum, which keeps
+ * one velocity per weight. The look-ahead is folded into
+ * the update so that gradients are still taken at the
+ * stored weights.
+ */
+public final class NesterovOptimizer implements Optimizer {
+    
+    // MEMBER VARIABLES.
+    
+    // Fraction of velocity kept each step.
+    private final double momentum;
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Construct a NesterovOptimizer with a momentum of 0.9.
+     */
+    public NesterovOptimizer() {
+    
+        this(0.9);
+    }
+    
+    /**
+     * Construct a NesterovOptimizer with given momentum.
+     * @param momentumP fraction of velocity kept each step
+     * @throws InvalidHyperparameterException if parameter 'momentumP' is not on the interval [0, 1)
+     */
+    public NesterovOptimizer(double momentumP) {
+    
+        // Test for exception.
+        if (!(momentumP >= 0.0 && momentumP < 1.0)) {
+        
+            throw new InvalidHyperparameterException("'momentumP' must be on the interval [0, 1)");
+        }
+        
+        momentum = momentumP;
+    }
+    
+    /**
+     * Return the number of state values kept per weight.
+     * @return 1 (velocity)
+     */
+    @Override
+    public int getNumStateArrays() {
+    
+        return 1;
+    }
+    
+    /**
+     * Apply one Nesterov momentum step.
+     * @param weights weights to update in place
+     * @param gradients gradient of the loss with respect to each weight
+     * @param state velocity of each weight
+     * @param step unused
+     * @param learningRate learning factor
+     */
+    @Override
+    public void update(double weights[], double gradients[], double state[][], long step, double learningRate) {
+    
+        // Velocities.
+        double velocities[] = state[0];
+        
+        for (int i = 0; i < weights.length; i++) {
+        
+            // Velocity before this step.
+            double previous = velocities[i];
+            
+            velocities[i] = momentum * previous - learningRate * gradients[i];
+            weights[i] += (1.0 + momentum) * velocities[i] - momentum * previous;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.fairburn.neurogear.base.optimizer;
+
+/**
+ * Interface for implementing weight update rules.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: Optimizer.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Implementations must specify how many state
+ * values they keep per weight and update(), which applies
+ * one step to a flat array of weights given their gradients.
+ * State is owned by the caller as flat arrays laid out like
+ * the weights, so one Optimizer may be shared by every
+ * Kernel. Implementations should be final and immutable.
+ */
+public interface Optimizer {
+    
+    /**
+     * Return the number of state values kept per weight.
+     * @return number of state arrays update() expects
+     */
+    public int getNumStateArrays();
+    
+    /**
+     * Apply one update step to every weight.
+     * @param weights weights to update in place
+     * @param gradients gradient of the loss with respect to each weight
+     * @param state state arrays laid out like the weights (zero before the first step)
+     * @param step number of this step for this state (starting at one)
+     * @param learningRate learning factor
+     */
+    public void update(double weights[], double gradients[], double state[][], long step, double learningRate);
+}
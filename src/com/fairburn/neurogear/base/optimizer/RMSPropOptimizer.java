@@ -0,0 +1,91 @@
+package com.fairburn.neurogear.base.optimizer;
+
+/**
+ * RMSProp implementation of Optimizer.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: RMSPropOptimizer.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: This is the implementation for RMSProp,
+ * which divides each gradient by a running root mean
+ * square of that weight's gradients and keeps one mean
+ * square per weight.
+ */
+public final class RMSPropOptimizer implements Optimizer {
+    
+    // MEMBER VARIABLES.
+    
+    // Fraction of the mean square kept each step.
+    private final double decay;
+    // Added to the root mean square to avoid division by zero.
+    private final double epsilon;
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Construct an RMSPropOptimizer with a decay of 0.9
+     * and an epsilon of 1.0e-8.
+     */
+    public RMSPropOptimizer() {
+    
+        this(0.9, 1.0e-8);
+    }
+    
+    /**
+     * Construct an RMSPropOptimizer with given parameters.
+     * @param decayP fraction of the mean square kept each step
+     * @param epsilonP added to the root mean square to avoid division by zero
+     * @throws InvalidHyperparameterException if parameter 'decayP' is not on the interval [0, 1) or 'epsilonP' is not greater than zero
+     */
+    public RMSPropOptimizer(double decayP, double epsilonP) {
+    
+        // Test for exceptions.
+        if (!(decayP >= 0.0 && decayP < 1.0)) {
+        
+            throw new InvalidHyperparameterException("'decayP' must be on the interval [0, 1)");
+        }
+        else if (!(epsilonP > 0.0)) {
+        
+            throw new InvalidHyperparameterException("'epsilonP' must be greater than zero");
+        }
+        
+        decay = decayP;
+        epsilon = epsilonP;
+    }
+    
+    /**
+     * Return the number of state values kept per weight.
+     * @return 1 (mean square)
+     */
+    @Override
+    public int getNumStateArrays() {
+    
+        return 1;
+    }
+    
+    /**
+     * Apply one RMSProp step.
+     * @param weights weights to update in place
+     * @param gradients gradient of the loss with respect to each weight
+     * @param state mean square gradient of each weight
+     * @param step unused
+     * @param learningRate learning factor
+     */
+    @Override
+    public void update(double weights[], double gradients[], double state[][], long step, double learningRate) {
+    
+        // Mean squares.
+        double meanSquares[] = state[0];
+        
+        for (int i = 0; i < weights.length; i++) {
+        
+            meanSquares[i] = decay * meanSquares[i] + (1.0 - decay) * gradients[i] * gradients[i];
+            weights[i] -= learningRate * gradients[i] / (Math.sqrt(meanSquares[i]) + epsilon);
+        }
+    }
+}
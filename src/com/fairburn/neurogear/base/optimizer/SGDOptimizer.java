@@ -0,0 +1,45 @@
+package com.fairburn.neurogear.base.optimizer;
+
+/**
+ * Stochastic gradient descent implementation of Optimizer.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: SGDOptimizer.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: This is the implementation for plain
+ * gradient descent, which keeps no state.
+ */
+public final class SGDOptimizer implements Optimizer {
+    
+    /**
+     * Return the number of state values kept per weight.
+     * @return 0
+     */
+    @Override
+    public int getNumStateArrays() {
+    
+        return 0;
+    }
+    
+    /**
+     * Apply one gradient descent step.
+     * @param weights weights to update in place
+     * @param gradients gradient of the loss with respect to each weight
+     * @param state unused
+     * @param step unused
+     * @param learningRate learning factor
+     */
+    @Override
+    public void update(double weights[], double gradients[], double state[][], long step, double learningRate) {
+    
+        for (int i = 0; i < weights.length; i++) {
+        
+            weights[i] -= learningRate * gradients[i];
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.fairburn.neurogear.base.precision;
+
+/**
+ * Conversions for 16-bit brain floating point values.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: BFloat16.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: A bfloat16 value is the upper half of a
+ * single precision value packed into a short, so it has
+ * the same exponent range as a float but only 8 bits of
+ * significand. Widening is exact and costs a shift;
+ * narrowing rounds to nearest with ties to even. Values
+ * stored this way should only ever be multiplied and
+ * summed after widening.
+ */
+public abstract class BFloat16 {
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Widen a bfloat16 value to single precision.
+     * @param value bfloat16 bits
+     * @return exact single precision value
+     */
+    public static float toFloat(short value) {
+    
+        return Float.intBitsToFloat(value << 16);
+    }
+    
+    /**
+     * Narrow a value to bfloat16, rounding to nearest
+     * with ties to even (NaN stays NaN).
+     * @param value value to narrow
+     * @return bfloat16 bits
+     */
+    public static short fromDouble(double value) {
+    
+        // Single precision bits.
+        int bits = Float.floatToRawIntBits((float)value);
+        
+        // Keep NaN quiet rather than rounding it to infinity.
+        if ((bits & 0x7fffffff) > 0x7f800000) {
+        
+            return (short)((bits >>> 16) | 0x0040);
+        }
+        
+        return (short)((bits + 0x7fff + ((bits >>> 16) & 1)) >>> 16);
+    }
+}
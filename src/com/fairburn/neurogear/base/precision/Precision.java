@@ -0,0 +1,32 @@
+package com.fairburn.neurogear.base.precision;
+
+/**
+ * Enumeration of floating point storage formats.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: Precision.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Selects how network state and data are
+ * stored. Sums that accumulate many terms are always
+ * kept in double precision regardless of this setting.
+ * Reduced precision halves or quarters the memory
+ * traffic of Node values and weights, but only DOUBLE
+ * Layers run fully connected groups as blocked matrix
+ * products. SINGLE and BFLOAT16 Layers always take the
+ * gather loops, of which only the SINGLE ones use the
+ * SIMD backend (for contiguous receptive fields).
+ */
+public enum Precision {
+    
+    // 64-bit IEEE 754 storage.
+    DOUBLE,
+    // 32-bit IEEE 754 storage.
+    SINGLE,
+    // 16-bit brain floating point storage (see BFloat16).
+    BFLOAT16
+}
@@ -0,0 +1,28 @@
+package com.fairburn.neurogear.base.schedule;
+
+/**
+ * Interface for implementing batch size schedules.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: BatchSizeSchedule.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Implementations must specify getBatchSize(),
+ * which returns the mini-batch size for a given epoch. The
+ * size must depend only on the epoch and be computed
+ * without allocating. Implementations should be final and
+ * immutable.
+ */
+public interface BatchSizeSchedule {
+    
+    /**
+     * Return the mini-batch size for an epoch.
+     * @param epoch number of epochs completed before this one (starting at zero)
+     * @return number of samples per mini-batch (greater than zero)
+     */
+    public int getBatchSize(long epoch);
+}
@@ -0,0 +1,52 @@
+package com.fairburn.neurogear.base.schedule;
+
+/**
+ * Constant implementation of BatchSizeSchedule.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: ConstantBatchSchedule.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: This is the implementation for a
+ * mini-batch size that never changes.
+ */
+public final class ConstantBatchSchedule implements BatchSizeSchedule {
+    
+    // MEMBER VARIABLES.
+    
+    // Mini-batch size of every epoch.
+    private final int batchSize;
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Construct a ConstantBatchSchedule.
+     * @param batchSizeP mini-batch size of every epoch
+     * @throws InvalidScheduleException if parameter 'batchSizeP' is not greater than zero
+     */
+    public ConstantBatchSchedule(int batchSizeP) {
+    
+        // Test for exception.
+        if (batchSizeP <= 0) {
+        
+            throw new InvalidScheduleException("'batchSizeP' must be greater than zero");
+        }
+        
+        batchSize = batchSizeP;
+    }
+    
+    /**
+     * Return the mini-batch size for an epoch.
+     * @param epoch unused
+     * @return mini-batch size
+     */
+    @Override
+    public int getBatchSize(long epoch) {
+    
+        return batchSize;
+    }
+}
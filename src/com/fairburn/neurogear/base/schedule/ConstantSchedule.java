@@ -0,0 +1,52 @@
+package com.fairburn.neurogear.base.schedule;
+
+/**
+ * Constant implementation of LearningRateSchedule.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: ConstantSchedule.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: This is the implementation for a learning
+ * rate that never changes.
+ */
+public final class ConstantSchedule implements LearningRateSchedule {
+    
+    // MEMBER VARIABLES.
+    
+    // Learning factor of every step.
+    private final double learningRate;
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Construct a ConstantSchedule.
+     * @param learningRateP learning factor of every step
+     * @throws InvalidScheduleException if parameter 'learningRateP' is negative or not finite
+     */
+    public ConstantSchedule(double learningRateP) {
+    
+        // Test for exception.
+        if (!(learningRateP >= 0.0 && learningRateP < Double.POSITIVE_INFINITY)) {
+        
+            throw new InvalidScheduleException("'learningRateP' must be finite and not negative");
+        }
+        
+        learningRate = learningRateP;
+    }
+    
+    /**
+     * Return the learning factor for a correction step.
+     * @param step unused
+     * @return learning factor
+     */
+    @Override
+    public double getLearningRate(long step) {
+    
+        return learningRate;
+    }
+}
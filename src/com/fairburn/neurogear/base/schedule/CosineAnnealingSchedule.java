@@ -0,0 +1,73 @@
+package com.fairburn.neurogear.base.schedule;
+
+/**
+ * Cosine annealing implementation of LearningRateSchedule.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: CosineAnnealingSchedule.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: This is the implementation for a learning
+ * rate that follows half a cosine wave from an initial
+ * rate down to a minimum rate over a fixed number of
+ * steps, then stays at the minimum.
+ */
+public final class CosineAnnealingSchedule implements LearningRateSchedule {
+    
+    // MEMBER VARIABLES.
+    
+    // Learning factor of the first step.
+    private final double initialRate;
+    // Learning factor once annealing is finished.
+    private final double minRate;
+    // Number of steps to anneal over.
+    private final long numSteps;
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Construct a CosineAnnealingSchedule.
+     * @param initialRateP learning factor of the first step
+     * @param minRateP learning factor once annealing is finished
+     * @param numStepsP number of steps to anneal over
+     * @throws InvalidScheduleException if a parameter is out of range
+     */
+    public CosineAnnealingSchedule(double initialRateP, double minRateP, long numStepsP) {
+    
+        // Test for exceptions.
+        if (!(initialRateP >= 0.0 && initialRateP < Double.POSITIVE_INFINITY)) {
+        
+            throw new InvalidScheduleException("'initialRateP' must be finite and not negative");
+        }
+        else if (!(minRateP >= 0.0 && minRateP <= initialRateP)) {
+        
+            throw new InvalidScheduleException("'minRateP' must be on the interval [0, 'initialRateP']");
+        }
+        else if (numStepsP <= 0) {
+        
+            throw new InvalidScheduleException("'numStepsP' must be greater than zero");
+        }
+        
+        initialRate = initialRateP;
+        minRate = minRateP;
+        numSteps = numStepsP;
+    }
+    
+    /**
+     * Return the learning factor for a correction step.
+     * @param step number of corrections made before this one
+     * @return annealed learning factor
+     */
+    @Override
+    public double getLearningRate(long step) {
+    
+        // Fraction of annealing completed.
+        double progress = (double)Math.min(Math.max(step, 0), numSteps) / numSteps;
+        
+        return minRate + (initialRate - minRate) * 0.5 * (1.0 + Math.cos(Math.PI * progress));
+    }
+}
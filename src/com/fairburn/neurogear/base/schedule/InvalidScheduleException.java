@@ -0,0 +1,28 @@
+package com.fairburn.neurogear.base.schedule;
+
+/**
+ * Exception generated when a schedule
+ * receives an invalid setting.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: InvalidScheduleException.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Exception generated when a schedule
+ * receives an invalid setting.
+ */
+public final class InvalidScheduleException extends RuntimeException {
+    
+    /**
+     * Construct an exception with a given message.
+     * @param message exception message
+     */
+    public InvalidScheduleException(String message) {
+    
+        super(message);
+    }
+}
@@ -0,0 +1,29 @@
+package com.fairburn.neurogear.base.schedule;
+
+/**
+ * Interface for implementing learning rate schedules.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: LearningRateSchedule.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Implementations must specify getLearningRate(),
+ * which returns the learning factor for a given correction
+ * step. The rate must depend only on the step, so training
+ * can be resumed or replayed from any step, and must be
+ * computed without allocating. Implementations should be
+ * final and immutable.
+ */
+public interface LearningRateSchedule {
+    
+    /**
+     * Return the learning factor for a correction step.
+     * @param step number of corrections made before this one (starting at zero)
+     * @return learning factor
+     */
+    public double getLearningRate(long step);
+}
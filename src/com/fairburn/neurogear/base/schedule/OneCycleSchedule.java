@@ -0,0 +1,122 @@
+package com.fairburn.neurogear.base.schedule;
+
+/**
+ * One-cycle implementation of LearningRateSchedule.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: OneCycleSchedule.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: This is the implementation for the one-cycle
+ * policy. The rate rises along a cosine from a fraction of
+ * the peak rate to the peak rate over the first part of a
+ * fixed number of steps, then falls along a cosine to a
+ * much smaller final rate over the rest, where it stays.
+ */
+public final class OneCycleSchedule implements LearningRateSchedule {
+    
+    // MEMBER VARIABLES.
+    
+    // Highest learning factor.
+    private final double maxRate;
+    // Learning factor of the first step.
+    private final double initialRate;
+    // Learning factor once the cycle is finished.
+    private final double finalRate;
+    // Number of steps in the cycle.
+    private final long numSteps;
+    // Number of steps spent rising.
+    private final long risingSteps;
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Construct a OneCycleSchedule that rises for 30% of the
+     * cycle from 1/25 of the peak rate and finishes at
+     * 1/10000 of the starting rate.
+     * @param maxRateP highest learning factor
+     * @param numStepsP number of steps in the cycle
+     * @throws InvalidScheduleException if a parameter is out of range
+     */
+    public OneCycleSchedule(double maxRateP, long numStepsP) {
+    
+        this(maxRateP, numStepsP, 0.3, maxRateP / 25.0, maxRateP / 250000.0);
+    }
+    
+    /**
+     * Construct a OneCycleSchedule.
+     * @param maxRateP highest learning factor
+     * @param numStepsP number of steps in the cycle
+     * @param risingFraction fraction of the cycle spent rising
+     * @param initialRateP learning factor of the first step
+     * @param finalRateP learning factor once the cycle is finished
+     * @throws InvalidScheduleException if a parameter is out of range
+     */
+    public OneCycleSchedule(double maxRateP, long numStepsP, double risingFraction, double initialRateP, double finalRateP) {
+    
+        // Test for exceptions.
+        if (!(maxRateP >= 0.0 && maxRateP < Double.POSITIVE_INFINITY)) {
+        
+            throw new InvalidScheduleException("'maxRateP' must be finite and not negative");
+        }
+        else if (numStepsP <= 1) {
+        
+            throw new InvalidScheduleException("'numStepsP' must be greater than one");
+        }
+        else if (!(risingFraction > 0.0 && risingFraction < 1.0)) {
+        
+            throw new InvalidScheduleException("'risingFraction' must be on the interval (0, 1)");
+        }
+        else if (!(initialRateP >= 0.0 && initialRateP <= maxRateP)) {
+        
+            throw new InvalidScheduleException("'initialRateP' must be on the interval [0, 'maxRateP']");
+        }
+        else if (!(finalRateP >= 0.0 && finalRateP <= maxRateP)) {
+        
+            throw new InvalidScheduleException("'finalRateP' must be on the interval [0, 'maxRateP']");
+        }
+        
+        maxRate = maxRateP;
+        numSteps = numStepsP;
+        risingSteps = Math.min(Math.max((long)(risingFraction * numStepsP), 1), numStepsP - 1);
+        initialRate = initialRateP;
+        finalRate = finalRateP;
+    }
+    
+    /**
+     * Return the learning factor for a correction step.
+     * @param step number of corrections made before this one
+     * @return learning factor within the cycle
+     */
+    @Override
+    public double getLearningRate(long step) {
+    
+        // Step within the cycle.
+        long cycleStep = Math.min(Math.max(step, 0), numSteps);
+        
+        if (cycleStep < risingSteps) {
+        
+            return anneal(maxRate, initialRate, (double)cycleStep / risingSteps);
+        }
+        
+        return anneal(finalRate, maxRate, (double)(cycleStep - risingSteps) / (numSteps - risingSteps));
+    }
+    
+    // HELPER METHODS.
+    
+    /**
+     * Interpolate along half a cosine wave.
+     * @param endRate rate at the end of the interval
+     * @param startRate rate at the start of the interval
+     * @param progress fraction of the interval completed
+     * @return interpolated rate
+     */
+    private static double anneal(double endRate, double startRate, double progress) {
+    
+        return endRate + (startRate - endRate) * 0.5 * (1.0 + Math.cos(Math.PI * progress));
+    }
+}
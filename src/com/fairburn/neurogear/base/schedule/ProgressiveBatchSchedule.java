@@ -0,0 +1,90 @@
+package com.fairburn.neurogear.base.schedule;
+
+/**
+ * Progressive growth implementation of BatchSizeSchedule.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: ProgressiveBatchSchedule.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: This is the implementation for a mini-batch
+ * size that is multiplied by a fixed factor after every
+ * fixed number of epochs until it reaches a maximum. Small
+ * early batches make quick progress while the gradient is
+ * large, and larger later batches cut the number of
+ * corrections per epoch once it is small, much like
+ * decaying the learning rate.
+ */
+public final class ProgressiveBatchSchedule implements BatchSizeSchedule {
+    
+    // MEMBER VARIABLES.
+    
+    // Mini-batch size of the first epoch.
+    private final int initialSize;
+    // Factor the size is multiplied by at each growth.
+    private final int growthFactor;
+    // Number of epochs between growths.
+    private final long growthEpochs;
+    // Largest mini-batch size.
+    private final int maxSize;
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Construct a ProgressiveBatchSchedule.
+     * @param initialSizeP mini-batch size of the first epoch
+     * @param growthFactorP factor the size is multiplied by at each growth
+     * @param growthEpochsP number of epochs between growths
+     * @param maxSizeP largest mini-batch size
+     * @throws InvalidScheduleException if a parameter is out of range
+     */
+    public ProgressiveBatchSchedule(int initialSizeP, int growthFactorP, long growthEpochsP, int maxSizeP) {
+    
+        // Test for exceptions.
+        if (initialSizeP <= 0) {
+        
+            throw new InvalidScheduleException("'initialSizeP' must be greater than zero");
+        }
+        else if (growthFactorP < 2) {
+        
+            throw new InvalidScheduleException("'growthFactorP' must be at least two");
+        }
+        else if (growthEpochsP <= 0) {
+        
+            throw new InvalidScheduleException("'growthEpochsP' must be greater than zero");
+        }
+        else if (maxSizeP < initialSizeP) {
+        
+            throw new InvalidScheduleException("'maxSizeP' must not be less than 'initialSizeP'");
+        }
+        
+        initialSize = initialSizeP;
+        growthFactor = growthFactorP;
+        growthEpochs = growthEpochsP;
+        maxSize = maxSizeP;
+    }
+    
+    /**
+     * Return the mini-batch size for an epoch.
+     * @param epoch number of epochs completed before this one
+     * @return grown mini-batch size (at most the maximum)
+     */
+    @Override
+    public int getBatchSize(long epoch) {
+    
+        // Number of growths so far.
+        long numGrowths = Math.max(epoch, 0) / growthEpochs;
+        
+        long size = initialSize;
+        for (long i = 0; i < numGrowths && size < maxSize; i++) {
+        
+            size *= growthFactor;
+        }
+        
+        return (int)Math.min(size, maxSize);
+    }
+}
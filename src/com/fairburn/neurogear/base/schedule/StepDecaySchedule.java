@@ -0,0 +1,69 @@
+package com.fairburn.neurogear.base.schedule;
+
+/**
+ * Step decay implementation of LearningRateSchedule.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: StepDecaySchedule.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: This is the implementation for a learning
+ * rate that is multiplied by a fixed factor after every
+ * fixed number of steps.
+ */
+public final class StepDecaySchedule implements LearningRateSchedule {
+    
+    // MEMBER VARIABLES.
+    
+    // Learning factor of the first step.
+    private final double initialRate;
+    // Factor the rate is multiplied by at each decay.
+    private final double decayFactor;
+    // Number of steps between decays.
+    private final long decaySteps;
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Construct a StepDecaySchedule.
+     * @param initialRateP learning factor of the first step
+     * @param decayFactorP factor the rate is multiplied by at each decay
+     * @param decayStepsP number of steps between decays
+     * @throws InvalidScheduleException if a parameter is out of range
+     */
+    public StepDecaySchedule(double initialRateP, double decayFactorP, long decayStepsP) {
+    
+        // Test for exceptions.
+        if (!(initialRateP >= 0.0 && initialRateP < Double.POSITIVE_INFINITY)) {
+        
+            throw new InvalidScheduleException("'initialRateP' must be finite and not negative");
+        }
+        else if (!(decayFactorP > 0.0 && decayFactorP <= 1.0)) {
+        
+            throw new InvalidScheduleException("'decayFactorP' must be on the interval (0, 1]");
+        }
+        else if (decayStepsP <= 0) {
+        
+            throw new InvalidScheduleException("'decayStepsP' must be greater than zero");
+        }
+        
+        initialRate = initialRateP;
+        decayFactor = decayFactorP;
+        decaySteps = decayStepsP;
+    }
+    
+    /**
+     * Return the learning factor for a correction step.
+     * @param step number of corrections made before this one
+     * @return initial rate times the decay factor once per completed decay period
+     */
+    @Override
+    public double getLearningRate(long step) {
+    
+        return initialRate * Math.pow(decayFactor, Math.max(step, 0) / decaySteps);
+    }
+}
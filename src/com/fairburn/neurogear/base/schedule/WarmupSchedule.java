@@ -0,0 +1,68 @@
+package com.fairburn.neurogear.base.schedule;
+
+/**
+ * Linear warmup implementation of LearningRateSchedule.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: WarmupSchedule.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: This is the implementation for a linear
+ * warmup in front of another schedule. The rate rises
+ * linearly to the other schedule's first rate over a
+ * fixed number of steps, after which the other schedule
+ * is followed from its own first step.
+ */
+public final class WarmupSchedule implements LearningRateSchedule {
+    
+    // MEMBER VARIABLES.
+    
+    // Schedule followed after warming up.
+    private final LearningRateSchedule schedule;
+    // Number of warmup steps.
+    private final long warmupSteps;
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Construct a WarmupSchedule.
+     * @param scheduleP schedule followed after warming up
+     * @param warmupStepsP number of warmup steps
+     * @throws InvalidScheduleException if parameter 'scheduleP' is null or 'warmupStepsP' is negative
+     */
+    public WarmupSchedule(LearningRateSchedule scheduleP, long warmupStepsP) {
+    
+        // Test for exceptions.
+        if (scheduleP == null) {
+        
+            throw new InvalidScheduleException("'scheduleP' must not be null");
+        }
+        else if (warmupStepsP < 0) {
+        
+            throw new InvalidScheduleException("'warmupStepsP' must not be negative");
+        }
+        
+        schedule = scheduleP;
+        warmupSteps = warmupStepsP;
+    }
+    
+    /**
+     * Return the learning factor for a correction step.
+     * @param step number of corrections made before this one
+     * @return warmed up learning factor
+     */
+    @Override
+    public double getLearningRate(long step) {
+    
+        if (step < warmupSteps) {
+        
+            return schedule.getLearningRate(0) * (Math.max(step, 0) + 1) / (warmupSteps + 1);
+        }
+        
+        return schedule.getLearningRate(step - warmupSteps);
+    }
+}
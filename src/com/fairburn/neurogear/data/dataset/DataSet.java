@@ -1,6 +1,8 @@
 package com.fairburn.neurogear.data.dataset;
 
-import java.util.Random;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import com.fairburn.neurogear.data.datum.Datum;
 
@@ -16,7 +18,10 @@ import com.fairburn.neurogear.data.datum.Datum;
  *  N/A
  * 
  * Description: Allows easier interfacig between neural
- * networks and individual instances of Datum.
+ * networks and individual instances of Datum. The shuffle
+ * buffer's position, order, and PRNG state can be saved
+ * and restored so that training resumes mid-epoch on
+ * exactly the same mini-batches.
  */
 public final class DataSet {
     
@@ -25,11 +30,14 @@ public final class DataSet {
     // Data.
     private final ArrayList<Datum> data;
     
+    // Insertion rank of each Datum (parallel to data).
+    private final ArrayList<Integer> ranks;
+    
     // Size of shuffle buffer.
     private int sBufferSize;
     
     // PRNG for shuffling.
-    private final Random PRNG;
+    private final ShuffleRandom PRNG;
     
     // MEMBER METHODS.
     
@@ -40,11 +48,12 @@ public final class DataSet {
     public DataSet(int seed) {
     
         data = new ArrayList<>();
+        ranks = new ArrayList<>();
         
         // Initialize shuffleBuffer.
         resetBuffer();
         
-        PRNG = new Random(seed);
+        PRNG = new ShuffleRandom(seed);
     }
     
     /**
@@ -129,6 +138,7 @@ public final class DataSet {
             throw new InvalidDatumException("'datum' must not be null");
         }
         
+        ranks.add(data.size());
         data.add(datum);
     }
     
@@ -164,6 +174,16 @@ public final class DataSet {
             // Remove datum from data array list.
             data.remove(datumIndex);
 
+            // Close gap in insertion ranks.
+            int datumRank = ranks.remove(datumIndex);
+            for (int i = 0; i < ranks.size(); i++) {
+
+                if (ranks.get(i) > datumRank) {
+
+                    ranks.set(i, ranks.get(i) - 1);
+                }
+            }
+
             return true;
         }
         else {
@@ -178,6 +198,7 @@ public final class DataSet {
     public void clear() {
     
         data.clear();
+        ranks.clear();
         
         resetBuffer();
     }
@@ -233,10 +254,149 @@ public final class DataSet {
         // Swap end of shuffle buffer with nextIndex.
         data.set(nextIndex, data.get(sBufferSize - 1));
         data.set(sBufferSize - 1, nextDatum);
+        ranks.set(nextIndex, ranks.set(sBufferSize - 1, ranks.get(nextIndex)));
 
         // Update new shuffle buffer size.
         sBufferSize--;
 
         return nextDatum;
     }
+    
+    /**
+     * Return the shuffle buffer's size, order, and PRNG
+     * state so that shuffling can later be resumed with
+     * 'setShuffleState()'. The order is recorded by the
+     * rank in which each Datum was added, so the state
+     * can be restored into a DataSet rebuilt by adding
+     * the same data in the same order.
+     * @return little-endian shuffle state
+     */
+    public byte[] getShuffleState() {
+    
+        ByteBuffer state = ByteBuffer.allocate(getShuffleStateLength(data.size())).order(ByteOrder.LITTLE_ENDIAN);
+        state.putInt(data.size());
+        state.putInt(sBufferSize);
+        state.putLong(PRNG.getState());
+        for (int rank : ranks) {
+        
+            state.putInt(rank);
+        }
+        
+        return state.array();
+    }
+    
+    /**
+     * Test a shuffle state returned by 'getShuffleState()'
+     * without restoring it, so that it can be checked
+     * before anything else is changed.
+     * @param state shuffle state
+     * @throws InvalidShuffleStateException if parameter 'state' is null, malformed, or does not match the amount of data
+     */
+    public void testShuffleState(byte state[]) {
+    
+        decodeShuffleOrder(state);
+    }
+    
+    /**
+     * Restore a shuffle state returned by
+     * 'getShuffleState()', reordering this DataSet's
+     * data to match.
+     * @param state shuffle state
+     * @throws InvalidShuffleStateException if parameter 'state' is null, malformed, or does not match the amount of data
+     */
+    public void setShuffleState(byte state[]) {
+    
+        // Test for exceptions.
+        int order[] = decodeShuffleOrder(state);
+        
+        // Data by insertion rank.
+        Datum byRank[] = new Datum[data.size()];
+        for (int i = 0; i < data.size(); i++) {
+        
+            byRank[ranks.get(i)] = data.get(i);
+        }
+        
+        // Buffer size and generator state after amount of data.
+        ByteBuffer bytes = ByteBuffer.wrap(state).order(ByteOrder.LITTLE_ENDIAN);
+        PRNG.setState(bytes.getLong(2 * Integer.BYTES));
+        for (int i = 0; i < order.length; i++) {
+        
+            data.set(i, byRank[order[i]]);
+            ranks.set(i, order[i]);
+        }
+        sBufferSize = bytes.getInt(Integer.BYTES);
+    }
+    
+    // HELPER METHODS.
+    
+    /**
+     * Decode and test a shuffle state.
+     * @param state shuffle state
+     * @return insertion rank of each Datum in shuffled order
+     * @throws InvalidShuffleStateException if parameter 'state' is null, malformed, or does not match the amount of data
+     */
+    private int[] decodeShuffleOrder(byte state[]) {
+    
+        // Test for exception.
+        if (state == null) {
+        
+            throw new InvalidShuffleStateException("'state' must not be null");
+        }
+        
+        // Decode state.
+        ByteBuffer bytes = ByteBuffer.wrap(state).order(ByteOrder.LITTLE_ENDIAN);
+        int order[];
+        int bufferSize;
+        long generatorState;
+        try {
+        
+            // Test for exception.
+            if (bytes.getInt() != data.size() || state.length != getShuffleStateLength(data.size())) {
+            
+                throw new InvalidShuffleStateException("'state' does not match a DataSet of " + data.size() + " Datum(s)");
+            }
+            
+            bufferSize = bytes.getInt();
+            generatorState = bytes.getLong();
+            order = new int[data.size()];
+            bytes.asIntBuffer().get(order);
+        }
+        catch (BufferUnderflowException e) {
+        
+            throw new InvalidShuffleStateException("'state' is truncated");
+        }
+        
+        // Test for exceptions.
+        if (bufferSize < 0 || bufferSize > data.size()) {
+        
+            throw new InvalidShuffleStateException("shuffle buffer size must be on the interval [0, " + data.size() + "]");
+        }
+        else if (!ShuffleRandom.isState(generatorState)) {
+        
+            throw new InvalidShuffleStateException("PRNG state must fit in 48 bits");
+        }
+        
+        // Order must be a permutation.
+        boolean seen[] = new boolean[data.size()];
+        for (int i = 0; i < order.length; i++) {
+        
+            if (order[i] < 0 || order[i] >= order.length || seen[order[i]]) {
+            
+                throw new InvalidShuffleStateException("'state' does not hold a permutation of the data");
+            }
+            seen[order[i]] = true;
+        }
+        
+        return order;
+    }
+    
+    /**
+     * Return the length of a shuffle state.
+     * @param numData amount of data
+     * @return bytes of shuffle state
+     */
+    private static int getShuffleStateLength(int numData) {
+    
+        return 2 * Integer.BYTES + Long.BYTES + numData * Integer.BYTES;
+    }
 }
@@ -0,0 +1,30 @@
+package com.fairburn.neurogear.data.dataset;
+
+/**
+ * Exception generated when a DataSet is
+ * given a shuffle state that does not fit
+ * its data.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: InvalidShuffleStateException.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Exception generated when a DataSet
+ * is given a shuffle state that does
+ * not fit its data.
+ */
+public final class InvalidShuffleStateException extends RuntimeException {
+    
+    /**
+     * Construct an exception with a given message.
+     * @param message exception message
+     */
+    public InvalidShuffleStateException(String message) {
+    
+        super(message);
+    }
+}
@@ -0,0 +1,106 @@
+package com.fairburn.neurogear.data.dataset;
+
+import java.util.Random;
+
+/**
+ * PRNG whose state can be saved and restored.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: ShuffleRandom.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Produces exactly the same sequence as
+ * java.util.Random for the same seed, using the same
+ * 48-bit linear congruential generator, but keeps its
+ * state where it can be read and written so that a
+ * DataSet's shuffle can be resumed. Not thread-safe,
+ * since each DataSet shuffles on one thread.
+ */
+final class ShuffleRandom extends Random {
+    
+    // MEMBER VARIABLES.
+    
+    // Multiplier of the generator.
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    // Increment of the generator.
+    private static final long ADDEND = 0xBL;
+    // Mask of the generator's 48 bits.
+    private static final long MASK = (1L << 48) - 1;
+    
+    // Generator state (set by 'setSeed()' during construction, so it has no initializer).
+    private long state;
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Construct a ShuffleRandom with passed seed.
+     * @param seed PRNG seed
+     */
+    ShuffleRandom(long seed) {
+    
+        super(seed);
+    }
+    
+    /**
+     * Reseed this generator as java.util.Random does.
+     * @param seed PRNG seed
+     */
+    @Override
+    public void setSeed(long seed) {
+    
+        super.setSeed(seed);
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+    
+    /**
+     * Return the generator's state.
+     * @return 48-bit state
+     */
+    long getState() {
+    
+        return state;
+    }
+    
+    /**
+     * Set the generator's state.
+     * @param stateP 48-bit state returned by 'getState()'
+     * @throws InvalidShuffleStateException if parameter 'stateP' has more than 48 bits
+     */
+    void setState(long stateP) {
+    
+        // Test for exception.
+        if (!isState(stateP)) {
+        
+            throw new InvalidShuffleStateException("PRNG state must fit in 48 bits");
+        }
+        
+        state = stateP;
+    }
+    
+    /**
+     * Return whether a value is a valid generator state.
+     * @param stateP value to test
+     * @return whether the value fits in 48 bits
+     */
+    static boolean isState(long stateP) {
+    
+        return (stateP & ~MASK) == 0;
+    }
+    
+    /**
+     * Advance the generator and return its high bits.
+     * @param bits number of random bits
+     * @return random bits
+     */
+    @Override
+    protected int next(int bits) {
+    
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        
+        return (int)(state >>> (48 - bits));
+    }
+}
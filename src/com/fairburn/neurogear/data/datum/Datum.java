@@ -1,5 +1,8 @@
 package com.fairburn.neurogear.data.datum;
 
+import com.fairburn.neurogear.base.precision.Precision;
+import com.fairburn.neurogear.utilities.tools.Tools;
+
 /**
  * Class to hold a single unit of data 
  * and the corresponding label.
@@ -14,17 +17,28 @@ package com.fairburn.neurogear.data.datum;
  * 
  * Description: Used to abstract the conecpt of 
  * training and testing data in neural networks.
+ * A Datum stores its values in either double or
+ * single precision and converts on request.
  */
 public final class Datum {
     
     // MEMBER VARIABLES.
     
-    // Raw information where rows are channels and columns are locations.
+    // Raw information where rows are channels and columns are locations (double precision only).
     private final double raw[][];
     
-    // Label for raw information where rows are channels and columns are locations.
+    // Label for raw information where rows are channels and columns are locations (double precision only).
     private final double label[][];
     
+    // Raw information (single precision only).
+    private final float singleRaw[][];
+    
+    // Label for raw information (single precision only).
+    private final float singleLabel[][];
+    
+    // Storage format of raw information and label.
+    private final Precision precision;
+    
     // MEMBER METHODS.
     
     /**
@@ -36,23 +50,71 @@ public final class Datum {
     
         raw = rawP;
         label = labelP;
+        singleRaw = null;
+        singleLabel = null;
+        precision = Precision.DOUBLE;
+    }
+    
+    /**
+     * Construct a single precision Datum with passed information.
+     * @param rawP raw datum values
+     * @param labelP label for raw values
+     */
+    public Datum(float rawP[][], float labelP[][]) {
+    
+        raw = null;
+        label = null;
+        singleRaw = rawP;
+        singleLabel = labelP;
+        precision = Precision.SINGLE;
+    }
+    
+    /**
+     * Return the storage format of this Datum's values.
+     * @return precision
+     */
+    public Precision getPrecision() {
+    
+        return precision;
     }
     
     /**
-     * Return this Datum's raw values.
+     * Return this Datum's raw values (a converted
+     * copy if stored in single precision).
      * @return raw datum values
      */
     public double[][] getRaw() {
     
-        return raw;
+        return precision == Precision.SINGLE ? Tools.toDouble(singleRaw) : raw;
     }
     
     /**
-     * Return this Datum's label values.
+     * Return this Datum's label values (a converted
+     * copy if stored in single precision).
      * @return label for raw values
      */
     public double[][] getLabel() {
     
-        return label;
+        return precision == Precision.SINGLE ? Tools.toDouble(singleLabel) : label;
+    }
+    
+    /**
+     * Return this Datum's raw values in single precision
+     * (a converted copy if stored in double precision).
+     * @return raw datum values
+     */
+    public float[][] getRawSingle() {
+    
+        return precision == Precision.SINGLE ? singleRaw : Tools.toSingle(raw);
+    }
+    
+    /**
+     * Return this Datum's label values in single precision
+     * (a converted copy if stored in double precision).
+     * @return label for raw values
+     */
+    public float[][] getLabelSingle() {
+    
+        return precision == Precision.SINGLE ? singleLabel : Tools.toSingle(label);
     }
 }
@@ -81,4 +81,26 @@ public final class NullScale implements Scale {
     
         return data;
     }
+    
+    /**
+     * Return passed data without scaling it.
+     * @param data data to be scaled
+     * @return scaled data
+     */
+    @Override
+    public float[][] scaleDown(float data[][]) {
+    
+        return data;
+    }
+    
+    /**
+     * Return passed data without scaling it.
+     * @param data data to be scaled
+     * @return scaled data
+     */
+    @Override
+    public float[][] scaleUp(float data[][]) {
+    
+        return data;
+    }
 }
@@ -1,5 +1,7 @@
 package com.fairburn.neurogear.data.scale;
 
+import com.fairburn.neurogear.utilities.tools.Tools;
+
 /**
  * Interface for implementing scaling functions.
  * 
@@ -49,4 +51,26 @@ public interface Scale {
      * @return scaled data
      */
     public double[][] scaleUp(double data[][]);
+    
+    /**
+     * Scale single precision data down (by default
+     * computed in double precision and rounded).
+     * @param data data to be scaled
+     * @return scaled data
+     */
+    public default float[][] scaleDown(float data[][]) {
+    
+        return Tools.toSingle(scaleDown(Tools.toDouble(data)));
+    }
+    
+    /**
+     * Scale single precision data up (by default
+     * computed in double precision and rounded).
+     * @param data data to be scaled
+     * @return scaled data
+     */
+    public default float[][] scaleUp(float data[][]) {
+    
+        return Tools.toSingle(scaleUp(Tools.toDouble(data)));
+    }
 }
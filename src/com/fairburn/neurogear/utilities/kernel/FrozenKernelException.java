@@ -0,0 +1,28 @@
+package com.fairburn.neurogear.utilities.kernel;
+
+/**
+ * Exception generated when a compiled
+ * Kernel's connections are changed.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: FrozenKernelException.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Exception generated when a compiled
+ * Kernel's connections are changed.
+ */
+public final class FrozenKernelException extends RuntimeException {
+    
+    /**
+     * Construct an exception with a given message.
+     * @param message exception message
+     */
+    public FrozenKernelException(String message) {
+    
+        super(message);
+    }
+}
@@ -0,0 +1,417 @@
+package com.fairburn.neurogear.utilities.kernel;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import com.fairburn.neurogear.utilities.tools.Gemm;
+import com.fairburn.neurogear.utilities.tools.VectorMath;
+
+/**
+ * An immutable copy of a group of Kernels for inference.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: InferenceGroup.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Copies the weights and gather indices of
+ * a group of connected Kernels that together write every
+ * channel of one NodeBuffer, and keeps nothing else: no
+ * delta sums, no Nodes, and no link back to the Kernels,
+ * which may go on training or be discarded. Contiguous
+ * receptive fields keep only the first gather index of
+ * each channel on each stride. Propagation reads flat
+ * activation arrays laid out like a NodeBuffer's and
+ * assigns each output sum in full (bias included), so
+ * output arrays never have to be cleared. Computation is
+ * always in double precision. A group may instead read
+ * its weights in place from a buffer such as a read-only
+ * mapping of a checkpoint, in which case nothing but the
+ * shared gather indices is held on the heap and fully
+ * connected groups take one dot product per output Node
+ * rather than a matrix multiplication.
+ */
+public final class InferenceGroup {
+    
+    // MEMBER VARIABLES.
+    
+    // Input Nodes per sample.
+    private final int inputSize;
+    // Output Nodes per sample.
+    private final int outputSize;
+    // Output Nodes per channel (one per stride).
+    private final int nodesPerChannel;
+    
+    // Whether the Kernels form a single fully connected layer.
+    private final boolean fullyConnected;
+    // Each Kernel's weights excluding bias (fully connected only).
+    private final double weightRows[][];
+    // Each Kernel's bias (fully connected only).
+    private final double biases[];
+    
+    // Each Kernel's weights including bias (not fully connected only).
+    private final double weights[][];
+    // Each Kernel's gather indices (not fully connected only).
+    private final int gatherIndices[][];
+    // Each Kernel's receptive field length (not fully connected only).
+    private final int fieldLengths[];
+    // Whether each Kernel's receptive field is contiguous (not fully connected only).
+    private final boolean contiguousFields[];
+    
+    // Every Kernel's weights including bias one after another (mapped only).
+    private final ByteBuffer mappedWeights;
+    // Number of weights per Kernel including bias (mapped only).
+    private final int weightsPerKernel;
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Construct an InferenceGroup from the current
+     * weights of a group of Kernels.
+     * @param kernels Kernels to copy where Kernel i writes output channel i
+     * @throws InvalidArrayException if parameter 'kernels' is null, empty, or contains null
+     * @throws InvalidInputException if a Kernel has no input or output Nodes
+     * @throws SizeConflictException if the Kernels do not share input and output Nodes or do not write one output channel each in order
+     */
+    public InferenceGroup(Kernel kernels[]) {
+    
+        // Test for exceptions.
+        if (kernels == null || kernels.length == 0) {
+        
+            throw new InvalidArrayException("'kernels' must not be null or empty");
+        }
+        for (int i = 0; i < kernels.length; i++) {
+        
+            if (kernels[i] == null) {
+            
+                throw new InvalidArrayException("'kernels' must not contain null");
+            }
+            else if (!kernels[i].isConnected()) {
+            
+                throw new InvalidInputException("Kernel " + i + " must be connected to input and output Nodes before exporting");
+            }
+            else if (kernels[i].getInputNodes() != kernels[0].getInputNodes() || kernels[i].getOutputNodes() != kernels[0].getOutputNodes()) {
+            
+                throw new SizeConflictException("Kernel " + i + " does not share input and output Nodes with Kernel 0");
+            }
+            else if (kernels[i].getOutputChannel() != i) {
+            
+                throw new SizeConflictException("Kernel " + i + " writes output channel " + kernels[i].getOutputChannel());
+            }
+        }
+        if (kernels.length != kernels[0].getOutputNodes().getNumChannels()) {
+        
+            throw new SizeConflictException(kernels.length + " Kernel(s) cannot write " + kernels[0].getOutputNodes().getNumChannels() + " output channel(s)");
+        }
+        
+        inputSize = kernels[0].getInputNodes().size();
+        outputSize = kernels[0].getOutputNodes().size();
+        nodesPerChannel = kernels[0].getOutputNodes().getNodesPerChannel();
+        fullyConnected = Kernel.isFullyConnectedGroup(kernels);
+        
+        // Copy weights into rows and biases.
+        weightRows = fullyConnected ? new double[kernels.length][] : null;
+        biases = fullyConnected ? new double[kernels.length] : null;
+        for (int i = 0; i < kernels.length && fullyConnected; i++) {
+        
+            // Weights including bias.
+            double kernelWeights[] = kernels[i].getWeights();
+            
+            weightRows[i] = Arrays.copyOf(kernelWeights, inputSize);
+            biases[i] = kernelWeights[inputSize];
+        }
+        
+        // Copy weights and gather indices.
+        int numKernels = fullyConnected ? 0 : kernels.length;
+        weights = new double[numKernels][];
+        gatherIndices = new int[numKernels][];
+        fieldLengths = new int[numKernels];
+        contiguousFields = new boolean[numKernels];
+        for (int i = 0; i < numKernels; i++) {
+        
+            weights[i] = kernels[i].getWeights();
+            fieldLengths[i] = kernels[i].getReceptiveFieldLength();
+            contiguousFields[i] = kernels[i].isContiguousField();
+            
+            // Keep first index of each channel if contiguous.
+            int kernelIndices[] = kernels[i].getGatherIndices();
+            if (contiguousFields[i]) {
+            
+                gatherIndices[i] = new int[kernelIndices.length / fieldLengths[i]];
+                for (int j = 0; j < gatherIndices[i].length; j++) {
+                
+                    gatherIndices[i][j] = kernelIndices[j * fieldLengths[i]];
+                }
+            }
+            else {
+            
+                gatherIndices[i] = Arrays.copyOf(kernelIndices, kernelIndices.length);
+            }
+        }
+        
+        mappedWeights = null;
+        weightsPerKernel = 0;
+    }
+    
+    /**
+     * Construct an InferenceGroup that reads its weights
+     * in place from a buffer laid out like a checkpoint's
+     * weight block for one Layer: every Kernel's weights
+     * (bias last) one after another as little-endian
+     * doubles. The buffer is never copied or written and
+     * must not change while the group is in use.
+     * @param weightsP buffer holding exactly the Layer's weights
+     * @param numKernels number of Kernels (output channels)
+     * @param numInputChannels number of input channels of each Kernel
+     * @param receptiveField each column of Connections' relative offset to the stride index
+     * @param strideLength number of input Node columns to stride by
+     * @param inputWidth input Nodes per channel
+     * @param outputWidth output Nodes per channel
+     * @throws InvalidArrayException if parameter 'weightsP' or 'receptiveField' is null or empty
+     * @throws InvalidSizeException if a size is not greater than zero
+     * @throws SizeConflictException if parameter 'weightsP' does not hold exactly the Kernels' weights or the receptive field reads outside the input
+     */
+    public InferenceGroup(ByteBuffer weightsP, int numKernels, int numInputChannels, int receptiveField[], int strideLength, int inputWidth, int outputWidth) {
+    
+        // Test for exceptions.
+        if (weightsP == null || receptiveField == null || receptiveField.length == 0) {
+        
+            throw new InvalidArrayException("'weightsP' and 'receptiveField' must not be null or empty");
+        }
+        else if (numKernels <= 0 || numInputChannels <= 0 || strideLength <= 0 || inputWidth <= 0 || outputWidth <= 0) {
+        
+            throw new InvalidSizeException("Kernel counts, stride length, and widths must be greater than zero");
+        }
+        else if ((long)numKernels * (numInputChannels * receptiveField.length + 1) * Double.BYTES != weightsP.remaining()) {
+        
+            throw new SizeConflictException("'weightsP' holds " + weightsP.remaining() + " bytes while " + numKernels + " Kernel(s) need " + (long)numKernels * (numInputChannels * receptiveField.length + 1) * Double.BYTES);
+        }
+        for (int i = 0; i < receptiveField.length; i++) {
+        
+            if (receptiveField[i] < 0 || (outputWidth - 1) * strideLength + receptiveField[i] >= inputWidth) {
+            
+                throw new SizeConflictException("receptive field reads outside of " + inputWidth + " input Nodes per channel");
+            }
+        }
+        
+        inputSize = numInputChannels * inputWidth;
+        outputSize = numKernels * outputWidth;
+        nodesPerChannel = outputWidth;
+        mappedWeights = weightsP.slice().order(ByteOrder.LITTLE_ENDIAN);
+        weightsPerKernel = numInputChannels * receptiveField.length + 1;
+        weightRows = null;
+        biases = null;
+        
+        // Every Kernel shares one gather table.
+        int sharedIndices[] = Kernel.compileGatherIndices(numInputChannels, receptiveField, strideLength, inputWidth, outputWidth);
+        boolean identity = outputWidth == 1 && sharedIndices.length == inputSize;
+        for (int i = 0; identity && i < sharedIndices.length; i++) {
+        
+            identity = sharedIndices[i] == i;
+        }
+        fullyConnected = identity;
+        
+        // Keep first index of each channel if contiguous.
+        boolean contiguous = Kernel.testForContiguousField(receptiveField);
+        if (contiguous) {
+        
+            int firstIndices[] = new int[sharedIndices.length / receptiveField.length];
+            for (int j = 0; j < firstIndices.length; j++) {
+            
+                firstIndices[j] = sharedIndices[j * receptiveField.length];
+            }
+            sharedIndices = firstIndices;
+        }
+        
+        int numGroups = fullyConnected ? 0 : numKernels;
+        weights = null;
+        gatherIndices = new int[numGroups][];
+        fieldLengths = new int[numGroups];
+        contiguousFields = new boolean[numGroups];
+        for (int i = 0; i < numGroups; i++) {
+        
+            gatherIndices[i] = sharedIndices;
+            fieldLengths[i] = receptiveField.length;
+            contiguousFields[i] = contiguous;
+        }
+    }
+    
+    /**
+     * Return the number of input Nodes per sample.
+     * @return input size
+     */
+    public int getInputSize() {
+    
+        return inputSize;
+    }
+    
+    /**
+     * Return the number of output Nodes per sample.
+     * @return output size
+     */
+    public int getOutputSize() {
+    
+        return outputSize;
+    }
+    
+    /**
+     * Check whether this group is a single fully
+     * connected layer.
+     * @return whether fully connected
+     */
+    public boolean isFullyConnected() {
+    
+        return fullyConnected;
+    }
+    
+    /**
+     * Write the activation sum of every output Node for
+     * a batch of samples without testing for exceptions.
+     * Only weights are read, so threads may do this
+     * concurrently with their own arrays.
+     * @param inputValues input activation values laid out sample-major then channel-major
+     * @param outputSums array to store output activation sums into (same layout)
+     * @param batchSize number of samples in both arrays
+     */
+    public void propagate(double inputValues[], double outputSums[], int batchSize) {
+    
+        if (mappedWeights != null) {
+        
+            propagateMapped(inputValues, outputSums, batchSize);
+            return;
+        }
+        else if (fullyConnected) {
+        
+            // Start with bias.
+            for (int sampleI = 0; sampleI < batchSize; sampleI++) {
+            
+                System.arraycopy(biases, 0, outputSums, sampleI * outputSize, biases.length);
+            }
+            
+            // Output sums += input values * weights^T.
+            Gemm.multiplyTransposed(batchSize, weightRows.length, inputSize, inputValues, 0, inputSize, weightRows, outputSums, 0, outputSize);
+            return;
+        }
+        
+        for (int i = 0; i < weights.length; i++) {
+        
+            // Number of Connections excluding bias.
+            int numConnections = weights[i].length - 1;
+            // Number of gather indices per stride.
+            int stride = gatherIndices[i].length / nodesPerChannel;
+            // Start of output channel.
+            int outputOffset = i * nodesPerChannel;
+            
+            for (int strideI = 0; strideI < nodesPerChannel; strideI++) {
+            
+                // Start of stride within gather indices.
+                int gatherOffset = strideI * stride;
+                
+                for (int sampleI = 0; sampleI < batchSize; sampleI++) {
+                
+                    // Start of sample within input.
+                    int inputOffset = sampleI * inputSize;
+                    
+                    // Start with bias.
+                    double sum = weights[i][numConnections];
+                    
+                    // Weight each input Node in the receptive field.
+                    if (contiguousFields[i]) {
+                    
+                        // One dot product per input channel.
+                        for (int channelI = 0; channelI < stride; channelI++) {
+                        
+                            sum += VectorMath.dot(weights[i], channelI * fieldLengths[i], inputValues, inputOffset + gatherIndices[i][gatherOffset + channelI], fieldLengths[i]);
+                        }
+                    }
+                    else {
+                    
+                        for (int connectionI = 0; connectionI < numConnections; connectionI++) {
+                        
+                            sum += weights[i][connectionI] * inputValues[inputOffset + gatherIndices[i][gatherOffset + connectionI]];
+                        }
+                    }
+                    
+                    outputSums[sampleI * outputSize + outputOffset + strideI] = sum;
+                }
+            }
+        }
+    }
+    
+    // HELPER METHODS.
+    
+    /**
+     * Version of 'propagate()' that reads every weight
+     * in place from the mapped buffer.
+     * @param inputValues input activation values laid out sample-major then channel-major
+     * @param outputSums array to store output activation sums into (same layout)
+     * @param batchSize number of samples in both arrays
+     */
+    private void propagateMapped(double inputValues[], double outputSums[], int batchSize) {
+    
+        // Number of Connections excluding bias.
+        int numConnections = weightsPerKernel - 1;
+        // Number of Kernels.
+        int numKernels = outputSize / nodesPerChannel;
+        
+        for (int i = 0; i < numKernels; i++) {
+        
+            // Start of Kernel's weights in doubles.
+            int weightOffset = i * weightsPerKernel;
+            // Kernel's bias.
+            double bias = mappedWeights.getDouble((weightOffset + numConnections) * Double.BYTES);
+            
+            // One dot product per sample if fully connected.
+            if (fullyConnected) {
+            
+                for (int sampleI = 0; sampleI < batchSize; sampleI++) {
+                
+                    outputSums[sampleI * outputSize + i] = bias + VectorMath.dot(mappedWeights, weightOffset, inputValues, sampleI * inputSize, inputSize);
+                }
+                continue;
+            }
+            
+            // Number of gather indices per stride.
+            int stride = gatherIndices[i].length / nodesPerChannel;
+            // Start of output channel.
+            int outputOffset = i * nodesPerChannel;
+            
+            for (int strideI = 0; strideI < nodesPerChannel; strideI++) {
+            
+                // Start of stride within gather indices.
+                int gatherOffset = strideI * stride;
+                
+                for (int sampleI = 0; sampleI < batchSize; sampleI++) {
+                
+                    // Start of sample within input.
+                    int inputOffset = sampleI * inputSize;
+                    
+                    // Start with bias.
+                    double sum = bias;
+                    
+                    // Weight each input Node in the receptive field.
+                    if (contiguousFields[i]) {
+                    
+                        // One dot product per input channel.
+                        for (int channelI = 0; channelI < stride; channelI++) {
+                        
+                            sum += VectorMath.dot(mappedWeights, weightOffset + channelI * fieldLengths[i], inputValues, inputOffset + gatherIndices[i][gatherOffset + channelI], fieldLengths[i]);
+                        }
+                    }
+                    else {
+                    
+                        for (int connectionI = 0; connectionI < numConnections; connectionI++) {
+                        
+                            sum += mappedWeights.getDouble((weightOffset + connectionI) * Double.BYTES) * inputValues[inputOffset + gatherIndices[i][gatherOffset + connectionI]];
+                        }
+                    }
+                    
+                    outputSums[sampleI * outputSize + outputOffset + strideI] = sum;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.fairburn.neurogear.utilities.kernel;
+
+/**
+ * Exception generated when a Kernel uses an
+ * invalid optimizer.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: InvalidOptimizerException.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Exception generated when a Kernel
+ * uses an invalid optimizer.
+ */
+public final class InvalidOptimizerException extends RuntimeException {
+    
+    /**
+     * Construct an exception with a given message.
+     * @param message exception message
+     */
+    public InvalidOptimizerException(String message) {
+    
+        super(message);
+    }
+}
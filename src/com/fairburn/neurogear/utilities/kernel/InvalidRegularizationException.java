@@ -0,0 +1,28 @@
+package com.fairburn.neurogear.utilities.kernel;
+
+/**
+ * Exception generated when a Kernel uses
+ * an invalid regularization type.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: InvalidRegularizationException.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Exception generated when a 
+ * Kernel uses an invalid regularization type.
+ */
+public final class InvalidRegularizationException extends RuntimeException {
+    
+    /**
+     * Construct an exception with a given message.
+     * @param message exception message
+     */
+    public InvalidRegularizationException(String message) {
+    
+        super(message);
+    }
+}
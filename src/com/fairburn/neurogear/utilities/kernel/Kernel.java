@@ -1,10 +1,17 @@
- package com.fairburn.neurogear.utilities.kernel;
+package com.fairburn.neurogear.utilities.kernel;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.DoubleBuffer;
 import java.util.Arrays;
-import com.fairburn.neurogear.base.connection.BiasConnection;
-import com.fairburn.neurogear.base.connection.NodeConnection;
-import com.fairburn.neurogear.base.node.Node;
+import com.fairburn.neurogear.base.node.NodeBuffer;
+import com.fairburn.neurogear.base.optimizer.Optimizer;
+import com.fairburn.neurogear.base.optimizer.SGDOptimizer;
+import com.fairburn.neurogear.base.precision.BFloat16;
+import com.fairburn.neurogear.base.precision.Precision;
 import com.fairburn.neurogear.base.regularization.Regularization;
+import com.fairburn.neurogear.utilities.tools.Gemm;
+import com.fairburn.neurogear.utilities.tools.VectorMath;
 
 /**
  * Collection of Connections shared
@@ -20,40 +27,92 @@ import com.fairburn.neurogear.base.regularization.Regularization;
  * 
  * Description: Used to search for a particular
  * feature within data in a location independent
- * manner.
+ * manner. Weights are kept in double precision; a
+ * single or bfloat16 precision Kernel streams a
+ * compact copy of them.
  */
 public final class Kernel {
     
     // MEMBER VARIABLES.
     
-    // Node Connections which represent this Kernel with rows connectiong to channels.
-    private final NodeConnection primaryConnections[][];
-    // Bias Connection for Kernel.
-    private final BiasConnection biasConnection;
-    // Offset for each row of NodeConnections from start index.
+    // Number of input channels.
+    private final int numChannels;
+    // Offset for each row of Connections from start index.
     private final int receptiveField[];
+    // Whether the receptive field is a single run of adjacent columns.
+    private final boolean contiguousField;
     
-    // Kernel input Nodes with rows being channels.
-    private Node inputNodes[][];
+    // Connection weights with rows connecting to channels (the last of which is bias).
+    private final double weights[];
+    // Single precision copy of weights (single precision only).
+    private final float singleWeights[];
+    // Bfloat16 copy of weights (bfloat16 precision only).
+    private final short bfloatWeights[];
+    // Storage format of input and output Nodes.
+    private final Precision precision;
+    // Connection delta sums laid out like weights.
+    private final double deltaSums[];
+    // Number of deltas in each delta sum.
+    private int numDelta;
+    
+    // Optimizer the state below belongs to (null before the first correction).
+    private Optimizer stateOptimizer;
+    // Optimizer state arrays laid out like weights.
+    private double optimizerState[][];
+    // Number of corrections made with the current optimizer state.
+    private long numSteps;
+    
+    // Kernel input Nodes.
+    private NodeBuffer inputNodes;
     // Kernel output Nodes.
-    private Node outputNodes[];
+    private NodeBuffer outputNodes;
+    // Channel of output Nodes this Kernel writes to.
+    private int outputChannel;
+    
+    // Input Node index for each Connection on each stride.
+    private int gatherIndices[];
+    // Whether a single stride reads every input Node in order.
+    private boolean fullyConnected;
+    // Whether this Kernel belongs to a compiled KernelGroup.
+    private boolean frozen;
     
     // Number of input Node columns to stride by.
     private final int strideLength;
     
+    // Element access for weights shared between threads.
+    private static final VarHandle WEIGHT = MethodHandles.arrayElementVarHandle(double[].class);
+    // Optimizer used when none is given.
+    private static final Optimizer SGD = new SGDOptimizer();
+    
     // MEMBER METHODS.
     
     /**
-     * Construct a Kernel with given parameters 
-     * (will create implicit BiasConnection).
-     * @param numChannels number of input channels for this Kernel
+     * Construct a double precision Kernel with given
+     * parameters (will create implicit bias Connection).
+     * @param numChannelsP number of input channels for this Kernel
      * @param receptiveFieldP each column of Connections' relative offset to the stride index
      * @param strideLengthP number of input Node columns to stride by
      * @throws InvalidArrayException if parameter 'receptiveFieldP' is not valid
-     * @throws InvalidSizeException if the parameters 'numChannels' and 'strideLengthP' or not valid
+     * @throws InvalidSizeException if the parameters 'numChannelsP' and 'strideLengthP' or not valid
      */
-    public Kernel(int numChannels, int receptiveFieldP[], int strideLengthP) {
-        
+    public Kernel(int numChannelsP, int receptiveFieldP[], int strideLengthP) {
+    
+        this(numChannelsP, receptiveFieldP, strideLengthP, Precision.DOUBLE);
+    }
+    
+    /**
+     * Construct a Kernel with given parameters
+     * (will create implicit bias Connection).
+     * @param numChannelsP number of input channels for this Kernel
+     * @param receptiveFieldP each column of Connections' relative offset to the stride index
+     * @param strideLengthP number of input Node columns to stride by
+     * @param precisionP storage format of the Nodes this Kernel connects
+     * @throws InvalidArrayException if parameter 'receptiveFieldP' is not valid
+     * @throws InvalidSizeException if the parameters 'numChannelsP' and 'strideLengthP' or not valid
+     * @throws InvalidPrecisionException if parameter 'precisionP' is null
+     */
+    public Kernel(int numChannelsP, int receptiveFieldP[], int strideLengthP, Precision precisionP) {
+    
         // Test for exceptions.
         if (receptiveFieldP == null) {
         
@@ -63,49 +122,100 @@ public final class Kernel {
         
             throw new InvalidArrayException("'receptiveFieldsP' must not be empty");
         }
-        else if (numChannels <= 0) {
+        else if (numChannelsP <= 0) {
         
-            throw new InvalidSizeException("'numChannels' must be greater than zero");
+            throw new InvalidSizeException("'numChannelsP' must be greater than zero");
         }
         else if (strideLengthP <= 0) {
         
             throw new InvalidSizeException("'strideLengthP' must be greater than zero");
         }
+        else if (precisionP == null) {
         
-        // Create connections array.
-        primaryConnections = new NodeConnection[numChannels][receptiveFieldP.length];
-        
-        // Initialize all Connections.
-        for (int channelI = 0; channelI < primaryConnections.length; channelI++) {
-        
-            for (int nodeI = 0; nodeI < primaryConnections[channelI].length; nodeI++) {
-            
-                primaryConnections[channelI][nodeI] = new NodeConnection(0.0);
-            }
+            throw new InvalidPrecisionException("'precisionP' must not be null");
         }
-        biasConnection = new BiasConnection(0.0);
+        
+        numChannels = numChannelsP;
+        precision = precisionP;
         
         // Create and initialize receptiveField array.
         receptiveField = receptiveFieldP;
+        contiguousField = testForContiguousField(receptiveField);
+        
+        // Create weight and delta arrays.
+        weights = new double[numChannels * receptiveField.length + 1];
+        deltaSums = new double[weights.length];
+        numDelta = 0;
+        singleWeights = precision == Precision.SINGLE ? new float[weights.length] : null;
+        bfloatWeights = precision == Precision.BFLOAT16 ? new short[weights.length] : null;
         
         strideLength = strideLengthP;
         
         inputNodes = null;
         outputNodes = null;
+        outputChannel = 0;
+        
+        gatherIndices = null;
+        fullyConnected = false;
+        frozen = false;
+        
+        stateOptimizer = null;
+        optimizerState = null;
+        numSteps = 0;
+    }
+    
+    /**
+     * Construct a disconnected replica of a Kernel that
+     * shares its weights but keeps its own delta sums.
+     * @param master Kernel to replicate
+     */
+    private Kernel(Kernel master) {
+    
+        numChannels = master.numChannels;
+        precision = master.precision;
+        receptiveField = master.receptiveField;
+        contiguousField = master.contiguousField;
+        
+        // Share weights; keep own deltas.
+        weights = master.weights;
+        singleWeights = master.singleWeights;
+        bfloatWeights = master.bfloatWeights;
+        deltaSums = new double[weights.length];
+        numDelta = 0;
+        
+        strideLength = master.strideLength;
+        
+        inputNodes = null;
+        outputNodes = null;
+        outputChannel = 0;
+        
+        gatherIndices = null;
+        fullyConnected = false;
+        frozen = false;
+        
+        stateOptimizer = null;
+        optimizerState = null;
+        numSteps = 0;
     }
     
     /**
-     * Connect a 2D array of Nodes to this Kernel's input.
+     * Connect a NodeBuffer to this Kernel's input.
      * @param inputNodesP Nodes to connect
+     * @throws FrozenKernelException if Kernel belongs to a compiled KernelGroup
      * @throws InputOverrideException if Kernel already has input
-     * @throws InvalidArrayException if parameter 'inputNodesP' is not valid
+     * @throws InvalidArrayException if parameter 'inputNodesP' is null
      * @throws SizeConflictException if parameter 'inputNodesP' and internal Connections have conflicting numbers of channels
+     * @throws PrecisionConflictException if parameter 'inputNodesP' and this Kernel have different precisions
      * @throws ReceptiveFieldConflictException if input and output are not compatible with receptive field
      */
-    public void connectInputNodes(Node inputNodesP[][]) {
-        
+    public void connectInputNodes(NodeBuffer inputNodesP) {
+    
         // Test for exceptions.
-        if (inputNodes != null) {
+        if (frozen) {
+        
+            throw new FrozenKernelException("cannot connect input while Kernel belongs to a compiled KernelGroup");
+        }
+        else if (inputNodes != null) {
         
             throw new InputOverrideException("cannot set new input without disconnecting current input");
         }
@@ -113,33 +223,47 @@ public final class Kernel {
         
             throw new InvalidArrayException("'inputNodesP' must not be null");
         }
-        else if (inputNodesP.length == 0) {
+        else if (inputNodesP.getNumChannels() != numChannels) {
         
-            throw new InvalidArrayException("'inputNodesP' must not be empty");
+            throw new SizeConflictException("'inputNodesP' has " + inputNodesP.getNumChannels() + " channel(s) while Kernel is configured for " + numChannels + " channel(s)");
         }
-        else if (inputNodesP.length != primaryConnections.length) {
+        else if (inputNodesP.getPrecision() != precision) {
         
-            throw new SizeConflictException("'inputNodesP' has " + inputNodesP.length + " channel(s) while Kernel is configured for " + primaryConnections.length + " channel(s)");
+            throw new PrecisionConflictException("'inputNodesP' is " + inputNodesP.getPrecision() + " precision while Kernel is " + precision + " precision");
         }
         else if (outputNodes != null) {
         
-            testForReceptiveFieldConflict(inputNodesP, outputNodes);
+            testForReceptiveFieldConflict(inputNodesP.getNodesPerChannel(), outputNodes.getNodesPerChannel());
         }
         
         inputNodes = inputNodesP;
+        
+        // Compile gather indices once both sides are connected.
+        if (outputNodes != null) {
+        
+            compileGatherIndices();
+        }
     }
     
     /**
-     * Connect an array of Nodes to this Kernel's output.
+     * Connect a single channel of a NodeBuffer to this Kernel's output.
      * @param outputNodesP Nodes to connect
+     * @param outputChannelP channel of parameter 'outputNodesP' to write to
+     * @throws FrozenKernelException if Kernel belongs to a compiled KernelGroup
      * @throws OutputOverrideException if Kernel already has output
-     * @throws InvalidArrayException if parameter 'outputNodesP' is not valid
+     * @throws InvalidArrayException if parameter 'outputNodesP' is null
+     * @throws InvalidSizeException if parameter 'outputChannelP' is not a channel of parameter 'outputNodesP'
+     * @throws PrecisionConflictException if parameter 'outputNodesP' and this Kernel have different precisions
      * @throws ReceptiveFieldConflictException if input and output are not compatible with receptive field
      */
-    public void connectOutputNodes(Node outputNodesP[]) {
-        
+    public void connectOutputNodes(NodeBuffer outputNodesP, int outputChannelP) {
+    
         // Test for exceptions.
-        if (outputNodes != null) {
+        if (frozen) {
+        
+            throw new FrozenKernelException("cannot connect output while Kernel belongs to a compiled KernelGroup");
+        }
+        else if (outputNodes != null) {
         
             throw new OutputOverrideException("cannot set new output without disconnecting current output");
         }
@@ -147,32 +271,85 @@ public final class Kernel {
         
             throw new InvalidArrayException("'outputNodesP' must not be null");
         }
-        else if (outputNodesP.length == 0) {
+        else if (outputChannelP < 0 || outputChannelP >= outputNodesP.getNumChannels()) {
+        
+            throw new InvalidSizeException("'outputChannelP' must be on the interval [0, " + outputNodesP.getNumChannels() + ")");
+        }
+        else if (outputNodesP.getPrecision() != precision) {
         
-            throw new InvalidArrayException("'outputNodesP' must not be empty");
+            throw new PrecisionConflictException("'outputNodesP' is " + outputNodesP.getPrecision() + " precision while Kernel is " + precision + " precision");
         }
         else if (inputNodes != null) {
         
-            testForReceptiveFieldConflict(inputNodes, outputNodesP);
+            testForReceptiveFieldConflict(inputNodes.getNodesPerChannel(), outputNodesP.getNodesPerChannel());
         }
         
         outputNodes = outputNodesP;
+        outputChannel = outputChannelP;
+        
+        // Compile gather indices once both sides are connected.
+        if (inputNodes != null) {
+        
+            compileGatherIndices();
+        }
     }
     
     /**
-     * Disconnect this Kernel's 2D input Node array.
+     * Disconnect this Kernel's input NodeBuffer.
+     * @throws FrozenKernelException if Kernel belongs to a compiled KernelGroup
      */
     public void disconnectInputNodes() {
     
+        // Test for exception.
+        if (frozen) {
+        
+            throw new FrozenKernelException("cannot disconnect input while Kernel belongs to a compiled KernelGroup");
+        }
+        
         inputNodes = null;
+        gatherIndices = null;
+        fullyConnected = false;
     }
     
     /**
-     * Disconnect this Kernel's output Node array.
+     * Disconnect this Kernel's output NodeBuffer.
+     * @throws FrozenKernelException if Kernel belongs to a compiled KernelGroup
      */
     public void disconnectOutputNodes() {
     
+        // Test for exception.
+        if (frozen) {
+        
+            throw new FrozenKernelException("cannot disconnect output while Kernel belongs to a compiled KernelGroup");
+        }
+        
         outputNodes = null;
+        gatherIndices = null;
+        fullyConnected = false;
+    }
+    
+    /**
+     * Create a disconnected replica of this Kernel that
+     * shares its weights (so corrections to either are
+     * seen by both) but accumulates deltas separately.
+     * Replicas let several threads backpropagate
+     * different samples at the same time.
+     * @return replica of this Kernel
+     */
+    public Kernel replicate() {
+    
+        return new Kernel(this);
+    }
+    
+    /**
+     * Check whether this Kernel is connected such that
+     * a single stride reads every input Node in order,
+     * making it a row of a fully connected layer.
+     * @return whether this Kernel is fully connected
+     */
+    public boolean isFullyConnected() {
+    
+        return fullyConnected;
     }
     
     /**
@@ -182,226 +359,1621 @@ public final class Kernel {
      */
     public double[] getWeights() {
     
-        // Array to return.
-        double returnArray[] = new double[primaryConnections.length * primaryConnections[0].length + 1];
-        
-        // Copy weight values.
-        for (int channelI = 0; channelI < primaryConnections.length; channelI++) {
-        
-            for (int nodeI = 0; nodeI < primaryConnections[channelI].length; nodeI++) {
-            
-                returnArray[channelI * primaryConnections[channelI].length + nodeI] = primaryConnections[channelI][nodeI].getWeight();
-            }
-        }
-        returnArray[returnArray.length - 1] = biasConnection.getWeight();
-        
-        return returnArray;
+        return Arrays.copyOf(weights, weights.length);
     }
     
     /**
      * Set the weights of this Kernel's
      * Connections (including bias).
-     * @param weights weights to copy (the last of which is bias)
-     * @throws InvalidArrayException if parameter 'weights' is null
-     * @throws SizeConflictException if size of parameter 'weights' and number of Connections conflicts
+     * @param weightsP weights to copy (the last of which is bias)
+     * @throws InvalidArrayException if parameter 'weightsP' is null
+     * @throws SizeConflictException if size of parameter 'weightsP' and number of Connections conflicts
      */
-    public void setWeights(double weights[]) {
-        
+    public void setWeights(double weightsP[]) {
+    
         // Test for exceptions.
-        if (weights == null) {
+        if (weightsP == null) {
         
-            throw new InvalidArrayException("'weights' must not be null");
+            throw new InvalidArrayException("'weightsP' must not be null");
         }
-        else if (weights.length != primaryConnections.length * primaryConnections[0].length + 1) {
+        else if (weightsP.length != weights.length) {
         
-            throw new SizeConflictException("size of 'weights' and number of Connections conflict");
+            throw new SizeConflictException("size of 'weightsP' and number of Connections conflict");
         }
         
         // Set weight values.
-        for (int channelI = 0; channelI < primaryConnections.length; channelI++) {
+        System.arraycopy(weightsP, 0, weights, 0, weights.length);
+        refreshCompactWeights();
+    }
+    
+    /**
+     * Return the number of this Kernel's Connections
+     * (including bias).
+     * @return number of weights
+     */
+    public int getNumWeights() {
+    
+        return weights.length;
+    }
+    
+    /**
+     * Put this Kernel's weights (including bias) into
+     * a buffer without copying them into an array first.
+     * @param buffer buffer to put weights into at its position
+     * @throws InvalidArrayException if parameter 'buffer' is null
+     * @throws SizeConflictException if parameter 'buffer' has less room than there are weights
+     */
+    public void writeWeights(DoubleBuffer buffer) {
+    
+        // Test for exceptions.
+        if (buffer == null) {
         
-            for (int nodeI = 0; nodeI < primaryConnections[channelI].length; nodeI++) {
-            
-                primaryConnections[channelI][nodeI].setWeight(weights[channelI * primaryConnections[channelI].length + nodeI]);
-            }
+            throw new InvalidArrayException("'buffer' must not be null");
+        }
+        else if (buffer.remaining() < weights.length) {
+        
+            throw new SizeConflictException("'buffer' has room for " + buffer.remaining() + " of " + weights.length + " weights");
         }
-        biasConnection.setWeight(weights[weights.length - 1]);
+        
+        buffer.put(weights);
     }
     
     /**
-     * Stride through all output Nodes and propagate
-     * Connections using each.
-     * @throws InvalidInputException if no input Nodes have been connected
-     * @throws InvalidOutputException if no output Nodes have been connected
+     * Set this Kernel's weights (including bias) from
+     * a buffer without copying them into an array first.
+     * @param buffer buffer to get weights from at its position
+     * @throws InvalidArrayException if parameter 'buffer' is null
+     * @throws SizeConflictException if parameter 'buffer' holds fewer values than there are weights
      */
-    public void propagateAll() {
-        
+    public void readWeights(DoubleBuffer buffer) {
+    
         // Test for exceptions.
-        if (inputNodes == null) {
+        if (buffer == null) {
         
-            throw new InvalidInputException("must connect input Nodes before propagating");
+            throw new InvalidArrayException("'buffer' must not be null");
         }
-        else if (outputNodes == null) {
+        else if (buffer.remaining() < weights.length) {
         
-            throw new InvalidOutputException("must connect output Nodes before propagating");
+            throw new SizeConflictException("'buffer' holds " + buffer.remaining() + " of " + weights.length + " weights");
         }
         
-        // Propagate once for all output Nodes.
-        for (int i = 0; i < outputNodes.length; i++) {
+        buffer.get(weights);
+        refreshCompactWeights();
+    }
+    
+    /**
+     * Return the number of deltas accumulated into this
+     * Kernel's delta sums since its last correction.
+     * @return number of pending deltas
+     */
+    public int getNumDelta() {
+    
+        return numDelta;
+    }
+    
+    /**
+     * Put this Kernel's delta sums (laid out like its
+     * weights) into a buffer without copying them into an
+     * array first.
+     * @param buffer buffer to put delta sums into at its position
+     * @throws InvalidArrayException if parameter 'buffer' is null
+     * @throws SizeConflictException if parameter 'buffer' has less room than there are weights
+     */
+    public void writeDeltaSums(DoubleBuffer buffer) {
+    
+        // Test for exceptions.
+        if (buffer == null) {
         
-            propagateOnce(i);
+            throw new InvalidArrayException("'buffer' must not be null");
         }
+        else if (buffer.remaining() < deltaSums.length) {
+        
+            throw new SizeConflictException("'buffer' has room for " + buffer.remaining() + " of " + deltaSums.length + " delta sums");
+        }
+        
+        buffer.put(deltaSums);
     }
     
     /**
-     * Stride through all output Nodes and backpropagate
-     * Connections using each.
-     * @throws InvalidInputException if no input Nodes have been connected
-     * @throws InvalidOutputException if no output Nodes have been connected
+     * Set this Kernel's delta sums and number of pending
+     * deltas from a buffer, so that a correction carries
+     * on from a partly accumulated mini-batch.
+     * @param buffer buffer to get delta sums from at its position
+     * @param numDeltaP number of deltas accumulated into the sums
+     * @throws InvalidArrayException if parameter 'buffer' is null
+     * @throws InvalidSizeException if parameter 'numDeltaP' is negative
+     * @throws SizeConflictException if parameter 'buffer' holds fewer values than there are weights
      */
-    public void backpropagateAll() {
+    public void readDeltaSums(DoubleBuffer buffer, int numDeltaP) {
+    
+        // Test for exceptions.
+        if (buffer == null) {
+        
+            throw new InvalidArrayException("'buffer' must not be null");
+        }
+        else if (numDeltaP < 0) {
+        
+            throw new InvalidSizeException("'numDeltaP' must not be negative");
+        }
+        else if (buffer.remaining() < deltaSums.length) {
+        
+            throw new SizeConflictException("'buffer' holds " + buffer.remaining() + " of " + deltaSums.length + " delta sums");
+        }
         
+        buffer.get(deltaSums);
+        numDelta = numDeltaP;
+    }
+    
+    /**
+     * Discard this Kernel's delta sums and number of
+     * pending deltas without correcting its weights.
+     */
+    public void clearDeltas() {
+    
+        Arrays.fill(deltaSums, 0.0);
+        numDelta = 0;
+    }
+    
+    /**
+     * Return the number of optimizer state arrays this
+     * Kernel keeps.
+     * @return number of state arrays (zero before the first correction)
+     */
+    public int getNumStateArrays() {
+    
+        return optimizerState != null ? optimizerState.length : 0;
+    }
+    
+    /**
+     * Return the number of corrections made with this
+     * Kernel's current optimizer state.
+     * @return number of optimizer steps
+     */
+    public long getNumOptimizerSteps() {
+    
+        return numSteps;
+    }
+    
+    /**
+     * Put this Kernel's optimizer state arrays one after
+     * another into a buffer without copying them into
+     * arrays first.
+     * @param buffer buffer to put state into at its position
+     * @throws InvalidArrayException if parameter 'buffer' is null
+     * @throws SizeConflictException if parameter 'buffer' has less room than there are state values
+     */
+    public void writeOptimizerState(DoubleBuffer buffer) {
+    
         // Test for exceptions.
-        if (inputNodes == null) {
+        if (buffer == null) {
         
-            throw new InvalidInputException("must connect input Nodes before backpropagating");
+            throw new InvalidArrayException("'buffer' must not be null");
         }
-        else if (outputNodes == null) {
+        else if (buffer.remaining() < (long)getNumStateArrays() * weights.length) {
         
-            throw new InvalidOutputException("must connect output Nodes before backpropagating");
+            throw new SizeConflictException("'buffer' has room for " + buffer.remaining() + " of " + (long)getNumStateArrays() * weights.length + " state values");
         }
         
-        // Backpropagate once for all output Nodes.
-        for (int i = 0; i < outputNodes.length; i++) {
+        for (int i = 0; i < getNumStateArrays(); i++) {
         
-            backpropagateOnce(i);
+            buffer.put(optimizerState[i]);
         }
     }
     
     /**
-     * Correct the weights of each Connection using
-     * given hyperparameters.
-     * @param learningRate learning factor
-     * @param regFunction regularization function
-     * @param regParameter regularization parameter
+     * Set this Kernel's optimizer state from a buffer
+     * holding the state arrays written by
+     * 'writeOptimizerState()'. The state is kept for the
+     * given optimizer, so correcting with that optimizer
+     * carries on where the state was saved.
+     * @param buffer buffer to get state from at its position
+     * @param optimizer optimizer the state belongs to
+     * @param numStepsP number of corrections made with the state
+     * @throws InvalidArrayException if parameter 'buffer' is null
+     * @throws InvalidOptimizerException if parameter 'optimizer' is null
+     * @throws InvalidSizeException if parameter 'numStepsP' is negative
+     * @throws SizeConflictException if parameter 'buffer' holds fewer values than the optimizer's state
      */
-    public void correctConnections(double learningRate, Regularization regFunction, double regParameter) {
+    public void readOptimizerState(DoubleBuffer buffer, Optimizer optimizer, long numStepsP) {
     
-        // Correct all Connections.
-        for (int channelI = 0; channelI < primaryConnections.length; channelI++) {
+        // Test for exceptions.
+        if (buffer == null) {
         
-            for (int nodeI = 0; nodeI < primaryConnections[channelI].length; nodeI++) {
-            
-                primaryConnections[channelI][nodeI].correct(learningRate, regFunction, regParameter);
-            }
+            throw new InvalidArrayException("'buffer' must not be null");
+        }
+        else if (optimizer == null) {
+        
+            throw new InvalidOptimizerException("'optimizer' must not be null");
+        }
+        else if (numStepsP < 0) {
+        
+            throw new InvalidSizeException("'numStepsP' must not be negative");
+        }
+        else if (buffer.remaining() < (long)optimizer.getNumStateArrays() * weights.length) {
+        
+            throw new SizeConflictException("'buffer' holds " + buffer.remaining() + " of " + (long)optimizer.getNumStateArrays() * weights.length + " state values");
         }
-        biasConnection.correct(learningRate, regFunction, regParameter);
+        
+        stateOptimizer = optimizer;
+        optimizerState = new double[optimizer.getNumStateArrays()][weights.length];
+        for (int i = 0; i < optimizerState.length; i++) {
+        
+            buffer.get(optimizerState[i]);
+        }
+        numSteps = numStepsP;
     }
     
-    // HELPER METHODS.
+    /**
+     * Discard this Kernel's optimizer state, so that its
+     * next correction starts its optimizer afresh.
+     */
+    public void clearOptimizerState() {
+    
+        stateOptimizer = null;
+        optimizerState = null;
+        numSteps = 0;
+    }
     
     /**
-     * Test current input, output, and receptive
-     * field for incompatibilities.
-     * @param input input Nodes
-     * @param output output Nodes
-     * @throws ReceptiveFieldConflictException if input and output are not compatible with receptive field
+     * Return a copy of this Kernel's receptive field.
+     * @return each column of Connections' relative offset to the stride index
      */
-    private void testForReceptiveFieldConflict(Node input[][], Node output[]) {
+    public int[] getReceptiveField() {
     
-        // Array of booleans to track which input columns have been visited.
-        boolean visited[] = new boolean[input[0].length];
-        Arrays.fill(visited, false);
+        return Arrays.copyOf(receptiveField, receptiveField.length);
+    }
+    
+    /**
+     * Return the number of input Node columns this
+     * Kernel strides by.
+     * @return stride length
+     */
+    public int getStrideLength() {
+    
+        return strideLength;
+    }
+    
+    /**
+     * Return the storage format of the Nodes
+     * this Kernel connects.
+     * @return precision
+     */
+    public Precision getPrecision() {
+    
+        return precision;
+    }
+    
+    /**
+     * Stride through all output Nodes and propagate
+     * Connections using each for every sample in
+     * the input batch (overwriting the activation
+     * sums of the output channel, so they never
+     * need to be cleared first).
+     * @throws InvalidInputException if no input Nodes have been connected
+     * @throws InvalidOutputException if no output Nodes have been connected
+     * @throws SizeConflictException if input and output Nodes hold different batch sizes
+     */
+    public void propagateAll() {
+    
+        // Test for exceptions.
+        testForConnectionConflict("propagating");
         
-        // Iterate through all output Nodes.
-        for (int oNodeI = 0; oNodeI < output.length; oNodeI++) {
+        propagateUnchecked();
+    }
+    
+    /**
+     * Stride through all output Nodes and propagate
+     * Connections without testing for exceptions
+     * (the caller must have validated connections
+     * and batch sizes).
+     */
+    void propagateUnchecked() {
+    
+        // Run single or bfloat16 precision loop if necessary.
+        if (precision == Precision.SINGLE) {
         
-            // True offset index.
-            int trueOffset = oNodeI * strideLength;
-            
-            // Iterate through all offsets in receptive field.
-            for (int rpI = 0; rpI < receptiveField.length; rpI++) {
-            
-                // Test for exception.
-                if (trueOffset + receptiveField[rpI] >= input[0].length) {
-                
-                    throw new ReceptiveFieldConflictException("receptive field column " + rpI + " will fall out of bounds on stride " + oNodeI);
-                }
-                
-                // Set appropriate visited boolean.
-                visited[trueOffset + receptiveField[rpI]] = true;
-            }
+            propagateSingle(inputNodes, outputNodes);
+            return;
         }
+        else if (precision == Precision.BFLOAT16) {
         
-        // Check if all input columns were vistied.
-        for (int column = 0; column < visited.length; column++) {
-        
-            // Test for exception.
-            if (!visited[column]) {
-            
-                throw new ReceptiveFieldConflictException("input Node column " + column + " will not be visited by receptive field");
-            }
+            propagateBFloat16(inputNodes, outputNodes);
+            return;
         }
+        
+        propagateStrides(inputNodes, outputNodes, 0, outputNodes.getNodesPerChannel());
     }
     
     /**
-     * Perform a single propagation stride.
-     * @param strideNum current stride number
+     * Propagate from and to NodeBuffers other than the connected
+     * ones without testing for exceptions. The buffers must have
+     * the same shapes and precision as the connected ones and
+     * hold the same batch size. Only weights are read from this
+     * Kernel, so threads may do this concurrently with their own
+     * buffers as long as no thread corrects the weights.
+     * @param inputNodesP Nodes to read from
+     * @param outputNodesP Nodes to write to
      */
-    private void propagateOnce(int strideNum) {
+    void propagateUnchecked(NodeBuffer inputNodesP, NodeBuffer outputNodesP) {
+    
+        if (precision == Precision.SINGLE) {
         
-        // Connect, propagate and disconnect each NodeConnection.
-        for (int channelI = 0; channelI < primaryConnections.length; channelI++) {
+            propagateSingle(inputNodesP, outputNodesP);
+        }
+        else if (precision == Precision.BFLOAT16) {
         
-            for (int nodeI = 0; nodeI < primaryConnections[channelI].length; nodeI++) {
-            
-                // Connect Connection.
-                primaryConnections[channelI][nodeI].setInput(inputNodes[channelI][nodeI + strideNum * strideLength]);
-                primaryConnections[channelI][nodeI].setOutput(outputNodes[strideNum]);
-                
-                // Propagate Connection.
-                primaryConnections[channelI][nodeI].propagate();
-                
-                // Disconnect Connection.
-                primaryConnections[channelI][nodeI].clearOutput();
-                primaryConnections[channelI][nodeI].clearInput();
-            }
+            propagateBFloat16(inputNodesP, outputNodesP);
         }
+        else {
         
-        // Connect, propagate and disconnect BiasConnection.
-        biasConnection.setOutput(outputNodes[strideNum]);
-        biasConnection.propagate();
-        biasConnection.clearOutput();
+            propagateStrides(inputNodesP, outputNodesP, 0, outputNodesP.getNodesPerChannel());
+        }
     }
     
     /**
-     * Perform a single backpropagation stride.
-     * @param strideNum current stride number
-     * @throws ConnectionOutOfBoundsException if any Connections are out of bounds
+     * Propagate a range of strides in double precision
+     * without testing for exceptions (each stride writes
+     * only to its own output Node, so disjoint ranges
+     * may run concurrently). Column j of stride i reads
+     * input Node 'i * strideLength + receptiveField[j]'
+     * of each channel, so a receptive field with gaps
+     * skips the Nodes between its offsets.
+     * @param inputNodesP Nodes to read from (shaped like the connected input)
+     * @param outputNodesP Nodes to write to (shaped like the connected output)
+     * @param strideStart first stride
+     * @param strideEnd one past last stride
      */
-    private void backpropagateOnce(int strideNum) {
+    void propagateStrides(NodeBuffer inputNodesP, NodeBuffer outputNodesP, int strideStart, int strideEnd) {
+    
+        // Input and output arrays.
+        double inputValues[] = inputNodesP.getActivationValues();
+        double outputSums[] = outputNodesP.getActivationSums();
+        
+        // Number of Connections excluding bias.
+        int numConnections = weights.length - 1;
+        // Start of output channel.
+        int outputOffset = outputChannel * outputNodesP.getNodesPerChannel();
         
-        // Connect, backpropagate and disconnect each NodeConnection.
-        for (int channelI = 0; channelI < primaryConnections.length; channelI++) {
+        // Propagate once for each output Node in range.
+        for (int strideI = strideStart; strideI < strideEnd; strideI++) {
         
-            for (int nodeI = 0; nodeI < primaryConnections[channelI].length; nodeI++) {
+            // Start of stride within gather indices.
+            int gatherOffset = strideI * numConnections;
             
-                // Connect Connection.
-                primaryConnections[channelI][nodeI].setInput(inputNodes[channelI][nodeI + strideNum * strideLength]);
-                primaryConnections[channelI][nodeI].setOutput(outputNodes[strideNum]);
+            // Reuse this stride's weights and indices for the whole batch.
+            for (int sampleI = 0; sampleI < inputNodesP.getBatchSize(); sampleI++) {
+            
+                // Start of sample within input.
+                int inputOffset = sampleI * inputNodesP.size();
+                
+                // Start with bias.
+                double sum = weights[numConnections];
+                
+                // Weight each input Node in the receptive field.
+                if (contiguousField) {
+                
+                    // One dot product per input channel.
+                    for (int connectionI = 0; connectionI < numConnections; connectionI += receptiveField.length) {
+                    
+                        sum += VectorMath.dot(weights, connectionI, inputValues, inputOffset + gatherIndices[gatherOffset + connectionI], receptiveField.length);
+                    }
+                }
+                else {
                 
-                // Backpropagate Connection.
-                primaryConnections[channelI][nodeI].backpropagate();
+                    for (int connectionI = 0; connectionI < numConnections; connectionI++) {
+                    
+                        sum += weights[connectionI] * inputValues[inputOffset + gatherIndices[gatherOffset + connectionI]];
+                    }
+                }
                 
-                // Disconnect Connection.
-                primaryConnections[channelI][nodeI].clearOutput();
-                primaryConnections[channelI][nodeI].clearInput();
+                // Write activation (every output Node has exactly one stride).
+                outputSums[sampleI * outputNodesP.size() + outputOffset + strideI] = sum;
             }
         }
+    }
+    
+    /**
+     * Stride through all output Nodes and backpropagate
+     * Connections using each for every sample in
+     * the input batch.
+     * @throws InvalidInputException if no input Nodes have been connected
+     * @throws InvalidOutputException if no output Nodes have been connected
+     * @throws SizeConflictException if input and output Nodes hold different batch sizes
+     */
+    public void backpropagateAll() {
+    
+        // Test for exceptions.
+        testForConnectionConflict("backpropagating");
         
-        // Connect, backpropagate and disconnect BiasConnection.
-        biasConnection.setOutput(outputNodes[strideNum]);
-        biasConnection.backpropagate();
-        biasConnection.clearOutput();
+        backpropagateUnchecked();
+    }
+    
+    /**
+     * Stride through all output Nodes and backpropagate
+     * Connections without testing for exceptions
+     * (the caller must have validated connections
+     * and batch sizes).
+     */
+    void backpropagateUnchecked() {
+    
+        backpropagateUnchecked(true, true);
+    }
+    
+    /**
+     * Stride through all output Nodes and backpropagate
+     * only the requested parts without testing for
+     * exceptions, so that gradients nobody reads are
+     * never computed.
+     * @param accumulate whether to add deltas to this Kernel's delta sums
+     * @param relay whether to relay deltas to the input Nodes' delta sums
+     */
+    void backpropagateUnchecked(boolean accumulate, boolean relay) {
+    
+        // Run single or bfloat16 precision loop if necessary.
+        if (precision == Precision.SINGLE) {
+        
+            backpropagateSingle(accumulate, relay, 0, numChannels);
+            return;
+        }
+        else if (precision == Precision.BFLOAT16) {
+        
+            backpropagateBFloat16(accumulate, relay, 0, numChannels);
+            return;
+        }
+        else if (!relay) {
+        
+            if (accumulate) {
+            
+                accumulateDeltas();
+            }
+            return;
+        }
+        else if (!accumulate) {
+        
+            relayDeltas(0, numChannels);
+            return;
+        }
+        
+        // Input and output arrays.
+        double inputValues[] = inputNodes.getActivationValues();
+        double inputDeltaSums[] = inputNodes.getDeltaSums();
+        double outputDeltas[] = outputNodes.getDeltaValues();
+        
+        // Number of Connections excluding bias.
+        int numConnections = weights.length - 1;
+        // Start of output channel.
+        int outputOffset = outputChannel * outputNodes.getNodesPerChannel();
+        
+        // Backpropagate once for all output Nodes.
+        for (int strideI = 0; strideI < outputNodes.getNodesPerChannel(); strideI++) {
+        
+            // Start of stride within gather indices.
+            int gatherOffset = strideI * numConnections;
+            
+            // Reuse this stride's weights and indices for the whole batch.
+            for (int sampleI = 0; sampleI < inputNodes.getBatchSize(); sampleI++) {
+            
+                // Start of sample within input.
+                int inputOffset = sampleI * inputNodes.size();
+                
+                // Delta of output Node for this stride.
+                double outputDelta = outputDeltas[sampleI * outputNodes.size() + outputOffset + strideI];
+                
+                // Relay delta to each input Node in the receptive field.
+                if (contiguousField) {
+                
+                    // Two scaled additions per input channel.
+                    for (int connectionI = 0; connectionI < numConnections; connectionI += receptiveField.length) {
+                    
+                        // Index of first input Node.
+                        int inputI = inputOffset + gatherIndices[gatherOffset + connectionI];
+                        
+                        // Relay delta.
+                        VectorMath.axpy(outputDelta, weights, connectionI, inputDeltaSums, inputI, receptiveField.length);
+                        
+                        // Add delta.
+                        VectorMath.axpy(outputDelta, inputValues, inputI, deltaSums, connectionI, receptiveField.length);
+                    }
+                }
+                else {
+                
+                    for (int connectionI = 0; connectionI < numConnections; connectionI++) {
+                    
+                        // Index of input Node.
+                        int inputI = inputOffset + gatherIndices[gatherOffset + connectionI];
+                        
+                        // Relay delta.
+                        inputDeltaSums[inputI] += weights[connectionI] * outputDelta;
+                        
+                        // Add delta.
+                        deltaSums[connectionI] += inputValues[inputI] * outputDelta;
+                    }
+                }
+                
+                // Add bias delta.
+                deltaSums[numConnections] += outputDelta;
+            }
+        }
+        
+        // Every Connection received one delta per stride per sample.
+        numDelta += outputNodes.getNodesPerChannel() * inputNodes.getBatchSize();
+    }
+    
+    /**
+     * Add this Kernel's deltas to its own delta sums
+     * without relaying them to the input Nodes or testing
+     * for exceptions (writes only to this Kernel, so
+     * different Kernels may run concurrently).
+     */
+    void accumulateDeltas() {
+    
+        // Run single or bfloat16 precision loop if necessary.
+        if (precision == Precision.SINGLE) {
+        
+            backpropagateSingle(true, false, 0, numChannels);
+            return;
+        }
+        else if (precision == Precision.BFLOAT16) {
+        
+            backpropagateBFloat16(true, false, 0, numChannels);
+            return;
+        }
+        
+        // Input and output arrays.
+        double inputValues[] = inputNodes.getActivationValues();
+        double outputDeltas[] = outputNodes.getDeltaValues();
+        
+        // Number of Connections excluding bias.
+        int numConnections = weights.length - 1;
+        // Start of output channel.
+        int outputOffset = outputChannel * outputNodes.getNodesPerChannel();
+        
+        for (int strideI = 0; strideI < outputNodes.getNodesPerChannel(); strideI++) {
+        
+            // Start of stride within gather indices.
+            int gatherOffset = strideI * numConnections;
+            
+            for (int sampleI = 0; sampleI < inputNodes.getBatchSize(); sampleI++) {
+            
+                // Start of sample within input.
+                int inputOffset = sampleI * inputNodes.size();
+                
+                // Delta of output Node for this stride.
+                double outputDelta = outputDeltas[sampleI * outputNodes.size() + outputOffset + strideI];
+                
+                // Add delta for each Connection.
+                if (contiguousField) {
+                
+                    for (int connectionI = 0; connectionI < numConnections; connectionI += receptiveField.length) {
+                    
+                        VectorMath.axpy(outputDelta, inputValues, inputOffset + gatherIndices[gatherOffset + connectionI], deltaSums, connectionI, receptiveField.length);
+                    }
+                }
+                else {
+                
+                    for (int connectionI = 0; connectionI < numConnections; connectionI++) {
+                    
+                        deltaSums[connectionI] += inputValues[inputOffset + gatherIndices[gatherOffset + connectionI]] * outputDelta;
+                    }
+                }
+                
+                // Add bias delta.
+                deltaSums[numConnections] += outputDelta;
+            }
+        }
+        
+        // Every Connection received one delta per stride per sample.
+        numDelta += outputNodes.getNodesPerChannel() * inputNodes.getBatchSize();
+    }
+    
+    /**
+     * Relay this Kernel's deltas to a range of input channels
+     * without adding them to its own delta sums or testing
+     * for exceptions (each input channel has its own delta
+     * sums, so disjoint ranges may run concurrently).
+     * @param channelStart first input channel
+     * @param channelEnd one past last input channel
+     */
+    void relayDeltas(int channelStart, int channelEnd) {
+    
+        // Run single or bfloat16 precision loop if necessary.
+        if (precision == Precision.SINGLE) {
+        
+            backpropagateSingle(false, true, channelStart, channelEnd);
+            return;
+        }
+        else if (precision == Precision.BFLOAT16) {
+        
+            backpropagateBFloat16(false, true, channelStart, channelEnd);
+            return;
+        }
+        
+        // Input and output arrays.
+        double inputDeltaSums[] = inputNodes.getDeltaSums();
+        double outputDeltas[] = outputNodes.getDeltaValues();
+        
+        // Number of Connections excluding bias.
+        int numConnections = weights.length - 1;
+        // Start of output channel.
+        int outputOffset = outputChannel * outputNodes.getNodesPerChannel();
+        // Connections reading from channels in range.
+        int connectionStart = channelStart * receptiveField.length;
+        int connectionEnd = channelEnd * receptiveField.length;
+        
+        for (int strideI = 0; strideI < outputNodes.getNodesPerChannel(); strideI++) {
+        
+            // Start of stride within gather indices.
+            int gatherOffset = strideI * numConnections;
+            
+            for (int sampleI = 0; sampleI < inputNodes.getBatchSize(); sampleI++) {
+            
+                // Start of sample within input.
+                int inputOffset = sampleI * inputNodes.size();
+                
+                // Delta of output Node for this stride.
+                double outputDelta = outputDeltas[sampleI * outputNodes.size() + outputOffset + strideI];
+                
+                // Relay delta to each input Node in range.
+                if (contiguousField) {
+                
+                    for (int connectionI = connectionStart; connectionI < connectionEnd; connectionI += receptiveField.length) {
+                    
+                        VectorMath.axpy(outputDelta, weights, connectionI, inputDeltaSums, inputOffset + gatherIndices[gatherOffset + connectionI], receptiveField.length);
+                    }
+                }
+                else {
+                
+                    for (int connectionI = connectionStart; connectionI < connectionEnd; connectionI++) {
+                    
+                        inputDeltaSums[inputOffset + gatherIndices[gatherOffset + connectionI]] += weights[connectionI] * outputDelta;
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Check whether a group of Kernels forms a single
+     * double precision fully connected layer: each is
+     * fully connected, they share input and output Nodes,
+     * and Kernel i writes to output channel i.
+     * @param kernels Kernels to check
+     * @return whether the Kernels form a fully connected layer
+     */
+    public static boolean isFullyConnectedGroup(Kernel kernels[]) {
+    
+        // Test for empty group.
+        if (kernels.length == 0) {
+        
+            return false;
+        }
+        
+        // Test each Kernel against the first.
+        for (int i = 0; i < kernels.length; i++) {
+        
+            if (!kernels[i].fullyConnected || kernels[i].precision != Precision.DOUBLE || kernels[i].inputNodes != kernels[0].inputNodes || kernels[i].outputNodes != kernels[0].outputNodes || kernels[i].outputChannel != i) {
+            
+                return false;
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Propagate a group of Kernels, running a fully
+     * connected group as one blocked matrix product
+     * over the whole batch.
+     * @param kernels Kernels to propagate
+     * @throws InvalidInputException if no input Nodes have been connected
+     * @throws InvalidOutputException if no output Nodes have been connected
+     * @throws SizeConflictException if input and output Nodes hold different batch sizes
+     */
+    public static void propagateGroup(Kernel kernels[]) {
+    
+        // Propagate individually unless fully connected.
+        if (!isFullyConnectedGroup(kernels)) {
+        
+            for (int i = 0; i < kernels.length; i++) {
+            
+                kernels[i].propagateAll();
+            }
+            
+            return;
+        }
+        
+        // Test for exceptions (all Kernels share input and output).
+        kernels[0].testForConnectionConflict("propagating");
+        
+        propagateFullyConnected(kernels, getWeightRows(kernels), 0, kernels[0].inputNodes, kernels[0].outputNodes);
+    }
+    
+    /**
+     * Propagate a run of Kernels from a fully connected
+     * group as one blocked matrix product without testing
+     * for exceptions (each Kernel writes only to its own
+     * output channel, so disjoint runs may run concurrently).
+     * @param kernels Kernels forming a fully connected layer
+     * @param weightRows weights of each Kernel in the run
+     * @param kernelStart index of first Kernel in the run
+     * @param inputNodes Nodes to read from (shaped like the connected input)
+     * @param outputNodes Nodes to write to (shaped like the connected output)
+     */
+    static void propagateFullyConnected(Kernel kernels[], double weightRows[][], int kernelStart, NodeBuffer inputNodes, NodeBuffer outputNodes) {
+    
+        // Output array.
+        double outputSums[] = outputNodes.getActivationSums();
+        
+        // Number of Connections excluding bias.
+        int numConnections = inputNodes.size();
+        
+        for (int i = kernelStart; i < kernelStart + weightRows.length; i++) {
+        
+            // Write bias as the first contribution.
+            for (int sampleI = 0; sampleI < inputNodes.getBatchSize(); sampleI++) {
+            
+                outputSums[sampleI * outputNodes.size() + i] = kernels[i].weights[numConnections];
+            }
+        }
+        
+        // Output sums += input values * weights^T.
+        Gemm.multiplyTransposed(inputNodes.getBatchSize(), weightRows.length, numConnections, inputNodes.getActivationValues(), 0, numConnections, weightRows, outputSums, kernelStart, outputNodes.size());
+    }
+    
+    /**
+     * Backpropagate a group of Kernels, running a fully
+     * connected group as two blocked matrix products
+     * over the whole batch.
+     * @param kernels Kernels to backpropagate
+     * @throws InvalidInputException if no input Nodes have been connected
+     * @throws InvalidOutputException if no output Nodes have been connected
+     * @throws SizeConflictException if input and output Nodes hold different batch sizes
+     */
+    public static void backpropagateGroup(Kernel kernels[]) {
+    
+        // Backpropagate individually unless fully connected.
+        if (!isFullyConnectedGroup(kernels)) {
+        
+            for (int i = 0; i < kernels.length; i++) {
+            
+                kernels[i].backpropagateAll();
+            }
+            
+            return;
+        }
+        
+        // Test for exceptions (all Kernels share input and output).
+        kernels[0].testForConnectionConflict("backpropagating");
+        
+        backpropagateFullyConnected(kernels, getWeightRows(kernels), getDeltaRows(kernels));
+    }
+    
+    /**
+     * Backpropagate a fully connected group of Kernels as
+     * two blocked matrix products without testing for exceptions.
+     * @param kernels Kernels forming a fully connected layer
+     * @param weightRows each Kernel's weights
+     * @param deltaRows each Kernel's delta sums
+     */
+    static void backpropagateFullyConnected(Kernel kernels[], double weightRows[][], double deltaRows[][]) {
+    
+        relayFullyConnected(kernels, weightRows, 0, kernels[0].inputNodes.getBatchSize());
+        accumulateFullyConnected(kernels, deltaRows, 0);
+    }
+    
+    /**
+     * Relay deltas of a fully connected group of Kernels to a
+     * range of input samples as one blocked matrix product
+     * without testing for exceptions (each sample has its own
+     * input delta sums, so disjoint ranges may run concurrently).
+     * @param kernels Kernels forming a fully connected layer
+     * @param weightRows each Kernel's weights
+     * @param sampleStart first sample
+     * @param sampleEnd one past last sample
+     */
+    static void relayFullyConnected(Kernel kernels[], double weightRows[][], int sampleStart, int sampleEnd) {
+    
+        // Shared input and output.
+        NodeBuffer inputNodes = kernels[0].inputNodes;
+        NodeBuffer outputNodes = kernels[0].outputNodes;
+        
+        // Number of Connections excluding bias.
+        int numConnections = inputNodes.size();
+        
+        // Input delta sums += output deltas * weights.
+        Gemm.multiply(sampleEnd - sampleStart, numConnections, kernels.length, outputNodes.getDeltaValues(), sampleStart * outputNodes.size(), outputNodes.size(), weightRows, inputNodes.getDeltaSums(), sampleStart * numConnections, numConnections);
+    }
+    
+    /**
+     * Add deltas to the delta sums of a run of Kernels from a
+     * fully connected group as one blocked matrix product
+     * without testing for exceptions (each Kernel has its own
+     * delta sums, so disjoint runs may run concurrently).
+     * @param kernels Kernels forming a fully connected layer
+     * @param deltaRows delta sums of each Kernel in the run
+     * @param kernelStart index of first Kernel in the run
+     */
+    static void accumulateFullyConnected(Kernel kernels[], double deltaRows[][], int kernelStart) {
+    
+        // Shared input and output.
+        NodeBuffer inputNodes = kernels[0].inputNodes;
+        NodeBuffer outputNodes = kernels[0].outputNodes;
+        double outputDeltas[] = outputNodes.getDeltaValues();
+        
+        // Number of Connections excluding bias.
+        int numConnections = inputNodes.size();
+        
+        for (int i = kernelStart; i < kernelStart + deltaRows.length; i++) {
+        
+            // Add bias deltas.
+            for (int sampleI = 0; sampleI < inputNodes.getBatchSize(); sampleI++) {
+            
+                kernels[i].deltaSums[numConnections] += outputDeltas[sampleI * outputNodes.size() + i];
+            }
+            
+            // Every Connection received one delta per sample.
+            kernels[i].numDelta += inputNodes.getBatchSize();
+        }
+        
+        // Delta sums += output deltas^T * input values.
+        Gemm.multiplyTransposedLeft(deltaRows.length, numConnections, inputNodes.getBatchSize(), outputDeltas, kernelStart, outputNodes.size(), inputNodes.getActivationValues(), 0, numConnections, deltaRows);
+    }
+    
+    /**
+     * Correct the weights of each Connection using
+     * given hyperparameters and clear delta sums
+     * for next batch.
+     * @param learningRate learning factor
+     * @param regFunction regularization function
+     * @param regParameter regularization parameter
+     * @throws InvalidRegularizationException if parameter 'regFunction' is null
+     * @throws NullDeltaException if no training delta is present
+     */
+    public void correctConnections(double learningRate, Regularization regFunction, double regParameter) {
+    
+        // Test for exceptions.
+        if (regFunction == null) {
+        
+            throw new InvalidRegularizationException("'regFunction' must not be null");
+        }
+        else if (numDelta <= 0) {
+        
+            throw new NullDeltaException("'correctConnections()' called with no deltas");
+        }
+        
+        correctUnchecked(learningRate, regFunction, regParameter);
+    }
+    
+    /**
+     * Correct the weights of each Connection using an
+     * optimizer and clear delta sums for next batch. The
+     * optimizer's state is kept by this Kernel and is
+     * reset whenever a different optimizer is given.
+     * @param learningRate learning factor
+     * @param regFunction regularization function
+     * @param regParameter regularization parameter
+     * @param optimizer update rule to apply
+     * @throws InvalidRegularizationException if parameter 'regFunction' is null
+     * @throws InvalidOptimizerException if parameter 'optimizer' is null
+     * @throws NullDeltaException if no training delta is present
+     */
+    public void correctConnections(double learningRate, Regularization regFunction, double regParameter, Optimizer optimizer) {
+    
+        // Test for exceptions.
+        if (optimizer == null) {
+        
+            throw new InvalidOptimizerException("'optimizer' must not be null");
+        }
+        else if (regFunction == null) {
+        
+            throw new InvalidRegularizationException("'regFunction' must not be null");
+        }
+        else if (numDelta <= 0) {
+        
+            throw new NullDeltaException("'correctConnections()' called with no deltas");
+        }
+        
+        correctUnchecked(learningRate, regFunction, regParameter, optimizer);
+    }
+    
+    /**
+     * Correct the weights of each Connection without
+     * testing for exceptions (the caller must have
+     * validated the regularization function and
+     * backpropagated at least once).
+     * @param learningRate learning factor
+     * @param regFunction regularization function
+     * @param regParameter regularization parameter
+     */
+    void correctUnchecked(double learningRate, Regularization regFunction, double regParameter) {
+    
+        correctUnchecked(learningRate, regFunction, regParameter, SGD);
+    }
+    
+    /**
+     * Correct the weights of each Connection using an
+     * optimizer without testing for exceptions.
+     * @param learningRate learning factor
+     * @param regFunction regularization function
+     * @param regParameter regularization parameter
+     * @param optimizer update rule to apply
+     */
+    void correctUnchecked(double learningRate, Regularization regFunction, double regParameter, Optimizer optimizer) {
+    
+        // Turn delta sums into gradients in place (bias is not regularized).
+        for (int i = 0; i < weights.length - 1; i++) {
+        
+            deltaSums[i] = deltaSums[i] / numDelta + regFunction.df(regParameter, weights[i]);
+        }
+        deltaSums[weights.length - 1] /= numDelta;
+        
+        // Reset state for a new optimizer.
+        if (optimizer != stateOptimizer) {
+        
+            stateOptimizer = optimizer;
+            optimizerState = new double[optimizer.getNumStateArrays()][weights.length];
+            numSteps = 0;
+        }
+        
+        optimizer.update(weights, deltaSums, optimizerState, ++numSteps, learningRate);
+        
+        // Clear delta values.
+        Arrays.fill(deltaSums, 0.0);
+        numDelta = 0;
+        
+        refreshCompactWeights();
+    }
+    
+    /**
+     * Correct the weights of each Connection without locks
+     * or testing for exceptions, so that replicas sharing
+     * these weights may correct them concurrently. Each
+     * weight is read and written as a whole, but an update
+     * from another thread between the read and the write
+     * is overwritten (asynchronous "Hogwild" SGD).
+     * @param learningRate learning factor
+     * @param regFunction regularization function
+     * @param regParameter regularization parameter
+     */
+    void correctShared(double learningRate, Regularization regFunction, double regParameter) {
+    
+        // Correct all weights (bias is not regularized).
+        for (int i = 0; i < weights.length - 1; i++) {
+        
+            double weight = (double)WEIGHT.getOpaque(weights, i);
+            WEIGHT.setOpaque(weights, i, weight - learningRate * (deltaSums[i] / numDelta + regFunction.df(regParameter, weight)));
+        }
+        double bias = (double)WEIGHT.getOpaque(weights, weights.length - 1);
+        WEIGHT.setOpaque(weights, weights.length - 1, bias - learningRate * (deltaSums[weights.length - 1] / numDelta));
+        
+        // Clear delta values.
+        Arrays.fill(deltaSums, 0.0);
+        numDelta = 0;
+        
+        refreshCompactWeights();
+    }
+    
+    // HELPER METHODS.
+    
+    /**
+     * Check whether this Kernel is connected
+     * to both input and output Nodes.
+     * @return whether both sides are connected
+     */
+    boolean isConnected() {
+    
+        return inputNodes != null && outputNodes != null;
+    }
+    
+    /**
+     * Return this Kernel's input Nodes.
+     * @return input Nodes (null if not connected)
+     */
+    NodeBuffer getInputNodes() {
+    
+        return inputNodes;
+    }
+    
+    /**
+     * Return this Kernel's output Nodes.
+     * @return output Nodes (null if not connected)
+     */
+    NodeBuffer getOutputNodes() {
+    
+        return outputNodes;
+    }
+    
+    /**
+     * Return the channel of output Nodes this Kernel writes to.
+     * @return output channel
+     */
+    int getOutputChannel() {
+    
+        return outputChannel;
+    }
+    
+    /**
+     * Return this Kernel's number of Connections per channel.
+     * @return receptive field length
+     */
+    int getReceptiveFieldLength() {
+    
+        return receptiveField.length;
+    }
+    
+    /**
+     * Check whether this Kernel's receptive field is
+     * a single run of adjacent columns.
+     * @return whether the receptive field is contiguous
+     */
+    boolean isContiguousField() {
+    
+        return contiguousField;
+    }
+    
+    /**
+     * Return the input Node index of each Connection on
+     * each stride (not copied, must not be modified).
+     * @return gather indices (null if not connected)
+     */
+    int[] getGatherIndices() {
+    
+        return gatherIndices;
+    }
+    
+    /**
+     * Return this Kernel's number of input channels.
+     * @return number of input channels
+     */
+    public int getNumChannels() {
+    
+        return numChannels;
+    }
+    
+    /**
+     * Return the number of samples this Kernel's
+     * input Nodes hold.
+     * @return batch size
+     */
+    int getBatchSize() {
+    
+        return inputNodes.getBatchSize();
+    }
+    
+    /**
+     * Return this Kernel's number of strides (one
+     * per output Node in its channel).
+     * @return number of strides (zero if output is not connected)
+     */
+    int getNumStrides() {
+    
+        return outputNodes == null ? 0 : outputNodes.getNodesPerChannel();
+    }
+    
+    /**
+     * Check whether this Kernel belongs to
+     * a compiled KernelGroup.
+     * @return whether connections are frozen
+     */
+    boolean isFrozen() {
+    
+        return frozen;
+    }
+    
+    /**
+     * Set whether this Kernel belongs to
+     * a compiled KernelGroup.
+     * @param frozenP whether connections are frozen
+     */
+    void setFrozen(boolean frozenP) {
+    
+        frozen = frozenP;
+    }
+    
+    /**
+     * Check whether this Kernel shares its weights with another.
+     * @param other Kernel to compare with
+     * @return whether both Kernels use the same weights
+     */
+    boolean sharesWeights(Kernel other) {
+    
+        return weights == other.weights;
+    }
+    
+    /**
+     * Move a replica's delta sums into this Kernel's,
+     * leaving the replica's cleared.
+     * @param replica Kernel sharing this Kernel's weights
+     */
+    void addDeltas(Kernel replica) {
+    
+        for (int i = 0; i < deltaSums.length; i++) {
+        
+            deltaSums[i] += replica.deltaSums[i];
+        }
+        numDelta += replica.numDelta;
+        
+        // Clear replica.
+        Arrays.fill(replica.deltaSums, 0.0);
+        replica.numDelta = 0;
+    }
+    
+    /**
+     * Collect the weight arrays of a group of Kernels.
+     * @param kernels Kernels to collect from
+     * @return each Kernel's weights (not copies)
+     */
+    static double[][] getWeightRows(Kernel kernels[]) {
+    
+        // Weight matrix with one row per Kernel.
+        double weightRows[][] = new double[kernels.length][];
+        
+        for (int i = 0; i < kernels.length; i++) {
+        
+            weightRows[i] = kernels[i].weights;
+        }
+        
+        return weightRows;
+    }
+    
+    /**
+     * Collect the delta sum arrays of a group of Kernels.
+     * @param kernels Kernels to collect from
+     * @return each Kernel's delta sums (not copies)
+     */
+    static double[][] getDeltaRows(Kernel kernels[]) {
+    
+        // Delta sum matrix with one row per Kernel.
+        double deltaRows[][] = new double[kernels.length][];
+        
+        for (int i = 0; i < kernels.length; i++) {
+        
+            deltaRows[i] = kernels[i].deltaSums;
+        }
+        
+        return deltaRows;
+    }
+    
+    /**
+     * Test that both input and output Nodes have been
+     * connected to this Kernel and that they hold the
+     * same batch size.
+     * @param action name of the action being attempted
+     * @throws InvalidInputException if no input Nodes have been connected
+     * @throws InvalidOutputException if no output Nodes have been connected
+     * @throws SizeConflictException if input and output Nodes hold different batch sizes
+     */
+    private void testForConnectionConflict(String action) {
+    
+        // Test for exceptions.
+        if (inputNodes == null) {
+        
+            throw new InvalidInputException("must connect input Nodes before " + action);
+        }
+        else if (outputNodes == null) {
+        
+            throw new InvalidOutputException("must connect output Nodes before " + action);
+        }
+        else if (inputNodes.getBatchSize() != outputNodes.getBatchSize()) {
+        
+            throw new SizeConflictException("input Nodes hold " + inputNodes.getBatchSize() + " sample(s) while output Nodes hold " + outputNodes.getBatchSize() + " sample(s)");
+        }
+    }
+    
+    /**
+     * Test current input, output, and receptive
+     * field for incompatibilities.
+     * @param inputWidth number of input Nodes in each channel
+     * @param outputWidth number of output Nodes in each channel
+     * @throws ReceptiveFieldConflictException if input and output are not compatible with receptive field
+     */
+    private void testForReceptiveFieldConflict(int inputWidth, int outputWidth) {
+    
+        // Array of booleans to track which input columns have been visited.
+        boolean visited[] = new boolean[inputWidth];
+        Arrays.fill(visited, false);
+        
+        // Iterate through all output Nodes.
+        for (int oNodeI = 0; oNodeI < outputWidth; oNodeI++) {
+        
+            // True offset index.
+            int trueOffset = oNodeI * strideLength;
+            
+            // Iterate through all offsets in receptive field.
+            for (int rpI = 0; rpI < receptiveField.length; rpI++) {
+            
+                // Test for exception.
+                if (trueOffset + receptiveField[rpI] >= inputWidth) {
+                
+                    throw new ReceptiveFieldConflictException("receptive field column " + rpI + " will fall out of bounds on stride " + oNodeI);
+                }
+                
+                // Set appropriate visited boolean.
+                visited[trueOffset + receptiveField[rpI]] = true;
+            }
+        }
+        
+        // Check if all input columns were vistied.
+        for (int column = 0; column < visited.length; column++) {
+        
+            // Test for exception.
+            if (!visited[column]) {
+            
+                throw new ReceptiveFieldConflictException("input Node column " + column + " will not be visited by receptive field");
+            }
+        }
+    }
+    
+    /**
+     * Test whether a receptive field is a single
+     * run of adjacent, increasing columns.
+     * @param field receptive field to test
+     * @return whether each offset is one greater than the last
+     */
+    static boolean testForContiguousField(int field[]) {
+    
+        for (int i = 1; i < field.length; i++) {
+        
+            if (field[i] != field[i - 1] + 1) {
+            
+                return false;
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Compile this Kernel's gather indices and test
+     * whether it is fully connected.
+     */
+    private void compileGatherIndices() {
+    
+        gatherIndices = compileGatherIndices(numChannels, receptiveField, strideLength, inputNodes.getNodesPerChannel(), outputNodes.getNodesPerChannel());
+        
+        // Test whether a single stride reads every input Node in order.
+        fullyConnected = outputNodes.getNodesPerChannel() == 1 && gatherIndices.length == inputNodes.size();
+        
+        for (int i = 0; fullyConnected && i < gatherIndices.length; i++) {
+        
+            fullyConnected = gatherIndices[i] == i;
+        }
+    }
+    
+    /**
+     * Compile the input Node index of every Connection
+     * on every stride of a Kernel configuration. Each
+     * column reads at its receptive field offset from the
+     * start of the stride, not at its column number.
+     * @param numChannelsP number of input channels
+     * @param receptiveFieldP each column of Connections' relative offset to the stride index
+     * @param strideLengthP number of input Node columns to stride by
+     * @param inputWidth input Nodes per channel
+     * @param outputWidth output Nodes per channel (one per stride)
+     * @return one row of indices per stride in weight order
+     */
+    static int[] compileGatherIndices(int numChannelsP, int receptiveFieldP[], int strideLengthP, int inputWidth, int outputWidth) {
+    
+        // Create index table with one row per stride.
+        int indices[] = new int[outputWidth * numChannelsP * receptiveFieldP.length];
+        
+        // Fill index table in weight order.
+        for (int strideI = 0, gatherI = 0; strideI < outputWidth; strideI++) {
+        
+            for (int channelI = 0; channelI < numChannelsP; channelI++) {
+            
+                // Start of stride within input channel.
+                int inputOffset = channelI * inputWidth + strideI * strideLengthP;
+                
+                for (int rpI = 0; rpI < receptiveFieldP.length; rpI++, gatherI++) {
+                
+                    indices[gatherI] = inputOffset + receptiveFieldP[rpI];
+                }
+            }
+        }
+        
+        return indices;
+    }
+    
+    /**
+     * Copy weights into their single or bfloat16
+     * precision copy if this Kernel has one.
+     */
+    private void refreshCompactWeights() {
+    
+        if (singleWeights != null) {
+        
+            for (int i = 0; i < weights.length; i++) {
+            
+                singleWeights[i] = (float)weights[i];
+            }
+        }
+        else if (bfloatWeights != null) {
+        
+            for (int i = 0; i < weights.length; i++) {
+            
+                bfloatWeights[i] = BFloat16.fromDouble(weights[i]);
+            }
+        }
+    }
+    
+    /**
+     * Single precision version of 'propagateAll()'
+     * (products and sums are computed in double).
+     * @param inputNodesP Nodes to read from (shaped like the connected input)
+     * @param outputNodesP Nodes to write to (shaped like the connected output)
+     */
+    private void propagateSingle(NodeBuffer inputNodesP, NodeBuffer outputNodesP) {
+    
+        // Input and output arrays.
+        float inputValues[] = inputNodesP.getSingleActivationValues();
+        double outputSums[] = outputNodesP.getActivationSums();
+        
+        // Number of Connections excluding bias.
+        int numConnections = weights.length - 1;
+        // Start of output channel.
+        int outputOffset = outputChannel * outputNodesP.getNodesPerChannel();
+        
+        // Propagate once for all output Nodes.
+        for (int strideI = 0; strideI < outputNodesP.getNodesPerChannel(); strideI++) {
+        
+            // Start of stride within gather indices.
+            int gatherOffset = strideI * numConnections;
+            
+            // Reuse this stride's weights and indices for the whole batch.
+            for (int sampleI = 0; sampleI < inputNodesP.getBatchSize(); sampleI++) {
+            
+                // Start of sample within input.
+                int inputOffset = sampleI * inputNodesP.size();
+                
+                // Start with bias.
+                double sum = singleWeights[numConnections];
+                
+                // Weight each input Node in the receptive field.
+                if (contiguousField) {
+                
+                    // One dot product per input channel.
+                    for (int connectionI = 0; connectionI < numConnections; connectionI += receptiveField.length) {
+                    
+                        sum += VectorMath.dot(singleWeights, connectionI, inputValues, inputOffset + gatherIndices[gatherOffset + connectionI], receptiveField.length);
+                    }
+                }
+                else {
+                
+                    for (int connectionI = 0; connectionI < numConnections; connectionI++) {
+                    
+                        sum += (double)singleWeights[connectionI] * inputValues[inputOffset + gatherIndices[gatherOffset + connectionI]];
+                    }
+                }
+                
+                // Write activation (every output Node has exactly one stride).
+                outputSums[sampleI * outputNodesP.size() + outputOffset + strideI] = sum;
+            }
+        }
+    }
+    
+    /**
+     * Single precision version of 'backpropagateAll()'
+     * over a range of input channels (products and sums
+     * are computed in double). An accumulating call must
+     * cover every channel. Accumulating writes only to
+     * this Kernel and relaying writes only to the input
+     * channels in range, so an accumulating call and
+     * relaying calls over disjoint ranges may run
+     * concurrently.
+     * @param accumulate whether to add deltas to this Kernel's delta sums
+     * @param relay whether to relay deltas to the input Nodes' delta sums
+     * @param channelStart first input channel
+     * @param channelEnd one past last input channel
+     */
+    private void backpropagateSingle(boolean accumulate, boolean relay, int channelStart, int channelEnd) {
+    
+        // Input and output arrays.
+        float inputValues[] = inputNodes.getSingleActivationValues();
+        double inputDeltaSums[] = inputNodes.getDeltaSums();
+        float outputDeltas[] = outputNodes.getSingleDeltaValues();
+        
+        // Number of Connections excluding bias.
+        int numConnections = weights.length - 1;
+        // Start of output channel.
+        int outputOffset = outputChannel * outputNodes.getNodesPerChannel();
+        // Connections reading from channels in range.
+        int connectionStart = channelStart * receptiveField.length;
+        int connectionEnd = channelEnd * receptiveField.length;
+        
+        // Backpropagate once for all output Nodes.
+        for (int strideI = 0; strideI < outputNodes.getNodesPerChannel(); strideI++) {
+        
+            // Start of stride within gather indices.
+            int gatherOffset = strideI * numConnections;
+            
+            // Reuse this stride's weights and indices for the whole batch.
+            for (int sampleI = 0; sampleI < inputNodes.getBatchSize(); sampleI++) {
+            
+                // Start of sample within input.
+                int inputOffset = sampleI * inputNodes.size();
+                
+                // Delta of output Node for this stride.
+                double outputDelta = outputDeltas[sampleI * outputNodes.size() + outputOffset + strideI];
+                
+                // Relay delta to each input Node in the receptive field.
+                if (contiguousField) {
+                
+                    // Up to two scaled additions per input channel.
+                    for (int connectionI = connectionStart; connectionI < connectionEnd; connectionI += receptiveField.length) {
+                    
+                        // Index of first input Node.
+                        int inputI = inputOffset + gatherIndices[gatherOffset + connectionI];
+                        
+                        // Relay delta.
+                        if (relay) {
+                        
+                            VectorMath.axpy(outputDelta, singleWeights, connectionI, inputDeltaSums, inputI, receptiveField.length);
+                        }
+                        
+                        // Add delta.
+                        if (accumulate) {
+                        
+                            VectorMath.axpy(outputDelta, inputValues, inputI, deltaSums, connectionI, receptiveField.length);
+                        }
+                    }
+                }
+                else {
+                
+                    for (int connectionI = connectionStart; connectionI < connectionEnd; connectionI++) {
+                    
+                        // Index of input Node.
+                        int inputI = inputOffset + gatherIndices[gatherOffset + connectionI];
+                        
+                        // Relay delta.
+                        if (relay) {
+                        
+                            inputDeltaSums[inputI] += singleWeights[connectionI] * outputDelta;
+                        }
+                        
+                        // Add delta.
+                        if (accumulate) {
+                        
+                            deltaSums[connectionI] += inputValues[inputI] * outputDelta;
+                        }
+                    }
+                }
+                
+                // Add bias delta.
+                if (accumulate) {
+                
+                    deltaSums[numConnections] += outputDelta;
+                }
+            }
+        }
+        
+        // Every Connection received one delta per stride per sample.
+        if (accumulate) {
+        
+            numDelta += outputNodes.getNodesPerChannel() * inputNodes.getBatchSize();
+        }
+    }
+    
+    /**
+     * Bfloat16 precision version of 'propagateAll()'
+     * (values are widened and products and sums are
+     * computed in double).
+     * @param inputNodesP Nodes to read from (shaped like the connected input)
+     * @param outputNodesP Nodes to write to (shaped like the connected output)
+     */
+    private void propagateBFloat16(NodeBuffer inputNodesP, NodeBuffer outputNodesP) {
+    
+        // Input and output arrays.
+        short inputValues[] = inputNodesP.getBFloat16ActivationValues();
+        double outputSums[] = outputNodesP.getActivationSums();
+        
+        // Number of Connections excluding bias.
+        int numConnections = weights.length - 1;
+        // Start of output channel.
+        int outputOffset = outputChannel * outputNodesP.getNodesPerChannel();
+        
+        // Propagate once for all output Nodes.
+        for (int strideI = 0; strideI < outputNodesP.getNodesPerChannel(); strideI++) {
+        
+            // Start of stride within gather indices.
+            int gatherOffset = strideI * numConnections;
+            
+            // Reuse this stride's weights and indices for the whole batch.
+            for (int sampleI = 0; sampleI < inputNodesP.getBatchSize(); sampleI++) {
+            
+                // Start of sample within input.
+                int inputOffset = sampleI * inputNodesP.size();
+                
+                // Start with bias.
+                double sum = BFloat16.toFloat(bfloatWeights[numConnections]);
+                
+                // Weight each input Node in the receptive field.
+                for (int connectionI = 0; connectionI < numConnections; connectionI++) {
+                
+                    sum += (double)BFloat16.toFloat(bfloatWeights[connectionI]) * BFloat16.toFloat(inputValues[inputOffset + gatherIndices[gatherOffset + connectionI]]);
+                }
+                
+                // Write activation (every output Node has exactly one stride).
+                outputSums[sampleI * outputNodesP.size() + outputOffset + strideI] = sum;
+            }
+        }
+    }
+    
+    /**
+     * Bfloat16 precision version of 'backpropagateAll()'
+     * over a range of input channels (values are widened
+     * and products and sums are computed in double). An
+     * accumulating call must cover every channel.
+     * Accumulating writes only to this Kernel and relaying
+     * writes only to the input channels in range, so an
+     * accumulating call and relaying calls over disjoint
+     * ranges may run concurrently.
+     * @param accumulate whether to add deltas to this Kernel's delta sums
+     * @param relay whether to relay deltas to the input Nodes' delta sums
+     * @param channelStart first input channel
+     * @param channelEnd one past last input channel
+     */
+    private void backpropagateBFloat16(boolean accumulate, boolean relay, int channelStart, int channelEnd) {
+    
+        // Input and output arrays.
+        short inputValues[] = inputNodes.getBFloat16ActivationValues();
+        double inputDeltaSums[] = inputNodes.getDeltaSums();
+        short outputDeltas[] = outputNodes.getBFloat16DeltaValues();
+        
+        // Number of Connections excluding bias.
+        int numConnections = weights.length - 1;
+        // Start of output channel.
+        int outputOffset = outputChannel * outputNodes.getNodesPerChannel();
+        // Connections reading from channels in range.
+        int connectionStart = channelStart * receptiveField.length;
+        int connectionEnd = channelEnd * receptiveField.length;
+        
+        // Backpropagate once for all output Nodes.
+        for (int strideI = 0; strideI < outputNodes.getNodesPerChannel(); strideI++) {
+        
+            // Start of stride within gather indices.
+            int gatherOffset = strideI * numConnections;
+            
+            // Reuse this stride's weights and indices for the whole batch.
+            for (int sampleI = 0; sampleI < inputNodes.getBatchSize(); sampleI++) {
+            
+                // Start of sample within input.
+                int inputOffset = sampleI * inputNodes.size();
+                
+                // Delta of output Node for this stride.
+                double outputDelta = BFloat16.toFloat(outputDeltas[sampleI * outputNodes.size() + outputOffset + strideI]);
+                
+                // Relay delta to each input Node in the receptive field.
+                for (int connectionI = connectionStart; connectionI < connectionEnd; connectionI++) {
+                
+                    // Index of input Node.
+                    int inputI = inputOffset + gatherIndices[gatherOffset + connectionI];
+                    
+                    // Relay delta.
+                    if (relay) {
+                    
+                        inputDeltaSums[inputI] += BFloat16.toFloat(bfloatWeights[connectionI]) * outputDelta;
+                    }
+                    
+                    // Add delta.
+                    if (accumulate) {
+                    
+                        deltaSums[connectionI] += BFloat16.toFloat(inputValues[inputI]) * outputDelta;
+                    }
+                }
+                
+                // Add bias delta.
+                if (accumulate) {
+                
+                    deltaSums[numConnections] += outputDelta;
+                }
+            }
+        }
+        
+        // Every Connection received one delta per stride per sample.
+        if (accumulate) {
+        
+            numDelta += outputNodes.getNodesPerChannel() * inputNodes.getBatchSize();
+        }
     }
 }
@@ -0,0 +1,454 @@
+package com.fairburn.neurogear.utilities.kernel;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import com.fairburn.neurogear.base.node.NodeBuffer;
+import com.fairburn.neurogear.base.optimizer.Optimizer;
+import com.fairburn.neurogear.base.precision.Precision;
+import com.fairburn.neurogear.base.regularization.Regularization;
+
+/**
+ * A validated group of Kernels that write to one NodeBuffer.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: KernelGroup.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Tests the connections of a group of Kernels
+ * once when it is constructed and then freezes them, so
+ * that propagation, backpropagation, and correction can run
+ * without repeating those tests on every call. Whether the
+ * group is fully connected and the rows of its weight
+ * matrix are also resolved up front. The Kernels stay
+ * frozen until the group is released.
+ * 
+ * Given a ForkJoinPool, a group splits its work into
+ * units that write to disjoint memory. Propagation runs
+ * one unit per Kernel and range of strides (or per run
+ * of rows of a fully connected layer). Backpropagation
+ * runs one unit per Kernel to add its own delta sums and
+ * one unit per input channel (or per range of samples
+ * of a fully connected layer) to relay deltas, so no two
+ * threads ever add into the same input delta sum and the
+ * results match sequential execution exactly. Single
+ * and bfloat16 precision groups propagate one unit per
+ * Kernel.
+ */
+public final class KernelGroup {
+    
+    // MEMBER VARIABLES.
+    
+    // Kernels in this group.
+    private final Kernel kernels[];
+    // Whether the Kernels form a single fully connected layer.
+    private final boolean fullyConnected;
+    // Each Kernel's weights (fully connected only).
+    private final double weightRows[][];
+    // Each Kernel's delta sums (fully connected only).
+    private final double deltaRows[][];
+    
+    // Strides per propagation unit.
+    private static final int STRIDES_PER_UNIT = 64;
+    
+    // Pool to run units on (null runs sequentially).
+    private final ForkJoinPool pool;
+    // Kernel of each propagation unit (not fully connected only).
+    private final int unitKernels[];
+    // First stride of each propagation unit (not fully connected only).
+    private final int unitStrideStarts[];
+    // First Kernel of each run of rows (fully connected only).
+    private final int rowStarts[];
+    // Weights of each run of rows (fully connected only).
+    private final double weightRuns[][][];
+    // Delta sums of each run of rows (fully connected only).
+    private final double deltaRuns[][][];
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Construct a sequential KernelGroup and freeze its Kernels.
+     * @param kernelsP Kernels to group (must be connected)
+     * @throws InvalidArrayException if parameter 'kernelsP' is null, empty, or contains null
+     * @throws InvalidInputException if a Kernel has no input or output Nodes
+     * @throws FrozenKernelException if a Kernel already belongs to a compiled KernelGroup
+     */
+    public KernelGroup(Kernel kernelsP[]) {
+    
+        this(kernelsP, null);
+    }
+    
+    /**
+     * Construct a KernelGroup that runs on a ForkJoinPool
+     * and freeze its Kernels.
+     * @param kernelsP Kernels to group (must be connected)
+     * @param poolP pool to run on (null runs sequentially)
+     * @throws InvalidArrayException if parameter 'kernelsP' is null, empty, or contains null
+     * @throws InvalidInputException if a Kernel has no input or output Nodes
+     * @throws FrozenKernelException if a Kernel already belongs to a compiled KernelGroup
+     */
+    public KernelGroup(Kernel kernelsP[], ForkJoinPool poolP) {
+    
+        // Test for exceptions.
+        if (kernelsP == null || kernelsP.length == 0) {
+        
+            throw new InvalidArrayException("'kernelsP' must not be null or empty");
+        }
+        for (int i = 0; i < kernelsP.length; i++) {
+        
+            if (kernelsP[i] == null) {
+            
+                throw new InvalidArrayException("'kernelsP' must not contain null");
+            }
+            else if (!kernelsP[i].isConnected()) {
+            
+                throw new InvalidInputException("Kernel " + i + " must be connected to input and output Nodes before compiling");
+            }
+            else if (kernelsP[i].isFrozen()) {
+            
+                throw new FrozenKernelException("Kernel " + i + " already belongs to a compiled KernelGroup");
+            }
+        }
+        
+        kernels = kernelsP.clone();
+        fullyConnected = Kernel.isFullyConnectedGroup(kernels);
+        weightRows = fullyConnected ? Kernel.getWeightRows(kernels) : null;
+        deltaRows = fullyConnected ? Kernel.getDeltaRows(kernels) : null;
+        pool = poolP;
+        
+        // Split fully connected rows into runs (at least four rows each for tiling).
+        int runLength = pool == null ? kernels.length : Math.max(4, (kernels.length + 2 * pool.getParallelism() - 1) / (2 * pool.getParallelism()));
+        int numRuns = fullyConnected ? (kernels.length + runLength - 1) / runLength : 0;
+        rowStarts = new int[numRuns];
+        weightRuns = new double[numRuns][][];
+        deltaRuns = new double[numRuns][][];
+        for (int i = 0; i < numRuns; i++) {
+        
+            rowStarts[i] = i * runLength;
+            weightRuns[i] = Arrays.copyOfRange(weightRows, rowStarts[i], Math.min(rowStarts[i] + runLength, kernels.length));
+            deltaRuns[i] = Arrays.copyOfRange(deltaRows, rowStarts[i], Math.min(rowStarts[i] + runLength, kernels.length));
+        }
+        
+        // Split each Kernel's strides into propagation units.
+        int numUnits = 0;
+        for (int i = 0; i < kernels.length && !fullyConnected; i++) {
+        
+            numUnits += (kernels[i].getNumStrides() + STRIDES_PER_UNIT - 1) / STRIDES_PER_UNIT;
+        }
+        unitKernels = new int[numUnits];
+        unitStrideStarts = new int[numUnits];
+        for (int i = 0, unitI = 0; unitI < numUnits; i++) {
+        
+            for (int strideI = 0; strideI < kernels[i].getNumStrides(); strideI += STRIDES_PER_UNIT, unitI++) {
+            
+                unitKernels[unitI] = i;
+                unitStrideStarts[unitI] = strideI;
+            }
+        }
+        
+        // Freeze connections.
+        for (int i = 0; i < kernels.length; i++) {
+        
+            kernels[i].setFrozen(true);
+        }
+    }
+    
+    /**
+     * Check whether this group runs as a single
+     * fully connected layer.
+     * @return whether the group is fully connected
+     */
+    public boolean isFullyConnected() {
+    
+        return fullyConnected;
+    }
+    
+    /**
+     * Check whether this group has accumulated deltas to
+     * correct with. Every Kernel of a group is
+     * backpropagated together, so only the first is
+     * tested.
+     * @return whether a correction may follow
+     */
+    public boolean hasDeltas() {
+    
+        return kernels.length == 0 || kernels[0].getNumDelta() > 0;
+    }
+    
+    /**
+     * Propagate every Kernel in this group (input and
+     * output Nodes must hold the same batch size).
+     */
+    public void propagate() {
+    
+        if (pool == null) {
+        
+            if (fullyConnected) {
+            
+                Kernel.propagateFullyConnected(kernels, weightRows, 0, kernels[0].getInputNodes(), kernels[0].getOutputNodes());
+            }
+            else {
+            
+                for (int i = 0; i < kernels.length; i++) {
+                
+                    kernels[i].propagateUnchecked();
+                }
+            }
+        }
+        else if (fullyConnected) {
+        
+            // One unit per run of rows.
+            pool.invoke(new KernelTask(0, rowStarts.length, runI -> Kernel.propagateFullyConnected(kernels, weightRuns[runI], rowStarts[runI], kernels[0].getInputNodes(), kernels[0].getOutputNodes())));
+        }
+        else if (kernels[0].getPrecision() != Precision.DOUBLE) {
+        
+            // One unit per Kernel.
+            pool.invoke(new KernelTask(0, kernels.length, kernelI -> kernels[kernelI].propagateUnchecked()));
+        }
+        else {
+        
+            // One unit per Kernel and range of strides.
+            pool.invoke(new KernelTask(0, unitKernels.length, unitI -> {
+            
+                Kernel kernel = kernels[unitKernels[unitI]];
+                kernel.propagateStrides(kernel.getInputNodes(), kernel.getOutputNodes(), unitStrideStarts[unitI], Math.min(unitStrideStarts[unitI] + STRIDES_PER_UNIT, kernel.getNumStrides()));
+            }));
+        }
+    }
+    
+    /**
+     * Propagate every Kernel in this group from and to
+     * NodeBuffers other than the connected ones, always
+     * on the calling thread. The buffers must have the
+     * same shapes and precision as the connected ones and
+     * hold the same batch size. Only weights are read, so
+     * threads may do this concurrently with their own
+     * buffers as long as no thread corrects the weights.
+     * @param inputNodes Nodes to read from
+     * @param outputNodes Nodes to write to
+     */
+    public void propagate(NodeBuffer inputNodes, NodeBuffer outputNodes) {
+    
+        if (fullyConnected) {
+        
+            Kernel.propagateFullyConnected(kernels, weightRows, 0, inputNodes, outputNodes);
+        }
+        else {
+        
+            for (int i = 0; i < kernels.length; i++) {
+            
+                kernels[i].propagateUnchecked(inputNodes, outputNodes);
+            }
+        }
+    }
+    
+    /**
+     * Backpropagate every Kernel in this group (input
+     * and output Nodes must hold the same batch size).
+     */
+    public void backpropagate() {
+    
+        backpropagate(true, true);
+    }
+    
+    /**
+     * Backpropagate only the requested parts of every
+     * Kernel in this group (input and output Nodes must
+     * hold the same batch size), so that gradients
+     * nobody reads are never computed.
+     * @param accumulate whether to add deltas to each Kernel's delta sums (false for untrained Kernels)
+     * @param relay whether to relay deltas to the input Nodes (false if nothing reads their deltas)
+     */
+    public void backpropagate(boolean accumulate, boolean relay) {
+    
+        if (!accumulate && !relay) {
+        
+            return;
+        }
+        else if (pool == null) {
+        
+            if (fullyConnected) {
+            
+                if (relay) {
+                
+                    Kernel.relayFullyConnected(kernels, weightRows, 0, kernels[0].getBatchSize());
+                }
+                if (accumulate) {
+                
+                    Kernel.accumulateFullyConnected(kernels, deltaRows, 0);
+                }
+            }
+            else {
+            
+                for (int i = 0; i < kernels.length; i++) {
+                
+                    kernels[i].backpropagateUnchecked(accumulate, relay);
+                }
+            }
+        }
+        else if (fullyConnected) {
+        
+            // Samples per relay unit (at least four for tiling).
+            int batchSize = kernels[0].getBatchSize();
+            int samplesPerUnit = Math.max(4, (batchSize + 2 * pool.getParallelism() - 1) / (2 * pool.getParallelism()));
+            int numAccumulateUnits = accumulate ? rowStarts.length : 0;
+            int numRelayUnits = relay ? (batchSize + samplesPerUnit - 1) / samplesPerUnit : 0;
+            
+            // One unit per run of rows, then one per range of samples.
+            pool.invoke(new KernelTask(0, numAccumulateUnits + numRelayUnits, unitI -> {
+            
+                if (unitI < numAccumulateUnits) {
+                
+                    Kernel.accumulateFullyConnected(kernels, deltaRuns[unitI], rowStarts[unitI]);
+                }
+                else {
+                
+                    // First sample of unit.
+                    int sampleStart = (unitI - numAccumulateUnits) * samplesPerUnit;
+                    
+                    Kernel.relayFullyConnected(kernels, weightRows, sampleStart, Math.min(sampleStart + samplesPerUnit, batchSize));
+                }
+            }));
+        }
+        else {
+        
+            // Number of units of each kind.
+            int numAccumulateUnits = accumulate ? kernels.length : 0;
+            int numRelayUnits = relay ? kernels[0].getNumChannels() : 0;
+            
+            // One unit per Kernel, then one per input channel.
+            pool.invoke(new KernelTask(0, numAccumulateUnits + numRelayUnits, unitI -> {
+            
+                if (unitI < numAccumulateUnits) {
+                
+                    kernels[unitI].accumulateDeltas();
+                }
+                else {
+                
+                    for (int i = 0; i < kernels.length; i++) {
+                    
+                        kernels[i].relayDeltas(unitI - numAccumulateUnits, unitI - numAccumulateUnits + 1);
+                    }
+                }
+            }));
+        }
+    }
+    
+    /**
+     * Correct every Kernel in this group (must
+     * follow at least one backpropagation).
+     * @param learningRate learning factor
+     * @param regFunction regularization function (must not be null)
+     * @param regParameter regularization parameter
+     */
+    public void correct(double learningRate, Regularization regFunction, double regParameter) {
+    
+        if (pool == null) {
+        
+            for (int i = 0; i < kernels.length; i++) {
+            
+                kernels[i].correctUnchecked(learningRate, regFunction, regParameter);
+            }
+        }
+        else {
+        
+            // One unit per Kernel.
+            pool.invoke(new KernelTask(0, kernels.length, kernelI -> kernels[kernelI].correctUnchecked(learningRate, regFunction, regParameter)));
+        }
+    }
+    
+    /**
+     * Correct every Kernel in this group with an optimizer
+     * (must follow at least one backpropagation).
+     * @param learningRate learning factor
+     * @param regFunction regularization function (must not be null)
+     * @param regParameter regularization parameter
+     * @param optimizer update rule to apply (must not be null)
+     */
+    public void correct(double learningRate, Regularization regFunction, double regParameter, Optimizer optimizer) {
+    
+        if (pool == null) {
+        
+            for (int i = 0; i < kernels.length; i++) {
+            
+                kernels[i].correctUnchecked(learningRate, regFunction, regParameter, optimizer);
+            }
+        }
+        else {
+        
+            // One unit per Kernel.
+            pool.invoke(new KernelTask(0, kernels.length, kernelI -> kernels[kernelI].correctUnchecked(learningRate, regFunction, regParameter, optimizer)));
+        }
+    }
+    
+    /**
+     * Correct every Kernel in this group without locks so
+     * that groups of replicas sharing these weights may
+     * correct them concurrently (updates that race with
+     * one another may be lost).
+     * @param learningRate learning factor
+     * @param regFunction regularization function (must not be null)
+     * @param regParameter regularization parameter
+     */
+    public void correctShared(double learningRate, Regularization regFunction, double regParameter) {
+    
+        for (int i = 0; i < kernels.length; i++) {
+        
+            kernels[i].correctShared(learningRate, regFunction, regParameter);
+        }
+    }
+    
+    /**
+     * Move the delta sums of a group of replicas into
+     * this group's Kernels, leaving the replicas cleared.
+     * @param replicas group whose Kernels replicate this group's Kernels in order
+     * @throws SizeConflictException if parameter 'replicas' does not replicate this group
+     */
+    public void addDeltas(KernelGroup replicas) {
+    
+        // Test for exception.
+        if (replicas.kernels.length != kernels.length) {
+        
+            throw new SizeConflictException("'replicas' has " + replicas.kernels.length + " Kernel(s) while group has " + kernels.length + " Kernel(s)");
+        }
+        for (int i = 0; i < kernels.length; i++) {
+        
+            if (!kernels[i].sharesWeights(replicas.kernels[i])) {
+            
+                throw new SizeConflictException("Kernel " + i + " of 'replicas' does not share weights with this group");
+            }
+        }
+        
+        for (int i = 0; i < kernels.length; i++) {
+        
+            kernels[i].addDeltas(replicas.kernels[i]);
+        }
+    }
+    
+    /**
+     * Discard the delta sums of every Kernel in this group.
+     */
+    public void clearDeltas() {
+    
+        for (int i = 0; i < kernels.length; i++) {
+        
+            kernels[i].clearDeltas();
+        }
+    }
+    
+    /**
+     * Unfreeze this group's Kernels so that their
+     * connections may change (this group must not
+     * be used afterwards).
+     */
+    public void release() {
+    
+        for (int i = 0; i < kernels.length; i++) {
+        
+            kernels[i].setFrozen(false);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.fairburn.neurogear.utilities.kernel;
+
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Fork-join task over a range of independent units of Kernel work.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: KernelTask.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Splits a range of unit indices in half
+ * until a single unit remains and runs it. Units must
+ * write to disjoint memory so that they may run in
+ * any order on any thread.
+ */
+final class KernelTask extends RecursiveAction {
+    
+    // MEMBER VARIABLES.
+    
+    // First unit.
+    private final int start;
+    // One past last unit.
+    private final int end;
+    // Work for a single unit.
+    private final IntConsumer unit;
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Construct a KernelTask over a range of units.
+     * @param startP first unit
+     * @param endP one past last unit
+     * @param unitP work for a single unit
+     */
+    KernelTask(int startP, int endP, IntConsumer unitP) {
+    
+        start = startP;
+        end = endP;
+        unit = unitP;
+    }
+    
+    /**
+     * Run the units in this range, forking
+     * one half while running the other.
+     */
+    @Override
+    protected void compute() {
+    
+        if (end - start <= 1) {
+        
+            for (int i = start; i < end; i++) {
+            
+                unit.accept(i);
+            }
+        }
+        else {
+        
+            // Middle of range.
+            int middle = (start + end) >>> 1;
+            
+            invokeAll(new KernelTask(start, middle, unit), new KernelTask(middle, end, unit));
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.fairburn.neurogear.utilities.kernel;
+
+/**
+ * Exception generated when a Kernel attempts
+ * to compute the average of zero deltas.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: NullDeltaException.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Exception generated when a Kernel 
+ * attempts to compute the average of zero deltas.
+ */
+public final class NullDeltaException extends RuntimeException {
+    
+    /**
+     * Construct an exception with a given message.
+     * @param message exception message
+     */
+    public NullDeltaException(String message) {
+    
+        super(message);
+    }
+}
@@ -0,0 +1,29 @@
+package com.fairburn.neurogear.utilities.kernel;
+
+/**
+ * Exception generated when a Kernel is
+ * connected to Nodes of a different precision.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: PrecisionConflictException.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Exception generated when a
+ * Kernel is connected to Nodes of a different
+ * precision.
+ */
+public final class PrecisionConflictException extends RuntimeException {
+    
+    /**
+     * Construct an exception with a given message.
+     * @param message exception message
+     */
+    public PrecisionConflictException(String message) {
+    
+        super(message);
+    }
+}
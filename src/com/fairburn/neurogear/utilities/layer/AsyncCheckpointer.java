@@ -0,0 +1,495 @@
+package com.fairburn.neurogear.utilities.layer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodic checkpointing of a stack of Layers that
+ * writes in the background while training goes on.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: AsyncCheckpointer.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Saving splits into a snapshot and a write.
+ * The snapshot runs on the training thread and only
+ * copies the header and every Kernel's weights and
+ * optimizer state into direct buffers laid out exactly
+ * like a checkpoint file, so its cost is one pass of
+ * memory copies. It must be taken between corrections
+ * (for example right after 'Network.fit()') so that the
+ * copy is consistent. The write then runs on an executor:
+ * the buffers are written to a temporary file beside the
+ * path, forced to disk, and renamed over the path
+ * atomically, so the path always holds a complete
+ * checkpoint that 'Checkpoint.load()' can read. The
+ * buffers are kept and reused by later snapshots, which
+ * therefore wait for the write before them to finish and
+ * report its failure. A checkpointer must not be shared
+ * between threads, and no two checkpointers may write to
+ * the same path.
+ * 
+ * Given a full interval, a checkpointer instead keeps
+ * every checkpoint as a chain beside its path, numbered
+ * from a first sequence number (zero unless given): the
+ * first, one in every full interval, and any after a
+ * failed write are full checkpoints and the rest are
+ * DeltaCheckpoint files holding only the blocks that
+ * changed since the checkpoint before. The previous
+ * snapshot's buffers are kept to compare against, so this
+ * mode holds two snapshots in memory. A checkpointer
+ * refuses to start over files of an earlier run numbered
+ * at or after its first sequence number (a run that
+ * carries on a chain should start after its last
+ * checkpoint), and tags its deltas with a random run id.
+ * 'DeltaCheckpoint' collects and replays a chain.
+ * 
+ * A checkpointer built for a Network also snapshots its
+ * pending delta sums, step and epoch counts, and the
+ * shuffle state of the DataSet it is training on, so
+ * that 'Network.resume()' carries on bit for bit.
+ */
+public final class AsyncCheckpointer {
+    
+    // MEMBER VARIABLES.
+    
+    // Largest snapshot buffer in bytes (unless a single Kernel record is larger).
+    private static final int CHUNK_BYTES = 1 << 30;
+    
+    // Network whose training state is checkpointed (null for Layers only).
+    private final Network network;
+    // Layers to checkpoint from input to output.
+    private final Layer layers[];
+    // File to keep the latest checkpoint in (or to number a chain after).
+    private final Path path;
+    // Checkpoints per full checkpoint (zero to keep only the latest at the path).
+    private final int fullInterval;
+    // Run id written into every delta of the chain.
+    private final long runId;
+    // Nanoseconds between periodic checkpoints.
+    private final long interval;
+    // Executor to write on.
+    private final ExecutorService executor;
+    
+    // Snapshot buffers reused between checkpoints.
+    private List<ByteBuffer> chunks;
+    // Number of snapshot buffers filled by the latest snapshot.
+    private int numFilled;
+    // Bytes of the latest snapshot not yet laid out.
+    private long bytesLeft;
+    // Header and payload bytes of the latest snapshot.
+    private int headerLength;
+    private long payloadLength;
+    // Write in progress returning its payload checksum (null if none is being tracked).
+    private Future<Long> pending;
+    // Time of the latest snapshot.
+    private long lastSnapshot;
+    
+    // Sequence number of the first snapshot.
+    private final long firstSequence;
+    // Number of snapshots taken.
+    private long numCheckpoints;
+    // Number of deltas since the latest full checkpoint.
+    private long numSinceFull;
+    // Whether the latest snapshot was written (a delta may follow it).
+    private boolean lastWritten;
+    // Payload checksum of the latest snapshot once written.
+    private long lastChecksum;
+    // Buffers, payload bytes, and checksum of the snapshot before the latest (delta mode only).
+    private List<ByteBuffer> reference;
+    private int numReference;
+    private long referenceLength;
+    private long referenceChecksum;
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Construct an AsyncCheckpointer for Layers that have
+     * already been connected in order.
+     * @param layersP Layers from input to output (such as a Network's 'getPlan()')
+     * @param pathP file to keep the latest checkpoint in
+     * @param intervalMillis milliseconds between periodic checkpoints
+     * @param executorP executor to write on
+     * @throws InvalidCheckpointException if the Layers cannot be checkpointed, a parameter is null, or 'intervalMillis' is negative
+     */
+    public AsyncCheckpointer(Layer layersP[], Path pathP, long intervalMillis, ExecutorService executorP) {
+    
+        this(layersP, pathP, intervalMillis, 0, executorP);
+    }
+    
+    /**
+     * Construct an AsyncCheckpointer that keeps a chain
+     * of full and delta checkpoints for Layers that have
+     * already been connected in order. Checkpoint i is
+     * written beside the path with '.i' appended to its
+     * name, and '.delta' as well if it is a delta.
+     * @param layersP Layers from input to output (such as a Network's 'getPlan()')
+     * @param pathP file to number the chain after
+     * @param intervalMillis milliseconds between periodic checkpoints
+     * @param fullIntervalP checkpoints per full checkpoint (one for no deltas)
+     * @param executorP executor to write on
+     * @throws InvalidCheckpointException if the Layers cannot be checkpointed, a parameter is null, an interval is out of range, or the chain already has files
+     * @throws UncheckedIOException if the directory of the chain cannot be listed
+     */
+    public AsyncCheckpointer(Layer layersP[], Path pathP, long intervalMillis, int fullIntervalP, ExecutorService executorP) {
+    
+        this(null, layersP, pathP, intervalMillis, fullIntervalP, 0, executorP);
+    }
+    
+    /**
+     * Construct an AsyncCheckpointer that carries on a
+     * chain of full and delta checkpoints for Layers that
+     * have already been connected in order, numbering its
+     * first checkpoint (which is always full) after the
+     * chain's last.
+     * @param layersP Layers from input to output (such as a Network's 'getPlan()')
+     * @param pathP file to number the chain after
+     * @param intervalMillis milliseconds between periodic checkpoints
+     * @param fullIntervalP checkpoints per full checkpoint (one for no deltas)
+     * @param firstSequenceP sequence number of the first checkpoint
+     * @param executorP executor to write on
+     * @throws InvalidCheckpointException if the Layers cannot be checkpointed, a parameter is null, an interval or 'firstSequenceP' is out of range, or the chain already has files from 'firstSequenceP' on
+     * @throws UncheckedIOException if the directory of the chain cannot be listed
+     */
+    public AsyncCheckpointer(Layer layersP[], Path pathP, long intervalMillis, int fullIntervalP, long firstSequenceP, ExecutorService executorP) {
+    
+        this(null, layersP, pathP, intervalMillis, fullIntervalP, firstSequenceP, executorP);
+    }
+    
+    /**
+     * Construct an AsyncCheckpointer for a Network's
+     * Layers and training state, which keeps a chain of
+     * full and delta checkpoints as above given a full
+     * interval.
+     * @param networkP Network to checkpoint (it is not given this checkpointer)
+     * @param pathP file to keep the latest checkpoint in (or to number a chain after)
+     * @param intervalMillis milliseconds between periodic checkpoints
+     * @param fullIntervalP checkpoints per full checkpoint (zero to keep only the latest)
+     * @param executorP executor to write on
+     * @throws InvalidCheckpointException if the Network cannot be checkpointed, a parameter is null, an interval is out of range, or the chain already has files
+     * @throws UncheckedIOException if the directory of the chain cannot be listed
+     */
+    public AsyncCheckpointer(Network networkP, Path pathP, long intervalMillis, int fullIntervalP, ExecutorService executorP) {
+    
+        this(networkP, pathP, intervalMillis, fullIntervalP, 0, executorP);
+    }
+    
+    /**
+     * Construct an AsyncCheckpointer for a Network's
+     * Layers and training state that carries on a chain
+     * as above, numbering its first checkpoint (which is
+     * always full) after the chain's last.
+     * @param networkP Network to checkpoint (it is not given this checkpointer)
+     * @param pathP file to number the chain after
+     * @param intervalMillis milliseconds between periodic checkpoints
+     * @param fullIntervalP checkpoints per full checkpoint (one for no deltas)
+     * @param firstSequenceP sequence number of the first checkpoint
+     * @param executorP executor to write on
+     * @throws InvalidCheckpointException if the Network cannot be checkpointed, a parameter is null, an interval or 'firstSequenceP' is out of range, or the chain already has files from 'firstSequenceP' on
+     * @throws UncheckedIOException if the directory of the chain cannot be listed
+     */
+    public AsyncCheckpointer(Network networkP, Path pathP, long intervalMillis, int fullIntervalP, long firstSequenceP, ExecutorService executorP) {
+    
+        this(networkP, networkP != null ? networkP.getPlan() : null, pathP, intervalMillis, fullIntervalP, firstSequenceP, executorP);
+    }
+    
+    /**
+     * Construct an AsyncCheckpointer for Layers and
+     * optionally the Network that owns them.
+     * @param networkP Network whose training state is checkpointed (null for Layers only)
+     * @param layersP Layers from input to output
+     * @param pathP file to keep the latest checkpoint in (or to number a chain after)
+     * @param intervalMillis milliseconds between periodic checkpoints
+     * @param fullIntervalP checkpoints per full checkpoint (zero to keep only the latest)
+     * @param firstSequenceP sequence number of the first checkpoint of a chain
+     * @param executorP executor to write on
+     * @throws InvalidCheckpointException if the Layers cannot be checkpointed, a parameter is null, an interval or 'firstSequenceP' is out of range, or the chain already has files from 'firstSequenceP' on
+     * @throws UncheckedIOException if the directory of the chain cannot be listed
+     */
+    private AsyncCheckpointer(Network networkP, Layer layersP[], Path pathP, long intervalMillis, int fullIntervalP, long firstSequenceP, ExecutorService executorP) {
+    
+        // Test for exceptions.
+        CheckpointHeader.describe(layersP);
+        if (pathP == null || pathP.getFileName() == null || executorP == null) {
+        
+            throw new InvalidCheckpointException("'pathP' must name a file and 'executorP' must not be null");
+        }
+        else if (intervalMillis < 0 || fullIntervalP < 0 || firstSequenceP < 0) {
+        
+            throw new InvalidCheckpointException("'intervalMillis', 'fullIntervalP', and 'firstSequenceP' must not be negative");
+        }
+        else if (fullIntervalP > 0) {
+        
+            DeltaCheckpoint.testForChain(pathP, firstSequenceP);
+        }
+        
+        network = networkP;
+        layers = layersP.clone();
+        path = pathP;
+        fullInterval = fullIntervalP;
+        runId = new SecureRandom().nextLong();
+        interval = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        executor = executorP;
+        
+        chunks = new ArrayList<>();
+        numFilled = 0;
+        bytesLeft = 0;
+        headerLength = 0;
+        payloadLength = 0;
+        pending = null;
+        lastSnapshot = System.nanoTime();
+        
+        firstSequence = firstSequenceP;
+        numCheckpoints = 0;
+        numSinceFull = 0;
+        lastWritten = false;
+        lastChecksum = 0;
+        reference = new ArrayList<>();
+        numReference = 0;
+        referenceLength = 0;
+        referenceChecksum = 0;
+    }
+    
+    /**
+     * Take a snapshot and write it in the background.
+     * Waits for the previous write first.
+     * @throws IOException if the previous write failed
+     * @throws InvalidCheckpointException if the Layers can no longer be checkpointed
+     */
+    public void save() throws IOException {
+    
+        // Describe current state before waiting.
+        byte training[] = network != null ? network.encodeTrainingState() : null;
+        CheckpointHeader header = CheckpointHeader.describe(layers, training != null ? training.length : 0);
+        await();
+        
+        // Keep latest snapshot to compare against.
+        boolean full = fullInterval == 0 || !lastWritten || numSinceFull + 1 >= fullInterval;
+        if (fullInterval > 0) {
+        
+            List<ByteBuffer> swap = reference;
+            reference = chunks;
+            chunks = swap;
+            numReference = numFilled;
+            referenceLength = payloadLength;
+            referenceChecksum = lastChecksum;
+        }
+        
+        // Copy header and payload into snapshot buffers.
+        numFilled = 0;
+        bytesLeft = header.getLength();
+        headerLength = header.getHeaderLength();
+        payloadLength = header.getLength() - headerLength;
+        ByteBuffer buffer = getChunk(headerLength);
+        buffer.put(header.encode());
+        buffer = Checkpoint.putPayload(layers, header, training, buffer, this::nextChunk);
+        buffer.flip();
+        numFilled++;
+        lastSnapshot = System.nanoTime();
+        lastWritten = false;
+        
+        // Write filled buffers on executor.
+        long sequence = firstSequence + numCheckpoints++;
+        numSinceFull = full ? 0 : numSinceFull + 1;
+        pending = executor.submit(() -> write(sequence, full));
+    }
+    
+    /**
+     * Take a snapshot and write it in the background if
+     * the interval has passed since the last snapshot (or
+     * since construction) and no write is in progress, so
+     * that it never stalls training.
+     * @return whether a snapshot was taken
+     * @throws IOException if the previous write failed
+     * @throws InvalidCheckpointException if the Layers can no longer be checkpointed
+     */
+    public boolean saveIfDue() throws IOException {
+    
+        if (System.nanoTime() - lastSnapshot < interval || isWriting()) {
+        
+            return false;
+        }
+        
+        save();
+        return true;
+    }
+    
+    /**
+     * Return whether a write is in progress.
+     * @return whether the latest snapshot is still being written
+     */
+    public boolean isWriting() {
+    
+        return pending != null && !pending.isDone();
+    }
+    
+    /**
+     * Wait for the write in progress, if any, to finish.
+     * @throws IOException if the write failed or waiting was interrupted
+     */
+    public void await() throws IOException {
+    
+        if (pending == null) {
+        
+            return;
+        }
+        
+        try {
+        
+            lastChecksum = pending.get();
+            lastWritten = true;
+            pending = null;
+        }
+        catch (InterruptedException e) {
+        
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for checkpoint to be written");
+        }
+        catch (ExecutionException e) {
+        
+            pending = null;
+            if (e.getCause() instanceof IOException) {
+            
+                throw (IOException)e.getCause();
+            }
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException)e.getCause() : new IllegalStateException(e.getCause());
+        }
+    }
+    
+    /**
+     * Return the file the latest checkpoint is kept in,
+     * or that a chain is numbered after.
+     * @return checkpoint path
+     */
+    public Path getPath() {
+    
+        return path;
+    }
+    
+    /**
+     * Return the number of snapshots taken, so that the
+     * latest in a chain has sequence number one less than
+     * the first sequence number plus this.
+     * @return number of checkpoints
+     */
+    public long getNumCheckpoints() {
+    
+        return numCheckpoints;
+    }
+    
+    // HELPER METHODS.
+    
+    /**
+     * Close a full snapshot buffer and return the next one.
+     * @param full buffer filled up to its position
+     * @param numBytes bytes of the next record
+     * @return empty buffer with room for the record
+     */
+    private ByteBuffer nextChunk(ByteBuffer full, int numBytes) {
+    
+        full.flip();
+        numFilled++;
+        bytesLeft -= full.limit();
+        
+        return getChunk(numBytes);
+    }
+    
+    /**
+     * Return the snapshot buffer after the filled ones,
+     * cleared and sized for the bytes still to lay out.
+     * @param numBytes bytes of the next record
+     * @return empty little-endian direct buffer
+     */
+    private ByteBuffer getChunk(int numBytes) {
+    
+        // Size for the rest of the snapshot.
+        int capacity = (int)Math.max(numBytes, Math.min(CHUNK_BYTES, bytesLeft));
+        
+        if (numFilled == chunks.size()) {
+        
+            chunks.add(null);
+        }
+        if (chunks.get(numFilled) == null || chunks.get(numFilled).capacity() < capacity) {
+        
+            chunks.set(numFilled, ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN));
+        }
+        
+        return chunks.get(numFilled).clear();
+    }
+    
+    /**
+     * Write the latest snapshot (on the executor).
+     * @param sequence sequence number of snapshot
+     * @param full whether to write a full checkpoint in delta mode
+     * @return checksum of the snapshot's payload (zero outside delta mode)
+     * @throws IOException if a file cannot be written or renamed
+     */
+    private long write(long sequence, boolean full) throws IOException {
+    
+        if (fullInterval == 0) {
+        
+            writeFull(path);
+            return 0;
+        }
+        else if (full) {
+        
+            writeFull(DeltaCheckpoint.getPath(path, sequence, false));
+            return DeltaCheckpoint.checksum(new PayloadCursor(chunks, numFilled, headerLength), payloadLength);
+        }
+        
+        // Header of snapshot.
+        ByteBuffer header = chunks.get(0).duplicate();
+        header.position(0);
+        header.limit(headerLength);
+        
+        return DeltaCheckpoint.write(DeltaCheckpoint.getPath(path, sequence, true), runId, header, new PayloadCursor(chunks, numFilled, headerLength), payloadLength, new PayloadCursor(reference, numReference, headerLength), referenceLength, referenceChecksum);
+    }
+    
+    /**
+     * Write the filled snapshot buffers to a temporary
+     * file and rename it over a path.
+     * @param target file to write
+     * @throws IOException if the file cannot be written or renamed
+     */
+    private void writeFull(Path target) throws IOException {
+    
+        Path temporary = Checkpoint.getTemporaryPath(target);
+        try {
+        
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            
+                for (int i = 0; i < numFilled; i++) {
+                
+                    Checkpoint.writeFully(channel, chunks.get(i).duplicate());
+                }
+                channel.force(true);
+            }
+            
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException | RuntimeException e) {
+        
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.fairburn.neurogear.utilities.layer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Destination for the full buffers of a checkpoint payload.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: BufferDrain.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Lets one routine lay out a checkpoint's
+ * weights and optimizer state whether they are streamed
+ * to a file through a single buffer or copied into a
+ * series of buffers to be written later.
+ */
+interface BufferDrain {
+    
+    /**
+     * Take a buffer that has no room for the next record
+     * and return a buffer to continue in.
+     * @param buffer buffer filled up to its position
+     * @param numBytes bytes of the next record
+     * @return buffer with at least 'numBytes' remaining
+     * @throws IOException if the buffer's contents cannot be written
+     */
+    ByteBuffer drain(ByteBuffer buffer, int numBytes) throws IOException;
+}
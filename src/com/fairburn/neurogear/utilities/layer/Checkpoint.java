@@ -0,0 +1,593 @@
+package com.fairburn.neurogear.utilities.layer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import com.fairburn.neurogear.base.optimizer.Optimizer;
+import com.fairburn.neurogear.utilities.kernel.Kernel;
+
+/**
+ * Binary save and load of a stack of Layers.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: Checkpoint.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: A checkpoint is a CheckpointHeader
+ * describing the stack's topology followed by every
+ * Kernel's weights (bias last) as one contiguous block of
+ * little-endian doubles, Layer by Layer from input to
+ * output and Kernel by Kernel within each Layer, then
+ * the optimizer state and pending delta sums of every
+ * Kernel that has any, and finally any training state of
+ * a Network (see 'Network.resume()').
+ * Weights are always stored from the double precision
+ * master copy, whatever the Layers' precision. Both
+ * directions stream through one direct buffer with bulk
+ * channel transfers and copy each Kernel's weights
+ * straight between that buffer and the Kernel, so no
+ * per-Kernel arrays are allocated. A checkpoint is
+ * written to a temporary file beside its path and then
+ * renamed over it atomically, so a crash never leaves a
+ * partly written checkpoint behind. A Network's Layers
+ * can be saved by passing 'getPlan()'. Activation and
+ * regularization functions are recorded by class name
+ * and must have a public no-argument constructor.
+ */
+public abstract class Checkpoint {
+    
+    // MEMBER VARIABLES.
+    
+    // Smallest transfer buffer in bytes.
+    private static final int BUFFER_BYTES = 1 << 22;
+    // Suffix of the file a checkpoint is written to before renaming.
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Save a stack of Layers and their optimizer state,
+     * atomically replacing any existing file.
+     * @param layers Layers from input to output that have already been connected in order
+     * @param path file to write
+     * @throws IOException if the file cannot be written
+     * @throws InvalidCheckpointException if the Layers are not a connected stack or a function cannot be restored by class name
+     */
+    public static void save(Layer layers[], Path path) throws IOException {
+    
+        save(layers, null, path);
+    }
+    
+    /**
+     * Save a stack of Layers, their optimizer state, and
+     * training state, atomically replacing any existing
+     * file.
+     * @param layers Layers from input to output that have already been connected in order
+     * @param training training state to append (null for none)
+     * @param path file to write
+     * @throws IOException if the file cannot be written
+     * @throws InvalidCheckpointException if the Layers are not a connected stack or a function cannot be restored by class name
+     */
+    static void save(Layer layers[], byte training[], Path path) throws IOException {
+    
+        // Test for exception.
+        CheckpointHeader header = CheckpointHeader.describe(layers, training != null ? training.length : 0);
+        if (path == null) {
+        
+            throw new InvalidCheckpointException("'path' must not be null");
+        }
+        
+        Path temporary = getTemporaryPath(path);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+        
+            writeFully(channel, header.encode());
+            
+            // Stream payload through one buffer.
+            ByteBuffer buffer = putPayload(layers, header, training, allocateBuffer(header), (full, numBytes) -> {
+            
+                full.flip();
+                writeFully(channel, full);
+                return full.clear();
+            });
+            buffer.flip();
+            writeFully(channel, buffer);
+            channel.force(true);
+        }
+        
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * Load a stack of Layers saved by 'save()' without
+     * their optimizer state.
+     * @param path file to read
+     * @return new Layers from input to output, already connected in order
+     * @throws IOException if the file cannot be read
+     * @throws InvalidCheckpointException if the file is not a valid checkpoint
+     */
+    public static Layer[] load(Path path) throws IOException {
+    
+        return loadUnchecked(path, null);
+    }
+    
+    /**
+     * Load a stack of Layers saved by 'save()' along with
+     * their optimizer state, which is kept for the given
+     * optimizer so that correcting with it carries on
+     * where training left off.
+     * @param path file to read
+     * @param optimizer optimizer the saved state belongs to
+     * @return new Layers from input to output, already connected in order
+     * @throws IOException if the file cannot be read
+     * @throws InvalidCheckpointException if the file is not a valid checkpoint, parameter 'optimizer' is null, or the saved state does not fit the optimizer
+     */
+    public static Layer[] load(Path path, Optimizer optimizer) throws IOException {
+    
+        // Test for exception.
+        if (optimizer == null) {
+        
+            throw new InvalidCheckpointException("'optimizer' must not be null");
+        }
+        
+        return loadUnchecked(path, optimizer);
+    }
+    
+    /**
+     * Read the weights, optimizer state, and pending
+     * delta sums of a checkpoint into a stack of Layers
+     * with the same topology, such as a Network's plan.
+     * The whole checkpoint, including its training state,
+     * is tested before any Layer is changed, and Kernels
+     * saved without optimizer state or pending deltas are
+     * cleared of theirs.
+     * @param path file to read
+     * @param layers Layers from input to output that have already been connected in order
+     * @param optimizer optimizer the saved state belongs to
+     * @param trainingTest test of the training state saved with the Layers (throws to leave the Layers unchanged)
+     * @return training state saved with the Layers (empty if none)
+     * @throws IOException if the file cannot be read
+     * @throws InvalidCheckpointException if the file is not a valid checkpoint of the Layers or the saved state does not fit the optimizer
+     */
+    static byte[] resume(Path path, Layer layers[], Optimizer optimizer, Consumer<byte[]> trainingTest) throws IOException {
+    
+        // Test for exception.
+        CheckpointHeader current = CheckpointHeader.describe(layers);
+        if (path == null || optimizer == null || trainingTest == null) {
+        
+            throw new InvalidCheckpointException("'path', 'optimizer', and 'trainingTest' must not be null");
+        }
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        
+            // Test for exceptions.
+            CheckpointHeader header = CheckpointHeader.read(channel);
+            if (!header.hasTopologyOf(current)) {
+            
+                throw new InvalidCheckpointException("checkpoint does not describe the Layers being resumed");
+            }
+            testPayload(channel, layers, header, optimizer);
+            byte training[] = readTrainingState(channel, header);
+            trainingTest.accept(training);
+            
+            readPayload(channel, layers, header, optimizer);
+            return training;
+        }
+    }
+    
+    /**
+     * Lay out the weights, optimizer state, pending delta
+     * sums, and training state of a stack of Layers in
+     * checkpoint order.
+     * @param layers Layers from input to output
+     * @param header header describing the Layers
+     * @param training training state (null for none)
+     * @param buffer little-endian buffer to start in
+     * @param drain destination of each buffer that fills up
+     * @return buffer holding the end of the payload up to its position
+     * @throws IOException if a full buffer cannot be written
+     */
+    static ByteBuffer putPayload(Layer layers[], CheckpointHeader header, byte training[], ByteBuffer buffer, BufferDrain drain) throws IOException {
+    
+        // Weights.
+        for (int i = 1; i < layers.length; i++) {
+        
+            // Bytes per Kernel.
+            int kernelBytes = header.getNumKernelWeights(i) * Double.BYTES;
+            
+            for (Kernel kernel : layers[i].getKernels()) {
+            
+                if (buffer.remaining() < kernelBytes) {
+                
+                    buffer = drain.drain(buffer, kernelBytes);
+                }
+                
+                kernel.writeWeights(buffer.asDoubleBuffer());
+                buffer.position(buffer.position() + kernelBytes);
+            }
+        }
+        
+        // Optimizer state.
+        for (int i = 1; i < layers.length; i++) {
+        
+            // Bytes per Kernel.
+            int stateBytes = getRecordBytes(header.getNumKernelStateBytes(i));
+            
+            for (int j = 0; j < layers[i].getKernels().length && header.getNumStateArrays(i) > 0; j++) {
+            
+                if (buffer.remaining() < stateBytes) {
+                
+                    buffer = drain.drain(buffer, stateBytes);
+                }
+                
+                buffer.putLong(layers[i].getKernels()[j].getNumOptimizerSteps());
+                layers[i].getKernels()[j].writeOptimizerState(buffer.asDoubleBuffer());
+                buffer.position(buffer.position() + stateBytes - Long.BYTES);
+            }
+        }
+        
+        // Pending delta sums.
+        for (int i = 1; i < layers.length; i++) {
+        
+            // Bytes per Kernel.
+            int deltaBytes = getRecordBytes(header.getNumKernelDeltaBytes(i));
+            
+            for (int j = 0; j < layers[i].getKernels().length && header.hasPendingDeltas(i); j++) {
+            
+                if (buffer.remaining() < deltaBytes) {
+                
+                    buffer = drain.drain(buffer, deltaBytes);
+                }
+                
+                buffer.putLong(layers[i].getKernels()[j].getNumDelta());
+                layers[i].getKernels()[j].writeDeltaSums(buffer.asDoubleBuffer());
+                buffer.position(buffer.position() + deltaBytes - Long.BYTES);
+            }
+        }
+        
+        // Padded training state, in as many pieces as it takes.
+        byte padded[] = training != null ? Arrays.copyOf(training, (int)header.getNumPaddedTrainingBytes()) : new byte[0];
+        for (int offset = 0; offset < padded.length;) {
+        
+            if (!buffer.hasRemaining()) {
+            
+                buffer = drain.drain(buffer, 1);
+            }
+            
+            int numBytes = Math.min(buffer.remaining(), padded.length - offset);
+            buffer.put(padded, offset, numBytes);
+            offset += numBytes;
+        }
+        
+        return buffer;
+    }
+    
+    /**
+     * Return the file a checkpoint is written to before
+     * being renamed to its path.
+     * @param path path of the checkpoint
+     * @return temporary file in the same directory
+     */
+    static Path getTemporaryPath(Path path) {
+    
+        return path.resolveSibling(path.getFileName() + TEMPORARY_SUFFIX);
+    }
+    
+    /**
+     * Write every remaining byte of a buffer to a channel.
+     * @param channel channel to write to
+     * @param buffer buffer to drain
+     * @throws IOException if the channel cannot be written
+     */
+    static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    
+        while (buffer.hasRemaining()) {
+        
+            channel.write(buffer);
+        }
+    }
+    
+    /**
+     * Return the number of bytes of a single Kernel's
+     * weights or state as a buffer size.
+     * @param numBytes bytes of record
+     * @return bytes of record
+     * @throws InvalidCheckpointException if the record cannot fit in a single buffer
+     */
+    static int getRecordBytes(long numBytes) {
+    
+        // Test for exception.
+        if (numBytes > Integer.MAX_VALUE - Double.BYTES) {
+        
+            throw new InvalidCheckpointException("a Kernel record of " + numBytes + " bytes cannot fit in a single buffer");
+        }
+        
+        return (int)numBytes;
+    }
+    
+    // HELPER METHODS.
+    
+    /**
+     * Load a stack of Layers without testing the
+     * optimizer for exceptions.
+     * @param path file to read
+     * @param optimizer optimizer to restore state for (null to skip state)
+     * @return new Layers from input to output, already connected in order
+     * @throws IOException if the file cannot be read
+     * @throws InvalidCheckpointException if the file is not a valid checkpoint or the saved state does not fit the optimizer
+     */
+    private static Layer[] loadUnchecked(Path path, Optimizer optimizer) throws IOException {
+    
+        // Test for exception.
+        if (path == null) {
+        
+            throw new InvalidCheckpointException("'path' must not be null");
+        }
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        
+            CheckpointHeader header = CheckpointHeader.read(channel);
+            Layer layers[] = header.createLayers();
+            if (optimizer != null) {
+            
+                testPayload(channel, layers, header, optimizer);
+            }
+            readPayload(channel, layers, header, optimizer);
+            
+            return layers;
+        }
+    }
+    
+    /**
+     * Test the optimizer state and pending delta records
+     * of a checkpoint against an optimizer without
+     * reading them into any Kernel.
+     * @param channel checkpoint to read (its position is left unchanged)
+     * @param layers Layers from input to output matching the header
+     * @param header header describing the Layers
+     * @param optimizer optimizer the saved state belongs to
+     * @throws IOException if the channel cannot be read
+     * @throws InvalidCheckpointException if the saved state does not fit the optimizer or a record's count is out of range
+     */
+    private static void testPayload(FileChannel channel, Layer layers[], CheckpointHeader header, Optimizer optimizer) throws IOException {
+    
+        // Start of optimizer state (after every weight).
+        long offset = header.getHeaderLength();
+        for (int i = 1; i < layers.length; i++) {
+        
+            offset += (long)layers[i].getKernels().length * header.getNumKernelWeights(i) * Double.BYTES;
+        }
+        
+        // Optimizer state.
+        for (int i = 1; i < layers.length; i++) {
+        
+            // Test for exception.
+            if (header.getNumStateArrays(i) != 0 && header.getNumStateArrays(i) != optimizer.getNumStateArrays()) {
+            
+                throw new InvalidCheckpointException("Layer " + i + " holds " + header.getNumStateArrays(i) + " optimizer state array(s) per Kernel while the optimizer keeps " + optimizer.getNumStateArrays());
+            }
+            
+            for (int j = 0; j < layers[i].getKernels().length && header.getNumStateArrays(i) > 0; j++) {
+            
+                // Test for exception.
+                if (readLong(channel, offset) < 0) {
+                
+                    throw new InvalidCheckpointException("Kernel " + j + " of Layer " + i + " has a negative number of optimizer steps");
+                }
+                offset += header.getNumKernelStateBytes(i);
+            }
+        }
+        
+        // Pending delta sums.
+        for (int i = 1; i < layers.length; i++) {
+        
+            for (int j = 0; j < layers[i].getKernels().length && header.hasPendingDeltas(i); j++) {
+            
+                // Test for exception.
+                long numDelta = readLong(channel, offset);
+                if (numDelta < 0 || numDelta > Integer.MAX_VALUE) {
+                
+                    throw new InvalidCheckpointException("Kernel " + j + " of Layer " + i + " has an invalid number of deltas");
+                }
+                offset += header.getNumKernelDeltaBytes(i);
+            }
+        }
+        
+        // Test for exception.
+        if (header.getNumTrainingBytes() > Integer.MAX_VALUE - Double.BYTES) {
+        
+            throw new InvalidCheckpointException("training state of " + header.getNumTrainingBytes() + " bytes cannot fit in an array");
+        }
+    }
+    
+    /**
+     * Read the training state at the end of a checkpoint
+     * without its padding (tested by 'testPayload()').
+     * @param channel checkpoint to read (its position is left unchanged)
+     * @param header header describing the checkpoint
+     * @return training state (empty if none)
+     * @throws IOException if the channel cannot be read
+     */
+    private static byte[] readTrainingState(FileChannel channel, CheckpointHeader header) throws IOException {
+    
+        // Training state and its offset.
+        ByteBuffer training = ByteBuffer.allocate((int)header.getNumTrainingBytes());
+        long position = header.getLength() - header.getNumPaddedTrainingBytes();
+        
+        while (training.hasRemaining()) {
+        
+            int numRead = channel.read(training, position);
+            if (numRead < 0) {
+            
+                throw new InvalidCheckpointException("checkpoint ends before its last record");
+            }
+            position += numRead;
+        }
+        
+        return training.array();
+    }
+    
+    /**
+     * Read a little-endian long from a channel at a
+     * position.
+     * @param channel channel to read from (its position is left unchanged)
+     * @param position first byte of the value
+     * @return value read
+     * @throws IOException if the channel cannot be read
+     * @throws InvalidCheckpointException if the channel ends first
+     */
+    private static long readLong(FileChannel channel, long position) throws IOException {
+    
+        ByteBuffer value = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (value.hasRemaining()) {
+        
+            int numRead = channel.read(value, position + value.position());
+            if (numRead < 0) {
+            
+                throw new InvalidCheckpointException("checkpoint ends before its last record");
+            }
+        }
+        
+        return value.getLong(0);
+    }
+    
+    /**
+     * Stream every Kernel's weights and optionally its
+     * optimizer state and pending delta sums out of a
+     * channel (tested by 'testPayload()'). Given an
+     * optimizer, Kernels saved without optimizer state or
+     * pending deltas are cleared of theirs, so the Layers
+     * hold exactly what was saved.
+     * @param channel channel positioned after the header
+     * @param layers Layers from input to output
+     * @param header header describing the Layers
+     * @param optimizer optimizer to restore state for (null to skip state)
+     * @throws IOException if the channel cannot be read
+     * @throws InvalidCheckpointException if the channel ends early
+     */
+    private static void readPayload(FileChannel channel, Layer layers[], CheckpointHeader header, Optimizer optimizer) throws IOException {
+    
+        ByteBuffer buffer = allocateBuffer(header);
+        buffer.limit(0);
+        
+        // Weights.
+        for (int i = 1; i < layers.length; i++) {
+        
+            // Bytes per Kernel.
+            int kernelBytes = header.getNumKernelWeights(i) * Double.BYTES;
+            
+            for (Kernel kernel : layers[i].getKernels()) {
+            
+                fill(channel, buffer, kernelBytes);
+                kernel.readWeights(buffer.asDoubleBuffer());
+                buffer.position(buffer.position() + kernelBytes);
+            }
+        }
+        
+        // Optimizer state.
+        for (int i = 1; i < layers.length && optimizer != null; i++) {
+        
+            // Bytes per Kernel.
+            int stateBytes = getRecordBytes(header.getNumKernelStateBytes(i));
+            
+            for (Kernel kernel : layers[i].getKernels()) {
+            
+                if (header.getNumStateArrays(i) > 0) {
+                
+                    fill(channel, buffer, stateBytes);
+                    long numSteps = buffer.getLong();
+                    kernel.readOptimizerState(buffer.asDoubleBuffer(), optimizer, numSteps);
+                    buffer.position(buffer.position() + stateBytes - Long.BYTES);
+                }
+                else {
+                
+                    kernel.clearOptimizerState();
+                }
+            }
+        }
+        
+        // Pending delta sums.
+        for (int i = 1; i < layers.length && optimizer != null; i++) {
+        
+            // Bytes per Kernel.
+            int deltaBytes = getRecordBytes(header.getNumKernelDeltaBytes(i));
+            
+            for (Kernel kernel : layers[i].getKernels()) {
+            
+                if (header.hasPendingDeltas(i)) {
+                
+                    fill(channel, buffer, deltaBytes);
+                    long numDelta = buffer.getLong();
+                    kernel.readDeltaSums(buffer.asDoubleBuffer(), (int)numDelta);
+                    buffer.position(buffer.position() + deltaBytes - Long.BYTES);
+                }
+                else {
+                
+                    kernel.clearDeltas();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Refill a buffer from a channel if it does not hold
+     * all of the next record.
+     * @param channel channel to read from
+     * @param buffer buffer whose remaining bytes are unread
+     * @param numBytes bytes of the next record
+     * @throws IOException if the channel cannot be read
+     * @throws InvalidCheckpointException if the channel ends before the record does
+     */
+    private static void fill(FileChannel channel, ByteBuffer buffer, int numBytes) throws IOException {
+    
+        if (buffer.remaining() >= numBytes) {
+        
+            return;
+        }
+        
+        buffer.compact();
+        int numRead = 0;
+        while (buffer.hasRemaining() && numRead >= 0) {
+        
+            numRead = channel.read(buffer);
+        }
+        buffer.flip();
+        
+        if (buffer.remaining() < numBytes) {
+        
+            throw new InvalidCheckpointException("checkpoint ends before its last record");
+        }
+    }
+    
+    /**
+     * Allocate a little-endian direct buffer that can hold
+     * the weights, state, or delta sums of any single
+     * Kernel.
+     * @param header header describing the Layers
+     * @return empty transfer buffer
+     * @throws InvalidCheckpointException if a Kernel record cannot fit in a single buffer
+     */
+    private static ByteBuffer allocateBuffer(CheckpointHeader header) {
+    
+        // Largest record in bytes.
+        int largest = 0;
+        for (int i = 1; i < header.getNumLayers(); i++) {
+        
+            largest = Math.max(largest, header.getNumKernelWeights(i) * Double.BYTES);
+            largest = Math.max(largest, header.getNumStateArrays(i) > 0 ? getRecordBytes(header.getNumKernelStateBytes(i)) : 0);
+            largest = Math.max(largest, header.hasPendingDeltas(i) ? getRecordBytes(header.getNumKernelDeltaBytes(i)) : 0);
+        }
+        
+        return ByteBuffer.allocateDirect(Math.max(largest, BUFFER_BYTES)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,786 @@
+package com.fairburn.neurogear.utilities.layer;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import com.fairburn.neurogear.base.activation.Activation;
+import com.fairburn.neurogear.base.precision.Precision;
+import com.fairburn.neurogear.base.regularization.Regularization;
+import com.fairburn.neurogear.utilities.kernel.Kernel;
+
+/**
+ * Topology section of a checkpoint.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: CheckpointHeader.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Describes a stack of connected Layers well
+ * enough to rebuild it and locates its weights within a
+ * checkpoint. Every field is little-endian. A fixed prefix
+ * holds a magic number, the format version, the number of
+ * Layers, the header length in bytes, the number of
+ * weights, and the number of bytes of training state.
+ * Each Layer then records its shape, its precision, the
+ * class names of its activation and regularization
+ * functions, and its Kernels' number of input channels,
+ * stride, number of optimizer state arrays, whether they
+ * hold pending delta sums, and receptive field. The
+ * header is zero-padded to a multiple of eight bytes so
+ * that the weights that follow it are aligned. The
+ * weights are followed by the optimizer state of each
+ * Layer that has any (for each Kernel its number of
+ * optimizer steps as a long and then its state arrays),
+ * then the pending delta sums of each Layer that has any
+ * (for each Kernel its number of deltas as a long and
+ * then its delta sums), and finally the training state
+ * of a Network, if any, as an opaque block of bytes
+ * zero-padded to a multiple of eight bytes so that every
+ * checkpoint is a whole number of values long.
+ */
+final class CheckpointHeader {
+    
+    // MEMBER VARIABLES.
+    
+    // Marks a checkpoint ("NGCK" when read as little-endian bytes).
+    static final int MAGIC = 0x4B43474E;
+    // Format version written by this class.
+    static final int VERSION = 3;
+    // Bytes in the fixed prefix.
+    private static final int PREFIX_BYTES = 32;
+    // Largest header accepted when reading.
+    private static final int MAX_HEADER_BYTES = 1 << 26;
+    
+    // Number of channels of each Layer.
+    private final int numChannels[];
+    // Nodes per channel of each Layer.
+    private final int nodesPerChannel[];
+    // Precision name of each Layer.
+    private final String precisions[];
+    // Activation class name of each Layer.
+    private final String activations[];
+    // Regularization class name of each Layer (empty if none).
+    private final String regularizations[];
+    // Input channels of each Layer's Kernels (zero for the input Layer).
+    private final int numInputChannels[];
+    // Stride length of each Layer's Kernels (zero for the input Layer).
+    private final int strideLengths[];
+    // Optimizer state arrays of each Layer's Kernels (zero if none).
+    private final int numStateArrays[];
+    // Whether each Layer's Kernels hold pending delta sums.
+    private final boolean pendingDeltas[];
+    // Receptive field of each Layer's Kernels (empty for the input Layer).
+    private final int receptiveFields[][];
+    
+    // Bytes before the first weight.
+    private final int headerLength;
+    // Number of weights following the header.
+    private final long numWeights;
+    // Bytes of optimizer state following the weights.
+    private final long numStateBytes;
+    // Bytes of pending delta sums following the optimizer state.
+    private final long numDeltaBytes;
+    // Bytes of training state at the end of the checkpoint (before padding).
+    private final long numTrainingBytes;
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Construct a CheckpointHeader from decoded or
+     * collected fields and compute its length.
+     * @param numChannelsP number of channels of each Layer
+     * @param nodesPerChannelP Nodes per channel of each Layer
+     * @param precisionsP precision name of each Layer
+     * @param activationsP activation class name of each Layer
+     * @param regularizationsP regularization class name of each Layer
+     * @param numInputChannelsP input channels of each Layer's Kernels
+     * @param strideLengthsP stride length of each Layer's Kernels
+     * @param numStateArraysP optimizer state arrays of each Layer's Kernels
+     * @param pendingDeltasP whether each Layer's Kernels hold pending delta sums
+     * @param receptiveFieldsP receptive field of each Layer's Kernels
+     * @param numTrainingBytesP bytes of training state
+     */
+    private CheckpointHeader(int numChannelsP[], int nodesPerChannelP[], String precisionsP[], String activationsP[], String regularizationsP[], int numInputChannelsP[], int strideLengthsP[], int numStateArraysP[], boolean pendingDeltasP[], int receptiveFieldsP[][], long numTrainingBytesP) {
+    
+        numChannels = numChannelsP;
+        nodesPerChannel = nodesPerChannelP;
+        precisions = precisionsP;
+        activations = activationsP;
+        regularizations = regularizationsP;
+        numInputChannels = numInputChannelsP;
+        strideLengths = strideLengthsP;
+        numStateArrays = numStateArraysP;
+        pendingDeltas = pendingDeltasP;
+        receptiveFields = receptiveFieldsP;
+        numTrainingBytes = numTrainingBytesP;
+        
+        // Total length, number of weights, and bytes of state and delta sums.
+        long length = PREFIX_BYTES;
+        long weights = 0;
+        long stateBytes = 0;
+        long deltaBytes = 0;
+        for (int i = 0; i < numChannels.length; i++) {
+        
+            length += 7 * Integer.BYTES + receptiveFields[i].length * Integer.BYTES;
+            length += encodedLength(precisions[i]) + encodedLength(activations[i]) + encodedLength(regularizations[i]);
+            weights += i > 0 ? (long)numChannels[i] * getNumKernelWeights(i) : 0;
+            stateBytes += numStateArrays[i] > 0 ? (long)numChannels[i] * getNumKernelStateBytes(i) : 0;
+            deltaBytes += pendingDeltas[i] ? (long)numChannels[i] * getNumKernelDeltaBytes(i) : 0;
+        }
+        length = (length + Double.BYTES - 1) / Double.BYTES * Double.BYTES;
+        
+        // Test for exception.
+        if (length > MAX_HEADER_BYTES) {
+        
+            throw new InvalidCheckpointException("header of " + length + " bytes is too long");
+        }
+        
+        headerLength = (int)length;
+        numWeights = weights;
+        numStateBytes = stateBytes;
+        numDeltaBytes = deltaBytes;
+    }
+    
+    /**
+     * Describe a stack of Layers that have already been
+     * connected in order.
+     * @param layers Layers from input to output
+     * @return header for the Layers
+     * @throws InvalidCheckpointException if the Layers are not a connected stack or a function cannot be restored by class name
+     */
+    static CheckpointHeader describe(Layer layers[]) {
+    
+        return describe(layers, 0);
+    }
+    
+    /**
+     * Describe a stack of Layers that have already been
+     * connected in order, followed by training state.
+     * @param layers Layers from input to output
+     * @param numTrainingBytesP bytes of training state
+     * @return header for the Layers
+     * @throws InvalidCheckpointException if the Layers are not a connected stack, a function cannot be restored by class name, or the training state cannot fit in an array once padded
+     */
+    static CheckpointHeader describe(Layer layers[], long numTrainingBytesP) {
+    
+        // Test for exceptions.
+        if (layers == null || layers.length < 2) {
+        
+            throw new InvalidCheckpointException("'layers' must hold at least an input and an output Layer");
+        }
+        else if (numTrainingBytesP < 0 || numTrainingBytesP > Integer.MAX_VALUE - Double.BYTES) {
+        
+            throw new InvalidCheckpointException("training state of " + numTrainingBytesP + " bytes cannot fit in an array once padded");
+        }
+        for (int i = 0; i < layers.length; i++) {
+        
+            if (layers[i] == null) {
+            
+                throw new InvalidCheckpointException("Layer " + i + " must not be null");
+            }
+            else if (i == 0 && layers[i].getInputLayer() != null) {
+            
+                throw new InvalidCheckpointException("Layer 0 must not have an input Layer");
+            }
+            else if (i > 0 && layers[i].getInputLayer() != layers[i - 1]) {
+            
+                throw new InvalidCheckpointException("Layer " + i + " is not connected to Layer " + (i - 1));
+            }
+        }
+        
+        // Collect fields.
+        int numLayers = layers.length;
+        int numChannels[] = new int[numLayers];
+        int nodesPerChannel[] = new int[numLayers];
+        String precisions[] = new String[numLayers];
+        String activations[] = new String[numLayers];
+        String regularizations[] = new String[numLayers];
+        int numInputChannels[] = new int[numLayers];
+        int strideLengths[] = new int[numLayers];
+        int numStateArrays[] = new int[numLayers];
+        boolean pendingDeltas[] = new boolean[numLayers];
+        int receptiveFields[][] = new int[numLayers][];
+        for (int i = 0; i < numLayers; i++) {
+        
+            numChannels[i] = layers[i].getNodes().getNumChannels();
+            nodesPerChannel[i] = layers[i].getNodes().getNodesPerChannel();
+            precisions[i] = layers[i].getPrecision().name();
+            activations[i] = getRestorableName(layers[i].getActivationFunction(), i);
+            regularizations[i] = layers[i].getRegularizationFunction() != null ? getRestorableName(layers[i].getRegularizationFunction(), i) : "";
+            
+            // Kernel configuration (shared by every Kernel of a Layer).
+            Kernel kernels[] = layers[i].getKernels();
+            numInputChannels[i] = kernels.length > 0 ? kernels[0].getNumChannels() : 0;
+            strideLengths[i] = kernels.length > 0 ? kernels[0].getStrideLength() : 0;
+            receptiveFields[i] = kernels.length > 0 ? kernels[0].getReceptiveField() : new int[0];
+            
+            // Optimizer state (the same optimizer corrects a whole Layer).
+            numStateArrays[i] = kernels.length > 0 ? kernels[0].getNumStateArrays() : 0;
+            for (Kernel kernel : kernels) {
+            
+                if (kernel.getNumStateArrays() != numStateArrays[i]) {
+                
+                    throw new InvalidCheckpointException("Kernels of Layer " + i + " hold different optimizer state");
+                }
+                pendingDeltas[i] |= kernel.getNumDelta() > 0;
+            }
+        }
+        
+        return new CheckpointHeader(numChannels, nodesPerChannel, precisions, activations, regularizations, numInputChannels, strideLengths, numStateArrays, pendingDeltas, receptiveFields, numTrainingBytesP);
+    }
+    
+    /**
+     * Read a header from the start of a channel.
+     * @param channel channel to read from (left positioned at the first weight)
+     * @return decoded header
+     * @throws IOException if the channel cannot be read
+     * @throws InvalidCheckpointException if the header is malformed or does not match the channel's size
+     */
+    static CheckpointHeader read(FileChannel channel) throws IOException {
+    
+        // Read and test fixed prefix.
+        ByteBuffer prefix = ByteBuffer.allocate(PREFIX_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, prefix, 0);
+        prefix.flip();
+        int magic = prefix.getInt();
+        int version = prefix.getInt();
+        int numLayers = prefix.getInt();
+        int length = prefix.getInt();
+        long weights = prefix.getLong();
+        long trainingBytes = prefix.getLong();
+        if (magic != MAGIC) {
+        
+            throw new InvalidCheckpointException("file is not a checkpoint");
+        }
+        else if (version != VERSION) {
+        
+            throw new InvalidCheckpointException("checkpoint version " + version + " is not supported");
+        }
+        else if (numLayers < 2 || length < PREFIX_BYTES || length > MAX_HEADER_BYTES || length % Double.BYTES != 0 || weights < 0 || trainingBytes < 0) {
+        
+            throw new InvalidCheckpointException("checkpoint prefix is malformed");
+        }
+        
+        // Read Layer records.
+        ByteBuffer records = ByteBuffer.allocate(length - PREFIX_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, records, PREFIX_BYTES);
+        records.flip();
+        
+        // Decode fields.
+        int numChannels[] = new int[numLayers];
+        int nodesPerChannel[] = new int[numLayers];
+        String precisions[] = new String[numLayers];
+        String activations[] = new String[numLayers];
+        String regularizations[] = new String[numLayers];
+        int numInputChannels[] = new int[numLayers];
+        int strideLengths[] = new int[numLayers];
+        int numStateArrays[] = new int[numLayers];
+        boolean pendingDeltas[] = new boolean[numLayers];
+        int receptiveFields[][] = new int[numLayers][];
+        try {
+        
+            for (int i = 0; i < numLayers; i++) {
+            
+                numChannels[i] = records.getInt();
+                nodesPerChannel[i] = records.getInt();
+                precisions[i] = getString(records);
+                activations[i] = getString(records);
+                regularizations[i] = getString(records);
+                numInputChannels[i] = records.getInt();
+                strideLengths[i] = records.getInt();
+                numStateArrays[i] = records.getInt();
+                pendingDeltas[i] = getFlag(records);
+                receptiveFields[i] = new int[getLength(records, Integer.BYTES)];
+                records.asIntBuffer().get(receptiveFields[i]);
+                records.position(records.position() + receptiveFields[i].length * Integer.BYTES);
+            }
+        }
+        catch (BufferUnderflowException e) {
+        
+            throw new InvalidCheckpointException("checkpoint header is truncated");
+        }
+        
+        // Test decoded fields.
+        CheckpointHeader header = new CheckpointHeader(numChannels, nodesPerChannel, precisions, activations, regularizations, numInputChannels, strideLengths, numStateArrays, pendingDeltas, receptiveFields, trainingBytes);
+        header.testTopology();
+        if (header.headerLength != length || header.numWeights != weights) {
+        
+            throw new InvalidCheckpointException("checkpoint prefix does not match its Layer records");
+        }
+        else if (channel.size() != header.getLength()) {
+        
+            throw new InvalidCheckpointException("checkpoint holds " + channel.size() + " bytes while header describes " + header.getLength());
+        }
+        
+        channel.position(length);
+        return header;
+    }
+    
+    /**
+     * Encode this header, including its padding.
+     * @return little-endian header bytes ready to write
+     */
+    ByteBuffer encode() {
+    
+        ByteBuffer bytes = ByteBuffer.allocate(headerLength).order(ByteOrder.LITTLE_ENDIAN);
+        
+        // Fixed prefix.
+        bytes.putInt(MAGIC);
+        bytes.putInt(VERSION);
+        bytes.putInt(numChannels.length);
+        bytes.putInt(headerLength);
+        bytes.putLong(numWeights);
+        bytes.putLong(numTrainingBytes);
+        
+        // Layer records.
+        for (int i = 0; i < numChannels.length; i++) {
+        
+            bytes.putInt(numChannels[i]);
+            bytes.putInt(nodesPerChannel[i]);
+            putString(bytes, precisions[i]);
+            putString(bytes, activations[i]);
+            putString(bytes, regularizations[i]);
+            bytes.putInt(numInputChannels[i]);
+            bytes.putInt(strideLengths[i]);
+            bytes.putInt(numStateArrays[i]);
+            bytes.putInt(pendingDeltas[i] ? 1 : 0);
+            bytes.putInt(receptiveFields[i].length);
+            for (int j = 0; j < receptiveFields[i].length; j++) {
+            
+                bytes.putInt(receptiveFields[i][j]);
+            }
+        }
+        
+        // Padding is already zero.
+        bytes.position(0);
+        return bytes;
+    }
+    
+    /**
+     * Build and connect a new stack of Layers with this
+     * header's topology and every weight set to zero.
+     * @return Layers from input to output
+     * @throws InvalidCheckpointException if a function class cannot be instantiated
+     */
+    Layer[] createLayers() {
+    
+        Layer layers[] = new Layer[numChannels.length];
+        for (int i = 0; i < layers.length; i++) {
+        
+            // Functions and storage format.
+            Activation activationFunction = createActivation(i);
+            Regularization regularizationFunction = regularizations[i].isEmpty() ? null : newInstance(regularizations[i], Regularization.class);
+            Precision precision = Precision.valueOf(precisions[i]);
+            
+            if (i == 0) {
+            
+                layers[i] = new Layer(numChannels[i], nodesPerChannel[i], activationFunction, precision);
+            }
+            else {
+            
+                layers[i] = new Layer(numChannels[i], nodesPerChannel[i], activationFunction, regularizationFunction, receptiveFields[i], numInputChannels[i], strideLengths[i], precision);
+                layers[i].connect(layers[i - 1]);
+            }
+        }
+        
+        return layers;
+    }
+    
+    /**
+     * Return the number of bytes before the first weight.
+     * @return header length (a multiple of eight)
+     */
+    int getHeaderLength() {
+    
+        return headerLength;
+    }
+    
+    /**
+     * Return the number of weights following the header.
+     * @return number of weights
+     */
+    long getNumWeights() {
+    
+        return numWeights;
+    }
+    
+    /**
+     * Return the number of weights of each Kernel of a Layer.
+     * @param layerI index of Layer
+     * @return number of weights including bias (one for the input Layer)
+     */
+    int getNumKernelWeights(int layerI) {
+    
+        return numInputChannels[layerI] * receptiveFields[layerI].length + 1;
+    }
+    
+    /**
+     * Return the number of bytes of optimizer state
+     * following the weights.
+     * @return bytes of state (zero if no Layer has any)
+     */
+    long getNumStateBytes() {
+    
+        return numStateBytes;
+    }
+    
+    /**
+     * Return the number of bytes of the whole checkpoint.
+     * @return header, weight, state, delta sum, and training bytes
+     */
+    long getLength() {
+    
+        return headerLength + numWeights * Double.BYTES + numStateBytes + numDeltaBytes + getNumPaddedTrainingBytes();
+    }
+    
+    /**
+     * Return the number of bytes of training state at the
+     * end of the checkpoint.
+     * @return bytes of training state (zero if none)
+     */
+    long getNumTrainingBytes() {
+    
+        return numTrainingBytes;
+    }
+    
+    /**
+     * Return the number of bytes the training state
+     * takes up once padded.
+     * @return bytes of training state rounded up to a multiple of eight
+     */
+    long getNumPaddedTrainingBytes() {
+    
+        return (numTrainingBytes + Double.BYTES - 1) / Double.BYTES * Double.BYTES;
+    }
+    
+    /**
+     * Return whether a Layer's Kernels hold pending
+     * delta sums.
+     * @param layerI index of Layer
+     * @return whether delta sums are stored for the Layer
+     */
+    boolean hasPendingDeltas(int layerI) {
+    
+        return pendingDeltas[layerI];
+    }
+    
+    /**
+     * Return the number of pending delta sum bytes of
+     * each Kernel of a Layer.
+     * @param layerI index of Layer
+     * @return bytes of delta count and delta sums
+     */
+    long getNumKernelDeltaBytes(int layerI) {
+    
+        return Long.BYTES + (long)getNumKernelWeights(layerI) * Double.BYTES;
+    }
+    
+    /**
+     * Test whether another header describes the same
+     * Layers, whatever state they hold.
+     * @param other header to compare with
+     * @return whether shapes, precisions, functions, and Kernel configurations all match
+     */
+    boolean hasTopologyOf(CheckpointHeader other) {
+    
+        return Arrays.equals(numChannels, other.numChannels) && Arrays.equals(nodesPerChannel, other.nodesPerChannel) && Arrays.equals(precisions, other.precisions) && Arrays.equals(activations, other.activations) && Arrays.equals(regularizations, other.regularizations) && Arrays.equals(numInputChannels, other.numInputChannels) && Arrays.equals(strideLengths, other.strideLengths) && Arrays.deepEquals(receptiveFields, other.receptiveFields);
+    }
+    
+    /**
+     * Return the number of optimizer state arrays of
+     * each Kernel of a Layer.
+     * @param layerI index of Layer
+     * @return number of state arrays (zero if none)
+     */
+    int getNumStateArrays(int layerI) {
+    
+        return numStateArrays[layerI];
+    }
+    
+    /**
+     * Return the number of optimizer state bytes of each
+     * Kernel of a Layer.
+     * @param layerI index of Layer
+     * @return bytes of step count and state arrays
+     */
+    long getNumKernelStateBytes(int layerI) {
+    
+        return Long.BYTES + (long)numStateArrays[layerI] * getNumKernelWeights(layerI) * Double.BYTES;
+    }
+    
+    /**
+     * Create a new instance of a Layer's activation function.
+     * @param layerI index of Layer
+     * @return new activation function
+     * @throws InvalidCheckpointException if the function class cannot be instantiated
+     */
+    Activation createActivation(int layerI) {
+    
+        return newInstance(activations[layerI], Activation.class);
+    }
+    
+    /**
+     * Return the number of Layers.
+     * @return number of Layers including the input Layer
+     */
+    int getNumLayers() {
+    
+        return numChannels.length;
+    }
+    
+    /**
+     * Return the number of channels of a Layer.
+     * @param layerI index of Layer
+     * @return number of channels (Kernels for all but the input Layer)
+     */
+    int getNumChannels(int layerI) {
+    
+        return numChannels[layerI];
+    }
+    
+    /**
+     * Return the number of Nodes per channel of a Layer.
+     * @param layerI index of Layer
+     * @return Nodes per channel
+     */
+    int getNodesPerChannel(int layerI) {
+    
+        return nodesPerChannel[layerI];
+    }
+    
+    /**
+     * Return the number of input channels of a Layer's Kernels.
+     * @param layerI index of Layer
+     * @return number of input channels (zero for the input Layer)
+     */
+    int getNumInputChannels(int layerI) {
+    
+        return numInputChannels[layerI];
+    }
+    
+    /**
+     * Return the stride length of a Layer's Kernels.
+     * @param layerI index of Layer
+     * @return number of input Node columns to stride by
+     */
+    int getStrideLength(int layerI) {
+    
+        return strideLengths[layerI];
+    }
+    
+    /**
+     * Return the receptive field of a Layer's Kernels.
+     * @param layerI index of Layer
+     * @return each column of Connections' relative offset to the stride index
+     */
+    int[] getReceptiveField(int layerI) {
+    
+        return receptiveFields[layerI].clone();
+    }
+    
+    // HELPER METHODS.
+    
+    /**
+     * Test that decoded fields describe a stack that
+     * can be built.
+     * @throws InvalidCheckpointException if a field is out of range
+     */
+    private void testTopology() {
+    
+        for (int i = 0; i < numChannels.length; i++) {
+        
+            if (numChannels[i] <= 0 || nodesPerChannel[i] <= 0) {
+            
+                throw new InvalidCheckpointException("Layer " + i + " has an invalid shape");
+            }
+            else if (!isPrecision(precisions[i])) {
+            
+                throw new InvalidCheckpointException("Layer " + i + " has unknown precision '" + precisions[i] + "'");
+            }
+            else if (numStateArrays[i] < 0) {
+            
+                throw new InvalidCheckpointException("Layer " + i + " has a negative number of optimizer state arrays");
+            }
+            else if (i == 0 && (numInputChannels[i] != 0 || strideLengths[i] != 0 || numStateArrays[i] != 0 || pendingDeltas[i] || receptiveFields[i].length != 0 || !regularizations[i].isEmpty())) {
+            
+                throw new InvalidCheckpointException("Layer 0 must not have Kernels");
+            }
+            else if (i > 0 && (numInputChannels[i] != numChannels[i - 1] || strideLengths[i] <= 0 || receptiveFields[i].length == 0)) {
+            
+                throw new InvalidCheckpointException("Layer " + i + " has invalid Kernels for its input Layer");
+            }
+            else if (i > 0 && !precisions[i].equals(precisions[i - 1])) {
+            
+                throw new InvalidCheckpointException("Layer " + i + " and its input Layer have different precisions");
+            }
+        }
+    }
+    
+    /**
+     * Return the class name of a function after testing
+     * that it can be instantiated from that name.
+     * @param function function to name
+     * @param layerI index of the function's Layer
+     * @return fully qualified class name
+     * @throws InvalidCheckpointException if parameter 'function' is null or has no public no-argument constructor
+     */
+    private static String getRestorableName(Object function, int layerI) {
+    
+        // Test for exceptions.
+        if (function == null) {
+        
+            throw new InvalidCheckpointException("Layer " + layerI + " has no activation function");
+        }
+        try {
+        
+            function.getClass().getConstructor();
+        }
+        catch (NoSuchMethodException e) {
+        
+            throw new InvalidCheckpointException("Layer " + layerI + " uses " + function.getClass().getName() + ", which has no public no-argument constructor");
+        }
+        
+        return function.getClass().getName();
+    }
+    
+    /**
+     * Instantiate a function from its class name.
+     * @param <T> function type
+     * @param name fully qualified class name
+     * @param type interface the class must implement
+     * @return new instance
+     * @throws InvalidCheckpointException if the class cannot be found or instantiated
+     */
+    private static <T> T newInstance(String name, Class<T> type) {
+    
+        try {
+        
+            return Class.forName(name).asSubclass(type).getConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException | ClassCastException e) {
+        
+            throw new InvalidCheckpointException("cannot restore " + type.getSimpleName() + " '" + name + "': " + e);
+        }
+    }
+    
+    /**
+     * Check whether a name is a Precision constant.
+     * @param name name to check
+     * @return whether 'Precision.valueOf()' accepts the name
+     */
+    private static boolean isPrecision(String name) {
+    
+        for (Precision precision : Precision.values()) {
+        
+            if (precision.name().equals(name)) {
+            
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Return the number of bytes a string takes when encoded.
+     * @param value string to encode
+     * @return length prefix plus UTF-8 bytes
+     */
+    private static int encodedLength(String value) {
+    
+        return Integer.BYTES + value.getBytes(StandardCharsets.UTF_8).length;
+    }
+    
+    /**
+     * Put a length-prefixed UTF-8 string.
+     * @param bytes buffer to put into
+     * @param value string to put
+     */
+    private static void putString(ByteBuffer bytes, String value) {
+    
+        byte encoded[] = value.getBytes(StandardCharsets.UTF_8);
+        bytes.putInt(encoded.length);
+        bytes.put(encoded);
+    }
+    
+    /**
+     * Get a length-prefixed UTF-8 string.
+     * @param bytes buffer to get from
+     * @return decoded string
+     * @throws InvalidCheckpointException if the length is out of range
+     */
+    private static String getString(ByteBuffer bytes) {
+    
+        byte encoded[] = new byte[getLength(bytes, 1)];
+        bytes.get(encoded);
+        
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Get a flag stored as an int.
+     * @param bytes buffer to get from
+     * @return whether the flag is set
+     * @throws InvalidCheckpointException if the int is neither zero nor one
+     */
+    private static boolean getFlag(ByteBuffer bytes) {
+    
+        int value = bytes.getInt();
+        if (value != 0 && value != 1) {
+        
+            throw new InvalidCheckpointException("checkpoint flag holds " + value);
+        }
+        
+        return value == 1;
+    }
+    
+    /**
+     * Get a length prefix and test it against the
+     * bytes remaining.
+     * @param bytes buffer to get from
+     * @param elementBytes bytes per element
+     * @return number of elements
+     * @throws InvalidCheckpointException if the elements cannot fit in the bytes remaining
+     */
+    private static int getLength(ByteBuffer bytes, int elementBytes) {
+    
+        int length = bytes.getInt();
+        
+        // Test for exception.
+        if (length < 0 || (long)length * elementBytes > bytes.remaining()) {
+        
+            throw new InvalidCheckpointException("checkpoint header holds an invalid length");
+        }
+        
+        return length;
+    }
+    
+    /**
+     * Fill a buffer from a channel at an absolute position.
+     * @param channel channel to read from
+     * @param bytes buffer to fill
+     * @param position position in the channel to start at
+     * @throws IOException if the channel cannot be read
+     * @throws InvalidCheckpointException if the channel ends first
+     */
+    private static void readFully(FileChannel channel, ByteBuffer bytes, long position) throws IOException {
+    
+        while (bytes.hasRemaining()) {
+        
+            int numRead = channel.read(bytes, position);
+            if (numRead < 0) {
+            
+                throw new InvalidCheckpointException("checkpoint is truncated");
+            }
+            position += numRead;
+        }
+    }
+}
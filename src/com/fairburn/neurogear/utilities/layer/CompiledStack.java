@@ -0,0 +1,588 @@
+package com.fairburn.neurogear.utilities.layer;
+
+import java.util.concurrent.ForkJoinPool;
+import com.fairburn.neurogear.base.cost.Cost;
+import com.fairburn.neurogear.base.node.NodeBuffer;
+import com.fairburn.neurogear.base.optimizer.Optimizer;
+import com.fairburn.neurogear.utilities.kernel.KernelGroup;
+import com.fairburn.neurogear.utilities.kernel.NullDeltaException;
+
+/**
+ * A validated stack of connected Layers.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: CompiledStack.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Tests the topology, functions, and Kernel
+ * connections of a stack of Layers once when it is
+ * constructed and freezes the Kernels of every Layer
+ * into a KernelGroup. Afterwards each pass only tests
+ * the shape of its own arguments before running through
+ * the unchecked Kernel paths. Propagation overwrites
+ * activation sums and backpropagation consumes delta
+ * sums, so clearNodeSums() is never needed, and no
+ * deltas are ever relayed to the input Layer or below
+ * the first Layer being trained. The Layers must not be
+ * connected, disconnected, or used individually until
+ * the stack is released. Given a ForkJoinPool, every
+ * Layer's Kernels run in parallel (Layers themselves
+ * still run one after another). Inference contexts
+ * let other threads propagate through the same weights.
+ */
+public final class CompiledStack {
+    
+    // MEMBER VARIABLES.
+    
+    // Layers from input to output.
+    private final Layer layers[];
+    // Kernels of each Layer (null for the input Layer).
+    private final KernelGroup groups[];
+    // Cost function for output deltas.
+    private final Cost costFunction;
+    // Stack this stack replicates (null if not a replica).
+    private final CompiledStack master;
+    // Whether each Layer's Kernels are corrected (false for the input Layer).
+    private final boolean trainable[];
+    // First Layer backpropagated (layers.length if none are trained).
+    private final int firstTrainable;
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Construct a CompiledStack from Layers that have
+     * already been connected in order.
+     * @param layersP Layers from input to output
+     * @param costFunctionP cost function for output deltas
+     * @throws InvalidStackException if the Layers or cost function cannot be compiled
+     */
+    public CompiledStack(Layer layersP[], Cost costFunctionP) {
+    
+        this(layersP, costFunctionP, null);
+    }
+    
+    /**
+     * Construct a CompiledStack that runs each Layer's Kernels
+     * on a ForkJoinPool from Layers that have already been
+     * connected in order.
+     * @param layersP Layers from input to output
+     * @param costFunctionP cost function for output deltas
+     * @param pool pool to run Kernels on (null runs sequentially)
+     * @throws InvalidStackException if the Layers or cost function cannot be compiled
+     */
+    public CompiledStack(Layer layersP[], Cost costFunctionP, ForkJoinPool pool) {
+    
+        this(layersP, costFunctionP, pool, null, null);
+    }
+    
+    /**
+     * Construct a CompiledStack that only trains some of its
+     * Layers from Layers that have already been connected in
+     * order. Layers below the first trained Layer are never
+     * backpropagated, and no Layer relays deltas to the
+     * input Layer.
+     * @param layersP Layers from input to output
+     * @param costFunctionP cost function for output deltas
+     * @param pool pool to run Kernels on (null runs sequentially)
+     * @param trainableP whether each Layer's Kernels are corrected (null trains every Layer)
+     * @throws InvalidStackException if the Layers or cost function cannot be compiled
+     */
+    CompiledStack(Layer layersP[], Cost costFunctionP, ForkJoinPool pool, boolean trainableP[]) {
+    
+        this(layersP, costFunctionP, pool, trainableP, null);
+    }
+    
+    /**
+     * Construct a CompiledStack from Layers that have
+     * already been connected in order.
+     * @param layersP Layers from input to output
+     * @param costFunctionP cost function for output deltas
+     * @param pool pool to run Kernels on (null runs sequentially)
+     * @param trainableP whether each Layer's Kernels are corrected (null trains every Layer)
+     * @param masterP stack the Layers replicate (null if not a replica)
+     * @throws InvalidStackException if the Layers or cost function cannot be compiled
+     */
+    private CompiledStack(Layer layersP[], Cost costFunctionP, ForkJoinPool pool, boolean trainableP[], CompiledStack masterP) {
+    
+        // Test for exceptions.
+        if (layersP == null || layersP.length < 2) {
+        
+            throw new InvalidStackException("'layersP' must hold at least an input and an output Layer");
+        }
+        else if (costFunctionP == null) {
+        
+            throw new InvalidStackException("'costFunctionP' must not be null");
+        }
+        else if (trainableP != null && trainableP.length != layersP.length) {
+        
+            throw new InvalidStackException("'trainableP' must hold one entry per Layer");
+        }
+        for (int i = 0; i < layersP.length; i++) {
+        
+            if (layersP[i] == null) {
+            
+                throw new InvalidStackException("Layer " + i + " must not be null");
+            }
+            else if (layersP[i].getActivationFunction() == null) {
+            
+                throw new InvalidStackException("Layer " + i + " has no activation function");
+            }
+            else if (i == 0 && layersP[i].getInputLayer() != null) {
+            
+                throw new InvalidStackException("Layer 0 must not have an input Layer");
+            }
+            else if (i > 0 && layersP[i].getInputLayer() != layersP[i - 1]) {
+            
+                throw new InvalidStackException("Layer " + i + " is not connected to Layer " + (i - 1));
+            }
+            else if (i > 0 && layersP[i].getRegularizationFunction() == null) {
+            
+                throw new InvalidStackException("Layer " + i + " has no regularization function");
+            }
+        }
+        
+        layers = layersP.clone();
+        costFunction = costFunctionP;
+        master = masterP;
+        
+        // Trained Layers (never the input Layer).
+        trainable = new boolean[layers.length];
+        int first = layers.length;
+        for (int i = layers.length - 1; i > 0; i--) {
+        
+            trainable[i] = trainableP == null || trainableP[i];
+            first = trainable[i] ? i : first;
+        }
+        firstTrainable = first;
+        
+        // Freeze Kernels (releasing any already frozen on failure).
+        groups = new KernelGroup[layers.length];
+        try {
+        
+            for (int i = 1; i < layers.length; i++) {
+            
+                groups[i] = new KernelGroup(layers[i].getKernels(), pool);
+            }
+        }
+        catch (RuntimeException e) {
+        
+            release();
+            throw e;
+        }
+    }
+    
+    /**
+     * Return this stack's input Layer.
+     * @return input Layer
+     */
+    public Layer getInputLayer() {
+    
+        return layers[0];
+    }
+    
+    /**
+     * Return this stack's output Layer.
+     * @return output Layer
+     */
+    public Layer getOutputLayer() {
+    
+        return layers[layers.length - 1];
+    }
+    
+    /**
+     * Propagate a batch of samples through every Layer.
+     * @param initialValues initial activation sums for each sample where rows are channels and columns are locations
+     * @throws InvalidStackException if parameter 'initialValues' does not match the input Layer
+     */
+    public void propagate(double initialValues[][][]) {
+    
+        // Test for exceptions.
+        testInitialValues(initialValues, layers[0].getNodes().getNumChannels(), layers[0].getNodes().getNodesPerChannel());
+        
+        // Size every Layer for this batch (sums are overwritten).
+        for (int i = 0; i < layers.length; i++) {
+        
+            layers[i].getNodes().setBatchSize(initialValues.length);
+        }
+        
+        setInitialValues(layers[0].getNodes(), initialValues);
+        layers[0].getNodes().triggerActivations(layers[0].getActivationFunction());
+        
+        // Propagate remaining Layers.
+        for (int i = 1; i < layers.length; i++) {
+        
+            groups[i].propagate();
+            layers[i].getNodes().triggerActivations(layers[i].getActivationFunction());
+        }
+    }
+    
+    /**
+     * Backpropagate the current batch through every Layer.
+     * @param targetValues target values for each sample where rows are channels and columns are locations
+     * @throws InvalidDimensionException if parameter 'targetValues' does not hold one entry per sample
+     */
+    public void backpropagate(double targetValues[][][]) {
+    
+        backpropagate(targetValues, true);
+    }
+    
+    /**
+     * Correct the Kernels of every Layer using each Layer's
+     * regularization function (must follow at least
+     * one backpropagation).
+     * @param learningRate learning factor
+     * @param regParameter regularization parameter
+     * @throws NullDeltaException if no deltas have been accumulated since the last correction
+     */
+    public void correct(double learningRate, double regParameter) {
+    
+        // Test for exception.
+        testForDeltas();
+        
+        for (int i = firstTrainable; i < layers.length; i++) {
+        
+            if (trainable[i]) {
+            
+                groups[i].correct(learningRate, layers[i].getRegularizationFunction(), regParameter);
+            }
+        }
+    }
+    
+    /**
+     * Correct the Kernels of every Layer with an optimizer
+     * using each Layer's regularization function (must
+     * follow at least one backpropagation).
+     * @param learningRate learning factor
+     * @param regParameter regularization parameter
+     * @param optimizer update rule to apply
+     * @throws InvalidStackException if parameter 'optimizer' is null
+     * @throws NullDeltaException if no deltas have been accumulated since the last correction
+     */
+    public void correct(double learningRate, double regParameter, Optimizer optimizer) {
+    
+        // Test for exceptions.
+        if (optimizer == null) {
+        
+            throw new InvalidStackException("'optimizer' must not be null");
+        }
+        testForDeltas();
+        
+        for (int i = firstTrainable; i < layers.length; i++) {
+        
+            if (trainable[i]) {
+            
+                groups[i].correct(learningRate, layers[i].getRegularizationFunction(), regParameter, optimizer);
+            }
+        }
+    }
+    
+    /**
+     * Correct the Kernels of every Layer without locks so that
+     * this stack and its replicas may correct their shared
+     * weights concurrently (must follow at least one
+     * backpropagation; updates that race with one
+     * another may be lost).
+     * @param learningRate learning factor
+     * @param regParameter regularization parameter
+     * @throws NullDeltaException if no deltas have been accumulated since the last correction
+     */
+    public void correctShared(double learningRate, double regParameter) {
+    
+        // Test for exception.
+        testForDeltas();
+        
+        for (int i = firstTrainable; i < layers.length; i++) {
+        
+            if (trainable[i]) {
+            
+                groups[i].correctShared(learningRate, layers[i].getRegularizationFunction(), regParameter);
+            }
+        }
+    }
+    
+    /**
+     * Return the total absolute difference between the
+     * output Layer's activation values and target values
+     * for the current batch.
+     * @param targetValues target values for each sample where rows are channels and columns are locations
+     * @return sum of |activation - target| over every output Node of every sample
+     */
+    public double getAbsoluteError(double targetValues[][][]) {
+    
+        // Output Nodes.
+        NodeBuffer outputNodes = getOutputLayer().getNodes();
+        
+        // Total error.
+        double error = 0.0;
+        
+        for (int sampleI = 0; sampleI < targetValues.length; sampleI++) {
+        
+            for (int channelI = 0; channelI < outputNodes.getNumChannels(); channelI++) {
+            
+                // Start of channel.
+                int offset = sampleI * outputNodes.size() + channelI * outputNodes.getNodesPerChannel();
+                
+                for (int nodeI = 0; nodeI < outputNodes.getNodesPerChannel(); nodeI++) {
+                
+                    error += Math.abs(outputNodes.getActivationValue(offset + nodeI) - targetValues[sampleI][channelI][nodeI]);
+                }
+            }
+        }
+        
+        return error;
+    }
+    
+    /**
+     * Create a sequential replica of this stack whose Layers
+     * have their own Nodes and delta sums but share this
+     * stack's weights, so that several threads can
+     * backpropagate different samples at the same time.
+     * @return compiled replica
+     */
+    public CompiledStack replicate() {
+    
+        // Replicate and connect Layers.
+        Layer replicaLayers[] = new Layer[layers.length];
+        for (int i = 0; i < layers.length; i++) {
+        
+            replicaLayers[i] = layers[i].replicate();
+            
+            if (i > 0) {
+            
+                replicaLayers[i].connect(replicaLayers[i - 1]);
+            }
+        }
+        
+        return new CompiledStack(replicaLayers, costFunction, null, trainable, this);
+    }
+    
+    /**
+     * Move the Kernel delta sums of a replica into
+     * this stack's, leaving the replica's cleared.
+     * @param replica stack created by this stack's replicate()
+     * @throws InvalidStackException if parameter 'replica' was not replicated from this stack
+     */
+    public void addDeltas(CompiledStack replica) {
+    
+        // Test for exception.
+        if (replica == null || replica.master != this) {
+        
+            throw new InvalidStackException("'replica' was not replicated from this stack");
+        }
+        
+        for (int i = firstTrainable; i < layers.length; i++) {
+        
+            if (trainable[i]) {
+            
+                groups[i].addDeltas(replica.groups[i]);
+            }
+        }
+    }
+    
+    /**
+     * Create an inference context with its own Nodes
+     * for every Layer that reads this stack's weights,
+     * so that several threads can propagate different
+     * samples at the same time.
+     * @return inference context
+     */
+    public InferenceContext createContext() {
+    
+        return new InferenceContext(this);
+    }
+    
+    /**
+     * Unfreeze every Layer's Kernels so that the
+     * Layers may be used individually again (this
+     * stack must not be used afterwards).
+     */
+    public void release() {
+    
+        for (int i = 1; i < groups.length; i++) {
+        
+            if (groups[i] != null) {
+            
+                groups[i].release();
+            }
+        }
+    }
+    
+    // HELPER METHODS.
+    
+    /**
+     * Test that every trained Layer has accumulated deltas
+     * since its last correction, so that no gradient is
+     * divided by a zero delta count.
+     * @throws NullDeltaException if a trained Layer has no deltas
+     */
+    private void testForDeltas() {
+    
+        for (int i = firstTrainable; i < layers.length; i++) {
+        
+            if (trainable[i] && !groups[i].hasDeltas()) {
+            
+                throw new NullDeltaException("'correct()' called with no deltas");
+            }
+        }
+    }
+    
+    /**
+     * Backpropagate the current batch through every Layer.
+     * @param targetValues target values for each sample where rows are channels and columns are locations
+     * @param accumulate whether to add deltas to the delta sums of trained Kernels (otherwise only each Layer's delta values are computed)
+     * @throws InvalidDimensionException if parameter 'targetValues' does not hold one entry per sample
+     */
+    void backpropagate(double targetValues[][][], boolean accumulate) {
+    
+        // Set output delta sums.
+        getOutputLayer().getNodes().setInitialDeltas(costFunction, getOutputLayer().getActivationFunction(), targetValues);
+        
+        // Backpropagate from output to first trained Layer (deltas below it are never read).
+        for (int i = layers.length - 1; i >= firstTrainable; i--) {
+        
+            layers[i].getNodes().triggerDeltas(layers[i].getActivationFunction());
+            groups[i].backpropagate(accumulate && trainable[i], i > firstTrainable);
+        }
+    }
+    
+    /**
+     * Return whether a Layer's Kernels are corrected.
+     * @param layerI index of Layer
+     * @return whether the Layer is trained
+     */
+    boolean isTrained(int layerI) {
+    
+        return trainable[layerI];
+    }
+    
+    /**
+     * Add the deltas of the current batch to the delta
+     * sums of a trained Layer's Kernels (must follow
+     * a backpropagation that did not accumulate).
+     * @param layerI index of trained Layer
+     */
+    void accumulate(int layerI) {
+    
+        groups[layerI].backpropagate(true, false);
+    }
+    
+    /**
+     * Append the current batches of replicas to this
+     * stack's batch in order, copying every Layer's
+     * activation and delta values, so that this stack
+     * holds the whole batch.
+     * @param replicas stacks created by this stack's replicate()
+     */
+    void gather(CompiledStack replicas[]) {
+    
+        // Size of gathered batch.
+        int batchSize = layers[0].getNodes().getBatchSize();
+        for (int i = 0; i < replicas.length; i++) {
+        
+            batchSize += replicas[i].layers[0].getNodes().getBatchSize();
+        }
+        
+        for (int i = 0; i < layers.length; i++) {
+        
+            // First sample of next replica.
+            int sampleStart = layers[i].getNodes().getBatchSize();
+            
+            layers[i].getNodes().setBatchSize(batchSize);
+            for (int j = 0; j < replicas.length; j++) {
+            
+                layers[i].getNodes().copySamples(replicas[j].layers[i].getNodes(), sampleStart);
+                sampleStart += replicas[j].layers[i].getNodes().getBatchSize();
+            }
+        }
+    }
+    
+    /**
+     * Discard the delta sums of every trained Kernel and
+     * the activation and delta sums of every Layer, so
+     * that an unfinished pass leaves nothing behind.
+     */
+    void clearDeltas() {
+    
+        for (int i = 0; i < layers.length; i++) {
+        
+            layers[i].getNodes().clearSums();
+            
+            if (isTrained(i)) {
+            
+                groups[i].clearDeltas();
+            }
+        }
+    }
+    
+    /**
+     * Return this stack's Layers.
+     * @return Layers from input to output
+     */
+    Layer[] getLayers() {
+    
+        return layers;
+    }
+    
+    /**
+     * Return this stack's Kernel groups.
+     * @return Kernels of each Layer (null for the input Layer)
+     */
+    KernelGroup[] getGroups() {
+    
+        return groups;
+    }
+    
+    /**
+     * Test that a batch of samples matches an input Layer.
+     * @param initialValues initial activation sums for each sample where rows are channels and columns are locations
+     * @param numChannels number of channels in the input Layer
+     * @param nodesPerChannel number of Nodes per channel in the input Layer
+     * @throws InvalidStackException if parameter 'initialValues' does not match the input Layer
+     */
+    static void testInitialValues(double initialValues[][][], int numChannels, int nodesPerChannel) {
+    
+        // Test for exceptions.
+        if (initialValues == null || initialValues.length == 0) {
+        
+            throw new InvalidStackException("'initialValues' must hold at least one sample");
+        }
+        for (int sampleI = 0; sampleI < initialValues.length; sampleI++) {
+        
+            if (initialValues[sampleI].length != numChannels) {
+            
+                throw new InvalidStackException("sample " + sampleI + " has " + initialValues[sampleI].length + " channel(s) while input Layer has " + numChannels + " channel(s)");
+            }
+            for (int channelI = 0; channelI < initialValues[sampleI].length; channelI++) {
+            
+                if (initialValues[sampleI][channelI].length != nodesPerChannel) {
+                
+                    throw new InvalidStackException("sample " + sampleI + " channel " + channelI + " does not match input Layer's Nodes per channel");
+                }
+            }
+        }
+    }
+    
+    /**
+     * Copy a tested batch of samples into the activation
+     * sums of an input NodeBuffer already sized for it.
+     * @param inputNodes Nodes shaped like the input Layer's
+     * @param initialValues initial activation sums for each sample where rows are channels and columns are locations
+     */
+    static void setInitialValues(NodeBuffer inputNodes, double initialValues[][][]) {
+    
+        // Input activation sums.
+        double activationSums[] = inputNodes.getActivationSums();
+        
+        for (int sampleI = 0; sampleI < initialValues.length; sampleI++) {
+        
+            for (int channelI = 0; channelI < inputNodes.getNumChannels(); channelI++) {
+            
+                System.arraycopy(initialValues[sampleI][channelI], 0, activationSums, sampleI * inputNodes.size() + channelI * inputNodes.getNodesPerChannel(), inputNodes.getNodesPerChannel());
+            }
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package com.fairburn.neurogear.utilities.layer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import com.fairburn.neurogear.base.optimizer.Optimizer;
+import com.fairburn.neurogear.base.optimizer.SGDOptimizer;
+import com.fairburn.neurogear.data.dataset.DataSet;
+import com.fairburn.neurogear.data.datum.Datum;
+
+/**
+ * Data-parallel mini-batch trainer for a CompiledStack.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: DataParallelTrainer.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Splits every mini-batch into contiguous
+ * shards, one per worker. The first worker is the stack
+ * itself and the others are replicas that share its
+ * weights but have their own Nodes and delta sums. Each
+ * worker propagates its shard and backpropagates its
+ * deltas on the executor without adding them to its
+ * Kernels' delta sums. The shards are then gathered into
+ * the stack in worker order, each trained Layer's delta
+ * sums are accumulated over the whole mini-batch (one
+ * Layer per task) and the stack corrects its weights
+ * once, so every worker sees the update. Since every
+ * delta sum receives its terms in the same order as when
+ * a single thread backpropagates the whole mini-batch,
+ * the update is the same one a single thread would make.
+ * If a worker fails, every delta sum is cleared before
+ * the failure is rethrown. Like 'Network.fit()',
+ * 'train()' returns the mean absolute error over every
+ * output Node of every sample, and 'trainEpoch()' reports
+ * the same mean over the whole epoch.
+ */
+public final class DataParallelTrainer {
+    
+    // MEMBER VARIABLES.
+    
+    // Stack being trained (first worker).
+    private final CompiledStack stack;
+    // Replicas of stack (remaining workers).
+    private final CompiledStack replicas[];
+    // Executor to run workers on.
+    private final ExecutorService executor;
+    // Update rule for the stack.
+    private Optimizer optimizer;
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Construct a DataParallelTrainer for a stack.
+     * @param stackP stack to train
+     * @param numWorkers number of shards per mini-batch (including the stack itself)
+     * @param executorP executor to run workers on
+     * @throws InvalidStackException if parameter 'stackP' or 'executorP' is null or 'numWorkers' is not greater than zero
+     */
+    public DataParallelTrainer(CompiledStack stackP, int numWorkers, ExecutorService executorP) {
+    
+        // Test for exceptions.
+        if (stackP == null) {
+        
+            throw new InvalidStackException("'stackP' must not be null");
+        }
+        else if (numWorkers <= 0) {
+        
+            throw new InvalidStackException("'numWorkers' must be greater than zero");
+        }
+        else if (executorP == null) {
+        
+            throw new InvalidStackException("'executorP' must not be null");
+        }
+        
+        stack = stackP;
+        executor = executorP;
+        optimizer = new SGDOptimizer();
+        
+        // Create replicas.
+        replicas = new CompiledStack[numWorkers - 1];
+        for (int i = 0; i < replicas.length; i++) {
+        
+            replicas[i] = stack.replicate();
+        }
+    }
+    
+    /**
+     * Return the stack being trained.
+     * @return trained stack
+     */
+    public CompiledStack getStack() {
+    
+        return stack;
+    }
+    
+    /**
+     * Return the number of workers each mini-batch is split across.
+     * @return number of workers (including the stack itself)
+     */
+    public int getNumWorkers() {
+    
+        return replicas.length + 1;
+    }
+    
+    /**
+     * Return the optimizer used to correct the stack.
+     * @return update rule
+     */
+    public Optimizer getOptimizer() {
+    
+        return optimizer;
+    }
+    
+    /**
+     * Set the optimizer used to correct the stack
+     * (each Kernel's optimizer state is reset on
+     * its next correction).
+     * @param optimizerP update rule to apply
+     * @throws InvalidStackException if parameter 'optimizerP' is null
+     */
+    public void setOptimizer(Optimizer optimizerP) {
+    
+        // Test for exception.
+        if (optimizerP == null) {
+        
+            throw new InvalidStackException("'optimizerP' must not be null");
+        }
+        
+        optimizer = optimizerP;
+    }
+    
+    /**
+     * Train on a single mini-batch and correct the
+     * stack's weights once.
+     * @param initialValues initial activation sums for each sample where rows are channels and columns are locations
+     * @param targetValues target values for each sample where rows are channels and columns are locations
+     * @param learningRate learning factor
+     * @param regParameter regularization parameter
+     * @return mean absolute error of the output Layer before correction
+     * @throws InvalidStackException if parameters 'initialValues' and 'targetValues' are empty or hold different numbers of samples
+     */
+    public double train(double initialValues[][][], double targetValues[][][], double learningRate, double regParameter) {
+    
+        return trainBatch(initialValues, targetValues, learningRate, regParameter);
+    }
+    
+    /**
+     * Train on every full mini-batch left in a DataSet's
+     * shuffle buffer (data must already be scaled).
+     * @param dataSet data to train on
+     * @param batchSize number of samples per mini-batch
+     * @param learningRate learning factor
+     * @param regParameter regularization parameter
+     * @return throughput and error of the epoch
+     * @throws InvalidStackException if parameter 'dataSet' is null or 'batchSize' is not greater than zero
+     */
+    public TrainingReport trainEpoch(DataSet dataSet, int batchSize, double learningRate, double regParameter) {
+    
+        // Test for exceptions.
+        if (dataSet == null) {
+        
+            throw new InvalidStackException("'dataSet' must not be null");
+        }
+        else if (batchSize <= 0) {
+        
+            throw new InvalidStackException("'batchSize' must be greater than zero");
+        }
+        
+        // Epoch totals.
+        long startTime = System.nanoTime();
+        long numSamples = 0;
+        double error = 0.0;
+        
+        while (dataSet.hasNextBuffer(batchSize)) {
+        
+            // Next mini-batch.
+            double batchRaw[][][] = new double[batchSize][][];
+            double batchLabel[][][] = new double[batchSize][][];
+            for (int i = 0; i < batchSize; i++) {
+            
+                Datum curDatum = dataSet.getNextBuffer();
+                batchRaw[i] = curDatum.getRaw();
+                batchLabel[i] = curDatum.getLabel();
+            }
+            
+            error += trainBatch(batchRaw, batchLabel, learningRate, regParameter) * batchSize;
+            numSamples += batchSize;
+        }
+        
+        return new TrainingReport(numSamples, System.nanoTime() - startTime, numSamples > 0 ? error / numSamples : 0.0);
+    }
+    
+    /**
+     * Release every replica's Kernels (the stack
+     * itself is left compiled and this trainer
+     * must not be used afterwards).
+     */
+    public void release() {
+    
+        for (int i = 0; i < replicas.length; i++) {
+        
+            replicas[i].release();
+        }
+    }
+    
+    // HELPER METHODS.
+    
+    /**
+     * Train on a single mini-batch and correct the
+     * stack's weights once.
+     * @param initialValues initial activation sums for each sample
+     * @param targetValues target values for each sample
+     * @param learningRate learning factor
+     * @param regParameter regularization parameter
+     * @return mean absolute error of the output Layer before correction
+     */
+    private double trainBatch(double initialValues[][][], double targetValues[][][], double learningRate, double regParameter) {
+    
+        // Test for exception.
+        if (initialValues == null || targetValues == null || initialValues.length == 0 || initialValues.length != targetValues.length) {
+        
+            throw new InvalidStackException("'initialValues' and 'targetValues' must hold the same number of samples (at least one)");
+        }
+        
+        // Workers with at least one sample.
+        int numActive = Math.min(getNumWorkers(), initialValues.length);
+        
+        // Run one shard per worker.
+        List<Callable<Void>> shards = new ArrayList<>(numActive);
+        double errors[] = new double[numActive];
+        for (int i = 0; i < numActive; i++) {
+        
+            // Worker and its shard.
+            CompiledStack worker = i == 0 ? stack : replicas[i - 1];
+            int workerI = i;
+            int shardStart = (int)((long)i * initialValues.length / numActive);
+            int shardEnd = (int)((long)(i + 1) * initialValues.length / numActive);
+            
+            shards.add(() -> {
+            
+                // Shard targets.
+                double shardTargets[][][] = Arrays.copyOfRange(targetValues, shardStart, shardEnd);
+                
+                worker.propagate(Arrays.copyOfRange(initialValues, shardStart, shardEnd));
+                errors[workerI] = worker.getAbsoluteError(shardTargets);
+                worker.backpropagate(shardTargets, false);
+                return null;
+            });
+        }
+        
+        try {
+        
+            runAll(executor, shards);
+            
+            // Gather shards into the stack in worker order.
+            stack.gather(Arrays.copyOf(replicas, numActive - 1));
+            
+            // Accumulate each trained Layer over the whole mini-batch.
+            List<Callable<Void>> accumulations = new ArrayList<>();
+            for (int i = 1; i < stack.getLayers().length; i++) {
+            
+                if (stack.isTrained(i)) {
+                
+                    int layerI = i;
+                    accumulations.add(() -> {
+                    
+                        stack.accumulate(layerI);
+                        return null;
+                    });
+                }
+            }
+            if (!accumulations.isEmpty()) {
+            
+                runAll(executor, accumulations);
+            }
+            
+            stack.correct(learningRate, regParameter, optimizer);
+        }
+        catch (RuntimeException e) {
+        
+            // Leave no partial deltas behind.
+            stack.clearDeltas();
+            for (int i = 0; i < replicas.length; i++) {
+            
+                replicas[i].clearDeltas();
+            }
+            throw e;
+        }
+        
+        // Total error.
+        double error = 0.0;
+        for (int i = 0; i < numActive; i++) {
+        
+            error += errors[i];
+        }
+        
+        return error / (initialValues.length * stack.getOutputLayer().getNodes().size());
+    }
+    
+    /**
+     * Run tasks on an executor (the last on this thread)
+     * and wait for all of them, rethrowing the first failure.
+     * @param executor executor to run tasks on
+     * @param tasks tasks to run (at least one)
+     */
+    static void runAll(ExecutorService executor, List<Callable<Void>> tasks) {
+    
+        // Run last task on this thread.
+        Callable<Void> last = tasks.remove(tasks.size() - 1);
+        List<Future<Void>> futures = new ArrayList<>(tasks.size());
+        for (Callable<Void> task : tasks) {
+        
+            futures.add(executor.submit(task));
+        }
+        
+        RuntimeException failure = null;
+        try {
+        
+            last.call();
+        }
+        catch (RuntimeException e) {
+        
+            failure = e;
+        }
+        catch (Exception e) {
+        
+            failure = new IllegalStateException(e);
+        }
+        
+        // Wait for remaining tasks.
+        for (Future<Void> future : futures) {
+        
+            try {
+            
+                future.get();
+            }
+            catch (InterruptedException e) {
+            
+                Thread.currentThread().interrupt();
+                failure = failure != null ? failure : new IllegalStateException(e);
+            }
+            catch (ExecutionException e) {
+            
+                if (failure == null) {
+                
+                    failure = e.getCause() instanceof RuntimeException ? (RuntimeException)e.getCause() : new IllegalStateException(e.getCause());
+                }
+            }
+        }
+        
+        if (failure != null) {
+        
+            throw failure;
+        }
+    }
+}
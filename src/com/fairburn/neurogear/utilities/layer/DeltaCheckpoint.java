@@ -0,0 +1,677 @@
+package com.fairburn.neurogear.utilities.layer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+import com.fairburn.neurogear.base.optimizer.Optimizer;
+
+/**
+ * Incremental checkpoints that hold only what changed
+ * since the previous checkpoint.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: DeltaCheckpoint.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: A delta splits a checkpoint's payload (the
+ * weights and optimizer state after its header) into
+ * fixed-size blocks and keeps only the blocks that differ
+ * from the previous checkpoint, each XORed with the
+ * previous bytes and split into byte planes (every
+ * value's first byte, then every second byte, and so on).
+ * Small updates leave the sign, exponent, and high
+ * mantissa bits unchanged, so late in training the high
+ * planes of a changed block are all zero and are left
+ * out. Blocks are encoded with nothing more than copies,
+ * so a delta writes at close to the speed of a full
+ * checkpoint while holding only the bytes that changed,
+ * and a general-purpose compressor can still be run over
+ * retained files if storage matters more. Nothing is quantized, so replaying a
+ * chain of deltas onto the full checkpoint they start
+ * from rebuilds every later checkpoint exactly. Each delta
+ * also holds the new header and the CRC-32C checksums of
+ * the payload before and after it, so a delta applied out
+ * of order or to the wrong checkpoint is rejected.
+ * 
+ * A delta file holds a fixed 72-byte little-endian prefix
+ * (magic number, format version, header length, block
+ * length, run id, previous payload length and checksum,
+ * payload length and checksum, number of changed blocks,
+ * and the offset of the block index), the new header,
+ * the changed blocks in ascending order, and the block
+ * index as one int per changed block. Each changed block
+ * is a byte whose bit j is set if plane j is not all
+ * zero, followed by those planes in order and then, if
+ * the block does not end on a whole value (only the last
+ * block of a payload can), its remaining changed bytes
+ * as they are. An AsyncCheckpointer writes
+ * sequence-numbered chains of full checkpoints and
+ * deltas that 'getChain()' can collect, and gives every
+ * delta it writes the same random run id, so a chain
+ * that mixes deltas from different runs is rejected.
+ */
+public abstract class DeltaCheckpoint {
+    
+    // MEMBER VARIABLES.
+    
+    // Marks a delta ("NGDL" when read as little-endian bytes).
+    static final int MAGIC = 0x4C44474E;
+    // Format version written by this class.
+    static final int VERSION = 2;
+    // Bytes in the fixed prefix.
+    private static final int PREFIX_BYTES = 72;
+    // Bytes per block compared between checkpoints.
+    static final int BLOCK_BYTES = 1 << 12;
+    // Suffix of a delta's file name after its sequence number.
+    private static final String DELTA_SUFFIX = ".delta";
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Collect the files needed to rebuild one checkpoint
+     * of a chain written by an AsyncCheckpointer in delta
+     * mode: the latest full checkpoint at or before it and
+     * every delta after that up to it.
+     * @param path path the AsyncCheckpointer was given
+     * @param sequence sequence number of the checkpoint to rebuild
+     * @return full checkpoint followed by deltas in order
+     * @throws InvalidCheckpointException if parameter 'path' is null, 'sequence' is negative, or a file of the chain is missing
+     */
+    public static Path[] getChain(Path path, long sequence) {
+    
+        // Test for exceptions.
+        if (path == null) {
+        
+            throw new InvalidCheckpointException("'path' must not be null");
+        }
+        else if (sequence < 0) {
+        
+            throw new InvalidCheckpointException("'sequence' must not be negative");
+        }
+        
+        // Walk back to latest full checkpoint.
+        long baseSequence = sequence;
+        while (!Files.exists(getPath(path, baseSequence, false))) {
+        
+            if (!Files.exists(getPath(path, baseSequence, true)) || baseSequence == 0) {
+            
+                throw new InvalidCheckpointException("checkpoint " + baseSequence + " of '" + path + "' is missing");
+            }
+            baseSequence--;
+        }
+        
+        Path chain[] = new Path[(int)(sequence - baseSequence + 1)];
+        chain[0] = getPath(path, baseSequence, false);
+        for (int i = 1; i < chain.length; i++) {
+        
+            chain[i] = getPath(path, baseSequence + i, true);
+        }
+        
+        return chain;
+    }
+    
+    /**
+     * Rebuild a full checkpoint by replaying deltas onto
+     * the full checkpoint they start from, atomically
+     * replacing any existing file.
+     * @param chain full checkpoint followed by deltas in order
+     * @param path file to write the rebuilt checkpoint to
+     * @throws IOException if a file cannot be read or written
+     * @throws InvalidCheckpointException if a file is malformed or the deltas do not follow on from each other or from different runs
+     */
+    public static void restore(Path chain[], Path path) throws IOException {
+    
+        // Test for exceptions.
+        if (chain == null || chain.length == 0 || path == null) {
+        
+            throw new InvalidCheckpointException("'chain' must not be null or empty and 'path' must not be null");
+        }
+        for (int i = 0; i < chain.length; i++) {
+        
+            if (chain[i] == null) {
+            
+                throw new InvalidCheckpointException("'chain' must not contain null");
+            }
+        }
+        
+        Path temporary = Checkpoint.getTemporaryPath(path);
+        try {
+        
+            Files.copy(chain[0], temporary, StandardCopyOption.REPLACE_EXISTING);
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            
+                // Checksum of full checkpoint and run of first delta.
+                int headerLength = CheckpointHeader.read(channel).getHeaderLength();
+                long checksum = checksum(channel, headerLength);
+                long runId = chain.length > 1 ? getRunId(chain[1]) : 0;
+                
+                for (int i = 1; i < chain.length; i++) {
+                
+                    checksum = apply(channel, chain[i], headerLength, checksum, runId);
+                }
+                
+                // Test rebuilt checkpoint.
+                CheckpointHeader.read(channel);
+                if (chain.length > 1 && checksum(channel, headerLength) != checksum) {
+                
+                    throw new InvalidCheckpointException("rebuilt checkpoint does not match the checksum of its last delta");
+                }
+                channel.force(true);
+            }
+            
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException | RuntimeException e) {
+        
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+    
+    /**
+     * Load a stack of Layers from a chain without their
+     * optimizer state.
+     * @param chain full checkpoint followed by deltas in order
+     * @return new Layers from input to output, already connected in order
+     * @throws IOException if a file cannot be read or written
+     * @throws InvalidCheckpointException if a file is malformed or the deltas do not follow on from each other or from different runs
+     */
+    public static Layer[] load(Path chain[]) throws IOException {
+    
+        return loadUnchecked(chain, null);
+    }
+    
+    /**
+     * Load a stack of Layers from a chain along with
+     * their optimizer state, which is kept for the given
+     * optimizer.
+     * @param chain full checkpoint followed by deltas in order
+     * @param optimizer optimizer the saved state belongs to
+     * @return new Layers from input to output, already connected in order
+     * @throws IOException if a file cannot be read or written
+     * @throws InvalidCheckpointException if a file is malformed, the deltas do not follow on from each other or from different runs, parameter 'optimizer' is null, or the saved state does not fit the optimizer
+     */
+    public static Layer[] load(Path chain[], Optimizer optimizer) throws IOException {
+    
+        // Test for exception.
+        if (optimizer == null) {
+        
+            throw new InvalidCheckpointException("'optimizer' must not be null");
+        }
+        
+        return loadUnchecked(chain, optimizer);
+    }
+    
+    /**
+     * Return the file one checkpoint of a chain is kept in.
+     * @param path path the chain was written to
+     * @param sequence sequence number of checkpoint
+     * @param delta whether the checkpoint is a delta
+     * @return path with the sequence number (and delta suffix) appended
+     */
+    static Path getPath(Path path, long sequence, boolean delta) {
+    
+        return path.resolveSibling(path.getFileName() + "." + sequence + (delta ? DELTA_SUFFIX : ""));
+    }
+    
+    /**
+     * Test that no file of a chain is numbered at or
+     * after a sequence number, so that files left by an
+     * earlier run can never be mixed into a new one.
+     * @param path path the chain is numbered after
+     * @param sequence first sequence number to be written
+     * @throws InvalidCheckpointException if such a file exists
+     * @throws UncheckedIOException if the directory cannot be listed
+     */
+    static void testForChain(Path path, long sequence) {
+    
+        // Prefix of every file of the chain.
+        String prefix = path.getFileName() + ".";
+        
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(path.toAbsolutePath().getParent())) {
+        
+            for (Path file : files) {
+            
+                // Sequence number of file (if it belongs to the chain).
+                String name = file.getFileName().toString();
+                String digits = name.startsWith(prefix) ? name.substring(prefix.length(), name.endsWith(DELTA_SUFFIX) ? name.length() - DELTA_SUFFIX.length() : name.length()) : "";
+                
+                if (digits.matches("[0-9]{1,18}") && Long.parseLong(digits) >= sequence) {
+                
+                    throw new InvalidCheckpointException("'" + file + "' already belongs to a chain at or after checkpoint " + sequence);
+                }
+            }
+        }
+        catch (IOException e) {
+        
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * Return the checksum of a payload.
+     * @param payload cursor at the start of the payload
+     * @param length bytes of payload
+     * @return CRC-32C of the payload
+     */
+    static long checksum(PayloadCursor payload, long length) {
+    
+        CRC32C crc = new CRC32C();
+        byte block[] = new byte[BLOCK_BYTES];
+        for (long offset = 0; offset < length; offset += BLOCK_BYTES) {
+        
+            crc.update(block, 0, payload.get(block, (int)Math.min(BLOCK_BYTES, length - offset)));
+        }
+        
+        return crc.getValue();
+    }
+    
+    /**
+     * Write a delta between two payloads to a temporary
+     * file and rename it over its path.
+     * @param path file to write
+     * @param runId run id of the chain the delta belongs to
+     * @param header encoded header of the new checkpoint
+     * @param payload cursor at the start of the new payload
+     * @param length bytes of new payload
+     * @param parent cursor at the start of the previous payload
+     * @param parentLength bytes of previous payload
+     * @param parentChecksum checksum of previous payload
+     * @return checksum of new payload
+     * @throws IOException if the file cannot be written or renamed
+     */
+    static long write(Path path, long runId, ByteBuffer header, PayloadCursor payload, long length, PayloadCursor parent, long parentLength, long parentChecksum) throws IOException {
+    
+        Path temporary = Checkpoint.getTemporaryPath(path);
+        CRC32C crc = new CRC32C();
+        try {
+        
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            
+                // Header after prefix.
+                int headerLength = header.remaining();
+                channel.position(PREFIX_BYTES);
+                Checkpoint.writeFully(channel, header);
+                
+                // Changed blocks XORed with previous bytes.
+                OutputStream data = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+                int changedBlocks[] = new int[16];
+                int numChanged = 0;
+                byte block[] = new byte[BLOCK_BYTES];
+                byte parentBlock[] = new byte[BLOCK_BYTES];
+                byte planes[] = new byte[BLOCK_BYTES];
+                for (long offset = 0; offset < length; offset += BLOCK_BYTES) {
+                
+                    // Bytes of block (previous bytes are zero past their end).
+                    int numBytes = payload.get(block, (int)Math.min(BLOCK_BYTES, length - offset));
+                    int numParent = parent.get(parentBlock, (int)Math.max(0, Math.min(numBytes, parentLength - offset)));
+                    Arrays.fill(parentBlock, numParent, numBytes, (byte)0);
+                    crc.update(block, 0, numBytes);
+                    
+                    if (!Arrays.equals(block, 0, numBytes, parentBlock, 0, numBytes)) {
+                    
+                        // Split XOR into byte planes.
+                        int numValues = numBytes / Long.BYTES;
+                        int mask = 0;
+                        for (int j = 0; j < Long.BYTES; j++) {
+                        
+                            // Whether plane is all zero.
+                            int bits = 0;
+                            for (int i = 0; i < numValues; i++) {
+                            
+                                planes[j * numValues + i] = (byte)(block[i * Long.BYTES + j] ^ parentBlock[i * Long.BYTES + j]);
+                                bits |= planes[j * numValues + i];
+                            }
+                            mask |= bits != 0 ? 1 << j : 0;
+                        }
+                        
+                        // Mask and planes that are not all zero.
+                        data.write(mask);
+                        for (int j = 0; j < Long.BYTES; j++) {
+                        
+                            if ((mask & 1 << j) != 0) {
+                            
+                                data.write(planes, j * numValues, numValues);
+                            }
+                        }
+                        
+                        // Bytes past the last whole value.
+                        for (int i = numValues * Long.BYTES; i < numBytes; i++) {
+                        
+                            data.write(block[i] ^ parentBlock[i]);
+                        }
+                        
+                        if (numChanged == changedBlocks.length) {
+                        
+                            changedBlocks = Arrays.copyOf(changedBlocks, numChanged * 2);
+                        }
+                        changedBlocks[numChanged++] = (int)(offset / BLOCK_BYTES);
+                    }
+                }
+                data.flush();
+                
+                // Block index.
+                long indexOffset = channel.position();
+                ByteBuffer index = ByteBuffer.allocate(numChanged * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                index.asIntBuffer().put(changedBlocks, 0, numChanged);
+                Checkpoint.writeFully(channel, index);
+                
+                // Prefix.
+                ByteBuffer prefix = ByteBuffer.allocate(PREFIX_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                prefix.putInt(MAGIC);
+                prefix.putInt(VERSION);
+                prefix.putInt(headerLength);
+                prefix.putInt(BLOCK_BYTES);
+                prefix.putLong(runId);
+                prefix.putLong(parentLength);
+                prefix.putLong(parentChecksum);
+                prefix.putLong(length);
+                prefix.putLong(crc.getValue());
+                prefix.putLong(numChanged);
+                prefix.putLong(indexOffset);
+                prefix.flip();
+                channel.position(0);
+                Checkpoint.writeFully(channel, prefix);
+                channel.force(true);
+            }
+            
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException | RuntimeException e) {
+        
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        
+        return crc.getValue();
+    }
+    
+    // HELPER METHODS.
+    
+    /**
+     * Load a stack of Layers from a chain by rebuilding
+     * it into a temporary file.
+     * @param chain full checkpoint followed by deltas in order
+     * @param optimizer optimizer to restore state for (null to skip state)
+     * @return new Layers from input to output, already connected in order
+     * @throws IOException if a file cannot be read or written
+     * @throws InvalidCheckpointException if a file is malformed or the deltas do not follow on from each other
+     */
+    private static Layer[] loadUnchecked(Path chain[], Optimizer optimizer) throws IOException {
+    
+        // Test for exception.
+        if (chain == null || chain.length == 0 || chain[0] == null) {
+        
+            throw new InvalidCheckpointException("'chain' must not be null or empty");
+        }
+        
+        Path rebuilt = Files.createTempFile(chain[0].toAbsolutePath().getParent(), chain[0].getFileName().toString(), ".rebuilt");
+        try {
+        
+            restore(chain, rebuilt);
+            
+            return optimizer != null ? Checkpoint.load(rebuilt, optimizer) : Checkpoint.load(rebuilt);
+        }
+        finally {
+        
+            Files.deleteIfExists(rebuilt);
+        }
+    }
+    
+    /**
+     * Apply one delta to a checkpoint in place.
+     * @param channel checkpoint to update
+     * @param delta delta file
+     * @param headerLength bytes of the checkpoint's header
+     * @param parentChecksum checksum of the checkpoint's payload
+     * @param runId run id the delta must belong to
+     * @return checksum the updated payload should have
+     * @throws IOException if a file cannot be read or written
+     * @throws InvalidCheckpointException if the delta is malformed, belongs to another run, or does not follow on from the checkpoint
+     */
+    private static long apply(FileChannel channel, Path delta, int headerLength, long parentChecksum, long runId) throws IOException {
+    
+        try (FileChannel input = FileChannel.open(delta, StandardOpenOption.READ)) {
+        
+            // Read and test prefix.
+            ByteBuffer prefix = readPrefix(input, delta);
+            int deltaHeaderLength = prefix.getInt();
+            int blockBytes = prefix.getInt();
+            long deltaRunId = prefix.getLong();
+            long parentLength = prefix.getLong();
+            long deltaParentChecksum = prefix.getLong();
+            long length = prefix.getLong();
+            long checksum = prefix.getLong();
+            long numChanged = prefix.getLong();
+            long indexOffset = prefix.getLong();
+            if (deltaRunId != runId) {
+            
+                throw new InvalidCheckpointException("'" + delta + "' belongs to a different run than the deltas before it");
+            }
+            else if (deltaHeaderLength != headerLength || parentLength != channel.size() - headerLength || deltaParentChecksum != parentChecksum) {
+            
+                throw new InvalidCheckpointException("'" + delta + "' does not follow on from the checkpoint before it");
+            }
+            else if (blockBytes <= 0 || blockBytes % Long.BYTES != 0 || length < 0 || numChanged < 0 || numChanged > (length + blockBytes - 1) / blockBytes || indexOffset < PREFIX_BYTES + headerLength || indexOffset + numChanged * Integer.BYTES != input.size()) {
+            
+                throw new InvalidCheckpointException("'" + delta + "' has a malformed prefix");
+            }
+            
+            // Replace header.
+            ByteBuffer header = ByteBuffer.allocate(headerLength);
+            readFully(input, header, PREFIX_BYTES);
+            header.flip();
+            writeFully(channel, header, 0);
+            
+            // Block index.
+            ByteBuffer index = ByteBuffer.allocate((int)numChanged * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(input, index, indexOffset);
+            index.flip();
+            
+            // XOR changed blocks into previous bytes (zero past their end).
+            input.position(PREFIX_BYTES + headerLength);
+            DataInputStream data = new DataInputStream(new BufferedInputStream(Channels.newInputStream(input), 1 << 16));
+            byte changes[] = new byte[blockBytes];
+            ByteBuffer block = ByteBuffer.allocate(blockBytes);
+            long previous = -1;
+            for (long i = 0; i < numChanged; i++) {
+            
+                // Location of block.
+                long blockI = index.getInt();
+                long offset = blockI * blockBytes;
+                if (blockI <= previous || offset >= length) {
+                
+                    throw new InvalidCheckpointException("'" + delta + "' has a malformed block index");
+                }
+                previous = blockI;
+                int numBytes = (int)Math.min(blockBytes, length - offset);
+                
+                // Previous bytes.
+                Arrays.fill(block.array(), 0, numBytes, (byte)0);
+                block.clear();
+                block.limit((int)Math.max(0, Math.min(numBytes, parentLength - offset)));
+                readFully(channel, block, headerLength + offset);
+                
+                // Planes of changes that are not all zero.
+                int numValues = numBytes / Long.BYTES;
+                try {
+                
+                    int mask = data.readUnsignedByte();
+                    for (int j = 0; j < Long.BYTES; j++) {
+                    
+                        if ((mask & 1 << j) != 0) {
+                        
+                            data.readFully(changes, j * numValues, numValues);
+                        }
+                        else {
+                        
+                            Arrays.fill(changes, j * numValues, (j + 1) * numValues, (byte)0);
+                        }
+                    }
+                    
+                    // Bytes past the last whole value.
+                    for (int j = numValues * Long.BYTES; j < numBytes; j++) {
+                    
+                        block.array()[j] ^= (byte)data.readUnsignedByte();
+                    }
+                }
+                catch (EOFException e) {
+                
+                    throw new InvalidCheckpointException("'" + delta + "' ends before its last block");
+                }
+                for (int j = 0; j < numValues; j++) {
+                
+                    for (int k = 0; k < Long.BYTES; k++) {
+                    
+                        block.array()[j * Long.BYTES + k] ^= changes[k * numValues + j];
+                    }
+                }
+                
+                block.clear();
+                block.limit(numBytes);
+                writeFully(channel, block, headerLength + offset);
+            }
+            
+            // Fit payload to its new length.
+            if (channel.size() > headerLength + length) {
+            
+                channel.truncate(headerLength + length);
+            }
+            else if (channel.size() < headerLength + length) {
+            
+                writeFully(channel, ByteBuffer.allocate(1), headerLength + length - 1);
+            }
+            
+            return checksum;
+        }
+    }
+    
+    /**
+     * Return the run id of a delta.
+     * @param delta delta file
+     * @return run id of the chain the delta belongs to
+     * @throws IOException if the file cannot be read
+     * @throws InvalidCheckpointException if the file is not a delta of this version
+     */
+    private static long getRunId(Path delta) throws IOException {
+    
+        try (FileChannel input = FileChannel.open(delta, StandardOpenOption.READ)) {
+        
+            // Skip header and block lengths.
+            ByteBuffer prefix = readPrefix(input, delta);
+            prefix.position(prefix.position() + 2 * Integer.BYTES);
+            
+            return prefix.getLong();
+        }
+    }
+    
+    /**
+     * Read a delta's prefix and test its magic number
+     * and version.
+     * @param input delta to read
+     * @param delta path of delta
+     * @return prefix positioned after its version
+     * @throws IOException if the file cannot be read
+     * @throws InvalidCheckpointException if the file is not a delta of this version
+     */
+    private static ByteBuffer readPrefix(FileChannel input, Path delta) throws IOException {
+    
+        ByteBuffer prefix = ByteBuffer.allocate(PREFIX_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(input, prefix, 0);
+        prefix.flip();
+        
+        // Test for exceptions.
+        int magic = prefix.getInt();
+        int version = prefix.getInt();
+        if (magic != MAGIC) {
+        
+            throw new InvalidCheckpointException("'" + delta + "' is not a delta checkpoint");
+        }
+        else if (version != VERSION) {
+        
+            throw new InvalidCheckpointException("delta version " + version + " is not supported");
+        }
+        
+        return prefix;
+    }
+    
+    /**
+     * Return the checksum of a file from an offset to its end.
+     * @param channel file to read
+     * @param offset first byte to include
+     * @return CRC-32C of the bytes
+     * @throws IOException if the file cannot be read
+     */
+    private static long checksum(FileChannel channel, long offset) throws IOException {
+    
+        CRC32C crc = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        for (long position = offset; position < channel.size(); position += buffer.limit()) {
+        
+            buffer.clear();
+            buffer.limit((int)Math.min(buffer.capacity(), channel.size() - position));
+            readFully(channel, buffer, position);
+            buffer.flip();
+            crc.update(buffer);
+        }
+        
+        return crc.getValue();
+    }
+    
+    /**
+     * Read bytes from a channel at a position until a
+     * buffer is full.
+     * @param channel channel to read from
+     * @param bytes buffer to fill
+     * @param position first byte to read
+     * @throws IOException if the channel cannot be read
+     * @throws InvalidCheckpointException if the channel ends first
+     */
+    private static void readFully(FileChannel channel, ByteBuffer bytes, long position) throws IOException {
+    
+        while (bytes.hasRemaining()) {
+        
+            int numRead = channel.read(bytes, position);
+            if (numRead < 0) {
+            
+                throw new InvalidCheckpointException("file ends before its last record");
+            }
+            position += numRead;
+        }
+    }
+    
+    /**
+     * Write every remaining byte of a buffer to a channel
+     * at a position.
+     * @param channel channel to write to
+     * @param bytes buffer to drain
+     * @param position first byte to write
+     * @throws IOException if the channel cannot be written
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer bytes, long position) throws IOException {
+    
+        while (bytes.hasRemaining()) {
+        
+            position += channel.write(bytes, position);
+        }
+    }
+}
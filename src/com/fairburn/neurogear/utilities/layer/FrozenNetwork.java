@@ -0,0 +1,287 @@
+package com.fairburn.neurogear.utilities.layer;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import com.fairburn.neurogear.base.activation.Activation;
+import com.fairburn.neurogear.base.node.NodeBuffer;
+import com.fairburn.neurogear.utilities.kernel.InferenceGroup;
+
+/**
+ * An inference-only copy of a stack of trained Layers.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: FrozenNetwork.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Exports the weights of a stack of connected
+ * Layers into an InferenceGroup per Layer and keeps only
+ * those and each Layer's activation function. Nothing
+ * needed for training is retained: no Nodes, delta sums,
+ * or Connections, and no separate activation sums. A
+ * forward pass alternates between two scratch arrays
+ * sized for the largest Layer, writing each Layer's sums
+ * into one and applying its activation function in
+ * place. The scratch arrays grow to fit the largest batch
+ * seen, so a network must not be shared between threads
+ * (the groups themselves may be). The Layers are left
+ * untouched and may be discarded after exporting.
+ * 
+ * A network can also be mapped straight from a checkpoint
+ * saved by Checkpoint, in which case no Layers are built
+ * and no weights are copied: each InferenceGroup reads its
+ * weights in place from a read-only mapping of the file.
+ * The weights then live in the operating system's page
+ * cache rather than on the heap, so loading costs only
+ * the header and every process on a host that maps the
+ * same file shares one physical copy. The file must not
+ * be modified or truncated while a network maps it.
+ * 
+ * Whatever the Layers' precision, a network always runs
+ * in double on the double precision master weights, which
+ * are also all a checkpoint stores. Single and bfloat16
+ * precision Layers round their weights and activation
+ * values when they propagate, so a network exported or
+ * mapped from them predicts slightly different (more
+ * precise) values than the Layers themselves, and holds
+ * its weights in double rather than the compact format.
+ */
+public final class FrozenNetwork {
+    
+    // MEMBER VARIABLES.
+    
+    // Activation function of each Layer from input to output.
+    private final Activation activationFunctions[];
+    // Weights of each Layer (null for the input Layer).
+    private final InferenceGroup groups[];
+    // Shape of the input Layer.
+    private final int inputChannels;
+    private final int inputNodesPerChannel;
+    // Shape of the output Layer.
+    private final int outputChannels;
+    private final int outputNodesPerChannel;
+    // Nodes per sample in the largest Layer.
+    private final int maxSize;
+    
+    // Scratch arrays alternated between Layers.
+    private double scratch[][];
+    // Number of samples the scratch arrays can hold.
+    private int capacity;
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Construct a FrozenNetwork from Layers that have
+     * already been connected in order (it runs on their
+     * double precision master weights).
+     * @param layers Layers from input to output
+     * @throws InvalidStackException if the Layers cannot be exported
+     */
+    public FrozenNetwork(Layer layers[]) {
+    
+        // Test for exceptions.
+        if (layers == null || layers.length < 2) {
+        
+            throw new InvalidStackException("'layers' must hold at least an input and an output Layer");
+        }
+        for (int i = 0; i < layers.length; i++) {
+        
+            if (layers[i] == null) {
+            
+                throw new InvalidStackException("Layer " + i + " must not be null");
+            }
+            else if (layers[i].getActivationFunction() == null) {
+            
+                throw new InvalidStackException("Layer " + i + " has no activation function");
+            }
+            else if (i == 0 && layers[i].getInputLayer() != null) {
+            
+                throw new InvalidStackException("Layer 0 must not have an input Layer");
+            }
+            else if (i > 0 && layers[i].getInputLayer() != layers[i - 1]) {
+            
+                throw new InvalidStackException("Layer " + i + " is not connected to Layer " + (i - 1));
+            }
+        }
+        
+        // Copy functions and weights.
+        activationFunctions = new Activation[layers.length];
+        groups = new InferenceGroup[layers.length];
+        int largest = 0;
+        for (int i = 0; i < layers.length; i++) {
+        
+            activationFunctions[i] = layers[i].getActivationFunction();
+            groups[i] = i > 0 ? new InferenceGroup(layers[i].getKernels()) : null;
+            largest = Math.max(largest, layers[i].getNodes().size());
+        }
+        maxSize = largest;
+        
+        // Input and output shapes.
+        NodeBuffer inputNodes = layers[0].getNodes();
+        NodeBuffer outputNodes = layers[layers.length - 1].getNodes();
+        inputChannels = inputNodes.getNumChannels();
+        inputNodesPerChannel = inputNodes.getNodesPerChannel();
+        outputChannels = outputNodes.getNumChannels();
+        outputNodesPerChannel = outputNodes.getNodesPerChannel();
+        
+        scratch = new double[2][0];
+        capacity = 0;
+    }
+    
+    /**
+     * Map a FrozenNetwork from a checkpoint saved by
+     * 'Checkpoint.save()' without copying its weights.
+     * @param path checkpoint file to map
+     * @return network whose weights are read in place from the file
+     * @throws IOException if the file cannot be read or mapped
+     * @throws InvalidCheckpointException if the file is not a valid checkpoint or a Layer's weights exceed two gigabytes
+     */
+    public static FrozenNetwork map(Path path) throws IOException {
+    
+        // Test for exception.
+        if (path == null) {
+        
+            throw new InvalidCheckpointException("'path' must not be null");
+        }
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        
+            CheckpointHeader header = CheckpointHeader.read(channel);
+            int numLayers = header.getNumLayers();
+            
+            // Map each Layer's weights (mappings outlive the channel).
+            Activation activationFunctions[] = new Activation[numLayers];
+            InferenceGroup groups[] = new InferenceGroup[numLayers];
+            long offset = header.getHeaderLength();
+            for (int i = 0; i < numLayers; i++) {
+            
+                activationFunctions[i] = header.createActivation(i);
+                if (i == 0) {
+                
+                    continue;
+                }
+                
+                // Bytes of Layer's weights.
+                long layerBytes = (long)header.getNumChannels(i) * header.getNumKernelWeights(i) * Double.BYTES;
+                if (layerBytes > Integer.MAX_VALUE) {
+                
+                    throw new InvalidCheckpointException("Layer " + i + " holds " + layerBytes + " weight bytes, more than a single mapping can hold");
+                }
+                
+                groups[i] = new InferenceGroup(channel.map(FileChannel.MapMode.READ_ONLY, offset, layerBytes).order(ByteOrder.LITTLE_ENDIAN), header.getNumChannels(i), header.getNumInputChannels(i), header.getReceptiveField(i), header.getStrideLength(i), header.getNodesPerChannel(i - 1), header.getNodesPerChannel(i));
+                offset += layerBytes;
+            }
+            
+            // Largest Layer.
+            int largest = 0;
+            for (int i = 0; i < numLayers; i++) {
+            
+                largest = Math.max(largest, header.getNumChannels(i) * header.getNodesPerChannel(i));
+            }
+            
+            return new FrozenNetwork(activationFunctions, groups, header.getNumChannels(0), header.getNodesPerChannel(0), header.getNumChannels(numLayers - 1), header.getNodesPerChannel(numLayers - 1), largest);
+        }
+    }
+    
+    /**
+     * Propagate a single sample through every Layer.
+     * @param initialValues initial activation sums where rows are channels and columns are locations
+     * @return output activation values where rows are channels and columns are locations
+     * @throws InvalidStackException if parameter 'initialValues' does not match the input Layer
+     */
+    public double[][] propagate(double initialValues[][]) {
+    
+        return propagateBatch(new double[][][] {initialValues})[0];
+    }
+    
+    /**
+     * Propagate a batch of samples through every Layer.
+     * @param initialValues initial activation sums for each sample where rows are channels and columns are locations
+     * @return output activation values for each sample where rows are channels and columns are locations
+     * @throws InvalidStackException if parameter 'initialValues' does not match the input Layer
+     */
+    public double[][][] propagateBatch(double initialValues[][][]) {
+    
+        // Test for exceptions.
+        CompiledStack.testInitialValues(initialValues, inputChannels, inputNodesPerChannel);
+        
+        // Number of samples.
+        int batchSize = initialValues.length;
+        
+        // Grow scratch arrays if necessary.
+        if (batchSize > capacity) {
+        
+            capacity = batchSize;
+            scratch = new double[2][capacity * maxSize];
+        }
+        
+        // Set input activations.
+        int inputSize = inputChannels * inputNodesPerChannel;
+        double current[] = scratch[0];
+        for (int sampleI = 0; sampleI < batchSize; sampleI++) {
+        
+            for (int channelI = 0; channelI < inputChannels; channelI++) {
+            
+                System.arraycopy(initialValues[sampleI][channelI], 0, current, sampleI * inputSize + channelI * inputNodesPerChannel, inputNodesPerChannel);
+            }
+        }
+        activationFunctions[0].f(current, current, 0, batchSize * inputSize);
+        
+        // Propagate remaining Layers.
+        for (int i = 1; i < groups.length; i++) {
+        
+            // Array to write into.
+            double next[] = scratch[i % 2];
+            
+            groups[i].propagate(current, next, batchSize);
+            activationFunctions[i].f(next, next, 0, batchSize * groups[i].getOutputSize());
+            current = next;
+        }
+        
+        // Copy output activations.
+        int outputSize = outputChannels * outputNodesPerChannel;
+        double outputValues[][][] = new double[batchSize][outputChannels][outputNodesPerChannel];
+        for (int sampleI = 0; sampleI < batchSize; sampleI++) {
+        
+            for (int channelI = 0; channelI < outputChannels; channelI++) {
+            
+                System.arraycopy(current, sampleI * outputSize + channelI * outputNodesPerChannel, outputValues[sampleI][channelI], 0, outputNodesPerChannel);
+            }
+        }
+        
+        return outputValues;
+    }
+    
+    // HELPER METHODS.
+    
+    /**
+     * Construct a FrozenNetwork from already built
+     * functions and groups.
+     * @param activationFunctionsP activation function of each Layer from input to output
+     * @param groupsP weights of each Layer (null for the input Layer)
+     * @param inputChannelsP number of input channels
+     * @param inputNodesPerChannelP input Nodes per channel
+     * @param outputChannelsP number of output channels
+     * @param outputNodesPerChannelP output Nodes per channel
+     * @param maxSizeP Nodes per sample in the largest Layer
+     */
+    private FrozenNetwork(Activation activationFunctionsP[], InferenceGroup groupsP[], int inputChannelsP, int inputNodesPerChannelP, int outputChannelsP, int outputNodesPerChannelP, int maxSizeP) {
+    
+        activationFunctions = activationFunctionsP;
+        groups = groupsP;
+        inputChannels = inputChannelsP;
+        inputNodesPerChannel = inputNodesPerChannelP;
+        outputChannels = outputChannelsP;
+        outputNodesPerChannel = outputNodesPerChannelP;
+        maxSize = maxSizeP;
+        
+        scratch = new double[2][0];
+        capacity = 0;
+    }
+}
@@ -0,0 +1,194 @@
+package com.fairburn.neurogear.utilities.layer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import com.fairburn.neurogear.data.dataset.DataSet;
+import com.fairburn.neurogear.data.datum.Datum;
+
+/**
+ * Asynchronous lock-free ("Hogwild") trainer for a CompiledStack.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: HogwildTrainer.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Runs several workers at once, the first of
+ * which is the stack itself and the rest replicas sharing
+ * its weights. Each worker repeatedly takes the next
+ * mini-batch from a shared DataSet (the only step that is
+ * synchronized), propagates and backpropagates it with its
+ * own Nodes and delta sums, and immediately corrects the
+ * shared weights without locks. Workers therefore read
+ * weights while others write them and an update may
+ * occasionally be lost, so results are not deterministic;
+ * in exchange no worker ever waits for another.
+ */
+public final class HogwildTrainer {
+    
+    // MEMBER VARIABLES.
+    
+    // Stack and its replicas.
+    private final CompiledStack workers[];
+    // Executor to run workers on.
+    private final ExecutorService executor;
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Construct a HogwildTrainer for a stack.
+     * @param stackP stack to train
+     * @param numWorkers number of concurrent workers (including the stack itself)
+     * @param executorP executor to run workers on
+     * @throws InvalidStackException if parameter 'stackP' or 'executorP' is null or 'numWorkers' is not greater than zero
+     */
+    public HogwildTrainer(CompiledStack stackP, int numWorkers, ExecutorService executorP) {
+    
+        // Test for exceptions.
+        if (stackP == null) {
+        
+            throw new InvalidStackException("'stackP' must not be null");
+        }
+        else if (numWorkers <= 0) {
+        
+            throw new InvalidStackException("'numWorkers' must be greater than zero");
+        }
+        else if (executorP == null) {
+        
+            throw new InvalidStackException("'executorP' must not be null");
+        }
+        
+        executor = executorP;
+        
+        // Create replicas.
+        workers = new CompiledStack[numWorkers];
+        workers[0] = stackP;
+        for (int i = 1; i < workers.length; i++) {
+        
+            workers[i] = stackP.replicate();
+        }
+    }
+    
+    /**
+     * Return the stack being trained.
+     * @return trained stack
+     */
+    public CompiledStack getStack() {
+    
+        return workers[0];
+    }
+    
+    /**
+     * Return the number of concurrent workers.
+     * @return number of workers (including the stack itself)
+     */
+    public int getNumWorkers() {
+    
+        return workers.length;
+    }
+    
+    /**
+     * Train on every full mini-batch left in a DataSet's
+     * shuffle buffer (data must already be scaled). Each
+     * worker corrects the shared weights after every
+     * mini-batch it takes.
+     * @param dataSet data to train on (must not be used elsewhere during the epoch)
+     * @param batchSize number of samples per mini-batch
+     * @param learningRate learning factor
+     * @param regParameter regularization parameter
+     * @return throughput and error of the epoch
+     * @throws InvalidStackException if parameter 'dataSet' is null or 'batchSize' is not greater than zero
+     */
+    public TrainingReport trainEpoch(DataSet dataSet, int batchSize, double learningRate, double regParameter) {
+    
+        // Test for exceptions.
+        if (dataSet == null) {
+        
+            throw new InvalidStackException("'dataSet' must not be null");
+        }
+        else if (batchSize <= 0) {
+        
+            throw new InvalidStackException("'batchSize' must be greater than zero");
+        }
+        
+        // Totals for each worker.
+        long samples[] = new long[workers.length];
+        double errors[] = new double[workers.length];
+        
+        long startTime = System.nanoTime();
+        
+        // Run every worker until the shuffle buffer runs out.
+        List<Callable<Void>> tasks = new ArrayList<>(workers.length);
+        for (int i = 0; i < workers.length; i++) {
+        
+            int workerI = i;
+            tasks.add(() -> {
+            
+                // Mini-batch buffers.
+                double batchRaw[][][] = new double[batchSize][][];
+                double batchLabel[][][] = new double[batchSize][][];
+                
+                while (true) {
+                
+                    // Take next mini-batch.
+                    synchronized (dataSet) {
+                    
+                        if (!dataSet.hasNextBuffer(batchSize)) {
+                        
+                            break;
+                        }
+                        
+                        for (int j = 0; j < batchSize; j++) {
+                        
+                            Datum curDatum = dataSet.getNextBuffer();
+                            batchRaw[j] = curDatum.getRaw();
+                            batchLabel[j] = curDatum.getLabel();
+                        }
+                    }
+                    
+                    workers[workerI].propagate(batchRaw);
+                    errors[workerI] += workers[workerI].getAbsoluteError(batchLabel);
+                    workers[workerI].backpropagate(batchLabel);
+                    workers[workerI].correctShared(learningRate, regParameter);
+                    samples[workerI] += batchSize;
+                }
+                
+                return null;
+            });
+        }
+        DataParallelTrainer.runAll(executor, tasks);
+        
+        // Epoch totals.
+        long elapsedNanos = System.nanoTime() - startTime;
+        long numSamples = 0;
+        double error = 0.0;
+        for (int i = 0; i < workers.length; i++) {
+        
+            numSamples += samples[i];
+            error += errors[i];
+        }
+        
+        // Output values per sample.
+        int outputSize = workers[0].getOutputLayer().getNodes().size();
+        
+        return new TrainingReport(numSamples, elapsedNanos, numSamples > 0 ? error / (numSamples * outputSize) : 0.0);
+    }
+    
+    /**
+     * Release every replica's Kernels (the stack
+     * itself is left compiled and this trainer
+     * must not be used afterwards).
+     */
+    public void release() {
+    
+        for (int i = 1; i < workers.length; i++) {
+        
+            workers[i].release();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.fairburn.neurogear.utilities.layer;
+
+import com.fairburn.neurogear.base.node.NodeBuffer;
+import com.fairburn.neurogear.utilities.kernel.KernelGroup;
+
+/**
+ * Per-thread activation state for inference on a CompiledStack.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: InferenceContext.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Holds a NodeBuffer for every Layer of a
+ * CompiledStack, shaped like the stack's own, and
+ * propagates through the stack's Kernels into them
+ * instead of into the Layers' Nodes. The Kernels and
+ * Layers are only read, so any number of threads may
+ * each propagate through their own context at the same
+ * time (and alongside the stack's own forward passes).
+ * A context holds no delta sums and cannot train, and
+ * its stack must not be corrected or released while it
+ * is propagating. A context is not itself thread-safe.
+ */
+public final class InferenceContext {
+    
+    // MEMBER VARIABLES.
+    
+    // Stack whose weights are read.
+    private final CompiledStack stack;
+    // Nodes of each Layer from input to output.
+    private final NodeBuffer nodes[];
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Construct an InferenceContext for a stack.
+     * @param stackP stack to read weights from
+     */
+    InferenceContext(CompiledStack stackP) {
+    
+        stack = stackP;
+        
+        // Nodes shaped like each Layer's.
+        Layer layers[] = stack.getLayers();
+        nodes = new NodeBuffer[layers.length];
+        for (int i = 0; i < layers.length; i++) {
+        
+            NodeBuffer layerNodes = layers[i].getNodes();
+            nodes[i] = new NodeBuffer(layerNodes.getNumChannels(), layerNodes.getNodesPerChannel(), layerNodes.getPrecision());
+        }
+    }
+    
+    /**
+     * Return the stack this context reads weights from.
+     * @return stack
+     */
+    public CompiledStack getStack() {
+    
+        return stack;
+    }
+    
+    /**
+     * Propagate a batch of samples through every Layer
+     * of the stack using this context's Nodes.
+     * @param initialValues initial activation sums for each sample where rows are channels and columns are locations
+     * @throws InvalidStackException if parameter 'initialValues' does not match the input Layer
+     */
+    public void propagate(double initialValues[][][]) {
+    
+        // Test for exceptions.
+        CompiledStack.testInitialValues(initialValues, nodes[0].getNumChannels(), nodes[0].getNodesPerChannel());
+        
+        // Layers and their Kernels.
+        Layer layers[] = stack.getLayers();
+        KernelGroup groups[] = stack.getGroups();
+        
+        // Size every buffer for this batch (sums are overwritten).
+        for (int i = 0; i < nodes.length; i++) {
+        
+            nodes[i].setBatchSize(initialValues.length);
+        }
+        
+        CompiledStack.setInitialValues(nodes[0], initialValues);
+        nodes[0].triggerActivations(layers[0].getActivationFunction());
+        
+        // Propagate remaining Layers.
+        for (int i = 1; i < nodes.length; i++) {
+        
+            groups[i].propagate(nodes[i - 1], nodes[i]);
+            nodes[i].triggerActivations(layers[i].getActivationFunction());
+        }
+    }
+    
+    /**
+     * Return copy of the output activation values of
+     * the last batch propagated through this context.
+     * @return output activation values for each sample where rows are channels and columns are locations
+     */
+    public double[][][] getOutputValues() {
+    
+        return nodes[nodes.length - 1].copyActivationValues();
+    }
+}
@@ -0,0 +1,30 @@
+package com.fairburn.neurogear.utilities.layer;
+
+/**
+ * Exception generated when a checkpoint is
+ * malformed or cannot hold a stack of
+ * Layers.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: InvalidCheckpointException.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Exception generated when a
+ * checkpoint is malformed or cannot
+ * hold a stack of Layers.
+ */
+public final class InvalidCheckpointException extends RuntimeException {
+    
+    /**
+     * Construct an exception with a given message.
+     * @param message exception message
+     */
+    public InvalidCheckpointException(String message) {
+    
+        super(message);
+    }
+}
@@ -0,0 +1,28 @@
+package com.fairburn.neurogear.utilities.layer;
+
+/**
+ * Exception generated when a stack of Layers
+ * cannot be compiled.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: InvalidStackException.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Exception generated when a stack of
+ * Layers cannot be compiled.
+ */
+public final class InvalidStackException extends RuntimeException {
+    
+    /**
+     * Construct an exception with a given message.
+     * @param message exception message
+     */
+    public InvalidStackException(String message) {
+    
+        super(message);
+    }
+}
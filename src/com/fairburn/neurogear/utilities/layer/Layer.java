@@ -3,7 +3,9 @@ package com.fairburn.neurogear.utilities.layer;
 import java.util.Random;
 import com.fairburn.neurogear.base.activation.Activation;
 import com.fairburn.neurogear.base.cost.Cost;
-import com.fairburn.neurogear.base.node.Node;
+import com.fairburn.neurogear.base.node.NodeBuffer;
+import com.fairburn.neurogear.base.optimizer.Optimizer;
+import com.fairburn.neurogear.base.precision.Precision;
 import com.fairburn.neurogear.base.regularization.Regularization;
 import com.fairburn.neurogear.utilities.kernel.Kernel;
 
@@ -28,7 +30,7 @@ public final class Layer {
     // Kernel for each channel.
     private final Kernel kernels[];
     // Nodes for each channel.
-    private final Node nodes[][];
+    private final NodeBuffer nodes;
     
     // Activation function for Nodes.
     private final Activation activationFunction;
@@ -55,17 +57,52 @@ public final class Layer {
      */
     public Layer(int numChannels, int nodesPerChannel, Activation activationFunctionP, Regularization regularizationFunctionP, int receptiveField[], int numInputChannels, int strideLength, int seed) {
     
-        // Create 2d Node array.
-        nodes = new Node[numChannels][nodesPerChannel];
+        this(numChannels, nodesPerChannel, activationFunctionP, regularizationFunctionP, receptiveField, numInputChannels, strideLength, seed, Precision.DOUBLE);
+    }
+    
+    /**
+     * Consrtuct a Layer with given parameters and precision
+     * (the input Layer must have the same precision, and a
+     * fully connected Layer only runs as a blocked matrix
+     * product in double precision; see Precision).
+     * @param numChannels number of channels for this Layer
+     * @param nodesPerChannel number of nodes for each channel of this Layer
+     * @param activationFunctionP activation function
+     * @param regularizationFunctionP regularization function
+     * @param receptiveField receptive field configuration for all Kernels
+     * @param numInputChannels number of input Layer channels to configure Kernels for
+     * @param strideLength how far to move receptive field for each internal Node
+     * @param seed seed for weight initialization
+     * @param precision storage format of Node values and Kernel weights
+     */
+    public Layer(int numChannels, int nodesPerChannel, Activation activationFunctionP, Regularization regularizationFunctionP, int receptiveField[], int numInputChannels, int strideLength, int seed, Precision precision) {
+    
+        this(numChannels, nodesPerChannel, activationFunctionP, regularizationFunctionP, receptiveField, numInputChannels, strideLength, precision);
         
-        // Initialize 2D Node array.
-        for (int channelI = 0; channelI < nodes.length; channelI++) {
+        // Set Kernel weights.
+        for (int i = 0; i < kernels.length; i++) {
         
-            for (int nodeI = 0; nodeI < nodes[channelI].length; nodeI++) {
-            
-                nodes[channelI][nodeI] = new Node();
-            }
+            kernels[i].setWeights(generateWeights(numInputChannels, receptiveField.length, seed + i));
         }
+    }
+    
+    /**
+     * Construct a Layer with given parameters and precision
+     * whose Kernel weights are all zero, for restoring
+     * weights that were saved elsewhere.
+     * @param numChannels number of channels for this Layer
+     * @param nodesPerChannel number of nodes for each channel of this Layer
+     * @param activationFunctionP activation function
+     * @param regularizationFunctionP regularization function
+     * @param receptiveField receptive field configuration for all Kernels
+     * @param numInputChannels number of input Layer channels to configure Kernels for
+     * @param strideLength how far to move receptive field for each internal Node
+     * @param precision storage format of Node values and Kernel weights
+     */
+    Layer(int numChannels, int nodesPerChannel, Activation activationFunctionP, Regularization regularizationFunctionP, int receptiveField[], int numInputChannels, int strideLength, Precision precision) {
+    
+        // Create Node buffer.
+        nodes = new NodeBuffer(numChannels, nodesPerChannel, precision);
         
         // Create Kernel array.
         kernels = new Kernel[numChannels];
@@ -81,13 +118,10 @@ public final class Layer {
         for (int i = 0; i < kernels.length; i++) {
         
             // Create Kernel.
-            kernels[i] = new Kernel(numInputChannels, receptiveField, strideLength);
-            
-            // Set Kernel weights.
-            kernels[i].setWeights(generateWeights(numInputChannels, receptiveField.length, seed + i));
+            kernels[i] = new Kernel(numInputChannels, receptiveField, strideLength, precision);
             
             // Connect Kernel to appropriate output.
-            kernels[i].connectOutputNodes(nodes[i]);
+            kernels[i].connectOutputNodes(nodes, i);
         }
     }
     
@@ -101,17 +135,22 @@ public final class Layer {
      */
     public Layer(int numChannels, int nodesPerChannel, Activation activationFunctionP) {
     
-        // Create 2d Node array.
-        nodes = new Node[numChannels][nodesPerChannel];
-        
-        // Initialize 2D Node array.
-        for (int channelI = 0; channelI < nodes.length; channelI++) {
-        
-            for (int nodeI = 0; nodeI < nodes[channelI].length; nodeI++) {
-            
-                nodes[channelI][nodeI] = new Node();
-            }
-        }
+        this(numChannels, nodesPerChannel, activationFunctionP, Precision.DOUBLE);
+    }
+    
+    /**
+     * Construct a Layer with given parameters and
+     * precision which does not have any Kernels and
+     * cannot have and input Layer.
+     * @param numChannels number of channels for this Layer
+     * @param nodesPerChannel number of nodes for each channel of this Layer
+     * @param activationFunctionP activation function 
+     * @param precision storage format of Node values
+     */
+    public Layer(int numChannels, int nodesPerChannel, Activation activationFunctionP, Precision precision) {
+    
+        // Create Node buffer.
+        nodes = new NodeBuffer(numChannels, nodesPerChannel, precision);
         
         // Create empty kernels array.
         kernels = new Kernel[0];
@@ -124,15 +163,80 @@ public final class Layer {
         hasOutputLayer = false;
     }
     
+    /**
+     * Construct a disconnected replica of a Layer with its
+     * own Nodes and Kernels that share the master's weights.
+     * @param master Layer to replicate
+     */
+    private Layer(Layer master) {
+    
+        // Create Node buffer.
+        nodes = new NodeBuffer(master.nodes.getNumChannels(), master.nodes.getNodesPerChannel(), master.nodes.getPrecision());
+        
+        // Create Kernel array.
+        kernels = new Kernel[master.kernels.length];
+        
+        // Set functions.
+        activationFunction = master.activationFunction;
+        regularizationFunction = master.regularizationFunction;
+        
+        // Initialize hasOutputLayer.
+        hasOutputLayer = false;
+        
+        // Replicate Kernels and connect them to own Nodes.
+        for (int i = 0; i < kernels.length; i++) {
+        
+            kernels[i] = master.kernels[i].replicate();
+            kernels[i].connectOutputNodes(nodes, i);
+        }
+    }
+    
     /**
      * Return this Layer's Nodes.
-     * @return Nodes where rows are channels and columns are locations
+     * @return channel-major Nodes
      */
-    public Node[][] getNodes() {
+    public NodeBuffer getNodes() {
     
         return nodes;
     }
     
+    /**
+     * Return this Layer's input Layer.
+     * @return input Layer (null if not connected)
+     */
+    public Layer getInputLayer() {
+    
+        return inputLayer;
+    }
+    
+    /**
+     * Return this Layer's activation function.
+     * @return activation function
+     */
+    public Activation getActivationFunction() {
+    
+        return activationFunction;
+    }
+    
+    /**
+     * Return this Layer's regularization function.
+     * @return regularization function (null if Layer has no Kernels)
+     */
+    public Regularization getRegularizationFunction() {
+    
+        return regularizationFunction;
+    }
+    
+    /**
+     * Return the storage format of this Layer's
+     * Node values and Kernel weights.
+     * @return precision
+     */
+    public Precision getPrecision() {
+    
+        return nodes.getPrecision();
+    }
+    
     /**
      * Return copy of this Layer's weights.
      * @return each Kernel's weights
@@ -223,40 +327,109 @@ public final class Layer {
     }
     
     /**
-     * Return copy of this Layer's Node's activtion values.
+     * Return copy of this Layer's Node's activtion values
+     * for the first sample in the current batch.
      * @return Node activation values where rows are channels and columns are locations
      */
     public double[][] getActivationValues() {
         
-        // Array to return.
-        double activationValues[][] = new double[nodes.length][nodes[0].length];
+        return getActivationValuesBatch()[0];
+    }
+    
+    /**
+     * Return copy of this Layer's Node's activtion values
+     * for every sample in the current batch.
+     * @return Node activation values for each sample where rows are channels and columns are locations
+     */
+    public double[][][] getActivationValuesBatch() {
+    
+        return nodes.copyActivationValues();
+    }
+    
+    /**
+     * Trigger Node activations with initial
+     * activation sums (will trigger Kernel
+     * propagation).
+     * @param initialValues initiale Node activation sums where rows are channels and columns are locations
+     */
+    public void propagate(double initialValues[][]) {
+    
+        propagateBatch(new double[][][] {initialValues});
+    }
+    
+    /**
+     * Trigger Node activations with initial
+     * activation sums for a batch of samples
+     * (will trigger Kernel propagation).
+     * @param initialValues initial Node activation sums for each sample where rows are channels and columns are locations
+     */
+    public void propagateBatch(double initialValues[][][]) {
+    
+        // Hold one sample per initial value.
+        nodes.setBatchSize(initialValues.length);
         
-        // Copy activation values.
-        for (int channelI = 0; channelI < nodes.length; channelI++) {
+        // Activation and delta sums to overwrite.
+        double activationSums[] = nodes.getActivationSums();
+        double deltaSums[] = nodes.getDeltaSums();
         
-            for (int nodeI = 0; nodeI < nodes[channelI].length; nodeI++) {
+        // Set activation sums.
+        for (int sampleI = 0; sampleI < initialValues.length; sampleI++) {
+        
+            for (int channelI = 0; channelI < nodes.getNumChannels(); channelI++) {
             
-                activationValues[channelI][nodeI] = nodes[channelI][nodeI].getActivationValue();
+                // Start of channel.
+                int offset = sampleI * nodes.size() + channelI * nodes.getNodesPerChannel();
+                
+                for (int nodeI = 0; nodeI < nodes.getNodesPerChannel(); nodeI++) {
+                
+                    activationSums[offset + nodeI] = initialValues[sampleI][channelI][nodeI];
+                    deltaSums[offset + nodeI] = 0.0;
+                }
             }
         }
         
-        return activationValues;
+        propagate();
     }
     
     /**
-     * Trigger Node activations with initial
-     * activation sums (will trigger Kernel
+     * Trigger Node activations with single precision
+     * initial activation sums (will trigger Kernel
      * propagation).
      * @param initialValues initiale Node activation sums where rows are channels and columns are locations
      */
-    public void propagate(double initialValues[][]) {
+    public void propagate(float initialValues[][]) {
     
+        propagateBatch(new float[][][] {initialValues});
+    }
+    
+    /**
+     * Trigger Node activations with single precision
+     * initial activation sums for a batch of samples
+     * (will trigger Kernel propagation).
+     * @param initialValues initial Node activation sums for each sample where rows are channels and columns are locations
+     */
+    public void propagateBatch(float initialValues[][][]) {
+    
+        // Hold one sample per initial value.
+        nodes.setBatchSize(initialValues.length);
+        
+        // Activation and delta sums to overwrite.
+        double activationSums[] = nodes.getActivationSums();
+        double deltaSums[] = nodes.getDeltaSums();
+        
         // Set activation sums.
-        for (int channelI = 0; channelI < nodes.length; channelI++) {
+        for (int sampleI = 0; sampleI < initialValues.length; sampleI++) {
         
-            for (int nodeI = 0; nodeI < nodes[channelI].length; nodeI++) {
+            for (int channelI = 0; channelI < nodes.getNumChannels(); channelI++) {
             
-                nodes[channelI][nodeI].addToActivationSum(initialValues[channelI][nodeI]);
+                // Start of channel.
+                int offset = sampleI * nodes.size() + channelI * nodes.getNodesPerChannel();
+                
+                for (int nodeI = 0; nodeI < nodes.getNodesPerChannel(); nodeI++) {
+                
+                    activationSums[offset + nodeI] = initialValues[sampleI][channelI][nodeI];
+                    deltaSums[offset + nodeI] = 0.0;
+                }
             }
         }
         
@@ -265,24 +438,22 @@ public final class Layer {
     
     /**
      * Trigger Node activations based on sums
-     * received from Kernel propagations.
+     * received from Kernel propagations
+     * (for every sample the input Layer holds).
      */
     public void propagate() {
     
-        // Propagate Kernels.
-        for (int i = 0; i < kernels.length; i++) {
-
-            kernels[i].propagateAll();
+        // Match input Layer's batch.
+        if (inputLayer != null) {
+        
+            nodes.setBatchSize(inputLayer.getNodes().getBatchSize());
         }
         
-        // Activate Nodes.
-        for (int channelI = 0; channelI < nodes.length; channelI++) {
+        // Propagate Kernels.
+        Kernel.propagateGroup(kernels);
         
-            for (int nodeI = 0; nodeI < nodes[channelI].length; nodeI++) {
-            
-                nodes[channelI][nodeI].triggerActivation(activationFunction);
-            }
-        }
+        // Activate Nodes.
+        nodes.triggerActivations(activationFunction);
     }
     
     /**
@@ -293,15 +464,21 @@ public final class Layer {
      * @param costFunction cost function
      */
     public void backpropagate(double targetValues[][], Cost costFunction) {
+    
+        backpropagateBatch(new double[][][] {targetValues}, costFunction);
+    }
+    
+    /**
+     * Trigger Node deltas based on target 
+     * values for a batch of samples and a cost
+     * function and propagate deltas backwards.
+     * @param targetValues target values for each sample where rows are channels and columns are locations
+     * @param costFunction cost function
+     */
+    public void backpropagateBatch(double targetValues[][][], Cost costFunction) {
         
         // Set delta sums.
-        for (int channelI = 0; channelI < nodes.length; channelI++) {
-        
-            for (int nodeI = 0; nodeI < nodes[channelI].length; nodeI++) {
-            
-                nodes[channelI][nodeI].setInitialDelta(costFunction, targetValues[channelI][nodeI]);
-            }
-        }
+        nodes.setInitialDeltas(costFunction, activationFunction, targetValues);
         
         backpropagate();
     }
@@ -313,35 +490,23 @@ public final class Layer {
     public void backpropagate() {
     
         // Trigger Node deltas.
-        for (int channelI = 0; channelI < nodes.length; channelI++) {
-        
-            for (int nodeI = 0; nodeI < nodes[channelI].length; nodeI++) {
-            
-                nodes[channelI][nodeI].triggerDelta(activationFunction);
-            }
-        }
+        nodes.triggerDeltas(activationFunction);
         
         // Backropagate Kernels.
-        for (int i = 0; i < kernels.length; i++) {
-
-            kernels[i].backpropagateAll();
-        }
+        Kernel.backpropagateGroup(kernels);
     }
     
     /**
      * Clear internal Node activation 
-     * and delta sums.
+     * and delta sums (never needed between
+     * complete passes, since propagation
+     * overwrites activation sums and
+     * 'backpropagate()' consumes delta sums).
      */
     public void clearNodeSums() {
     
         // Clear the sums of all Nodes.
-        for (int channelI = 0; channelI < nodes.length; channelI++) {
-        
-            for (int nodeI = 0; nodeI < nodes[channelI].length; nodeI++) {
-            
-                nodes[channelI][nodeI].clearSums();
-            }
-        }
+        nodes.clearSums();
     }
     
     /**
@@ -358,13 +523,47 @@ public final class Layer {
         }
     }
     
+    /**
+     * Correct Kernel weights with an optimizer using
+     * given parameters and internal regularization
+     * function (each Kernel keeps its own optimizer state).
+     * @param learningRate learning factor
+     * @param regParameter regularization parameter
+     * @param optimizer update rule to apply
+     */
+    public void correctKernels(double learningRate, double regParameter, Optimizer optimizer) {
+    
+        for (int i = 0; i < kernels.length; i++) {
+        
+            kernels[i].correctConnections(learningRate, regularizationFunction, regParameter, optimizer);
+        }
+    }
+    
     // HELPER METHODS.
     
+    /**
+     * Create a disconnected replica of this Layer.
+     * @return Layer with own Nodes whose Kernels share this Layer's weights
+     */
+    Layer replicate() {
+    
+        return new Layer(this);
+    }
+    
+    /**
+     * Return this Layer's Kernels (not a copy).
+     * @return Kernel for each channel
+     */
+    Kernel[] getKernels() {
+    
+        return kernels;
+    }
+    
     /**
      * Generate a single set of Kernel weights
      * with given parameters.
      * @param numInputChannels number of input Layer channels to configure Kernel weights for
-     * @param numConnections number of Kernel NodeConnections
+     * @param numConnections number of Kernel Connections per input channel
      * @param seed seed for generating weights
      * @return a single set of Kernel weights
      */
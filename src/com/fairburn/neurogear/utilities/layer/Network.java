@@ -0,0 +1,657 @@
+package com.fairburn.neurogear.utilities.layer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import com.fairburn.neurogear.base.cost.Cost;
+import com.fairburn.neurogear.base.optimizer.Optimizer;
+import com.fairburn.neurogear.base.optimizer.SGDOptimizer;
+import com.fairburn.neurogear.base.schedule.BatchSizeSchedule;
+import com.fairburn.neurogear.base.schedule.LearningRateSchedule;
+import com.fairburn.neurogear.data.dataset.DataSet;
+import com.fairburn.neurogear.data.datum.Datum;
+
+/**
+ * A graph of connected Layers with a compiled execution plan.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: Network.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Owns a graph of Layers linked by their
+ * input Layers and builds an execution plan for one
+ * output Layer once, when it is constructed. Every Layer
+ * has at most one input Layer, so the plan is the path
+ * from the graph's single input Layer to the output
+ * Layer in topological order, and branches that do not
+ * lead to the output are never run. Gradient work that
+ * nobody reads is dropped from the plan: frozen Layers
+ * relay deltas but never accumulate them, nothing below
+ * the first trained Layer is backpropagated, and the
+ * input Layer never receives deltas. The plan runs as a
+ * CompiledStack, so 'fit()', 'predict()', and
+ * 'evaluate()' need no per-call bookkeeping such as
+ * sequencing Layers or clearing Node sums. The Network
+ * counts corrections and epochs so that learning rate
+ * and batch size schedules can be queried by step, and
+ * may be given an AsyncCheckpointer that it offers a
+ * snapshot to after every correction. 'save()' and
+ * 'resume()' checkpoint everything training depends on
+ * (weights, optimizer state, pending delta sums, step and
+ * epoch counts, and the shuffle state of the DataSet
+ * being trained on), so a resumed Network trains on
+ * exactly as an uninterrupted one would have. The
+ * Layers must not be connected, disconnected, or used
+ * individually until the Network is released.
+ */
+public final class Network {
+    
+    // MEMBER VARIABLES.
+    
+    // Layers in execution order from input to output.
+    private final Layer plan[];
+    // Whether each Layer in the plan is trained.
+    private final boolean trainable[];
+    // Compiled plan.
+    private final CompiledStack stack;
+    // Update rule for trained Layers.
+    private Optimizer optimizer;
+    // Number of corrections made.
+    private long numSteps;
+    // Number of epochs trained on a DataSet.
+    private long numEpochs;
+    // Periodic checkpointer offered a snapshot after each correction (null if none).
+    private AsyncCheckpointer checkpointer;
+    // DataSet most recently trained on (null if none).
+    private DataSet dataSet;
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Construct a Network that trains every Layer.
+     * @param layers Layers of the graph in any order
+     * @param outputLayer Layer whose activations are predicted
+     * @param costFunction cost function for output deltas
+     * @throws InvalidStackException if the graph cannot be planned or compiled
+     */
+    public Network(Layer layers[], Layer outputLayer, Cost costFunction) {
+    
+        this(layers, outputLayer, costFunction, new Layer[0], null);
+    }
+    
+    /**
+     * Construct a Network that leaves some Layers untrained
+     * and runs each Layer's Kernels on a ForkJoinPool.
+     * @param layers Layers of the graph in any order
+     * @param outputLayer Layer whose activations are predicted
+     * @param costFunction cost function for output deltas
+     * @param frozenLayers Layers whose Kernels are never corrected
+     * @param pool pool to run Kernels on (null runs sequentially)
+     * @throws InvalidStackException if the graph cannot be planned or compiled
+     */
+    public Network(Layer layers[], Layer outputLayer, Cost costFunction, Layer frozenLayers[], ForkJoinPool pool) {
+    
+        // Test for exceptions.
+        if (layers == null) {
+        
+            throw new InvalidStackException("'layers' must not be null");
+        }
+        else if (frozenLayers == null) {
+        
+            throw new InvalidStackException("'frozenLayers' must not be null");
+        }
+        else if (outputLayer == null || !containsLayer(layers, outputLayer)) {
+        
+            throw new InvalidStackException("'outputLayer' must be one of 'layers'");
+        }
+        
+        // Graph roots and unknown inputs.
+        int numRoots = 0;
+        for (int i = 0; i < layers.length; i++) {
+        
+            if (layers[i] == null) {
+            
+                throw new InvalidStackException("Layer " + i + " must not be null");
+            }
+            else if (layers[i].getInputLayer() == null) {
+            
+                numRoots++;
+            }
+            else if (!containsLayer(layers, layers[i].getInputLayer())) {
+            
+                throw new InvalidStackException("Layer " + i + " is connected to a Layer outside of 'layers'");
+            }
+        }
+        if (numRoots != 1) {
+        
+            throw new InvalidStackException("'layers' must hold exactly one input Layer (found " + numRoots + ")");
+        }
+        
+        // Walk back from the output (input Layers are unique, so this is the only path).
+        List<Layer> path = new ArrayList<>();
+        for (Layer curLayer = outputLayer; curLayer != null; curLayer = curLayer.getInputLayer()) {
+        
+            if (path.size() > layers.length) {
+            
+                throw new InvalidStackException("'layers' contains a cycle");
+            }
+            path.add(curLayer);
+        }
+        Collections.reverse(path);
+        plan = path.toArray(new Layer[path.size()]);
+        
+        // Trained Layers.
+        trainable = new boolean[plan.length];
+        for (int i = 1; i < plan.length; i++) {
+        
+            trainable[i] = !containsLayer(frozenLayers, plan[i]);
+        }
+        
+        stack = new CompiledStack(plan, costFunction, pool, trainable);
+        optimizer = new SGDOptimizer();
+        numSteps = 0;
+        numEpochs = 0;
+        checkpointer = null;
+        dataSet = null;
+    }
+    
+    /**
+     * Return the Layers this Network runs.
+     * @return Layers in execution order from input to output
+     */
+    public Layer[] getPlan() {
+    
+        return plan.clone();
+    }
+    
+    /**
+     * Check whether a Layer in the plan is trained.
+     * @param layer Layer to check
+     * @return whether the Layer's Kernels are corrected (false if it is not in the plan)
+     */
+    public boolean isTrainable(Layer layer) {
+    
+        for (int i = 0; i < plan.length; i++) {
+        
+            if (plan[i] == layer) {
+            
+                return trainable[i];
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Return the optimizer used to correct trained Layers.
+     * @return update rule
+     */
+    public Optimizer getOptimizer() {
+    
+        return optimizer;
+    }
+    
+    /**
+     * Set the optimizer used to correct trained Layers
+     * (each Kernel's optimizer state is reset on
+     * its next correction).
+     * @param optimizerP update rule to apply
+     * @throws InvalidStackException if parameter 'optimizerP' is null
+     */
+    public void setOptimizer(Optimizer optimizerP) {
+    
+        // Test for exception.
+        if (optimizerP == null) {
+        
+            throw new InvalidStackException("'optimizerP' must not be null");
+        }
+        
+        optimizer = optimizerP;
+    }
+    
+    /**
+     * Return the checkpointer offered a snapshot after
+     * each correction.
+     * @return periodic checkpointer (null if none)
+     */
+    public AsyncCheckpointer getCheckpointer() {
+    
+        return checkpointer;
+    }
+    
+    /**
+     * Set the checkpointer offered a snapshot after each
+     * correction, which takes one whenever its interval
+     * has passed and writes it while training goes on.
+     * It should checkpoint this Network's 'getPlan()'.
+     * @param checkpointerP periodic checkpointer (null for none)
+     */
+    public void setCheckpointer(AsyncCheckpointer checkpointerP) {
+    
+        checkpointer = checkpointerP;
+    }
+    
+    /**
+     * Return the number of corrections made, which is
+     * the step the next correction is scheduled as.
+     * @return number of mini-batches trained on
+     */
+    public long getNumSteps() {
+    
+        return numSteps;
+    }
+    
+    /**
+     * Return the number of epochs trained on a DataSet,
+     * which is the epoch the next one is scheduled as.
+     * @return number of epochs
+     */
+    public long getNumEpochs() {
+    
+        return numEpochs;
+    }
+    
+    /**
+     * Train on a single mini-batch and correct every
+     * trained Layer once.
+     * @param initialValues initial activation sums for each sample where rows are channels and columns are locations
+     * @param targetValues target values for each sample where rows are channels and columns are locations
+     * @param learningRate learning factor
+     * @param regParameter regularization parameter
+     * @return mean absolute error of the output Layer before correction
+     * @throws InvalidStackException if parameters 'initialValues' and 'targetValues' do not match the input and output Layers
+     * @throws UncheckedIOException if the checkpointer's previous write failed
+     */
+    public double fit(double initialValues[][][], double targetValues[][][], double learningRate, double regParameter) {
+    
+        // Test for exceptions.
+        testTargetValues(initialValues, targetValues);
+        
+        stack.propagate(initialValues);
+        stack.backpropagate(targetValues);
+        double error = stack.getAbsoluteError(targetValues);
+        stack.correct(learningRate, regParameter, optimizer);
+        numSteps++;
+        
+        // Snapshot between corrections if due.
+        if (checkpointer != null) {
+        
+            try {
+            
+                checkpointer.saveIfDue();
+            }
+            catch (IOException e) {
+            
+                throw new UncheckedIOException(e);
+            }
+        }
+        
+        return error / (targetValues.length * stack.getOutputLayer().getNodes().size());
+    }
+    
+    /**
+     * Train on every full mini-batch left in a DataSet's
+     * shuffle buffer (data must already be scaled).
+     * @param dataSet data to train on
+     * @param batchSize number of samples per mini-batch
+     * @param learningRate learning factor
+     * @param regParameter regularization parameter
+     * @return throughput and error of the epoch
+     * @throws InvalidStackException if parameter 'dataSet' is null or 'batchSize' is not greater than zero
+     */
+    public TrainingReport fit(DataSet dataSet, int batchSize, double learningRate, double regParameter) {
+    
+        return fitEpoch(dataSet, batchSize, null, learningRate, regParameter);
+    }
+    
+    /**
+     * Train on every full mini-batch left in a DataSet's
+     * shuffle buffer (data must already be scaled), taking
+     * the batch size from this Network's epoch count and
+     * each learning rate from its step count.
+     * @param dataSet data to train on
+     * @param batchSchedule batch size of each epoch
+     * @param rateSchedule learning factor of each step
+     * @param regParameter regularization parameter
+     * @return throughput and error of the epoch
+     * @throws InvalidStackException if a parameter is null or the scheduled batch size is not greater than zero
+     */
+    public TrainingReport fit(DataSet dataSet, BatchSizeSchedule batchSchedule, LearningRateSchedule rateSchedule, double regParameter) {
+    
+        // Test for exceptions.
+        if (batchSchedule == null || rateSchedule == null) {
+        
+            throw new InvalidStackException("'batchSchedule' and 'rateSchedule' must not be null");
+        }
+        
+        return fitEpoch(dataSet, batchSchedule.getBatchSize(numEpochs), rateSchedule, 0.0, regParameter);
+    }
+    
+    /**
+     * Predict the output Layer's activations for a batch of samples.
+     * @param initialValues initial activation sums for each sample where rows are channels and columns are locations
+     * @return output activation values for each sample where rows are channels and columns are locations
+     * @throws InvalidStackException if parameter 'initialValues' does not match the input Layer
+     */
+    public double[][][] predict(double initialValues[][][]) {
+    
+        stack.propagate(initialValues);
+        
+        return stack.getOutputLayer().getActivationValuesBatch();
+    }
+    
+    /**
+     * Predict the output Layer's activations for a single sample.
+     * @param initialValues initial activation sums where rows are channels and columns are locations
+     * @return output activation values where rows are channels and columns are locations
+     * @throws InvalidStackException if parameter 'initialValues' does not match the input Layer
+     */
+    public double[][] predict(double initialValues[][]) {
+    
+        return predict(new double[][][] {initialValues})[0];
+    }
+    
+    /**
+     * Measure the output Layer's error on a batch of
+     * samples without training.
+     * @param initialValues initial activation sums for each sample where rows are channels and columns are locations
+     * @param targetValues target values for each sample where rows are channels and columns are locations
+     * @return mean absolute error over every output Node of every sample
+     * @throws InvalidStackException if parameters 'initialValues' and 'targetValues' do not match the input and output Layers
+     */
+    public double evaluate(double initialValues[][][], double targetValues[][][]) {
+    
+        // Test for exceptions.
+        testTargetValues(initialValues, targetValues);
+        
+        stack.propagate(initialValues);
+        
+        return stack.getAbsoluteError(targetValues) / (targetValues.length * stack.getOutputLayer().getNodes().size());
+    }
+    
+    /**
+     * Save this Network's Layers and training state,
+     * including the shuffle state of the DataSet it is
+     * training on, atomically replacing any existing file.
+     * @param path file to write
+     * @throws IOException if the file cannot be written
+     * @throws InvalidCheckpointException if the Layers cannot be checkpointed or parameter 'path' is null
+     */
+    public void save(Path path) throws IOException {
+    
+        Checkpoint.save(plan, encodeTrainingState(), path);
+    }
+    
+    /**
+     * Resume training from a checkpoint written by
+     * 'save()' or by an AsyncCheckpointer built for a
+     * Network, restoring the Layers' weights, this
+     * Network's optimizer state, pending delta sums, and
+     * step and epoch counts. The Network must have been
+     * built the same way as the one saved and given the
+     * same optimizer, but need not have been trained (any
+     * state it has that was not saved is cleared). A
+     * checkpoint that cannot be resumed leaves this
+     * Network unchanged.
+     * @param path file to read
+     * @throws IOException if the file cannot be read
+     * @throws InvalidCheckpointException if the file is not a checkpoint of this Network's Layers or the saved state does not fit the optimizer
+     */
+    public void resume(Path path) throws IOException {
+    
+        resumeUnchecked(path, null);
+    }
+    
+    /**
+     * Resume training from a checkpoint as above and
+     * also restore the shuffle state of the DataSet that
+     * was being trained on, so that the next call to
+     * 'fit()' with it finishes the interrupted epoch on
+     * the same mini-batches. The DataSet must hold the
+     * same data, added in the same order.
+     * @param path file to read
+     * @param dataSetP DataSet to restore the shuffle state of
+     * @throws IOException if the file cannot be read
+     * @throws InvalidCheckpointException if the file is not a checkpoint of this Network's Layers, holds no DataSet state, or the saved state does not fit the optimizer
+     * @throws InvalidShuffleStateException if the saved shuffle state does not fit parameter 'dataSetP'
+     */
+    public void resume(Path path, DataSet dataSetP) throws IOException {
+    
+        // Test for exception.
+        if (dataSetP == null) {
+        
+            throw new InvalidCheckpointException("'dataSetP' must not be null");
+        }
+        
+        resumeUnchecked(path, dataSetP);
+    }
+    
+    /**
+     * Return the compiled plan, for use with trainers
+     * and inference contexts.
+     * @return compiled plan
+     */
+    public CompiledStack getStack() {
+    
+        return stack;
+    }
+    
+    /**
+     * Unfreeze every Layer's Kernels so that the
+     * Layers may be used individually again (this
+     * Network must not be used afterwards).
+     */
+    public void release() {
+    
+        stack.release();
+    }
+    
+    /**
+     * Encode the step and epoch counts and the shuffle
+     * state of the DataSet being trained on.
+     * @return little-endian training state
+     */
+    byte[] encodeTrainingState() {
+    
+        // Shuffle state (null if no DataSet).
+        byte shuffleState[] = dataSet != null ? dataSet.getShuffleState() : null;
+        
+        ByteBuffer state = ByteBuffer.allocate(2 * Long.BYTES + Integer.BYTES + (shuffleState != null ? shuffleState.length : 0)).order(ByteOrder.LITTLE_ENDIAN);
+        state.putLong(numSteps);
+        state.putLong(numEpochs);
+        state.putInt(shuffleState != null ? shuffleState.length : -1);
+        if (shuffleState != null) {
+        
+            state.put(shuffleState);
+        }
+        
+        return state.array();
+    }
+    
+    // HELPER METHODS.
+    
+    /**
+     * Resume training from a checkpoint without testing
+     * the DataSet for exceptions. The training state and
+     * shuffle state are tested before any Layer is
+     * changed, so a failure leaves this Network as it was.
+     * @param path file to read
+     * @param dataSetP DataSet to restore the shuffle state of (null to skip)
+     * @throws IOException if the file cannot be read
+     * @throws InvalidCheckpointException if the file is not a checkpoint of this Network's Layers or its training state is malformed
+     * @throws InvalidShuffleStateException if the saved shuffle state does not fit parameter 'dataSetP'
+     */
+    private void resumeUnchecked(Path path, DataSet dataSetP) throws IOException {
+    
+        // Test training state, then restore Layers.
+        ByteBuffer state = ByteBuffer.wrap(Checkpoint.resume(path, plan, optimizer, training -> decodeShuffleState(training, dataSetP))).order(ByteOrder.LITTLE_ENDIAN);
+        byte shuffleState[] = decodeShuffleState(state.array(), dataSetP);
+        
+        if (dataSetP != null) {
+        
+            dataSetP.setShuffleState(shuffleState);
+            dataSet = dataSetP;
+        }
+        numSteps = state.getLong();
+        numEpochs = state.getLong();
+    }
+    
+    /**
+     * Decode and test training state encoded by
+     * 'encodeTrainingState()'.
+     * @param training encoded training state
+     * @param dataSetP DataSet the shuffle state must fit (null to skip)
+     * @return shuffle state (null if none was saved)
+     * @throws InvalidCheckpointException if the training state is malformed or holds no shuffle state while parameter 'dataSetP' is not null
+     * @throws InvalidShuffleStateException if the shuffle state does not fit parameter 'dataSetP'
+     */
+    private static byte[] decodeShuffleState(byte training[], DataSet dataSetP) {
+    
+        // Decode training state.
+        ByteBuffer state = ByteBuffer.wrap(training).order(ByteOrder.LITTLE_ENDIAN);
+        long steps;
+        long epochs;
+        byte shuffleState[];
+        try {
+        
+            steps = state.getLong();
+            epochs = state.getLong();
+            int shuffleLength = state.getInt();
+            shuffleState = shuffleLength >= 0 ? new byte[shuffleLength] : null;
+            if (shuffleState != null) {
+            
+                state.get(shuffleState);
+            }
+        }
+        catch (BufferUnderflowException | NegativeArraySizeException e) {
+        
+            throw new InvalidCheckpointException("checkpoint holds no training state of a Network");
+        }
+        
+        // Test for exceptions.
+        if (steps < 0 || epochs < 0 || state.hasRemaining()) {
+        
+            throw new InvalidCheckpointException("checkpoint training state is malformed");
+        }
+        else if (dataSetP != null && shuffleState == null) {
+        
+            throw new InvalidCheckpointException("checkpoint holds no DataSet shuffle state");
+        }
+        else if (dataSetP != null) {
+        
+            dataSetP.testShuffleState(shuffleState);
+        }
+        
+        return shuffleState;
+    }
+    
+    /**
+     * Train on every full mini-batch left in a DataSet's
+     * shuffle buffer and count the epoch.
+     * @param dataSetP data to train on
+     * @param batchSize number of samples per mini-batch
+     * @param rateSchedule learning factor of each step (null for a constant rate)
+     * @param learningRate learning factor if there is no schedule
+     * @param regParameter regularization parameter
+     * @return throughput and error of the epoch
+     * @throws InvalidStackException if parameter 'dataSet' is null or 'batchSize' is not greater than zero
+     */
+    private TrainingReport fitEpoch(DataSet dataSetP, int batchSize, LearningRateSchedule rateSchedule, double learningRate, double regParameter) {
+    
+        // Test for exceptions.
+        if (dataSetP == null) {
+        
+            throw new InvalidStackException("'dataSet' must not be null");
+        }
+        else if (batchSize <= 0) {
+        
+            throw new InvalidStackException("'batchSize' must be greater than zero");
+        }
+        
+        dataSet = dataSetP;
+        
+        // Epoch totals.
+        long startTime = System.nanoTime();
+        long numSamples = 0;
+        double error = 0.0;
+        
+        while (dataSetP.hasNextBuffer(batchSize)) {
+        
+            // Next mini-batch.
+            double batchRaw[][][] = new double[batchSize][][];
+            double batchLabel[][][] = new double[batchSize][][];
+            for (int i = 0; i < batchSize; i++) {
+            
+                Datum curDatum = dataSetP.getNextBuffer();
+                batchRaw[i] = curDatum.getRaw();
+                batchLabel[i] = curDatum.getLabel();
+            }
+            
+            // Learning factor of this step.
+            double curRate = rateSchedule != null ? rateSchedule.getLearningRate(numSteps) : learningRate;
+            
+            error += fit(batchRaw, batchLabel, curRate, regParameter) * batchSize;
+            numSamples += batchSize;
+        }
+        numEpochs++;
+        
+        return new TrainingReport(numSamples, System.nanoTime() - startTime, numSamples > 0 ? error / numSamples : 0.0);
+    }
+    
+    /**
+     * Test that target values match the output Layer
+     * and hold one entry per initial value.
+     * @param initialValues initial activation sums for each sample
+     * @param targetValues target values for each sample where rows are channels and columns are locations
+     * @throws InvalidStackException if parameter 'targetValues' does not match
+     */
+    private void testTargetValues(double initialValues[][][], double targetValues[][][]) {
+    
+        // Output shape.
+        int numChannels = stack.getOutputLayer().getNodes().getNumChannels();
+        int nodesPerChannel = stack.getOutputLayer().getNodes().getNodesPerChannel();
+        
+        // Test for exceptions.
+        if (initialValues == null || targetValues == null || targetValues.length != initialValues.length) {
+        
+            throw new InvalidStackException("'initialValues' and 'targetValues' must hold the same number of samples");
+        }
+        for (int sampleI = 0; sampleI < targetValues.length; sampleI++) {
+        
+            if (targetValues[sampleI].length != numChannels) {
+            
+                throw new InvalidStackException("target " + sampleI + " has " + targetValues[sampleI].length + " channel(s) while output Layer has " + numChannels + " channel(s)");
+            }
+            for (int channelI = 0; channelI < numChannels; channelI++) {
+            
+                if (targetValues[sampleI][channelI].length != nodesPerChannel) {
+                
+                    throw new InvalidStackException("target " + sampleI + " channel " + channelI + " does not match output Layer's Nodes per channel");
+                }
+            }
+        }
+    }
+    
+    /**
+     * Check whether an array holds a Layer.
+     * @param layers array to search
+     * @param layer Layer to find
+     * @return whether the same Layer appears in the array
+     */
+    private static boolean containsLayer(Layer layers[], Layer layer) {
+    
+        return Arrays.asList(layers).contains(layer);
+    }
+}
@@ -0,0 +1,82 @@
+package com.fairburn.neurogear.utilities.layer;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Sequential reader over a checkpoint laid out in a series of buffers.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: PayloadCursor.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Reads the bytes of a snapshot as one
+ * stream regardless of where its buffers end. Buffers
+ * are read with absolute gets up to their limits, so
+ * their positions are never moved and other readers
+ * and writers of the same buffers are not disturbed.
+ */
+final class PayloadCursor {
+    
+    // MEMBER VARIABLES.
+    
+    // Buffers holding the snapshot in order.
+    private final List<ByteBuffer> chunks;
+    // Number of buffers in use.
+    private final int numChunks;
+    // Buffer being read.
+    private int chunkI;
+    // Position within buffer being read.
+    private int position;
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Construct a PayloadCursor at an offset into the
+     * first buffer.
+     * @param chunksP buffers holding the snapshot in order
+     * @param numChunksP number of buffers in use
+     * @param offset bytes of the first buffer to skip (such as its header)
+     */
+    PayloadCursor(List<ByteBuffer> chunksP, int numChunksP, int offset) {
+    
+        chunks = chunksP;
+        numChunks = numChunksP;
+        chunkI = 0;
+        position = offset;
+    }
+    
+    /**
+     * Copy the next bytes into an array.
+     * @param values array to copy into from its start
+     * @param length largest number of bytes to copy
+     * @return number of bytes copied (less than 'length' only at the end)
+     */
+    int get(byte values[], int length) {
+    
+        int count = 0;
+        while (count < length && chunkI < numChunks) {
+        
+            // Bytes to copy from this buffer.
+            ByteBuffer chunk = chunks.get(chunkI);
+            int numBytes = Math.min(length - count, chunk.limit() - position);
+            
+            chunk.get(position, values, count, numBytes);
+            count += numBytes;
+            position += numBytes;
+            
+            // Move on to next buffer.
+            if (position == chunk.limit()) {
+            
+                chunkI++;
+                position = 0;
+            }
+        }
+        
+        return count;
+    }
+}
@@ -0,0 +1,96 @@
+package com.fairburn.neurogear.utilities.layer;
+
+/**
+ * Summary of a single training epoch.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: TrainingReport.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Records how many samples an epoch trained
+ * on, how long it took, and the mean absolute error of
+ * the output Layer on those samples (measured during
+ * training, before each correction), so that throughput
+ * and convergence of different trainers can be compared.
+ * Every trainer uses this one convention: the error is
+ * the mean over every output Node of every sample, and
+ * the per-batch entry points 'Network.fit()' and
+ * 'DataParallelTrainer.train()' return the same mean for
+ * their mini-batch.
+ */
+public final class TrainingReport {
+    
+    // MEMBER VARIABLES.
+    
+    // Number of samples trained on.
+    private final long numSamples;
+    // Wall clock duration of the epoch in nanoseconds.
+    private final long elapsedNanos;
+    // Mean absolute error over every output Node of every sample.
+    private final double meanAbsoluteError;
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Construct a TrainingReport with passed measurements.
+     * @param numSamplesP number of samples trained on
+     * @param elapsedNanosP wall clock duration of the epoch in nanoseconds
+     * @param meanAbsoluteErrorP mean absolute error over every output Node of every sample
+     */
+    public TrainingReport(long numSamplesP, long elapsedNanosP, double meanAbsoluteErrorP) {
+    
+        numSamples = numSamplesP;
+        elapsedNanos = elapsedNanosP;
+        meanAbsoluteError = meanAbsoluteErrorP;
+    }
+    
+    /**
+     * Return the number of samples trained on.
+     * @return number of samples
+     */
+    public long getNumSamples() {
+    
+        return numSamples;
+    }
+    
+    /**
+     * Return the wall clock duration of the epoch.
+     * @return duration in nanoseconds
+     */
+    public long getElapsedNanos() {
+    
+        return elapsedNanos;
+    }
+    
+    /**
+     * Return the training throughput.
+     * @return samples per second (0.0 if no time elapsed)
+     */
+    public double getSamplesPerSecond() {
+    
+        return elapsedNanos > 0 ? numSamples * 1.0e9 / elapsedNanos : 0.0;
+    }
+    
+    /**
+     * Return the mean absolute error of the output Layer.
+     * @return mean |activation - target| over every output Node of every sample
+     */
+    public double getMeanAbsoluteError() {
+    
+        return meanAbsoluteError;
+    }
+    
+    /**
+     * Return a one line summary of this report.
+     * @return summary
+     */
+    @Override
+    public String toString() {
+    
+        return String.format("%d samples | %.1f samples/s | mean absolute error %f", numSamples, getSamplesPerSecond(), meanAbsoluteError);
+    }
+}
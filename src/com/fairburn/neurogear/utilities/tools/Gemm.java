@@ -0,0 +1,308 @@
+package com.fairburn.neurogear.utilities.tools;
+
+/**
+ * A class containing blocked matrix multiplication routines.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: Gemm.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: General matrix multiplication (C += A * B)
+ * in pure Java. Every routine walks its operands in
+ * cache-sized blocks so that each loaded element is
+ * reused several times before it is evicted.
+ * 'multiplyTransposed()' computes 4x4 tiles of the result
+ * in local variables; 'multiply()' and
+ * 'multiplyTransposedLeft()' stream rows of the result
+ * and fold in four rows of B per pass, so each result
+ * element is read and written once per four products. Flat
+ * matrices are row-major and addressed by an offset and
+ * a leading dimension (the distance between rows); row
+ * matrices are arrays of rows.
+ */
+public abstract class Gemm {
+    
+    // MEMBER VARIABLES.
+    
+    // Rows of the left operand per cache block.
+    private static final int ROW_BLOCK = 64;
+    // Columns of the result per cache block.
+    private static final int COLUMN_BLOCK = 256;
+    // Shared (inner) dimension per cache block.
+    private static final int DEPTH_BLOCK = 256;
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Compute C += A * B^T where A is flat and B is given by rows,
+     * so that each element of C is a dot product of a row of A
+     * with a row of B.
+     * @param m rows of A and C
+     * @param n rows of B and columns of C
+     * @param k columns of A and B
+     * @param a flat matrix A
+     * @param aOffset start of A
+     * @param lda leading dimension of A
+     * @param b rows of B (only the first k elements of each are read)
+     * @param c flat matrix C
+     * @param cOffset start of C
+     * @param ldc leading dimension of C
+     */
+    public static void multiplyTransposed(int m, int n, int k, double a[], int aOffset, int lda, double b[][], double c[], int cOffset, int ldc) {
+    
+        for (int p0 = 0; p0 < k; p0 += DEPTH_BLOCK) {
+        
+            // End of depth block.
+            int p1 = Math.min(p0 + DEPTH_BLOCK, k);
+            
+            for (int i0 = 0; i0 < m; i0 += ROW_BLOCK) {
+            
+                // End of row block.
+                int i1 = Math.min(i0 + ROW_BLOCK, m);
+                
+                for (int j0 = 0; j0 < n; j0 += COLUMN_BLOCK) {
+                
+                    // End of column block.
+                    int j1 = Math.min(j0 + COLUMN_BLOCK, n);
+                    
+                    int i = i0;
+                    
+                    // Full 4x4 tiles.
+                    for (; i + 4 <= i1; i += 4) {
+                    
+                        // Starts of the four rows of A.
+                        int a0 = aOffset + i * lda;
+                        int a1 = a0 + lda;
+                        int a2 = a1 + lda;
+                        int a3 = a2 + lda;
+                        
+                        int j = j0;
+                        
+                        for (; j + 4 <= j1; j += 4) {
+                        
+                            // Rows of B.
+                            double b0[] = b[j];
+                            double b1[] = b[j + 1];
+                            double b2[] = b[j + 2];
+                            double b3[] = b[j + 3];
+                            
+                            // Tile accumulators.
+                            double c00 = 0.0, c01 = 0.0, c02 = 0.0, c03 = 0.0;
+                            double c10 = 0.0, c11 = 0.0, c12 = 0.0, c13 = 0.0;
+                            double c20 = 0.0, c21 = 0.0, c22 = 0.0, c23 = 0.0;
+                            double c30 = 0.0, c31 = 0.0, c32 = 0.0, c33 = 0.0;
+                            
+                            for (int p = p0; p < p1; p++) {
+                            
+                                double x0 = a[a0 + p], x1 = a[a1 + p], x2 = a[a2 + p], x3 = a[a3 + p];
+                                double y0 = b0[p], y1 = b1[p], y2 = b2[p], y3 = b3[p];
+                                
+                                c00 += x0 * y0; c01 += x0 * y1; c02 += x0 * y2; c03 += x0 * y3;
+                                c10 += x1 * y0; c11 += x1 * y1; c12 += x1 * y2; c13 += x1 * y3;
+                                c20 += x2 * y0; c21 += x2 * y1; c22 += x2 * y2; c23 += x2 * y3;
+                                c30 += x3 * y0; c31 += x3 * y1; c32 += x3 * y2; c33 += x3 * y3;
+                            }
+                            
+                            // Start of tile within C.
+                            int cI = cOffset + i * ldc + j;
+                            
+                            c[cI] += c00; c[cI + 1] += c01; c[cI + 2] += c02; c[cI + 3] += c03;
+                            cI += ldc;
+                            c[cI] += c10; c[cI + 1] += c11; c[cI + 2] += c12; c[cI + 3] += c13;
+                            cI += ldc;
+                            c[cI] += c20; c[cI + 1] += c21; c[cI + 2] += c22; c[cI + 3] += c23;
+                            cI += ldc;
+                            c[cI] += c30; c[cI + 1] += c31; c[cI + 2] += c32; c[cI + 3] += c33;
+                        }
+                        
+                        // Remaining columns of this row tile.
+                        for (; j < j1; j++) {
+                        
+                            double bj[] = b[j];
+                            double c0 = 0.0, c1 = 0.0, c2 = 0.0, c3 = 0.0;
+                            
+                            for (int p = p0; p < p1; p++) {
+                            
+                                c0 += a[a0 + p] * bj[p];
+                                c1 += a[a1 + p] * bj[p];
+                                c2 += a[a2 + p] * bj[p];
+                                c3 += a[a3 + p] * bj[p];
+                            }
+                            
+                            c[cOffset + i * ldc + j] += c0;
+                            c[cOffset + (i + 1) * ldc + j] += c1;
+                            c[cOffset + (i + 2) * ldc + j] += c2;
+                            c[cOffset + (i + 3) * ldc + j] += c3;
+                        }
+                    }
+                    
+                    // Remaining rows.
+                    for (; i < i1; i++) {
+                    
+                        // Start of row of A.
+                        int aI = aOffset + i * lda;
+                        
+                        for (int j = j0; j < j1; j++) {
+                        
+                            double bj[] = b[j];
+                            double sum = 0.0;
+                            
+                            for (int p = p0; p < p1; p++) {
+                            
+                                sum += a[aI + p] * bj[p];
+                            }
+                            
+                            c[cOffset + i * ldc + j] += sum;
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Compute C += A * B where A and C are flat and B is
+     * given by rows.
+     * @param m rows of A and C
+     * @param n columns of B and C
+     * @param k columns of A and rows of B
+     * @param a flat matrix A
+     * @param aOffset start of A
+     * @param lda leading dimension of A
+     * @param b rows of B (only the first n elements of each are read)
+     * @param c flat matrix C
+     * @param cOffset start of C
+     * @param ldc leading dimension of C
+     */
+    public static void multiply(int m, int n, int k, double a[], int aOffset, int lda, double b[][], double c[], int cOffset, int ldc) {
+    
+        for (int p0 = 0; p0 < k; p0 += DEPTH_BLOCK) {
+        
+            // End of depth block.
+            int p1 = Math.min(p0 + DEPTH_BLOCK, k);
+            
+            for (int i0 = 0; i0 < m; i0 += ROW_BLOCK) {
+            
+                // End of row block.
+                int i1 = Math.min(i0 + ROW_BLOCK, m);
+                
+                for (int j0 = 0; j0 < n; j0 += COLUMN_BLOCK) {
+                
+                    // End of column block.
+                    int j1 = Math.min(j0 + COLUMN_BLOCK, n);
+                    
+                    for (int i = i0; i < i1; i++) {
+                    
+                        // Start of rows of A and C.
+                        int aI = aOffset + i * lda;
+                        int cI = cOffset + i * ldc;
+                        
+                        int p = p0;
+                        
+                        // Four rows of B at a time.
+                        for (; p + 4 <= p1; p += 4) {
+                        
+                            double x0 = a[aI + p], x1 = a[aI + p + 1], x2 = a[aI + p + 2], x3 = a[aI + p + 3];
+                            double b0[] = b[p], b1[] = b[p + 1], b2[] = b[p + 2], b3[] = b[p + 3];
+                            
+                            for (int j = j0; j < j1; j++) {
+                            
+                                c[cI + j] += x0 * b0[j] + x1 * b1[j] + x2 * b2[j] + x3 * b3[j];
+                            }
+                        }
+                        
+                        // Remaining rows of B.
+                        for (; p < p1; p++) {
+                        
+                            double x = a[aI + p];
+                            double bp[] = b[p];
+                            
+                            for (int j = j0; j < j1; j++) {
+                            
+                                c[cI + j] += x * bp[j];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Compute C += A^T * B where A and B are flat and C is
+     * given by rows.
+     * @param m columns of A and rows of C
+     * @param n columns of B and C
+     * @param k rows of A and B
+     * @param a flat matrix A
+     * @param aOffset start of A
+     * @param lda leading dimension of A
+     * @param b flat matrix B
+     * @param bOffset start of B
+     * @param ldb leading dimension of B
+     * @param c rows of C (only the first n elements of each are written)
+     */
+    public static void multiplyTransposedLeft(int m, int n, int k, double a[], int aOffset, int lda, double b[], int bOffset, int ldb, double c[][]) {
+    
+        for (int p0 = 0; p0 < k; p0 += DEPTH_BLOCK) {
+        
+            // End of depth block.
+            int p1 = Math.min(p0 + DEPTH_BLOCK, k);
+            
+            for (int i0 = 0; i0 < m; i0 += ROW_BLOCK) {
+            
+                // End of row block.
+                int i1 = Math.min(i0 + ROW_BLOCK, m);
+                
+                for (int j0 = 0; j0 < n; j0 += COLUMN_BLOCK) {
+                
+                    // End of column block.
+                    int j1 = Math.min(j0 + COLUMN_BLOCK, n);
+                    
+                    for (int i = i0; i < i1; i++) {
+                    
+                        // Row of C.
+                        double ci[] = c[i];
+                        
+                        int p = p0;
+                        
+                        // Four rows of B at a time.
+                        for (; p + 4 <= p1; p += 4) {
+                        
+                            // Starts of the four rows of B.
+                            int bI = bOffset + p * ldb;
+                            
+                            double x0 = a[aOffset + p * lda + i];
+                            double x1 = a[aOffset + (p + 1) * lda + i];
+                            double x2 = a[aOffset + (p + 2) * lda + i];
+                            double x3 = a[aOffset + (p + 3) * lda + i];
+                            
+                            for (int j = j0; j < j1; j++) {
+                            
+                                ci[j] += x0 * b[bI + j] + x1 * b[bI + ldb + j] + x2 * b[bI + 2 * ldb + j] + x3 * b[bI + 3 * ldb + j];
+                            }
+                        }
+                        
+                        // Remaining rows of B.
+                        for (; p < p1; p++) {
+                        
+                            // Start of row of B.
+                            int bI = bOffset + p * ldb;
+                            
+                            double x = a[aOffset + p * lda + i];
+                            
+                            for (int j = j0; j < j1; j++) {
+                            
+                                ci[j] += x * b[bI + j];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.fairburn.neurogear.utilities.tools;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Scalar implementation of VectorMath.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: ScalarVectorMath.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Plain loops used when the Vector API
+ * is not available.
+ */
+public final class ScalarVectorMath extends VectorMath {
+    
+    /**
+     * Compute the dot product of two runs of values.
+     * @param a first array
+     * @param aOffset start of run in first array
+     * @param b second array
+     * @param bOffset start of run in second array
+     * @param length length of both runs
+     * @return sum of a[aOffset + i] * b[bOffset + i]
+     */
+    @Override
+    protected double computeDot(double a[], int aOffset, double b[], int bOffset, int length) {
+    
+        double sum = 0.0;
+        
+        for (int i = 0; i < length; i++) {
+        
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        
+        return sum;
+    }
+    
+    /**
+     * Compute the dot product of a run of little-endian
+     * doubles in a buffer and a run of values in an array.
+     * @param a buffer of doubles in little-endian order (its position is ignored)
+     * @param aIndex start of run in first buffer, counted in doubles
+     * @param b second array
+     * @param bOffset start of run in second array
+     * @param length length of both runs
+     * @return sum of a.getDouble((aIndex + i) * 8) * b[bOffset + i]
+     */
+    @Override
+    protected double computeDot(ByteBuffer a, int aIndex, double b[], int bOffset, int length) {
+    
+        double sum = 0.0;
+        
+        for (int i = 0; i < length; i++) {
+        
+            sum += a.getDouble((aIndex + i) * Double.BYTES) * b[bOffset + i];
+        }
+        
+        return sum;
+    }
+    
+    /**
+     * Compute the dot product of two runs of single
+     * precision values in double precision.
+     * @param a first array
+     * @param aOffset start of run in first array
+     * @param b second array
+     * @param bOffset start of run in second array
+     * @param length length of both runs
+     * @return sum of (double)a[aOffset + i] * b[bOffset + i]
+     */
+    @Override
+    protected double computeDot(float a[], int aOffset, float b[], int bOffset, int length) {
+    
+        double sum = 0.0;
+        
+        for (int i = 0; i < length; i++) {
+        
+            sum += (double)a[aOffset + i] * b[bOffset + i];
+        }
+        
+        return sum;
+    }
+    
+    /**
+     * Add a scaled run of values to another run of values.
+     * @param alpha scaling factor
+     * @param x array to scale
+     * @param xOffset start of run in array to scale
+     * @param y array to add to
+     * @param yOffset start of run in array to add to
+     * @param length length of both runs
+     */
+    @Override
+    protected void computeAxpy(double alpha, double x[], int xOffset, double y[], int yOffset, int length) {
+    
+        for (int i = 0; i < length; i++) {
+        
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+    
+    /**
+     * Add a scaled run of single precision values to a
+     * run of double precision values.
+     * @param alpha scaling factor
+     * @param x array to scale
+     * @param xOffset start of run in array to scale
+     * @param y array to add to
+     * @param yOffset start of run in array to add to
+     * @param length length of both runs
+     */
+    @Override
+    protected void computeAxpy(double alpha, float x[], int xOffset, double y[], int yOffset, int length) {
+    
+        for (int i = 0; i < length; i++) {
+        
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+}
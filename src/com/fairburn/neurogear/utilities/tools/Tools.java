@@ -17,4 +17,61 @@ package com.fairburn.neurogear.utilities.tools;
  */
 public abstract class Tools {
     
+    // MEMBER METHODS.
+    
+    /**
+     * Return a single precision copy of a 2D array.
+     * @param values double precision values
+     * @return values rounded to single precision (null if 'values' is null)
+     */
+    public static float[][] toSingle(double values[][]) {
+    
+        if (values == null) {
+        
+            return null;
+        }
+        
+        // Converted values.
+        float singleValues[][] = new float[values.length][];
+        
+        for (int i = 0; i < values.length; i++) {
+        
+            singleValues[i] = new float[values[i].length];
+            
+            for (int j = 0; j < values[i].length; j++) {
+            
+                singleValues[i][j] = (float)values[i][j];
+            }
+        }
+        
+        return singleValues;
+    }
+    
+    /**
+     * Return a double precision copy of a 2D array.
+     * @param values single precision values
+     * @return values widened to double precision (null if 'values' is null)
+     */
+    public static double[][] toDouble(float values[][]) {
+    
+        if (values == null) {
+        
+            return null;
+        }
+        
+        // Converted values.
+        double doubleValues[][] = new double[values.length][];
+        
+        for (int i = 0; i < values.length; i++) {
+        
+            doubleValues[i] = new double[values[i].length];
+            
+            for (int j = 0; j < values[i].length; j++) {
+            
+                doubleValues[i][j] = values[i][j];
+            }
+        }
+        
+        return doubleValues;
+    }
 }
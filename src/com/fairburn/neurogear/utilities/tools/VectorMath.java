@@ -0,0 +1,204 @@
+package com.fairburn.neurogear.utilities.tools;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A class containing vector arithmetic for Kernels.
+ * 
+ * @author Garrett Russell Fairburn
+ * @version 1.0
+ * File: VectorMath.java
+ * Created: 10/17/26
+ * Copyright (c) 2017, Garrett Russell Fairburn, All rights reserved.
+ * Summary of Modifications:
+ *  N/A
+ * 
+ * Description: Dot products and scaled additions over
+ * contiguous runs of doubles or floats (floats are
+ * widened and every product and sum is computed in
+ * double). Calls are routed to a SIMD backend built on
+ * the incubating Vector API when its class and the
+ * 'jdk.incubator.vector' module are both present, and
+ * to a scalar backend otherwise. The SIMD backend lives
+ * in the separate 'src-simd' source root so that the
+ * library itself compiles without the module (see
+ * README.txt). Setting the system property
+ * 'neurogear.simd' to 'false' forces the scalar backend.
+ */
+public abstract class VectorMath {
+    
+    // MEMBER VARIABLES.
+    
+    // Name of the SIMD backend class.
+    private static final String SIMD_BACKEND = "com.fairburn.neurogear.utilities.tools.SimdVectorMath";
+    
+    // Backend chosen when this class is loaded.
+    private static final VectorMath BACKEND = loadBackend();
+    
+    // MEMBER METHODS.
+    
+    /**
+     * Compute the dot product of two runs of values.
+     * @param a first array
+     * @param aOffset start of run in first array
+     * @param b second array
+     * @param bOffset start of run in second array
+     * @param length length of both runs
+     * @return sum of a[aOffset + i] * b[bOffset + i]
+     */
+    public static double dot(double a[], int aOffset, double b[], int bOffset, int length) {
+    
+        return BACKEND.computeDot(a, aOffset, b, bOffset, length);
+    }
+    
+    /**
+     * Compute the dot product of a run of little-endian
+     * doubles in a buffer (such as a mapped file) and a
+     * run of values in an array, without copying the
+     * buffer onto the heap.
+     * @param a buffer of doubles in little-endian order (its position is ignored)
+     * @param aIndex start of run in first buffer, counted in doubles
+     * @param b second array
+     * @param bOffset start of run in second array
+     * @param length length of both runs
+     * @return sum of a.getDouble((aIndex + i) * 8) * b[bOffset + i]
+     */
+    public static double dot(ByteBuffer a, int aIndex, double b[], int bOffset, int length) {
+    
+        return BACKEND.computeDot(a, aIndex, b, bOffset, length);
+    }
+    
+    /**
+     * Compute the dot product of two runs of single
+     * precision values in double precision.
+     * @param a first array
+     * @param aOffset start of run in first array
+     * @param b second array
+     * @param bOffset start of run in second array
+     * @param length length of both runs
+     * @return sum of (double)a[aOffset + i] * b[bOffset + i]
+     */
+    public static double dot(float a[], int aOffset, float b[], int bOffset, int length) {
+    
+        return BACKEND.computeDot(a, aOffset, b, bOffset, length);
+    }
+    
+    /**
+     * Add a scaled run of values to another run of values.
+     * @param alpha scaling factor
+     * @param x array to scale
+     * @param xOffset start of run in array to scale
+     * @param y array to add to
+     * @param yOffset start of run in array to add to
+     * @param length length of both runs
+     */
+    public static void axpy(double alpha, double x[], int xOffset, double y[], int yOffset, int length) {
+    
+        BACKEND.computeAxpy(alpha, x, xOffset, y, yOffset, length);
+    }
+    
+    /**
+     * Add a scaled run of single precision values to a
+     * run of double precision values.
+     * @param alpha scaling factor
+     * @param x array to scale
+     * @param xOffset start of run in array to scale
+     * @param y array to add to
+     * @param yOffset start of run in array to add to
+     * @param length length of both runs
+     */
+    public static void axpy(double alpha, float x[], int xOffset, double y[], int yOffset, int length) {
+    
+        BACKEND.computeAxpy(alpha, x, xOffset, y, yOffset, length);
+    }
+    
+    /**
+     * Check whether calls are routed to the SIMD backend.
+     * @return whether the SIMD backend is in use
+     */
+    public static boolean isAccelerated() {
+    
+        return !(BACKEND instanceof ScalarVectorMath);
+    }
+    
+    /**
+     * Backend implementation of 'dot()'.
+     * @param a first array
+     * @param aOffset start of run in first array
+     * @param b second array
+     * @param bOffset start of run in second array
+     * @param length length of both runs
+     * @return sum of a[aOffset + i] * b[bOffset + i]
+     */
+    protected abstract double computeDot(double a[], int aOffset, double b[], int bOffset, int length);
+    
+    /**
+     * Backend implementation of buffer 'dot()'.
+     * @param a buffer of doubles in little-endian order (its position is ignored)
+     * @param aIndex start of run in first buffer, counted in doubles
+     * @param b second array
+     * @param bOffset start of run in second array
+     * @param length length of both runs
+     * @return sum of a.getDouble((aIndex + i) * 8) * b[bOffset + i]
+     */
+    protected abstract double computeDot(ByteBuffer a, int aIndex, double b[], int bOffset, int length);
+    
+    /**
+     * Backend implementation of single precision 'dot()'.
+     * @param a first array
+     * @param aOffset start of run in first array
+     * @param b second array
+     * @param bOffset start of run in second array
+     * @param length length of both runs
+     * @return sum of (double)a[aOffset + i] * b[bOffset + i]
+     */
+    protected abstract double computeDot(float a[], int aOffset, float b[], int bOffset, int length);
+    
+    /**
+     * Backend implementation of 'axpy()'.
+     * @param alpha scaling factor
+     * @param x array to scale
+     * @param xOffset start of run in array to scale
+     * @param y array to add to
+     * @param yOffset start of run in array to add to
+     * @param length length of both runs
+     */
+    protected abstract void computeAxpy(double alpha, double x[], int xOffset, double y[], int yOffset, int length);
+    
+    /**
+     * Backend implementation of single precision 'axpy()'.
+     * @param alpha scaling factor
+     * @param x array to scale
+     * @param xOffset start of run in array to scale
+     * @param y array to add to
+     * @param yOffset start of run in array to add to
+     * @param length length of both runs
+     */
+    protected abstract void computeAxpy(double alpha, float x[], int xOffset, double y[], int yOffset, int length);
+    
+    // HELPER METHODS.
+    
+    /**
+     * Load the SIMD backend if it is enabled and
+     * its module is present, or the scalar backend.
+     * @return backend to route calls to
+     */
+    private static VectorMath loadBackend() {
+    
+        // Test whether SIMD is disabled.
+        if (!Boolean.parseBoolean(System.getProperty("neurogear.simd", "true"))) {
+        
+            return new ScalarVectorMath();
+        }
+        
+        // Attempt to load SIMD backend.
+        try {
+        
+            return (VectorMath)Class.forName(SIMD_BACKEND).getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException | LinkageError e) {
+        
+            return new ScalarVectorMath();
+        }
+    }
+}